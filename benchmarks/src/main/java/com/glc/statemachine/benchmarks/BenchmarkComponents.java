@@ -0,0 +1,78 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionListener;
+
+/**
+ * Evaluators, actions and listeners used by the synthetic definitions. The classes are public with empty
+ * constructors so that they can also be referenced from generated manifests.
+ */
+public final class BenchmarkComponents {
+
+    private BenchmarkComponents() {
+    }
+
+    /**
+     * Evaluator that always passes
+     */
+    public static class PassingEvaluator implements TransitionEvaluator<BenchmarkEntity> {
+        @Override
+        public String getDescription() {
+            return "Always passes";
+        }
+
+        @Override
+        public boolean evaluate(ActionContext<BenchmarkEntity> context) {
+            return context.getEntity().getId() != null;
+        }
+    }
+
+    /**
+     * Evaluator that always fails
+     */
+    public static class FailingEvaluator implements TransitionEvaluator<BenchmarkEntity> {
+        @Override
+        public String getDescription() {
+            return "Always fails";
+        }
+
+        @Override
+        public boolean evaluate(ActionContext<BenchmarkEntity> context) {
+            return context.getEntity().getId() == null;
+        }
+    }
+
+    /**
+     * Action that performs no work
+     */
+    public static class NoopAction implements TransitionAction<BenchmarkEntity> {
+        @Override
+        public String getName() {
+            return "noop";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Performs no work";
+        }
+
+        @Override
+        public void execute(ActionContext<BenchmarkEntity> actionContext) {
+        }
+    }
+
+    /**
+     * Listener that counts the transitions it is notified of
+     */
+    public static class CountingListener implements TransitionListener<BenchmarkEntity> {
+        long transitions;
+
+        @Override
+        public void onTransition(Transition<BenchmarkEntity> transition, ActionContext<BenchmarkEntity> context) {
+            transitions++;
+        }
+    }
+}
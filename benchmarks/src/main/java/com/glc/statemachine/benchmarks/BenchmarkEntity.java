@@ -0,0 +1,21 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StatefulEntity;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Minimal entity driven through the synthetic definitions
+ */
+@Getter
+@Setter
+public class BenchmarkEntity implements StatefulEntity {
+    State state;
+    String id;
+
+    public BenchmarkEntity(String id, State state) {
+        this.id = id;
+        this.state = state;
+    }
+}
@@ -0,0 +1,27 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.Random;
+
+/**
+ * Builds the action contexts the benchmarks cycle through
+ */
+final class Contexts {
+
+    private Contexts() {
+    }
+
+    /**
+     * Creates contexts for random state / event pairs of a synthetic definition, each with its own entity
+     */
+    @SuppressWarnings("unchecked")
+    static ActionContext<BenchmarkEntity>[] random(StateMachineDefinition<BenchmarkEntity> definition, int states, int events, int count, Random random) {
+        ActionContext<BenchmarkEntity>[] contexts = new ActionContext[count];
+        for (int i = 0; i < count; i++) {
+            BenchmarkEntity entity = new BenchmarkEntity(String.valueOf(i), SyntheticDefinitions.state(random.nextInt(states)));
+            contexts[i] = new ActionContext<>(SyntheticDefinitions.event(random.nextInt(events)), entity, definition);
+        }
+        return contexts;
+    }
+}
@@ -0,0 +1,73 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.definition.RoleMask;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StateMachineDefinition#getEventsForState(State)} and its role filtered variants, by role names
+ * and by compiled {@link RoleMask}, for a definition whose events all require roles
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class EventsForStateBenchmark {
+
+    private static final int STATES = 64;
+
+    @Param({"20"})
+    int events;
+
+    @Param({"16"})
+    int roles;
+
+    StateMachineDefinition<BenchmarkEntity> definition;
+    State[] states;
+    List<String> principalRoles;
+    RoleMask principalMask;
+    int cursor;
+
+    @Setup
+    public void setUp() {
+        definition = SyntheticDefinitions.authorised(STATES, events, roles);
+        states = new State[STATES];
+        for (int i = 0; i < STATES; i++) {
+            states[i] = SyntheticDefinitions.state(i);
+        }
+        principalRoles = Arrays.asList(SyntheticDefinitions.role(0), SyntheticDefinitions.role(roles / 2), "unknown");
+        principalMask = definition.compileRoles(principalRoles);
+    }
+
+    @Benchmark
+    public Set<StateMachineEvent> withoutRoles() {
+        return definition.getEventsForState(states[cursor++ & (STATES - 1)]);
+    }
+
+    @Benchmark
+    public Set<StateMachineEvent> withRoles() {
+        return definition.getEventsForState(states[cursor++ & (STATES - 1)], principalRoles);
+    }
+
+    @Benchmark
+    public Set<StateMachineEvent> withRoleMask() {
+        return definition.getEventsForState(states[cursor++ & (STATES - 1)], principalMask);
+    }
+}
@@ -0,0 +1,63 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StateMachineDefinition#getTransition(ActionContext)} for definitions with a single unguarded
+ * transition per cell and for definitions where every cell holds several guarded alternatives
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GetTransitionBenchmark {
+
+    private static final int CONTEXTS = 1024;
+
+    @Param({"simple", "guarded"})
+    String shape;
+
+    @Param({"10", "1000"})
+    int states;
+
+    @Param({"10"})
+    int events;
+
+    @Param({"4"})
+    int guards;
+
+    StateMachineDefinition<BenchmarkEntity> definition;
+    ActionContext<BenchmarkEntity>[] contexts;
+    int cursor;
+
+    @Setup
+    public void setUp() {
+        definition = "simple".equals(shape)
+            ? SyntheticDefinitions.simple(states, events)
+            : SyntheticDefinitions.guarded(states, events, guards);
+        contexts = Contexts.random(definition, states, events, CONTEXTS, new Random(42));
+    }
+
+    @Benchmark
+    public Optional<Transition<BenchmarkEntity>> getTransition() {
+        return definition.getTransition(contexts[cursor++ & (CONTEXTS - 1)]);
+    }
+}
@@ -0,0 +1,71 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.loader.DefinitionResolver;
+import com.glc.statemachine.loader.StateMachineLoader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StateMachineLoader#load()} for generated CSV matrices of increasing size, and
+ * {@link StateMachineLoader#load(Path)} reading the same definitions from a precompiled image
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoaderBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int states;
+
+    @Param({"10"})
+    int events;
+
+    Path directory;
+    Path image;
+    byte[] manifest;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("state-machine-loader-benchmark");
+        manifest = SyntheticDefinitions.writeMatrix(directory, states, events);
+        image = directory.resolve("definition.smi");
+        loadImage();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve(SyntheticDefinitions.DEFINITION_FILE));
+        Files.deleteIfExists(image);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public StateMachineDefinition<? extends StatefulEntity> load() throws Exception {
+        return new StateMachineLoader(new ByteArrayInputStream(manifest), null, DefinitionResolver.directory(directory)).load();
+    }
+
+    @Benchmark
+    public StateMachineDefinition<? extends StatefulEntity> loadImage() throws Exception {
+        return new StateMachineLoader(new ByteArrayInputStream(manifest), null, DefinitionResolver.directory(directory)).load(image);
+    }
+}
@@ -0,0 +1,93 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.StateMachineEventFromAndTo;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.impl.DefaultTransitionManager;
+import com.glc.statemachine.impl.OrderedTransitionDispatcher;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how event throughput through an {@link OrderedTransitionDispatcher} scales with the number of lanes. Each
+ * invocation dispatches one event to each of a set of entities, which toggle between S0 and S1, and waits for all of
+ * them to be handled. The action burns a configurable amount of CPU so that the work per event dominates the hand
+ * off to the lane. Compare the scores for {@code lanes} from 1 up to the number of cores, e.g.
+ * {@code java -jar benchmarks.jar OrderedDispatchBenchmark -p lanes=1,2,4,8,16}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderedDispatchBenchmark {
+
+    private static final int ENTITIES = 1024;
+
+    @Param({"1", "2", "4", "8"})
+    int lanes;
+
+    @Param({"1000"})
+    int work;
+
+    OrderedTransitionDispatcher<BenchmarkEntity> dispatcher;
+    ActionContext<BenchmarkEntity>[] contexts;
+    CompletableFuture<?>[] outcomes = new CompletableFuture[ENTITIES];
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        TransitionAction<BenchmarkEntity> busy = new BenchmarkComponents.NoopAction() {
+            @Override
+            public void execute(ActionContext<BenchmarkEntity> actionContext) {
+                Blackhole.consumeCPU(work);
+            }
+        };
+        StateMachineEventFromAndTo<BenchmarkEntity> forward = new StateMachineEventFromAndTo<>(SyntheticDefinitions.event(0), SyntheticDefinitions.state(0), SyntheticDefinitions.state(1));
+        forward.addAction(busy);
+        StateMachineEventFromAndTo<BenchmarkEntity> back = new StateMachineEventFromAndTo<>(SyntheticDefinitions.event(0), SyntheticDefinitions.state(1), SyntheticDefinitions.state(0));
+        back.addAction(busy);
+        StateMachineDefinition<BenchmarkEntity> definition = new StateMachineDefinition<>(Arrays.asList(forward, back));
+
+        contexts = new ActionContext[ENTITIES];
+        for (int i = 0; i < ENTITIES; i++) {
+            contexts[i] = new ActionContext<>(SyntheticDefinitions.event(0), new BenchmarkEntity(String.valueOf(i), SyntheticDefinitions.state(0)), definition);
+        }
+        dispatcher = new OrderedTransitionDispatcher<>(new DefaultTransitionManager<BenchmarkEntity>() {
+            @Override
+            protected void persistEntity(ActionContext<BenchmarkEntity> actionContext) {
+            }
+        }, lanes);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        dispatcher.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITIES)
+    public void dispatch() {
+        for (int i = 0; i < ENTITIES; i++) {
+            outcomes[i] = dispatcher.dispatch(contexts[i]);
+        }
+        CompletableFuture.allOf(outcomes).join();
+    }
+}
@@ -0,0 +1,90 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.replay.ParallelReplayEngine;
+import com.glc.statemachine.replay.ReplayRecord;
+import com.glc.statemachine.store.PrimitiveStateStore;
+import com.glc.statemachine.store.StoreEntity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how the record throughput of a {@link ParallelReplayEngine} scales with the number of workers. Each
+ * invocation replays the same pregenerated records, spread over a fixed set of entities, through a synthetic
+ * definition of unguarded transitions. Compare the scores for {@code threads} from 1 up to the number of cores, e.g.
+ * {@code java -jar benchmarks.jar ParallelReplayBenchmark -p threads=1,2,4,8,16}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelReplayBenchmark {
+
+    private static final int RECORDS = 1_000_000;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    @Param({"100000"})
+    int entities;
+
+    @Param({"20"})
+    int states;
+
+    @Param({"5"})
+    int events;
+
+    ForkJoinPool pool;
+    ParallelReplayEngine engine;
+    List<ReplayRecord> records;
+
+    @Setup
+    public void setUp() {
+        StateMachineDefinitionBuilder<StoreEntity> builder = new StateMachineDefinitionBuilder<>();
+        for (int s = 0; s < states; s++) {
+            for (int e = 0; e < events; e++) {
+                builder.withTransition(SyntheticDefinitions.event(e), SyntheticDefinitions.state(s), SyntheticDefinitions.state((s + e + 1) % states));
+            }
+        }
+        StateMachineDefinition<StoreEntity> definition = builder.build();
+
+        Random random = new Random(42);
+        records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            records.add(new ReplayRecord(random.nextInt(entities), "E" + random.nextInt(events)));
+        }
+        pool = new ForkJoinPool(threads);
+        engine = new ParallelReplayEngine(definition, new PrimitiveStateStore(definition, entities, PrimitiveStateStore.DEFAULT_STRIPES),
+            SyntheticDefinitions.state(0), pool, threads, ParallelReplayEngine.DEFAULT_BATCH_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long replay() {
+        return engine.replay(records.iterator()).getTransitionCount();
+    }
+}
@@ -0,0 +1,47 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Transition#perform(ActionContext)} with no, one and several registered listeners
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PerformBenchmark {
+
+    @Param({"0", "1", "8"})
+    int listeners;
+
+    Transition<BenchmarkEntity> transition;
+    ActionContext<BenchmarkEntity> context;
+
+    @Setup
+    public void setUp() {
+        StateMachineDefinition<BenchmarkEntity> definition = SyntheticDefinitions.withListeners(listeners);
+        context = new ActionContext<>(SyntheticDefinitions.event(0), new BenchmarkEntity("1", SyntheticDefinitions.state(0)), definition);
+        transition = definition.getTransition(context).orElseThrow(IllegalStateException::new);
+    }
+
+    @Benchmark
+    public void perform() {
+        transition.perform(context);
+    }
+}
@@ -0,0 +1,179 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StateMachineEventFromAndTo;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.benchmarks.BenchmarkComponents.CountingListener;
+import com.glc.statemachine.benchmarks.BenchmarkComponents.FailingEvaluator;
+import com.glc.statemachine.benchmarks.BenchmarkComponents.NoopAction;
+import com.glc.statemachine.benchmarks.BenchmarkComponents.PassingEvaluator;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.impl.AuthorisedStateMachineEvent;
+import com.glc.statemachine.impl.DefaultState;
+import com.glc.statemachine.impl.DefaultStateMachineEvent;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generators for synthetic state machine definitions of arbitrary size. States are named "S0".."Sn" and events
+ * "E0".."Em". Every state has a transition for every event, to state {@code (state + event + 1) % states}, so
+ * any state / event pair drawn from the generated names resolves to a transition.
+ */
+public final class SyntheticDefinitions {
+
+    public static final String DEFINITION_FILE = "definition.csv";
+
+    private SyntheticDefinitions() {
+    }
+
+    public static State state(int state) {
+        return new DefaultState("S" + state);
+    }
+
+    public static StateMachineEvent event(int event) {
+        return new DefaultStateMachineEvent("E" + event);
+    }
+
+    public static String role(int role) {
+        return "R" + role;
+    }
+
+    private static int target(int state, int event, int states) {
+        return (state + event + 1) % states;
+    }
+
+    /**
+     * Builds a definition where every cell holds a single unguarded transition
+     */
+    public static StateMachineDefinition<BenchmarkEntity> simple(int states, int events) {
+        StateMachineDefinitionBuilder<BenchmarkEntity> builder = new StateMachineDefinitionBuilder<>();
+        for (int s = 0; s < states; s++) {
+            for (int e = 0; e < events; e++) {
+                builder.withTransition(event(e), state(s), state(target(s, e, states)));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a definition where every cell holds the specified number of guarded alternatives of which only
+     * the last passes, in the style of the conditional transitions of a complex state machine. Every lookup
+     * therefore runs all evaluators of the cell.
+     */
+    public static StateMachineDefinition<BenchmarkEntity> guarded(int states, int events, int guards) {
+        TransitionEvaluator<BenchmarkEntity> failing = new FailingEvaluator();
+        TransitionEvaluator<BenchmarkEntity> passing = new PassingEvaluator();
+        List<TransitionAction<BenchmarkEntity>> actions = Collections.singletonList(new NoopAction());
+        StateMachineDefinitionBuilder<BenchmarkEntity> builder = new StateMachineDefinitionBuilder<>();
+        for (int s = 0; s < states; s++) {
+            for (int e = 0; e < events; e++) {
+                for (int g = 0; g < guards; g++) {
+                    builder.withTransition(event(e), state(s), state(target(s, e + g, states)), g == guards - 1 ? passing : failing, actions);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a simple definition whose events each require one of the roles {@code R(event % roles)} and
+     * {@code R((event + 1) % roles)}
+     */
+    public static StateMachineDefinition<BenchmarkEntity> authorised(int states, int events, int roles) {
+        StateMachineDefinitionBuilder<BenchmarkEntity> builder = new StateMachineDefinitionBuilder<>();
+        for (int e = 0; e < events; e++) {
+            StateMachineEvent event = new AuthorisedStateMachineEvent(event(e), Arrays.asList(role(e % roles), role((e + 1) % roles)));
+            for (int s = 0; s < states; s++) {
+                builder.withTransition(event, state(s), state(target(s, e, states)));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a single transition from S0 to S1 on E0 with the specified number of listeners registered
+     */
+    public static StateMachineDefinition<BenchmarkEntity> withListeners(int listeners) {
+        List<TransitionListener<BenchmarkEntity>> transitionListeners = new ArrayList<>();
+        for (int i = 0; i < listeners; i++) {
+            transitionListeners.add(new CountingListener());
+        }
+        StateMachineEventFromAndTo<BenchmarkEntity> transition = new StateMachineEventFromAndTo<>(event(0), state(0), state(1));
+        transition.addAction(new NoopAction());
+        return new StateMachineDefinition<>(Collections.singletonList(transition), null, listeners == 0 ? null : transitionListeners);
+    }
+
+    /**
+     * Writes a definition CSV of the specified size to {@link #DEFINITION_FILE} in the directory and returns a manifest
+     * referring to it. Cells cycle through each of the supported transition formats and every fifth event column
+     * carries authorisation roles.
+     *
+     * @param directory The directory to write the CSV to
+     * @return The manifest JSON
+     */
+    public static byte[] writeMatrix(Path directory, int states, int events) throws IOException {
+        return writeMatrix(directory, states, events, 0, -1);
+    }
+
+    /**
+     * Writes a definition CSV as {@link #writeMatrix(Path, int, int)} does, for one of several base matrices that
+     * differ in the targets of their transitions, with the first cell of one row changed to a transition to its own
+     * state, in the style of the per tenant variations of a shared definition
+     *
+     * @param base         Offsets the targets of every transition, 0 for the matrix of {@link #writeMatrix(Path, int, int)}
+     * @param changedState The row whose first cell is changed, or -1 to change none
+     * @return The manifest JSON
+     */
+    public static byte[] writeMatrix(Path directory, int states, int events, int base, int changedState) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(DEFINITION_FILE), StandardCharsets.UTF_8)) {
+            writer.write("\"\"");
+            for (int e = 0; e < events; e++) {
+                writer.write(",\"E" + e + (e % 5 == 0 ? "[" + role(0) + "," + role(1) + "]" : "") + "\"");
+            }
+            writer.write("\n");
+            for (int s = 0; s < states; s++) {
+                writer.write("\"S" + s + "\"");
+                for (int e = 0; e < events; e++) {
+                    writer.write(",\"" + (s == changedState && e == 0 ? "S" + s : cell(s, e, base, states)) + "\"");
+                }
+                writer.write("\n");
+            }
+        }
+
+        return ("{\n" +
+            "  \"definition\": \"" + DEFINITION_FILE + "\",\n" +
+            "  \"transitionActions\": {\n" +
+            "    \"TA1\": \"" + NoopAction.class.getName() + "\"\n" +
+            "  },\n" +
+            "  \"transitionEvaluators\": {\n" +
+            "    \"TE1\": \"" + PassingEvaluator.class.getName() + "\",\n" +
+            "    \"TE2\": \"" + FailingEvaluator.class.getName() + "\"\n" +
+            "  }\n" +
+            "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String cell(int state, int event, int base, int states) {
+        String next = "S" + target(state, event + base, states);
+        switch (event % 4) {
+            case 0:
+                return next;
+            case 1:
+                return "TE1/" + next;
+            case 2:
+                return next + "/TA1";
+            default:
+                return "[TE2/S" + target(state, event + base + 1, states) + "][TE1/" + next + "/TA1]";
+        }
+    }
+}
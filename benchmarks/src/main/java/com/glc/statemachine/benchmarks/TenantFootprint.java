@@ -0,0 +1,94 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.loader.DefinitionResolver;
+import com.glc.statemachine.loader.StateMachineLoader;
+import com.glc.statemachine.loader.TenantDefinitionRegistry;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures the heap retained by the definitions of many tenants, each loaded from one of a few base CSVs with one
+ * cell changed, when every tenant is loaded with its own {@link StateMachineLoader} and when the tenants are loaded
+ * through a {@link TenantDefinitionRegistry}. Heap use is read after a full GC, so run it with a fixed heap:
+ *
+ * <pre>
+ * java -Xms2g -Xmx2g -cp benchmarks/target/benchmarks.jar com.glc.statemachine.benchmarks.TenantFootprint [tenants] [bases] [states] [events]
+ * </pre>
+ */
+public final class TenantFootprint {
+
+    private TenantFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tenants = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int bases = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int states = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int events = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        Path directory = Files.createTempDirectory("state-machine-tenants");
+        try {
+            for (int tenant = 0; tenant < tenants; tenant++) {
+                Path tenantDirectory = Files.createDirectories(directory.resolve("t" + tenant));
+                // Every tenant of a base differs from the others in one cell of a different row
+                byte[] manifest = SyntheticDefinitions.writeMatrix(tenantDirectory, states, events, tenant % bases, (tenant / bases) % states);
+                Files.write(tenantDirectory.resolve("manifest.json"), manifest);
+            }
+            System.out.printf("%d tenants of %d base definitions with %d states and %d events%n", tenants, bases, states, events);
+
+            long baseline = usedHeap();
+            List<StateMachineDefinition<? extends StatefulEntity>> independent = new ArrayList<>(tenants);
+            for (int tenant = 0; tenant < tenants; tenant++) {
+                Path tenantDirectory = directory.resolve("t" + tenant);
+                independent.add(new StateMachineLoader(Files.newInputStream(tenantDirectory.resolve("manifest.json")), null,
+                    DefinitionResolver.directory(tenantDirectory)).load());
+            }
+            long independentBytes = usedHeap() - baseline;
+            report("Independent loads", independentBytes, tenants);
+            independent.clear();
+
+            baseline = usedHeap();
+            TenantDefinitionRegistry registry = new TenantDefinitionRegistry(tenant -> directory.resolve(tenant).resolve("manifest.json"), null, Long.MAX_VALUE);
+            for (int tenant = 0; tenant < tenants; tenant++) {
+                registry.getDefinition("t" + tenant);
+            }
+            long registryBytes = usedHeap() - baseline;
+            report("Tenant registry", registryBytes, tenants);
+            System.out.printf("  %d distinct definitions, %d shared rows, %,d bytes estimated by the registry%n",
+                registry.getDistinctDefinitionCount(), registry.getSharedRowCount(), registry.getEstimatedBytes());
+            System.out.printf("Registry retains %.1f%% of the heap of independent loads%n", 100.0 * registryBytes / independentBytes);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(TenantFootprint::delete);
+            }
+        }
+    }
+
+    private static void report(String name, long bytes, int tenants) {
+        System.out.printf("%-18s %,14d bytes retained, %,10d per tenant%n", name, bytes, bytes / tenants);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            // Left for the OS to clean up with the rest of the temporary directory
+        }
+    }
+}
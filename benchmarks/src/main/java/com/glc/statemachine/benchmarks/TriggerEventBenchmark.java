@@ -0,0 +1,71 @@
+package com.glc.statemachine.benchmarks;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionManager;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.impl.DefaultTransitionManager;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full dispatch through {@link DefaultTransitionManager#triggerEvent(ActionContext)}: lookup, actions,
+ * state update and the persistence hook
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TriggerEventBenchmark {
+
+    private static final int CONTEXTS = 1024;
+
+    @Param({"simple", "guarded"})
+    String shape;
+
+    @Param({"1000"})
+    int states;
+
+    @Param({"10"})
+    int events;
+
+    TransitionManager<BenchmarkEntity> transitionManager = new DefaultTransitionManager<BenchmarkEntity>() {
+        @Override
+        protected void persistEntity(ActionContext<BenchmarkEntity> actionContext) {
+        }
+    };
+
+    ActionContext<BenchmarkEntity>[] contexts;
+    int cursor;
+
+    @Setup
+    public void setUp() {
+        StateMachineDefinition<BenchmarkEntity> definition = "simple".equals(shape)
+            ? SyntheticDefinitions.simple(states, events)
+            : SyntheticDefinitions.guarded(states, events, 4);
+        contexts = Contexts.random(definition, states, events, CONTEXTS, new Random(42));
+    }
+
+    /**
+     * Every state has a transition for every event, so each dispatch moves the entity on and the next dispatch of
+     * the same context resolves from its new state
+     */
+    @Benchmark
+    public Optional<Transition<BenchmarkEntity>> triggerEvent() {
+        return transitionManager.triggerEvent(contexts[cursor++ & (CONTEXTS - 1)]);
+    }
+}
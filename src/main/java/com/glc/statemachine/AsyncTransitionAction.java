@@ -0,0 +1,25 @@
+package com.glc.statemachine;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link TransitionAction} that performs its work asynchronously, e.g. non-blocking I/O. The
+ * {@link AsyncTransitionManager} composes the returned stage without blocking, while synchronous callers
+ * such as {@link Transition#perform(ActionContext)} wait for it to complete.
+ */
+public interface AsyncTransitionAction<T extends StatefulEntity> extends TransitionAction<T> {
+
+    /**
+     * Implementations must start any action that needs to occur for the transition and return a stage that
+     * completes when it has finished.
+     *
+     * @param actionContext
+     * @return A stage completing when the action has been performed
+     */
+    CompletionStage<Void> executeAsync(ActionContext<T> actionContext);
+
+    @Override
+    default void execute(ActionContext<T> actionContext) {
+        executeAsync(actionContext).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,24 @@
+package com.glc.statemachine;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link TransitionEvaluator} that performs its evaluation asynchronously, e.g. a remote check. The
+ * {@link AsyncTransitionManager} composes the returned stage without blocking, while synchronous callers
+ * wait for it to complete.
+ */
+public interface AsyncTransitionEvaluator<T extends StatefulEntity> extends TransitionEvaluator<T> {
+
+    /**
+     * Starts the logical evaluation
+     *
+     * @param context
+     * @return A stage completing with the outcome of the evaluation
+     */
+    CompletionStage<Boolean> evaluateAsync(ActionContext<T> context);
+
+    @Override
+    default boolean evaluate(ActionContext<T> context) {
+        return evaluateAsync(context).toCompletableFuture().join();
+    }
+}
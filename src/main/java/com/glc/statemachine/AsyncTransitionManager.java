@@ -0,0 +1,13 @@
+package com.glc.statemachine;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import lombok.NonNull;
+
+/**
+ * Asynchronous counterpart of the {@link TransitionManager}. Transitions are resolved, performed and persisted
+ * without blocking the calling thread, and the returned stage completes once the entity has been persisted.
+ */
+public interface AsyncTransitionManager<T extends StatefulEntity> {
+    CompletionStage<Optional<Transition<T>>> triggerEventAsync(@NonNull ActionContext<T> actionContext);
+}
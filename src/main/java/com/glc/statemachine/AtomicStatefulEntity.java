@@ -0,0 +1,17 @@
+package com.glc.statemachine;
+
+/**
+ * A {@link StatefulEntity} whose state can be updated atomically. Entities implementing this can be transitioned
+ * concurrently without locking by the {@link com.glc.statemachine.impl.AtomicTransitionManager}.
+ */
+public interface AtomicStatefulEntity extends StatefulEntity {
+
+    /**
+     * Atomically sets the state to {@code next} if the current state is the same instance as {@code expected}
+     *
+     * @param expected The state the entity is expected to be in, as returned from {@link #getState()}
+     * @param next     The state to move the entity to
+     * @return True if the state was updated, false if the entity was no longer in the expected state
+     */
+    boolean compareAndSetState(State expected, State next);
+}
@@ -0,0 +1,13 @@
+package com.glc.statemachine;
+
+/**
+ * Marks a {@link TransitionEvaluator} whose result depends only on the entity being evaluated, not on the event,
+ * the context parameters or any other state, and that has no side effects. Such an evaluator returns the same result
+ * when it is called again for the same entity before the entity changes.
+ * <p>
+ * The state machine relies on this to evaluate it at most once per dispatch: when the same instance guards several
+ * alternatives for one state and event, only its first occurrence is evaluated. Results can also be kept across
+ * dispatches with the {@link com.glc.statemachine.impl.MemoizingTransitionEvaluator}.
+ */
+public interface CacheableTransitionEvaluator<T extends StatefulEntity> extends TransitionEvaluator<T> {
+}
@@ -8,6 +8,6 @@ public interface State {
 
     @JsonCreator
     static State forValue(String value) {
-        return new DefaultState(value);
+        return DefaultState.of(value);
     }
 }
@@ -29,6 +29,6 @@ public interface StateMachineEvent {
 
     @JsonCreator
     static StateMachineEvent forValue(String value) {
-        return new DefaultStateMachineEvent(value);
+        return DefaultStateMachineEvent.of(value);
     }
 }
@@ -41,27 +41,64 @@ public interface Transition<T extends StatefulEntity> {
      * Executes a default implementation of the transition actions by
      * executing each of the TransitionAction defined and setting the
      * state on the entity to the defined target state.
+     * <p>
+     * The default implementation does not allocate, so a dispatch through the
+     * {@link TransitionManager} only allocates what user supplied actions, evaluators and listeners do.
      *
      * @param context
      */
     default void perform(ActionContext<T> context) {
-        getTransitionActions().ifPresent((actions) -> actions.forEach(action -> {
-            log.trace("Executing transition action {}", action.getName());
-            action.execute(context);
-        }));
+        executeActions(context);
 
         State toState = getToState(context);
-        log.trace("Updating entity state to {}", toState);
+        if (log.isTraceEnabled()) {
+            log.trace("Updating entity state to {}", toState);
+        }
         context.getEntity().setState(toState);
 
+        notifyListeners(context);
+    }
 
-        context.getStateMachineDefinition().getTransitionListeners()
-            .ifPresent((transitionListeners -> transitionListeners
-                .forEach(transitionListener -> {
-                    log.trace("Calling transition listener {}", transitionListener);
-                    transitionListener.onTransition(this, context);
-                })));
+    /**
+     * Executes each of the {@link TransitionAction}s of this transition in order, measured by the
+     * {@link TransitionMetrics} of the definition
+     *
+     * @param context The action context that is associated with this transition.
+     */
+    default void executeActions(ActionContext<T> context) {
+        Optional<List<TransitionAction<T>>> actions = getTransitionActions();
+        if (actions.isPresent()) {
+            TransitionMetrics metrics = context.getStateMachineDefinition().getMetrics();
+            List<TransitionAction<T>> list = actions.get();
+            for (int i = 0, size = list.size(); i < size; i++) {
+                TransitionAction<T> action = list.get(i);
+                if (log.isTraceEnabled()) {
+                    log.trace("Executing transition action {}", action.getName());
+                }
+                TransitionMetrics.execute(metrics, action, context);
+            }
+        }
+    }
 
+    /**
+     * Calls each of the {@link TransitionListener}s registered on the state machine definition in the context,
+     * measured by the {@link TransitionMetrics} of the definition
+     *
+     * @param context The action context that is associated with this transition.
+     */
+    default void notifyListeners(ActionContext<T> context) {
+        Optional<List<TransitionListener<T>>> listeners = context.getStateMachineDefinition().getTransitionListeners();
+        if (listeners.isPresent()) {
+            TransitionMetrics metrics = context.getStateMachineDefinition().getMetrics();
+            List<TransitionListener<T>> list = listeners.get();
+            for (int i = 0, size = list.size(); i < size; i++) {
+                TransitionListener<T> transitionListener = list.get(i);
+                if (log.isTraceEnabled()) {
+                    log.trace("Calling transition listener {}", transitionListener);
+                }
+                TransitionMetrics.notifyListener(metrics, transitionListener, this, context);
+            }
+        }
     }
 
 }
@@ -0,0 +1,11 @@
+package com.glc.statemachine;
+
+/**
+ * Thrown when the state of an {@link AtomicStatefulEntity} kept changing concurrently while a transition was being
+ * applied to it and the retries were exhausted
+ */
+public class TransitionConflictException extends RuntimeException {
+    public TransitionConflictException(String s) {
+        super(s);
+    }
+}
@@ -1,5 +1,8 @@
 package com.glc.statemachine;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import lombok.NonNull;
 
@@ -9,4 +12,20 @@ import lombok.NonNull;
  */
 public interface TransitionManager<T extends StatefulEntity> {
     Optional<Transition<T>> triggerEvent(@NonNull ActionContext<T> actionContext);
+
+    /**
+     * Triggers the event of each of the action contexts in iteration order. The default implementation
+     * triggers each event individually; implementations may batch any work that is common to the events,
+     * such as persisting the entities.
+     *
+     * @param actionContexts The contexts to trigger the events of
+     * @return The outcome of each context, in the iteration order of the supplied contexts
+     */
+    default List<Optional<Transition<T>>> triggerEvents(@NonNull Collection<ActionContext<T>> actionContexts) {
+        List<Optional<Transition<T>>> outcomes = new ArrayList<>(actionContexts.size());
+        for (ActionContext<T> actionContext : actionContexts) {
+            outcomes.add(triggerEvent(actionContext));
+        }
+        return outcomes;
+    }
 }
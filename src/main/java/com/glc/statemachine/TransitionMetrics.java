@@ -0,0 +1,135 @@
+package com.glc.statemachine;
+
+import com.glc.statemachine.definition.StateMachineDefinition;
+
+/**
+ * Receives measurements of the steps of a transition: triggering the event, looking up the transition, evaluating,
+ * executing actions, notifying listeners and persisting the entity. Metrics are configured on a definition with
+ * {@link StateMachineDefinition#withMetrics(TransitionMetrics)} and apply to every transition of that definition.
+ * <p>
+ * Each step checks {@link #isEnabled()} before reading the clock, so the default {@link #NONE} costs a branch. The
+ * hooks are called on the thread of the transition and must be thread safe and quick, e.g. updating striped counters.
+ * A hook that throws fails the transition.
+ */
+public interface TransitionMetrics {
+
+    /**
+     * Records nothing
+     */
+    TransitionMetrics NONE = new TransitionMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * The step a failure happened in
+     */
+    enum Step {
+        EVALUATE,
+        EXECUTE,
+        NOTIFY_LISTENER,
+        PERSIST_ENTITY
+    }
+
+    /**
+     * @return Whether the hooks are called. Must not change, as it is checked at the start and end of each step.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called once a {@link TransitionManager} has handled an event, including persisting the entity
+     *
+     * @param from  The state of the entity when the event was triggered
+     * @param to    The state the entity transitioned to, or null if no transition was found
+     * @param nanos The time taken
+     */
+    default void onTriggerEvent(State from, StateMachineEvent event, State to, long nanos) {
+    }
+
+    /**
+     * Called once {@link StateMachineDefinition#getTransition(ActionContext)} has looked up a transition, including
+     * running its evaluators
+     */
+    default void onGetTransition(State from, StateMachineEvent event, boolean found, long nanos) {
+    }
+
+    default void onEvaluate(TransitionEvaluator<?> evaluator, boolean passed, long nanos) {
+    }
+
+    default void onExecute(TransitionAction<?> action, long nanos) {
+    }
+
+    default void onNotifyListener(TransitionListener<?> listener, long nanos) {
+    }
+
+    default void onPersistEntity(long nanos) {
+    }
+
+    /**
+     * Called when an evaluator, action, listener or persisting the entity throws, before the failure is rethrown
+     *
+     * @param step      The step that failed
+     * @param component The evaluator, action or listener that threw, or null for {@link Step#PERSIST_ENTITY}
+     */
+    default void onFailure(Step step, Object component, Throwable failure) {
+    }
+
+    /**
+     * Evaluates, recording the time taken and the outcome if the metrics are enabled
+     */
+    static <T extends StatefulEntity> boolean evaluate(TransitionMetrics metrics, TransitionEvaluator<T> evaluator, ActionContext<T> context) {
+        if (!metrics.isEnabled()) {
+            return evaluator.evaluate(context);
+        }
+        long start = System.nanoTime();
+        boolean passed;
+        try {
+            passed = evaluator.evaluate(context);
+        } catch (RuntimeException | Error e) {
+            metrics.onFailure(Step.EVALUATE, evaluator, e);
+            throw e;
+        }
+        metrics.onEvaluate(evaluator, passed, System.nanoTime() - start);
+        return passed;
+    }
+
+    /**
+     * Executes the action, recording the time taken if the metrics are enabled
+     */
+    static <T extends StatefulEntity> void execute(TransitionMetrics metrics, TransitionAction<T> action, ActionContext<T> context) {
+        if (!metrics.isEnabled()) {
+            action.execute(context);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            action.execute(context);
+        } catch (RuntimeException | Error e) {
+            metrics.onFailure(Step.EXECUTE, action, e);
+            throw e;
+        }
+        metrics.onExecute(action, System.nanoTime() - start);
+    }
+
+    /**
+     * Notifies the listener, recording the time taken if the metrics are enabled
+     */
+    static <T extends StatefulEntity> void notifyListener(TransitionMetrics metrics, TransitionListener<T> listener, Transition<T> transition, ActionContext<T> context) {
+        if (!metrics.isEnabled()) {
+            listener.onTransition(transition, context);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            listener.onTransition(transition, context);
+        } catch (RuntimeException | Error e) {
+            metrics.onFailure(Step.NOTIFY_LISTENER, listener, e);
+            throw e;
+        }
+        metrics.onNotifyListener(listener, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,19 @@
+package com.glc.statemachine;
+
+import java.util.Optional;
+
+/**
+ * Strategy used by a {@link TransitionManager} to find the transition to perform for the event and entity in a
+ * context. Implementations must return the same transition as
+ * {@link com.glc.statemachine.definition.StateMachineDefinition#getTransition(ActionContext)}, i.e. the first
+ * candidate in matrix order whose evaluator passes, but may differ in how the evaluators are run.
+ */
+@FunctionalInterface
+public interface TransitionResolver<T extends StatefulEntity> {
+
+    /**
+     * @param context Context containing the {@link StatefulEntity} and {@link StateMachineEvent}
+     * @return The transition to perform
+     */
+    Optional<Transition<T>> resolve(ActionContext<T> context);
+}
@@ -0,0 +1,14 @@
+package com.glc.statemachine;
+
+/**
+ * A {@link StatefulEntity} that exposes a version which changes whenever the entity, including its state, changes,
+ * such as an optimistic locking version. Together with the id it identifies the content of the entity, so results
+ * derived from the entity can be cached by id and version.
+ */
+public interface VersionedStatefulEntity extends StatefulEntity {
+
+    /**
+     * @return The version of the entity
+     */
+    long getVersion();
+}
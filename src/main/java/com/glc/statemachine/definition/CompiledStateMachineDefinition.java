@@ -0,0 +1,390 @@
+package com.glc.statemachine.definition;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.CacheableTransitionEvaluator;
+import com.glc.statemachine.InvalidStateMachineException;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionMetrics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Dense form of a {@link StateMachineDefinition} matrix. Every state and event is assigned an int id
+ * and the candidate transitions for each state / event intersection are held in a flat array indexed
+ * by {@code stateId * eventCount + eventId}, so resolving a transition is an array lookup followed by
+ * an ordered scan of the candidates rather than a chain of map lookups.
+ * <p>
+ * Instances are immutable and are built once by the owning {@link StateMachineDefinition}.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class CompiledStateMachineDefinition<T extends StatefulEntity> {
+
+    /**
+     * Returned from the id lookups when a state or event is not part of the definition
+     */
+    public static final int UNKNOWN = StateEventRegistry.UNKNOWN;
+
+    /**
+     * The canonical states and events of the definition and their ids
+     */
+    StateEventRegistry registry;
+
+    /**
+     * Candidate transitions for each state / event intersection, in evaluation order. Empty
+     * intersections hold null
+     */
+    TransitionEvaluationActions<T>[][] transitions;
+
+    /**
+     * The transition of each candidate in {@link #transitions} wrapped in an {@link Optional} once, so that
+     * {@link #resolve(ActionContext)} can return it without allocating
+     */
+    Optional<Transition<T>>[][] results;
+
+    /**
+     * For each intersection, flags the candidates whose evaluator is a {@link CacheableTransitionEvaluator} that
+     * already guards an earlier candidate of the intersection. Such a candidate can only be reached when that evaluator
+     * returned false, so it is not evaluated again. Null when no candidate of the intersection is flagged.
+     */
+    boolean[][] repeated;
+
+    @SuppressWarnings("unchecked")
+    private CompiledStateMachineDefinition(StateEventRegistry registry) {
+        this.registry = registry;
+        this.transitions = new TransitionEvaluationActions[registry.getStateCount() * registry.getEventCount()][];
+        this.results = new Optional[this.transitions.length][];
+        this.repeated = new boolean[this.transitions.length][];
+    }
+
+    private CompiledStateMachineDefinition(CompiledStateMachineDefinition<T> previous) {
+        this.registry = previous.registry;
+        this.transitions = previous.transitions.clone();
+        this.results = previous.results.clone();
+        this.repeated = previous.repeated.clone();
+    }
+
+    /**
+     * Compiles the supplied matrix. States are numbered in the order they are first seen as either a 'from'
+     * or a 'to' state, and events in the order they are first seen in the rows of the matrix. States and
+     * events are identified by name, see {@link StateEventRegistry}, so the matrix must not hold two rows for the
+     * same state name or two cells of a row for the same event name, as the order in which their candidates are
+     * evaluated would depend on the iteration order of the maps.
+     *
+     * @param matrix The state machine matrix, may be null for an empty definition
+     * @return The compiled form of the matrix
+     * @throws InvalidStateMachineException If a state or event name is repeated in the rows or cells of the matrix
+     */
+    static <T extends StatefulEntity> CompiledStateMachineDefinition<T> compile(Map<State, StateMachineEventTransitionEvaluations<T>> matrix) {
+        List<State> states = new ArrayList<>();
+        List<StateMachineEvent> events = new ArrayList<>();
+        if (matrix != null) {
+            matrix.forEach((from, evaluations) -> {
+                states.add(from);
+                evaluations.getTransitionEvaluationActions().ifPresent(eventMap -> eventMap.forEach((event, candidates) -> {
+                    events.add(event);
+                    if (candidates != null) {
+                        candidates.forEach(candidate -> {
+                            states.add(candidate.getTransition().getFromState());
+                            states.add(candidate.getTransition().getToState(null));
+                        });
+                    }
+                }));
+            });
+        }
+        states.removeIf(Objects::isNull);
+
+        CompiledStateMachineDefinition<T> compiled = new CompiledStateMachineDefinition<>(new StateEventRegistry(states, events));
+        if (matrix != null) {
+            boolean[] rows = new boolean[compiled.getStateCount()];
+            matrix.forEach((from, evaluations) -> {
+                int stateId = compiled.getStateId(from);
+                if (rows[stateId]) {
+                    throw new InvalidStateMachineException("The matrix has more than one row for state '" + from.getStateName() + "'");
+                }
+                rows[stateId] = true;
+                compiled.addRow(stateId, from, evaluations);
+            });
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles the supplied matrix, in which only the rows of the changed states differ from the matrix the previous
+     * definition was compiled from. If the matrix has the same states and events as the previous one, the ids of the
+     * previous definition are kept and only the intersections of the changed states are compiled, the others being
+     * shared with the previous definition. Otherwise the matrix is compiled in full.
+     *
+     * @param previous The compiled form of the previous matrix
+     * @param matrix   The state machine matrix
+     * @param changed  The states whose rows were added, replaced or removed
+     * @return The compiled form of the matrix
+     */
+    static <T extends StatefulEntity> CompiledStateMachineDefinition<T> recompile(
+        CompiledStateMachineDefinition<T> previous,
+        Map<State, StateMachineEventTransitionEvaluations<T>> matrix,
+        Collection<State> changed) {
+        if (matrix == null || !hasStatesAndEventsOf(previous.registry, matrix)) {
+            return compile(matrix);
+        }
+        CompiledStateMachineDefinition<T> compiled = new CompiledStateMachineDefinition<>(previous);
+        int eventCount = compiled.getEventCount();
+        for (State state : changed) {
+            int stateId = compiled.getStateId(state);
+            if (stateId == UNKNOWN) {
+                // The row was removed along with every transition to the state
+                continue;
+            }
+            int start = compiled.indexOf(stateId, 0);
+            Arrays.fill(compiled.transitions, start, start + eventCount, null);
+            Arrays.fill(compiled.results, start, start + eventCount, null);
+            Arrays.fill(compiled.repeated, start, start + eventCount, null);
+            StateMachineEventTransitionEvaluations<T> evaluations = matrix.get(state);
+            if (evaluations != null) {
+                compiled.addRow(stateId, state, evaluations);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * @return True if the matrix refers to exactly the states and events of the registry, with at most one row per
+     * state name, in which case compiling it would assign the same ids
+     */
+    private static <T extends StatefulEntity> boolean hasStatesAndEventsOf(StateEventRegistry registry, Map<State, StateMachineEventTransitionEvaluations<T>> matrix) {
+        boolean[] rows = new boolean[registry.getStateCount()];
+        boolean[] states = new boolean[registry.getStateCount()];
+        boolean[] events = new boolean[registry.getEventCount()];
+        for (Map.Entry<State, StateMachineEventTransitionEvaluations<T>> row : matrix.entrySet()) {
+            int from = registry.getStateId(row.getKey());
+            if (from == UNKNOWN || rows[from]) {
+                return false;
+            }
+            rows[from] = true;
+            states[from] = true;
+            Map<StateMachineEvent, List<TransitionEvaluationActions<T>>> eventMap = row.getValue().getTransitionEvaluationActions().orElse(null);
+            if (eventMap == null) {
+                continue;
+            }
+            for (Map.Entry<StateMachineEvent, List<TransitionEvaluationActions<T>>> cell : eventMap.entrySet()) {
+                int event = registry.getEventId(cell.getKey());
+                if (event == UNKNOWN) {
+                    return false;
+                }
+                events[event] = true;
+                if (cell.getValue() != null) {
+                    for (TransitionEvaluationActions<T> candidate : cell.getValue()) {
+                        if (!mark(registry, candidate.getTransition().getFromState(), states) || !mark(registry, candidate.getTransition().getToState(null), states)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return allTrue(states) && allTrue(events);
+    }
+
+    private static boolean mark(StateEventRegistry registry, State state, boolean[] states) {
+        if (state == null) {
+            return true;
+        }
+        int id = registry.getStateId(state);
+        if (id == UNKNOWN) {
+            return false;
+        }
+        states[id] = true;
+        return true;
+    }
+
+    private static boolean allTrue(boolean[] values) {
+        for (boolean value : values) {
+            if (!value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addRow(int stateId, State from, StateMachineEventTransitionEvaluations<T> evaluations) {
+        Map<StateMachineEvent, List<TransitionEvaluationActions<T>>> eventMap = evaluations.getTransitionEvaluationActions().orElse(null);
+        if (eventMap == null) {
+            return;
+        }
+        boolean[] cells = new boolean[getEventCount()];
+        eventMap.forEach((event, candidates) -> {
+            int eventId = getEventId(event);
+            if (cells[eventId]) {
+                throw new InvalidStateMachineException("The row of state '" + from.getStateName() + "' has more than one cell for event '"
+                    + event.getEventName() + "'");
+            }
+            cells[eventId] = true;
+            add(stateId, eventId, candidates);
+        });
+    }
+
+    private void add(int stateId, int eventId, List<TransitionEvaluationActions<T>> candidates) {
+        if (candidates != null && !candidates.isEmpty()) {
+            int index = indexOf(stateId, eventId);
+            transitions[index] = toArray(candidates);
+            results[index] = toResults(transitions[index]);
+            repeated[index] = toRepeated(transitions[index]);
+        }
+    }
+
+    private static <T extends StatefulEntity> boolean[] toRepeated(TransitionEvaluationActions<T>[] candidates) {
+        boolean[] repeated = null;
+        for (int i = 1; i < candidates.length; i++) {
+            TransitionEvaluator<T> evaluator = candidates[i].evaluatorOrNull();
+            if (evaluator instanceof CacheableTransitionEvaluator) {
+                for (int j = 0; j < i; j++) {
+                    if (candidates[j].evaluatorOrNull() == evaluator) {
+                        if (repeated == null) {
+                            repeated = new boolean[candidates.length];
+                        }
+                        repeated[i] = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return repeated;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends StatefulEntity> TransitionEvaluationActions<T>[] toArray(List<TransitionEvaluationActions<T>> candidates) {
+        return candidates.toArray(new TransitionEvaluationActions[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends StatefulEntity> Optional<Transition<T>>[] toResults(TransitionEvaluationActions<T>[] candidates) {
+        Optional<Transition<T>>[] results = new Optional[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            results[i] = Optional.ofNullable(candidates[i].getTransition());
+        }
+        return results;
+    }
+
+    private int indexOf(int stateId, int eventId) {
+        return stateId * registry.getEventCount() + eventId;
+    }
+
+    public StateEventRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getStateCount() {
+        return registry.getStateCount();
+    }
+
+    public int getEventCount() {
+        return registry.getEventCount();
+    }
+
+    /**
+     * @return The dense id of the state or {@link #UNKNOWN} if the state is not part of this definition
+     */
+    public int getStateId(State state) {
+        return registry.getStateId(state);
+    }
+
+    /**
+     * @return The dense id of the event or {@link #UNKNOWN} if the event is not part of this definition
+     */
+    public int getEventId(StateMachineEvent event) {
+        return registry.getEventId(event);
+    }
+
+    /**
+     * @return The canonical instance of the state with the id
+     */
+    public State getState(int stateId) {
+        return registry.getState(stateId);
+    }
+
+    /**
+     * @return The canonical instance of the event with the id
+     */
+    public StateMachineEvent getEvent(int eventId) {
+        return registry.getEvent(eventId);
+    }
+
+    /**
+     * Returns the candidate transitions for the state / event intersection in evaluation order. The returned
+     * array is shared and must not be modified.
+     *
+     * @return The candidates or null if the intersection is empty or either id is {@link #UNKNOWN}
+     */
+    public TransitionEvaluationActions<T>[] getCandidates(int stateId, int eventId) {
+        if (stateId < 0 || eventId < 0) {
+            return null;
+        }
+        return transitions[indexOf(stateId, eventId)];
+    }
+
+    /**
+     * Evaluates the candidates for the current state of the entity and the event in the context in order
+     * and returns the transition of the first one that passes its evaluation
+     *
+     * @param context Context containing the {@link StatefulEntity} and {@link StateMachineEvent}
+     * @return The first matching transition or null if there is none
+     */
+    public Transition<T> findTransition(ActionContext<T> context) {
+        return resolve(context).orElse(null);
+    }
+
+    /**
+     * Evaluates the candidates for the current state of the entity and the event in the context in order
+     * and returns the transition of the first one that passes its evaluation. A {@link CacheableTransitionEvaluator}
+     * that guards more than one candidate is only evaluated for the first of them, and evaluations are measured by
+     * the {@link TransitionMetrics} of the definition in the context. The returned {@link Optional} is shared, so this
+     * does not allocate.
+     *
+     * @param context Context containing the {@link StatefulEntity} and {@link StateMachineEvent}
+     * @return The first matching transition
+     */
+    public Optional<Transition<T>> resolve(ActionContext<T> context) {
+        return resolve(context, context.getEntity().getState());
+    }
+
+    /**
+     * Like {@link #resolve(ActionContext)}, but for the specified state rather than the current state of the entity,
+     * e.g. a state read once by a caller that then applies the transition only if the entity is still in it
+     *
+     * @param context Context containing the {@link StatefulEntity} and {@link StateMachineEvent}
+     * @param state   The state to resolve the transition from
+     * @return The first matching transition
+     */
+    public Optional<Transition<T>> resolve(ActionContext<T> context, State state) {
+        int stateId = getStateId(state);
+        int eventId = getEventId(context.getStateMachineEvent());
+        if (stateId < 0 || eventId < 0) {
+            return Optional.empty();
+        }
+        int index = indexOf(stateId, eventId);
+        TransitionEvaluationActions<T>[] candidates = transitions[index];
+        if (candidates != null) {
+            TransitionMetrics metrics = context.getStateMachineDefinition().getMetrics();
+            boolean[] skip = repeated[index];
+            for (int i = 0; i < candidates.length; i++) {
+                if (skip != null && skip[i]) {
+                    continue;
+                }
+                TransitionEvaluator<T> evaluator = candidates[i].evaluatorOrNull();
+                if (evaluator == null || TransitionMetrics.evaluate(metrics, evaluator, context)) {
+                    return results[index][i];
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,220 @@
+package com.glc.statemachine.definition;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StatefulEntity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The query views of a {@link StateMachineDefinition} matrix, computed once when the definition is built. Every view
+ * is an unmodifiable collection that is shared between callers, so the queries are hash lookups that do not allocate.
+ * <p>
+ * States and events are held as the canonical instances of the {@link StateEventRegistry} of the definition and the
+ * per state views are indexed by state id, so a state is found by name as it is when resolving a transition, e.g. an
+ * enum constant and a {@link com.glc.statemachine.impl.DefaultState} with the same name return the same events.
+ * <p>
+ * Role filtered events are computed on first use for each distinct {@link RoleMask} and state and then cached, up to
+ * {@link #MAX_CACHED_ROLE_SETS} masks. Each event that requires roles holds the mask of its roles, so filtering is an
+ * AND of the masks per event. Role lists are compiled to masks once and the masks cached by list.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class DefinitionViews<T extends StatefulEntity> {
+
+    /**
+     * Upper bound on the number of role lists and masks whose filtered events are cached, as role lists may come from
+     * callers
+     */
+    static final int MAX_CACHED_ROLE_SETS = 1_024;
+
+    StateEventRegistry registry;
+    Set<State> states;
+    Set<StateMachineEvent> events;
+    Set<StateMachineEvent>[] eventsByState;
+    Set<State>[] targetStatesByState;
+
+    RoleRegistry roleRegistry;
+
+    /**
+     * The events of each state with at least one event that requires roles, null for other states, which return the
+     * same events for any roles
+     */
+    AuthorisedEvents[] authorisedEventsByState;
+
+    ConcurrentMap<List<String>, RoleMask> masksByRoles = new ConcurrentHashMap<>();
+    ConcurrentMap<RoleMask, AtomicReferenceArray<Set<StateMachineEvent>>> eventsByMask = new ConcurrentHashMap<>();
+
+    /**
+     * @param matrix   The matrix of the definition, may be null for an empty definition
+     * @param registry The registry the matrix was compiled with
+     */
+    @SuppressWarnings("unchecked")
+    DefinitionViews(Map<State, StateMachineEventTransitionEvaluations<T>> matrix, StateEventRegistry registry) {
+        this.registry = registry;
+        int stateCount = registry.getStateCount();
+        Set<State> allStates = new HashSet<>();
+        for (int i = 0; i < stateCount; i++) {
+            allStates.add(registry.getState(i));
+        }
+        Set<StateMachineEvent> allEvents = new HashSet<>();
+        for (int i = 0; i < registry.getEventCount(); i++) {
+            allEvents.add(registry.getEvent(i));
+        }
+        this.states = Collections.unmodifiableSet(allStates);
+        this.events = Collections.unmodifiableSet(allEvents);
+
+        this.eventsByState = new Set[stateCount];
+        this.targetStatesByState = new Set[stateCount];
+        if (matrix != null) {
+            matrix.forEach((from, evaluations) -> {
+                Set<StateMachineEvent> stateEvents = new HashSet<>();
+                Set<State> targetStates = new HashSet<>();
+                evaluations.getTransitionEvaluationActions().ifPresent(eventMap -> eventMap.forEach((event, candidates) -> {
+                    stateEvents.add(registry.intern(event));
+                    if (candidates != null) {
+                        for (TransitionEvaluationActions<T> candidate : candidates) {
+                            State to = candidate.getTransition().getToState(null);
+                            if (to != null) {
+                                targetStates.add(registry.intern(to));
+                            }
+                        }
+                    }
+                }));
+                int stateId = registry.getStateId(from);
+                eventsByState[stateId] = Collections.unmodifiableSet(stateEvents);
+                targetStatesByState[stateId] = Collections.unmodifiableSet(targetStates);
+            });
+        }
+
+        this.roleRegistry = new RoleRegistry(allEvents);
+        this.authorisedEventsByState = new AuthorisedEvents[stateCount];
+        for (int stateId = 0; stateId < stateCount; stateId++) {
+            if (eventsByState[stateId] == null) {
+                continue;
+            }
+            StateMachineEvent[] eventArray = eventsByState[stateId].toArray(new StateMachineEvent[0]);
+            RoleMask[] masks = new RoleMask[eventArray.length];
+            boolean authorised = false;
+            for (int i = 0; i < eventArray.length; i++) {
+                masks[i] = roleRegistry.maskOf(eventArray[i]);
+                authorised |= masks[i] != null;
+            }
+            if (authorised) {
+                authorisedEventsByState[stateId] = new AuthorisedEvents(eventArray, masks);
+            }
+        }
+    }
+
+    RoleRegistry getRoleRegistry() {
+        return roleRegistry;
+    }
+
+    Set<State> getStates() {
+        return states;
+    }
+
+    Set<StateMachineEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return The state with the name, or null if there is none
+     */
+    State getState(String stateName) {
+        int stateId = registry.getStateId(stateName);
+        return stateId == StateEventRegistry.UNKNOWN ? null : registry.getState(stateId);
+    }
+
+    private Set<StateMachineEvent> allEventsForState(int stateId) {
+        Set<StateMachineEvent> stateEvents = stateId == StateEventRegistry.UNKNOWN ? null : eventsByState[stateId];
+        return stateEvents == null ? Collections.emptySet() : stateEvents;
+    }
+
+    private AuthorisedEvents authorisedEventsOf(int stateId) {
+        return stateId == StateEventRegistry.UNKNOWN ? null : authorisedEventsByState[stateId];
+    }
+
+    Set<StateMachineEvent> getEventsForState(State state, List<String> roles) {
+        int stateId = registry.getStateId(state);
+        if (authorisedEventsOf(stateId) == null) {
+            return allEventsForState(stateId);
+        }
+
+        RoleMask mask = masksByRoles.get(roles);
+        if (mask == null) {
+            mask = roleRegistry.compile(roles);
+            if (masksByRoles.size() < MAX_CACHED_ROLE_SETS) {
+                // Copied so that later changes to the caller's list do not affect the key
+                masksByRoles.putIfAbsent(new ArrayList<>(roles), mask);
+            }
+        }
+        return getEventsForState(stateId, mask);
+    }
+
+    Set<StateMachineEvent> getEventsForState(State state, RoleMask mask) {
+        return getEventsForState(registry.getStateId(state), mask);
+    }
+
+    private Set<StateMachineEvent> getEventsForState(int stateId, RoleMask mask) {
+        AuthorisedEvents authorisedEvents = authorisedEventsOf(stateId);
+        if (authorisedEvents == null) {
+            return allEventsForState(stateId);
+        }
+
+        AtomicReferenceArray<Set<StateMachineEvent>> byState = eventsByMask.get(mask);
+        if (byState == null) {
+            if (eventsByMask.size() >= MAX_CACHED_ROLE_SETS) {
+                return authorisedEvents.filter(mask);
+            }
+            AtomicReferenceArray<Set<StateMachineEvent>> created = new AtomicReferenceArray<>(authorisedEventsByState.length);
+            byState = eventsByMask.putIfAbsent(mask, created);
+            byState = byState == null ? created : byState;
+        }
+
+        Set<StateMachineEvent> stateEvents = byState.get(stateId);
+        if (stateEvents == null) {
+            stateEvents = authorisedEvents.filter(mask);
+            byState.compareAndSet(stateId, null, stateEvents);
+        }
+        return stateEvents;
+    }
+
+    Set<State> getTargetStatesFromState(State state) {
+        int stateId = registry.getStateId(state);
+        Set<State> targetStates = stateId == StateEventRegistry.UNKNOWN ? null : targetStatesByState[stateId];
+        return targetStates == null ? Collections.emptySet() : targetStates;
+    }
+
+    /**
+     * The events of a state alongside the mask of the roles each requires, null for events that require none
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class AuthorisedEvents {
+        StateMachineEvent[] events;
+        RoleMask[] masks;
+
+        AuthorisedEvents(StateMachineEvent[] events, RoleMask[] masks) {
+            this.events = events;
+            this.masks = masks;
+        }
+
+        Set<StateMachineEvent> filter(RoleMask mask) {
+            Set<StateMachineEvent> permitted = new HashSet<>();
+            for (int i = 0; i < events.length; i++) {
+                if (masks[i] == null || masks[i].intersects(mask)) {
+                    permitted.add(events[i]);
+                }
+            }
+            return Collections.unmodifiableSet(permitted);
+        }
+    }
+}
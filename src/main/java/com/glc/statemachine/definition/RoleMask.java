@@ -0,0 +1,88 @@
+package com.glc.statemachine.definition;
+
+import java.util.Arrays;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A set of roles compiled against the {@link RoleRegistry} of a {@link StateMachineDefinition}, held as a bit set with
+ * one bit per role. Checking whether a principal holds any of the roles of an event is then a single AND per 64 roles
+ * rather than a comparison of role names.
+ * <p>
+ * Masks are only meaningful for the definition whose registry compiled them. Instances are immutable.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public final class RoleMask {
+
+    /**
+     * The mask holding no roles
+     */
+    public static final RoleMask EMPTY = new RoleMask(new long[0]);
+
+    long[] words;
+    int hash;
+
+    RoleMask(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * @return True if the masks have at least one role in common
+     */
+    public boolean intersects(RoleMask other) {
+        long[] otherWords = other.words;
+        for (int i = 0, length = Math.min(words.length, otherWords.length); i < length; i++) {
+            if ((words[i] & otherWords[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the role with the bit position is in the mask
+     */
+    public boolean contains(int role) {
+        int word = role >>> 6;
+        return word < words.length && (words[word] & (1L << role)) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RoleMask)) {
+            return false;
+        }
+        RoleMask other = (RoleMask) o;
+        return hash == other.hash && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RoleMask[");
+        for (int i = words.length - 1; i >= 0; i--) {
+            builder.append(Long.toHexString(words[i]));
+            if (i > 0) {
+                builder.append(':');
+            }
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,86 @@
+package com.glc.statemachine.definition;
+
+import com.glc.statemachine.StateMachineEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Per definition registry that assigns each role required by the events of a {@link StateMachineDefinition} a bit
+ * position, so that roles can be compiled to {@link RoleMask}s. Roles are numbered in the order they are first seen.
+ * <p>
+ * Instances are immutable once constructed.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class RoleRegistry {
+
+    Map<String, Integer> positions = new HashMap<>();
+    List<String> roles = new ArrayList<>();
+
+    /**
+     * @param events The events of the definition, may contain duplicates
+     */
+    public RoleRegistry(Collection<? extends StateMachineEvent> events) {
+        for (StateMachineEvent event : events) {
+            event.getRoles().ifPresent(eventRoles -> {
+                for (String role : eventRoles) {
+                    if (role != null && !positions.containsKey(role)) {
+                        positions.put(role, roles.size());
+                        roles.add(role);
+                    }
+                }
+            });
+        }
+    }
+
+    public int getRoleCount() {
+        return roles.size();
+    }
+
+    /**
+     * @return The names of the roles in order of their bit positions
+     */
+    public List<String> getRoles() {
+        return Collections.unmodifiableList(roles);
+    }
+
+    /**
+     * @return The bit position of the role, or -1 if no event of the definition requires it
+     */
+    public int getPosition(String role) {
+        Integer position = positions.get(role);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Compiles the roles to a mask. Roles that no event of the definition requires cannot authorise any event and
+     * are left out.
+     *
+     * @param roleNames The role names, e.g. the roles held by a principal
+     * @return The mask of the roles
+     */
+    public RoleMask compile(Collection<String> roleNames) {
+        long[] words = new long[(roles.size() + 63) >>> 6];
+        boolean any = false;
+        for (String role : roleNames) {
+            Integer position = positions.get(role);
+            if (position != null) {
+                words[position >>> 6] |= 1L << position;
+                any = true;
+            }
+        }
+        return any ? new RoleMask(words) : RoleMask.EMPTY;
+    }
+
+    /**
+     * @return The mask of the roles of the event, or null if the event does not require roles
+     */
+    RoleMask maskOf(StateMachineEvent event) {
+        return event.getRoles().isPresent() ? compile(event.getRoles().get()) : null;
+    }
+}
@@ -0,0 +1,141 @@
+package com.glc.statemachine.definition;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Per definition registry of the canonical {@link State} and {@link StateMachineEvent} instances of a
+ * {@link StateMachineDefinition}, each of which is assigned a dense int id.
+ * <p>
+ * States and events are identified by their external name, so an enum constant and a loaded
+ * {@link com.glc.statemachine.impl.DefaultState} with the same name resolve to the same canonical instance
+ * and id. The canonical instance for a name is the first one registered. Every instance the definition was
+ * built from is also indexed by identity, so looking up one of those is an identity comparison and only
+ * foreign instances fall back to a lookup by name.
+ * <p>
+ * Instances are immutable once constructed.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class StateEventRegistry {
+
+    /**
+     * Returned from the id lookups when a state or event is not part of the definition
+     */
+    public static final int UNKNOWN = -1;
+
+    Map<State, Integer> stateIdsByInstance = new IdentityHashMap<>();
+    Map<String, Integer> stateIdsByName = new HashMap<>();
+    State[] states;
+
+    Map<StateMachineEvent, Integer> eventIdsByInstance = new IdentityHashMap<>();
+    Map<String, Integer> eventIdsByName = new HashMap<>();
+    StateMachineEvent[] events;
+
+    /**
+     * Registers the supplied instances. Ids are assigned in order of the first instance seen for each name and
+     * every further instance with the same name becomes an alias of the canonical one.
+     *
+     * @param stateInstances All state instances referenced by the definition, may contain duplicates
+     * @param eventInstances All event instances referenced by the definition, may contain duplicates
+     */
+    public StateEventRegistry(List<? extends State> stateInstances, List<? extends StateMachineEvent> eventInstances) {
+        List<State> canonicalStates = new ArrayList<>();
+        for (State state : stateInstances) {
+            register(state, state.getStateName(), canonicalStates, stateIdsByInstance, stateIdsByName);
+        }
+        this.states = canonicalStates.toArray(new State[0]);
+
+        List<StateMachineEvent> canonicalEvents = new ArrayList<>();
+        for (StateMachineEvent event : eventInstances) {
+            register(event, event.getEventName(), canonicalEvents, eventIdsByInstance, eventIdsByName);
+        }
+        this.events = canonicalEvents.toArray(new StateMachineEvent[0]);
+    }
+
+    private static <K> void register(K instance, String name, List<K> canonical, Map<K, Integer> byInstance, Map<String, Integer> byName) {
+        Integer id = byName.get(name);
+        if (id == null) {
+            id = canonical.size();
+            canonical.add(instance);
+            byName.put(name, id);
+        }
+        byInstance.put(instance, id);
+    }
+
+    public int getStateCount() {
+        return states.length;
+    }
+
+    public int getEventCount() {
+        return events.length;
+    }
+
+    /**
+     * @return The id of the state or {@link #UNKNOWN} if there is no state with its name in the definition
+     */
+    public int getStateId(State state) {
+        if (state == null) {
+            return UNKNOWN;
+        }
+        Integer id = stateIdsByInstance.get(state);
+        return id != null ? id : getStateId(state.getStateName());
+    }
+
+    /**
+     * @return The id of the state or {@link #UNKNOWN} if there is no state with the name in the definition
+     */
+    public int getStateId(String stateName) {
+        Integer id = stateIdsByName.get(stateName);
+        return id == null ? UNKNOWN : id;
+    }
+
+    /**
+     * @return The id of the event or {@link #UNKNOWN} if there is no event with its name in the definition
+     */
+    public int getEventId(StateMachineEvent event) {
+        if (event == null) {
+            return UNKNOWN;
+        }
+        Integer id = eventIdsByInstance.get(event);
+        return id != null ? id : getEventId(event.getEventName());
+    }
+
+    /**
+     * @return The id of the event or {@link #UNKNOWN} if there is no event with the name in the definition
+     */
+    public int getEventId(String eventName) {
+        Integer id = eventIdsByName.get(eventName);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public State getState(int stateId) {
+        return states[stateId];
+    }
+
+    public StateMachineEvent getEvent(int eventId) {
+        return events[eventId];
+    }
+
+    /**
+     * @return The canonical instance for the state, or the state itself if it is not part of the definition
+     */
+    public State intern(State state) {
+        int id = getStateId(state);
+        return id == UNKNOWN ? state : states[id];
+    }
+
+    /**
+     * @return The canonical instance for the event, or the event itself if it is not part of the definition
+     */
+    public StateMachineEvent intern(StateMachineEvent event) {
+        int id = getEventId(event);
+        return id == UNKNOWN ? event : events[id];
+    }
+}
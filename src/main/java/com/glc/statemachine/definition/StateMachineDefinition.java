@@ -1,7 +1,6 @@
 package com.glc.statemachine.definition;
 
 import static java.util.Collections.emptyList;
-import static java.util.Collections.emptySet;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
@@ -13,23 +12,22 @@ import com.glc.statemachine.StateMachineEventFromAndTo;
 import com.glc.statemachine.StatefulEntity;
 import com.glc.statemachine.Transition;
 import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.TransitionMetrics;
 import com.glc.statemachine.impl.DefaultTransition;
 import com.glc.statemachine.impl.DefaultTransitionAction;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.validation.constraints.NotNull;
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
@@ -42,14 +40,14 @@ import org.apache.commons.collections.CollectionUtils;
 @Slf4j
 @JsonTypeInfo(use = JsonTypeInfo.Id.NONE)
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
-@RequiredArgsConstructor
 public class StateMachineDefinition<T extends StatefulEntity> {
 
     public static final String DEFAULT_PATH = "default";
 
     /**
      * This is the state machine matrix defining the transitions
-     * that can come out of each state
+     * that can come out of each state. Copied on construction and unmodifiable, so it cannot drift from the compiled
+     * form and views built from it.
      */
     Map<State, StateMachineEventTransitionEvaluations<T>> matrix;
 
@@ -60,8 +58,47 @@ public class StateMachineDefinition<T extends StatefulEntity> {
 
     List<TransitionListener<T>> transitionListeners;
 
+    /**
+     * Dense, array backed form of the matrix used to resolve transitions
+     */
+    @JsonIgnore
+    CompiledStateMachineDefinition<T> compiled;
+
+    /**
+     * Views of the matrix computed once, as the matrix does not change after construction
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    DefinitionViews<T> views;
+
+    /**
+     * Built once so that notifying listeners on each transition does not allocate
+     */
+    @Getter(AccessLevel.NONE)
+    Optional<List<TransitionListener<T>>> transitionListenersOptional;
+
+    /**
+     * Measures the transitions of this definition, {@link TransitionMetrics#NONE} unless set with
+     * {@link #withMetrics(TransitionMetrics)}
+     */
+    @JsonIgnore
+    TransitionMetrics metrics;
+
+    public StateMachineDefinition(
+        Map<State, StateMachineEventTransitionEvaluations<T>> matrix,
+        Map<String, List<State>> paths,
+        List<TransitionListener<T>> transitionListeners) {
+        this.matrix = copyOf(matrix);
+        this.paths = paths;
+        this.transitionListeners = transitionListeners;
+        this.transitionListenersOptional = Optional.ofNullable(transitionListeners);
+        this.compiled = CompiledStateMachineDefinition.compile(this.matrix);
+        this.views = new DefinitionViews<>(this.matrix, this.compiled.getRegistry());
+        this.metrics = TransitionMetrics.NONE;
+    }
+
     public Optional<List<TransitionListener<T>>> getTransitionListeners() {
-        return Optional.ofNullable(transitionListeners);
+        return transitionListenersOptional;
     }
 
     /**
@@ -80,9 +117,13 @@ public class StateMachineDefinition<T extends StatefulEntity> {
     }
 
     public StateMachineDefinition(List<StateMachineEventFromAndTo<T>> simpleMatrix, List<String> defaultPath, List<TransitionListener<T>> transitionListeners) {
-        this.matrix = buildMatrix(simpleMatrix);
+        this.matrix = Collections.unmodifiableMap(buildMatrix(simpleMatrix));
         this.transitionListeners = transitionListeners;
+        this.transitionListenersOptional = Optional.ofNullable(transitionListeners);
+        this.compiled = CompiledStateMachineDefinition.compile(matrix);
+        this.views = new DefinitionViews<>(this.matrix, this.compiled.getRegistry());
         this.paths = defaultPath == null ? null : validateAndCreatePath(DEFAULT_PATH, defaultPath);
+        this.metrics = TransitionMetrics.NONE;
     }
 
     /**
@@ -96,18 +137,18 @@ public class StateMachineDefinition<T extends StatefulEntity> {
         if (matrix == null) {
             throw new RuntimeException("You must create the matrix before attempting to validate a path");
         }
-        return new HashMap<String, List<State>>() {
-            {
-                put(pathName, statePath.stream()
-                    .map(stateName -> getStates()
-                        .stream()
-                        .filter(state -> stateName.equals(state.getStateName()))
-                        .findFirst()
-                        .orElseThrow(() -> new InvalidStateMachineException("Failed to create path '" + pathName + "' for statemachine. The state name in the supplied path '" + stateName +
-                            "' could not be found in the defined states of the associated state machine definition matrix")))
-                    .collect(Collectors.toList()));
+        List<State> states = new ArrayList<>(statePath.size());
+        for (String stateName : statePath) {
+            State state = views.getState(stateName);
+            if (state == null) {
+                throw new InvalidStateMachineException("Failed to create path '" + pathName + "' for statemachine. The state name in the supplied path '" + stateName +
+                    "' could not be found in the defined states of the associated state machine definition matrix");
             }
-        };
+            states.add(state);
+        }
+        Map<String, List<State>> paths = new HashMap<>();
+        paths.put(pathName, states);
+        return paths;
     }
 
     /**
@@ -129,9 +170,118 @@ public class StateMachineDefinition<T extends StatefulEntity> {
      * @param matrix
      */
     public StateMachineDefinition(Map<State, StateMachineEventTransitionEvaluations<T>> matrix, List<String> defaultPath) {
-        this.matrix = matrix;
+        this.matrix = copyOf(matrix);
+        this.compiled = CompiledStateMachineDefinition.compile(this.matrix);
+        this.views = new DefinitionViews<>(this.matrix, this.compiled.getRegistry());
         this.paths = defaultPath == null ? null : validateAndCreatePath(DEFAULT_PATH, defaultPath);
         this.transitionListeners = null;
+        this.transitionListenersOptional = Optional.empty();
+        this.metrics = TransitionMetrics.NONE;
+    }
+
+    /**
+     * Creates a definition from a matrix that was compiled already
+     */
+    private StateMachineDefinition(
+        Map<State, StateMachineEventTransitionEvaluations<T>> matrix,
+        CompiledStateMachineDefinition<T> compiled,
+        List<String> defaultPath,
+        List<TransitionListener<T>> transitionListeners,
+        TransitionMetrics metrics) {
+        this.matrix = Collections.unmodifiableMap(matrix);
+        this.transitionListeners = transitionListeners;
+        this.transitionListenersOptional = Optional.ofNullable(transitionListeners);
+        this.compiled = compiled;
+        this.views = new DefinitionViews<>(this.matrix, this.compiled.getRegistry());
+        this.paths = defaultPath == null ? null : validateAndCreatePath(DEFAULT_PATH, defaultPath);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates a copy of the definition with other metrics, sharing everything else
+     */
+    private StateMachineDefinition(StateMachineDefinition<T> definition, TransitionMetrics metrics) {
+        this.matrix = definition.matrix;
+        this.paths = definition.paths;
+        this.transitionListeners = definition.transitionListeners;
+        this.transitionListenersOptional = definition.transitionListenersOptional;
+        this.compiled = definition.compiled;
+        this.views = definition.views;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns a definition that reports the steps of its transitions to the metrics, without changing this
+     * definition. The matrix, compiled form and views are shared with this definition, so this is cheap.
+     *
+     * @param metrics The metrics, or {@link TransitionMetrics#NONE} to stop measuring
+     * @return The new definition
+     */
+    public StateMachineDefinition<T> withMetrics(@NotNull TransitionMetrics metrics) {
+        return new StateMachineDefinition<>(this, metrics);
+    }
+
+    /**
+     * Returns a definition in which the transitions of the specified cells of the matrix are replaced, without
+     * changing this definition. The rows of other states, and the other cells of the changed rows, are shared with
+     * this definition, as are the compiled candidates of the unchanged rows when the states and events of the
+     * definition stay the same. The transition listeners of this definition are kept.
+     *
+     * @param cells       The events of the cells to replace, by from state
+     * @param transitions The transitions of the replaced cells, in evaluation order. A replaced cell without
+     *                    transitions is removed, as is a row left without cells.
+     * @param defaultPath The default path of the new definition, may be null
+     * @return The new definition
+     * @throws IllegalArgumentException If a transition is not in one of the replaced cells
+     */
+    public StateMachineDefinition<T> withCells(
+        @NotNull Map<State, Set<StateMachineEvent>> cells,
+        @NotNull List<StateMachineEventFromAndTo<T>> transitions,
+        List<String> defaultPath) {
+        Map<State, Map<StateMachineEvent, List<TransitionEvaluationActions<T>>>> rows = new HashMap<>();
+        cells.forEach((state, events) -> {
+            StateMachineEventTransitionEvaluations<T> row = matrix == null ? null : matrix.get(state);
+            Map<StateMachineEvent, List<TransitionEvaluationActions<T>>> eventMap = row == null
+                ? new HashMap<>()
+                : new HashMap<>(row.getTransitionEvaluationActions().orElse(Collections.emptyMap()));
+            eventMap.keySet().removeAll(events);
+            rows.put(state, eventMap);
+        });
+        for (StateMachineEventFromAndTo<T> transition : transitions) {
+            Set<StateMachineEvent> events = cells.get(transition.getFromState());
+            if (events == null || !events.contains(transition.getStateMachineEvent())) {
+                throw new IllegalArgumentException("Transition from '" + transition.getFromState().getStateName() + "' on '"
+                    + transition.getStateMachineEvent().getEventName() + "' is not in one of the replaced cells");
+            }
+            rows.get(transition.getFromState())
+                .computeIfAbsent(transition.getStateMachineEvent(), event -> new ArrayList<>())
+                .add(buildTransitionEvaluationActionValue(transition));
+        }
+
+        Map<State, StateMachineEventTransitionEvaluations<T>> changedMatrix = matrix == null ? new HashMap<>() : new HashMap<>(matrix);
+        rows.forEach((state, eventMap) -> {
+            // Remove first, so that a replaced row is keyed by the new state instance
+            changedMatrix.remove(state);
+            if (!eventMap.isEmpty()) {
+                changedMatrix.put(state, new StateMachineEventTransitionEvaluations<>(eventMap));
+            }
+        });
+        return new StateMachineDefinition<>(
+            changedMatrix,
+            CompiledStateMachineDefinition.recompile(compiled, changedMatrix, rows.keySet()),
+            defaultPath,
+            transitionListeners,
+            metrics
+        );
+    }
+
+    /**
+     * Copies the matrix of the caller, keeping its iteration order, so that later changes to it, e.g. by a reused
+     * {@link StateMachineDefinitionBuilder}, do not leave the compiled form stale
+     */
+    private static <T extends StatefulEntity> Map<State, StateMachineEventTransitionEvaluations<T>> copyOf(
+        Map<State, StateMachineEventTransitionEvaluations<T>> matrix) {
+        return matrix == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(matrix));
     }
 
     private Map<State, StateMachineEventTransitionEvaluations<T>> buildMatrix(List<StateMachineEventFromAndTo<T>> simpleMatrix) {
@@ -140,7 +290,8 @@ public class StateMachineDefinition<T extends StatefulEntity> {
             if (map.containsKey(item.getFromState())) {
                 StateMachineEventTransitionEvaluations<T> evals = map.get(item.getFromState());
                 if (evals.getTransitionEvaluationActions().isPresent()) {
-                    List<TransitionEvaluationActions<T>> newList = new ArrayList<>(evals.getTransitionEvaluationActions().get().get(item.getStateMachineEvent()));
+                    List<TransitionEvaluationActions<T>> existing = evals.getTransitionEvaluationActions().get().get(item.getStateMachineEvent());
+                    List<TransitionEvaluationActions<T>> newList = existing == null ? new ArrayList<>() : new ArrayList<>(existing);
                     newList.add(buildTransitionEvaluationActionValue(item));
                     evals.getTransitionEvaluationActions().get().put(item.getStateMachineEvent(), newList);
                 } else {
@@ -165,7 +316,22 @@ public class StateMachineDefinition<T extends StatefulEntity> {
         return Collections.singletonList(buildTransitionEvaluationActionValue(stateMachineEventFromAndTo));
     }
 
-    private TransitionEvaluationActions<T> buildTransitionEvaluationActionValue(StateMachineEventFromAndTo<T> stateMachineEventFromAndTo) {
+    /**
+     * Builds the row of the matrix for transitions from a single state, in the same way as the constructor taking a
+     * list of {@link StateMachineEventFromAndTo}, so that rows can be built once and shared by several definitions
+     *
+     * @param transitions The transitions from the state, in evaluation order
+     * @return The row
+     */
+    public static <T extends StatefulEntity> StateMachineEventTransitionEvaluations<T> buildRow(@NotNull List<StateMachineEventFromAndTo<T>> transitions) {
+        Map<StateMachineEvent, List<TransitionEvaluationActions<T>>> eventMap = new HashMap<>();
+        for (StateMachineEventFromAndTo<T> transition : transitions) {
+            eventMap.computeIfAbsent(transition.getStateMachineEvent(), event -> new ArrayList<>(1)).add(buildTransitionEvaluationActionValue(transition));
+        }
+        return new StateMachineEventTransitionEvaluations<>(eventMap);
+    }
+
+    private static <T extends StatefulEntity> TransitionEvaluationActions<T> buildTransitionEvaluationActionValue(StateMachineEventFromAndTo<T> stateMachineEventFromAndTo) {
         return new TransitionEvaluationActions<>(
             stateMachineEventFromAndTo.getEvaluator().orElse(null),
             new DefaultTransition<>(
@@ -182,34 +348,25 @@ public class StateMachineDefinition<T extends StatefulEntity> {
     }
 
 
+    /**
+     * The set of states that are either transitioned from or to in this state machine. The returned set is
+     * computed once and is unmodifiable.
+     */
     public Set<State> getStates() {
-        return Stream.concat(getFromStates(), getToStates()).collect(Collectors.toSet());
-    }
-
-    private Stream<State> getFromStates() {
-        return matrix.keySet().stream();
-    }
-
-    private Stream<State> getToStates() {
-        return matrix.values().stream()
-            .map(ete -> ete.getTransitionEvaluationActions().orElse(Collections.emptyMap()))
-            .flatMap(map -> map.values().stream())
-            .flatMap(actions -> actions.stream().map(tea -> tea.getTransition().getToState(null)))
-            ;
+        return views.getStates();
     }
 
     /**
-     * The set of events that can cause a transition in this state machine
+     * The set of events that can cause a transition in this state machine. The returned set is computed once
+     * and is unmodifiable.
      */
     public Set<StateMachineEvent> getEvents() {
-        return matrix.values().stream()
-            .map(ete -> ete.getTransitionEvaluationActions().orElse(Collections.emptyMap()))
-            .flatMap(map -> map.keySet().stream())
-            .collect(Collectors.toSet());
+        return views.getEvents();
     }
 
     /**
-     * Returns all available events that will trigger a transition for the specified state
+     * Returns all available events that will trigger a transition for the specified state and do not require roles.
+     * The returned set is computed once and is unmodifiable.
      *
      * @param state
      * @return
@@ -218,20 +375,49 @@ public class StateMachineDefinition<T extends StatefulEntity> {
         return getEventsForState(state, emptyList());
     }
 
+    /**
+     * Returns the events that will trigger a transition for the specified state and that either require no roles
+     * or require one of the supplied roles. The result is cached per list of roles, so callers should pass the same
+     * roles in the same order for the same principal. The returned set is unmodifiable.
+     *
+     * @param state
+     * @param roles The roles held by the caller
+     * @return
+     */
     public Set<StateMachineEvent> getEventsForState(State state, @NotNull List<String> roles) {
-        return Optional.ofNullable(matrix.get(state))
-            .map(e -> e.getTransitionEvaluationActions().orElse(Collections.emptyMap()).keySet())
-            .orElseGet(Collections::emptySet)
-            .stream()
-            .filter(sme -> {
-                if (sme.getRoles().isPresent()) {
-                    return !Collections.disjoint(roles, sme.getRoles().orElse(emptyList()));
-                } else {
-                    return true;
-                }
-            })
-            .collect(Collectors.toSet())
-            ;
+        return views.getEventsForState(state, roles);
+    }
+
+    /**
+     * Returns the events that will trigger a transition for the specified state and that either require no roles
+     * or require one of the roles in the mask. The result is cached per mask and is unmodifiable.
+     *
+     * @param state
+     * @param roles The roles held by the caller, compiled with {@link #compileRoles(Collection)}
+     * @return
+     */
+    public Set<StateMachineEvent> getEventsForState(State state, @NotNull RoleMask roles) {
+        return views.getEventsForState(state, roles);
+    }
+
+    /**
+     * Compiles role names, e.g. the roles of a principal, to a mask that can be passed to
+     * {@link #getEventsForState(State, RoleMask)}. The mask can be kept for as long as the roles and this definition
+     * do not change.
+     *
+     * @param roles The role names
+     * @return The mask of the roles
+     */
+    public RoleMask compileRoles(@NotNull Collection<String> roles) {
+        return views.getRoleRegistry().compile(roles);
+    }
+
+    /**
+     * @return The bit positions assigned to the roles required by the events of this definition
+     */
+    @JsonIgnore
+    public RoleRegistry getRoleRegistry() {
+        return views.getRoleRegistry();
     }
 
     public Optional<Map<String, List<State>>> getPaths() {
@@ -247,63 +433,61 @@ public class StateMachineDefinition<T extends StatefulEntity> {
     }
 
 
-    private Optional<StateMachineEventTransitionEvaluations<T>> getEventTransitionEvaluations(State state) {
-        return matrix == null ? Optional.empty() : Optional.ofNullable(matrix.get(state));
+    /**
+     * Returns the first available transition from the matrix given the state and event in the passed in context.
+     * The lookup is performed against the {@link CompiledStateMachineDefinition} of the matrix, and is measured by
+     * the {@link TransitionMetrics} of this definition.
+     *
+     * @param context Context containing the {@link StatefulEntity} and {@link StateMachineEvent}
+     * @return The first transition found from the matrix
+     */
+    @JsonIgnore
+    public Optional<Transition<T>> getTransition(ActionContext<T> context) {
+        return getTransition(context, context.getEntity().getState());
     }
 
     /**
-     * Returns the first available transition from the matrix given the state and event in the passed in context
+     * Like {@link #getTransition(ActionContext)}, but for the specified state rather than the current state of the
+     * entity, so that a caller that read the state once, e.g. to compare and set it, resolves the transition of the
+     * state it read
      *
      * @param context Context containing the {@link StatefulEntity} and {@link StateMachineEvent}
+     * @param state   The state to look up the transition from
      * @return The first transition found from the matrix
      */
     @JsonIgnore
-    public Optional<Transition<T>> getTransition(ActionContext<T> context) {
+    public Optional<Transition<T>> getTransition(ActionContext<T> context, State state) {
         if (log.isTraceEnabled()) {
-            log.trace("Looking for transitions from state {} for event {}", context.getEntity().getState().getStateName(), context.getStateMachineEvent().getEventName());
+            log.trace("Looking for transitions from state {} for event {}", state.getStateName(), context.getStateMachineEvent().getEventName());
         }
 
-        // Fetch logic evaluators that will determine a transition if a state has multiple transitions for the same 'from' and 'to' state
-        Optional<StateMachineEventTransitionEvaluations<T>> eventTransitionEvaluationsOptional = getEventTransitionEvaluations(context.getEntity().getState());
-        if (eventTransitionEvaluationsOptional.isPresent()) {
-            StateMachineEventTransitionEvaluations<T> stateMachineEventTransitionEvaluations = eventTransitionEvaluationsOptional.get();
-            Optional<Map<StateMachineEvent, List<TransitionEvaluationActions<T>>>> eventActionMap = stateMachineEventTransitionEvaluations.getTransitionEvaluationActions();
-            if (eventActionMap.isPresent()) {
-                // Fetch any evaluators for this event
-                List<TransitionEvaluationActions<T>> evaluators = eventActionMap.get().get(context.getStateMachineEvent());
-                if (evaluators != null) {
-                    // Evaluate in order and return the first actions list for a positive evaluation
-                    Optional<TransitionEvaluationActions<T>> actionsOptional = evaluators.stream().filter(e -> evaluate(e, context)).findFirst();
-                    if (actionsOptional.isPresent()) {
-                        return Optional.ofNullable(actionsOptional.get().getTransition());
-                    }
-                }
-            }
+        Optional<Transition<T>> transition;
+        if (metrics.isEnabled()) {
+            long start = System.nanoTime();
+            transition = compiled.resolve(context, state);
+            metrics.onGetTransition(state, context.getStateMachineEvent(), transition.isPresent(), System.nanoTime() - start);
+        } else {
+            transition = compiled.resolve(context, state);
+        }
+        if (transition.isPresent()) {
+            return transition;
         }
 
         if (log.isTraceEnabled()) {
-            log.trace("No transitions found from state {} for event {}", context.getEntity().getState().getStateName(), context.getStateMachineEvent().getEventName());
+            log.trace("No transitions found from state {} for event {}", state.getStateName(), context.getStateMachineEvent().getEventName());
         }
         return Optional.empty();
     }
 
     /**
-     * Returns all possible target states that can be transitioned to for the specified state and definition
+     * Returns all possible target states that can be transitioned to for the specified state and definition. The
+     * returned set is computed once and is unmodifiable, and is empty for states that are not transitioned from.
      *
      * @param state
      * @return
      */
     public Set<State> getTargetStatesFromState(State state) {
-        return getMatrix().get(state).getTransitionEvaluationActions()
-            .map(actions -> actions.values().stream()
-                .flatMap(Collection::stream).collect(Collectors.toList()).stream().map(tea -> tea.getTransition().getToState(null)).collect(Collectors.toSet()))
-            .orElse(emptySet());
-    }
-
-    private boolean evaluate(
-        TransitionEvaluationActions<T> evaluationActions,
-        ActionContext<T> context) {
-        return evaluationActions.getEvaluator().map(transitionEvaluator -> transitionEvaluator.evaluate(context)).orElse(true);
+        return views.getTargetStatesFromState(state);
     }
 
     /**
@@ -314,6 +498,6 @@ public class StateMachineDefinition<T extends StatefulEntity> {
      * @return true if the transition is valid otherwise false
      */
     public boolean isTargetStateViable(State currentState, State targetState) {
-        return !getTargetStatesFromState(currentState).contains(targetState);
+        return !getTargetStatesFromState(currentState).contains(compiled.getRegistry().intern(targetState));
     }
 }
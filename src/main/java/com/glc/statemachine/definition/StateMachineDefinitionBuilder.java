@@ -51,12 +51,10 @@ public class StateMachineDefinitionBuilder<T extends StatefulEntity> {
             evals = new StateMachineEventTransitionEvaluations<>(new HashMap<>());
         }
 
-        // Check if we have any existing evaluation actions for this event
-        Map<StateMachineEvent, List<TransitionEvaluationActions<T>>> evaluationMap = evals.getTransitionEvaluationActions().orElse(new HashMap<>());
-        List<TransitionEvaluationActions<T>> evaluationActions = evaluationMap.get(event);
-        if (evaluationActions == null) {
-            evaluationActions = new ArrayList<>();
-        }
+        // Copy any existing evaluation actions for this event, so that definitions built already are not changed
+        Map<StateMachineEvent, List<TransitionEvaluationActions<T>>> evaluationMap = new HashMap<>(evals.getTransitionEvaluationActions().orElse(new HashMap<>()));
+        List<TransitionEvaluationActions<T>> existing = evaluationMap.get(event);
+        List<TransitionEvaluationActions<T>> evaluationActions = existing == null ? new ArrayList<>() : new ArrayList<>(existing);
 
         // Add the new transition from the 'from' state, to the 'to' state with the list of actions to execute and an optional condition pass before for the transition will execute
         evaluationActions.add(new TransitionEvaluationActions<>(evaluator, new DefaultTransition<>(from, to, actions)));
@@ -20,6 +20,13 @@ public class TransitionEvaluationActions<T extends StatefulEntity> {
         return Optional.ofNullable(evaluator);
     }
 
+    /**
+     * Direct access to the evaluator for the dispatch path, avoiding the {@link Optional} wrapper
+     */
+    TransitionEvaluator<T> evaluatorOrNull() {
+        return evaluator;
+    }
+
     Transition<T> transition;
 
     public TransitionEvaluationActions(Transition<T> transition) {
@@ -0,0 +1,36 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.AtomicStatefulEntity;
+import com.glc.statemachine.State;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Base {@link AtomicStatefulEntity} that holds its state in an {@link AtomicReference}, so that it can be shared
+ * between threads and transitioned without locking
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public abstract class AbstractAtomicStatefulEntity implements AtomicStatefulEntity {
+    AtomicReference<State> state;
+
+    public AbstractAtomicStatefulEntity(@NonNull State initialState) {
+        this.state = new AtomicReference<>(initialState);
+    }
+
+    @Override
+    public @NonNull State getState() {
+        return state.get();
+    }
+
+    @Override
+    public void setState(State state) {
+        this.state.set(state);
+    }
+
+    @Override
+    public boolean compareAndSetState(State expected, State next) {
+        return state.compareAndSet(expected, next);
+    }
+}
@@ -0,0 +1,260 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionMetrics;
+import com.glc.statemachine.TransitionResolver;
+import com.glc.statemachine.definition.CompiledStateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link TransitionResolver} for a single {@link StateMachineDefinition} that reorders the guarded alternatives of
+ * cells declared mutually exclusive so that the cheapest and most likely to pass evaluators run first.
+ * <p>
+ * When at most one guard of a cell can pass, the order the guards are evaluated in does not change the transition
+ * chosen, only the cost of finding it. For each cell declared with {@link #declareExclusive(State, StateMachineEvent)}
+ * the resolver records how often each evaluator passes and how long it takes, and every {@code reorderInterval}
+ * resolutions of the cell sorts the guards by their mean cost divided by their pass rate. Each ordering is an
+ * immutable snapshot published atomically, so concurrent resolutions always see a complete ordering. Unguarded
+ * candidates keep their place after the guards.
+ * <p>
+ * Cells that are not declared exclusive, and contexts for other definitions, are resolved with
+ * {@link StateMachineDefinition#getTransition(ActionContext)} and keep the matrix order. Evaluations are measured by
+ * the {@link TransitionMetrics} of the definition in the context either way.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class AdaptiveTransitionResolver<T extends StatefulEntity> implements TransitionResolver<T> {
+
+    public static final long DEFAULT_REORDER_INTERVAL = 1_000;
+
+    StateMachineDefinition<T> definition;
+    CompiledStateMachineDefinition<T> compiled;
+    long reorderInterval;
+
+    /**
+     * The adaptive cells, indexed like the compiled definition by {@code stateId * eventCount + eventId}. Null for
+     * cells that are not declared exclusive.
+     */
+    AtomicReferenceArray<Cell<T>> cells;
+
+    public AdaptiveTransitionResolver(@NonNull StateMachineDefinition<T> definition) {
+        this(definition, DEFAULT_REORDER_INTERVAL);
+    }
+
+    /**
+     * @param definition      The definition whose transitions are resolved
+     * @param reorderInterval The number of resolutions of a cell between reorderings of its guards
+     */
+    public AdaptiveTransitionResolver(@NonNull StateMachineDefinition<T> definition, long reorderInterval) {
+        if (reorderInterval < 1) {
+            throw new IllegalArgumentException("The reorder interval must be positive but was " + reorderInterval);
+        }
+        this.definition = definition;
+        this.compiled = definition.getCompiled();
+        this.reorderInterval = reorderInterval;
+        this.cells = new AtomicReferenceArray<>(compiled.getStateCount() * compiled.getEventCount());
+    }
+
+    /**
+     * Declares that at most one of the guards of the transitions from the state on the event can pass, so that they
+     * can be evaluated in any order
+     *
+     * @return This resolver
+     * @throws IllegalArgumentException If the definition has no transitions from the state on the event
+     */
+    public AdaptiveTransitionResolver<T> declareExclusive(@NonNull State fromState, @NonNull StateMachineEvent event) {
+        int stateId = compiled.getStateId(fromState);
+        int eventId = compiled.getEventId(event);
+        TransitionEvaluationActions<T>[] candidates = compiled.getCandidates(stateId, eventId);
+        if (candidates == null) {
+            throw new IllegalArgumentException("There are no transitions from state " + fromState.getStateName() + " on event " + event.getEventName());
+        }
+        cells.compareAndSet(indexOf(stateId, eventId), null, new Cell<>(compiled.getState(stateId), compiled.getEvent(eventId), candidates));
+        return this;
+    }
+
+    private int indexOf(int stateId, int eventId) {
+        return stateId * compiled.getEventCount() + eventId;
+    }
+
+    @Override
+    public Optional<Transition<T>> resolve(ActionContext<T> context) {
+        if (context.getStateMachineDefinition() != definition) {
+            return context.getStateMachineDefinition().getTransition(context);
+        }
+        int stateId = compiled.getStateId(context.getEntity().getState());
+        int eventId = compiled.getEventId(context.getStateMachineEvent());
+        Cell<T> cell = stateId < 0 || eventId < 0 ? null : cells.get(indexOf(stateId, eventId));
+        if (cell == null) {
+            return definition.getTransition(context);
+        }
+
+        Optional<Transition<T>> transition = cell.resolve(context);
+        if (cell.resolutions.incrementAndGet() % reorderInterval == 0) {
+            cell.reorder();
+        }
+        return transition;
+    }
+
+    /**
+     * Reorders the guards of every exclusive cell now, rather than waiting for the reorder interval
+     */
+    public void reorder() {
+        for (int i = 0; i < cells.length(); i++) {
+            Cell<T> cell = cells.get(i);
+            if (cell != null) {
+                cell.reorder();
+            }
+        }
+    }
+
+    /**
+     * @return The statistics of every candidate of the exclusive cells, in their current evaluation order
+     */
+    public List<EvaluatorStatistics> getStatistics() {
+        List<EvaluatorStatistics> statistics = new ArrayList<>();
+        for (int i = 0; i < cells.length(); i++) {
+            Cell<T> cell = cells.get(i);
+            if (cell != null) {
+                cell.collectStatistics(statistics);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * The runtime statistics of a single candidate
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Stats<T extends StatefulEntity> {
+        TransitionEvaluationActions<T> candidate;
+        Optional<Transition<T>> result;
+        LongAdder evaluations = new LongAdder();
+        LongAdder passes = new LongAdder();
+        LongAdder nanos = new LongAdder();
+
+        Stats(TransitionEvaluationActions<T> candidate) {
+            this.candidate = candidate;
+            this.result = Optional.ofNullable(candidate.getTransition());
+        }
+
+        /**
+         * Mean cost per pass, the expected cost of finding the transition through this candidate
+         */
+        double rank() {
+            long evaluated = evaluations.sum();
+            if (evaluated == 0) {
+                return 0;
+            }
+            double meanNanos = (double) nanos.sum() / evaluated;
+            double passRate = (double) passes.sum() / evaluated;
+            return passRate == 0 ? Double.MAX_VALUE : meanNanos / passRate;
+        }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Cell<T extends StatefulEntity> {
+        State fromState;
+        StateMachineEvent event;
+
+        /**
+         * The guarded candidates in evaluation order followed by the unguarded ones, replaced as a whole on reordering
+         */
+        AtomicReference<Stats<T>[]> ordering;
+
+        /**
+         * The number of leading candidates that are guarded and may be reordered
+         */
+        int guarded;
+
+        AtomicLong resolutions = new AtomicLong();
+
+        @SuppressWarnings("unchecked")
+        Cell(State fromState, StateMachineEvent event, TransitionEvaluationActions<T>[] candidates) {
+            this.fromState = fromState;
+            this.event = event;
+            Stats<T>[] stats = new Stats[candidates.length];
+            int leading = 0;
+            for (int i = 0; i < candidates.length; i++) {
+                stats[i] = new Stats<>(candidates[i]);
+                if (leading == i && candidates[i].getEvaluator().isPresent()) {
+                    leading++;
+                }
+            }
+            this.guarded = leading;
+            this.ordering = new AtomicReference<>(stats);
+        }
+
+        Optional<Transition<T>> resolve(ActionContext<T> context) {
+            Stats<T>[] stats = ordering.get();
+            TransitionMetrics metrics = context.getStateMachineDefinition().getMetrics();
+            for (int i = 0; i < stats.length; i++) {
+                Stats<T> candidate = stats[i];
+                Optional<TransitionEvaluator<T>> evaluator = candidate.candidate.getEvaluator();
+                if (!evaluator.isPresent()) {
+                    return candidate.result;
+                }
+                long start = System.nanoTime();
+                boolean passed = TransitionMetrics.evaluate(metrics, evaluator.get(), context);
+                candidate.nanos.add(System.nanoTime() - start);
+                candidate.evaluations.increment();
+                if (passed) {
+                    candidate.passes.increment();
+                    return candidate.result;
+                }
+            }
+            return Optional.empty();
+        }
+
+        /**
+         * Sorts the guards by a copy of their ranks, as the counters they are computed from keep changing while other
+         * threads resolve the cell, which would make a comparator of the live ranks inconsistent
+         */
+        void reorder() {
+            Stats<T>[] current = ordering.get();
+            double[] ranks = new double[guarded];
+            Integer[] order = new Integer[guarded];
+            for (int i = 0; i < guarded; i++) {
+                ranks[i] = current[i].rank();
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> ranks[i]));
+            Stats<T>[] reordered = current.clone();
+            for (int i = 0; i < guarded; i++) {
+                reordered[i] = current[order[i]];
+            }
+            if (ordering.compareAndSet(current, reordered) && log.isDebugEnabled()) {
+                log.debug("Reordered guards from state {} on event {}", fromState.getStateName(), event.getEventName());
+            }
+        }
+
+        void collectStatistics(List<EvaluatorStatistics> statistics) {
+            Stats<T>[] stats = ordering.get();
+            for (int i = 0; i < stats.length; i++) {
+                Stats<T> candidate = stats[i];
+                statistics.add(new EvaluatorStatistics(fromState, event,
+                    candidate.candidate.getEvaluator().map(TransitionEvaluator::getDescription).orElse(null),
+                    i, candidate.evaluations.sum(), candidate.passes.sum(), candidate.nanos.sum()));
+            }
+        }
+    }
+}
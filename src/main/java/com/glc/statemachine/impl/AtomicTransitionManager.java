@@ -0,0 +1,170 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.AtomicStatefulEntity;
+import com.glc.statemachine.State;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionConflictException;
+import com.glc.statemachine.TransitionResolver;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link DefaultTransitionManager} for {@link AtomicStatefulEntity}s that may be transitioned by several threads at
+ * once without external locking.
+ * <p>
+ * The state is read from the entity once, the transition is resolved against that state, and the entity is then moved
+ * to the target state with {@link AtomicStatefulEntity#compareAndSetState(State, State)}, so the transition applied is
+ * always one of the state compared against. If another thread changed the state in the meantime the transition is
+ * resolved again against the new state, up to the configured number of retries, after which a
+ * {@link TransitionConflictException} is thrown. Only the thread whose compare and set succeeds runs the actions,
+ * listeners and persistence of the transition, so the actions see the entity already in the target state and a custom
+ * {@link Transition#perform(ActionContext)} is not called. If an action throws, the entity is moved back to the state
+ * read, as long as no other thread has moved it on since, so a failed transition leaves the state unchanged.
+ * <p>
+ * Without a {@link TransitionResolver} the transition is looked up with
+ * {@link StateMachineDefinition#getTransition(ActionContext, State)}. A configured resolver resolves against the
+ * current state of the entity, so its transition is treated as a conflict when its from state is not the state read,
+ * or when it finds none and the entity has left the state read.
+ * <p>
+ * The number of conflicts and of exhausted retries are counted so that contention can be monitored.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public abstract class AtomicTransitionManager<T extends AtomicStatefulEntity> extends DefaultTransitionManager<T> {
+
+    public static final int DEFAULT_MAX_RETRIES = 16;
+
+    int maxRetries;
+
+    /**
+     * Whether the transition is looked up in the definition, rather than with a configured {@link TransitionResolver}
+     */
+    boolean resolvesFromDefinition;
+
+    LongAdder conflicts = new LongAdder();
+    LongAdder exhausted = new LongAdder();
+
+    protected AtomicTransitionManager() {
+        this(DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * @param maxRetries The number of times the transition is resolved again after a conflicting state change
+     */
+    protected AtomicTransitionManager(int maxRetries) {
+        this.maxRetries = checkRetries(maxRetries);
+        this.resolvesFromDefinition = true;
+    }
+
+    /**
+     * @param transitionResolver Used to find the transition to perform for each event
+     * @param maxRetries         The number of times the transition is resolved again after a conflicting state change
+     */
+    protected AtomicTransitionManager(TransitionResolver<T> transitionResolver, int maxRetries) {
+        super(transitionResolver);
+        this.maxRetries = checkRetries(maxRetries);
+        this.resolvesFromDefinition = false;
+    }
+
+    private static int checkRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("The number of retries must not be negative but was " + maxRetries);
+        }
+        return maxRetries;
+    }
+
+    @Override
+    protected Optional<Transition<T>> performTransition(ActionContext<T> actionContext) {
+        T entity = actionContext.getEntity();
+        for (int attempt = 0; ; attempt++) {
+            State fromState = entity.getState();
+            if (log.isTraceEnabled()) {
+                log.trace("Handling event {} on entity state {}", actionContext.getStateMachineEvent(), fromState);
+            }
+            Optional<Transition<T>> transitionOptional = resolveTransition(actionContext, fromState);
+            if (transitionOptional != null && !transitionOptional.isPresent()) {
+                log.trace("No transition found");
+                return transitionOptional;
+            }
+
+            if (transitionOptional != null) {
+                Transition<T> transition = transitionOptional.get();
+                State toState = transition.getToState(actionContext);
+                if (entity.compareAndSetState(fromState, toState)) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Executing transition from {} to {}", fromState, toState);
+                    }
+                    executeActions(transition, actionContext, fromState, toState);
+                    transition.notifyListeners(actionContext);
+                    return transitionOptional;
+                }
+            }
+
+            conflicts.increment();
+            if (attempt == maxRetries) {
+                exhausted.increment();
+                throw new TransitionConflictException("Entity " + entity.getId() + " changed state concurrently " + (attempt + 1)
+                    + " times while handling event " + actionContext.getStateMachineEvent().getEventName());
+            }
+            log.debug("Entity {} left state {} while handling event {}, resolving again", entity.getId(), fromState, actionContext.getStateMachineEvent());
+        }
+    }
+
+    /**
+     * Executes the actions of the transition, moving the entity back to the from state if one throws
+     */
+    private void executeActions(Transition<T> transition, ActionContext<T> actionContext, State fromState, State toState) {
+        try {
+            transition.executeActions(actionContext);
+        } catch (RuntimeException | Error e) {
+            T entity = actionContext.getEntity();
+            if (!entity.compareAndSetState(toState, fromState)) {
+                log.warn("Entity {} left state {} before it could be restored to {} after a failed action", entity.getId(), toState, fromState);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves the transition from the state read from the entity
+     *
+     * @return The transition, or null if a configured resolver resolved against a state other than the one read
+     */
+    private Optional<Transition<T>> resolveTransition(ActionContext<T> actionContext, State fromState) {
+        if (resolvesFromDefinition) {
+            return actionContext.getStateMachineDefinition().getTransition(actionContext, fromState);
+        }
+        Optional<Transition<T>> transitionOptional = resolveTransition(actionContext);
+        if (transitionOptional.isPresent()) {
+            State resolvedFrom = transitionOptional.get().getFromState();
+            return resolvedFrom == null || isSameState(resolvedFrom, fromState) ? transitionOptional : null;
+        }
+        return isSameState(actionContext.getEntity().getState(), fromState) ? transitionOptional : null;
+    }
+
+    /**
+     * States are compared by name, as elsewhere in the definition, so an equal instance is not taken for a change
+     */
+    private static boolean isSameState(State state, State other) {
+        return state == other || state != null && other != null && state.getStateName().equals(other.getStateName());
+    }
+
+    /**
+     * @return The number of times an entity changed state between resolving a transition and applying it
+     */
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    /**
+     * @return The number of events that failed with a {@link TransitionConflictException}
+     */
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+}
@@ -0,0 +1,206 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.AsyncTransitionAction;
+import com.glc.statemachine.AsyncTransitionEvaluator;
+import com.glc.statemachine.AsyncTransitionManager;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionMetrics;
+import com.glc.statemachine.definition.CompiledStateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Default implementation of the {@link AsyncTransitionManager}. Like the {@link DefaultTransitionManager} it looks up
+ * the transition for the event and state, performs it and persists the entity, but each step is composed as a
+ * {@link CompletionStage} so no thread is blocked while evaluators, actions or persistence wait on I/O.
+ * <p>
+ * {@link AsyncTransitionEvaluator}s and {@link AsyncTransitionAction}s are composed directly. Synchronous evaluators,
+ * actions and listeners are run on the configured {@link Executor}. Candidates are still evaluated one after another in
+ * matrix order, and the first one to pass is performed. The actions are taken from
+ * {@link Transition#getTransitionActions()}, so a custom {@link Transition#perform(ActionContext)} is not called.
+ * <p>
+ * Each step is measured by the {@link TransitionMetrics} of the definition in the context, from the start of the
+ * step to the completion of its stage.
+ * <p>
+ * Implementations of this class must only handle persisting the {@link StatefulEntity}.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public abstract class DefaultAsyncTransitionManager<T extends StatefulEntity> implements AsyncTransitionManager<T> {
+    Executor executor;
+
+    /**
+     * @param executor The executor used to run synchronous evaluators, actions and listeners
+     */
+    protected DefaultAsyncTransitionManager(@NonNull Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletionStage<Optional<Transition<T>>> triggerEventAsync(@NonNull ActionContext<T> actionContext) {
+        TransitionMetrics metrics = actionContext.getStateMachineDefinition().getMetrics();
+        if (!metrics.isEnabled()) {
+            return trigger(actionContext, metrics);
+        }
+        long start = System.nanoTime();
+        State from = actionContext.getEntity().getState();
+        return trigger(actionContext, metrics).whenComplete((transitionOptional, failure) -> {
+            if (failure == null) {
+                DefaultTransitionManager.onTriggerEvent(metrics, from, actionContext, transitionOptional, System.nanoTime() - start);
+            }
+        });
+    }
+
+    private CompletionStage<Optional<Transition<T>>> trigger(ActionContext<T> actionContext, TransitionMetrics metrics) {
+        return CompletableFuture.supplyAsync(() -> getCandidates(actionContext), executor)
+            .thenCompose(candidates -> resolve(candidates, actionContext, metrics))
+            .thenCompose(transitionOptional -> {
+                if (!transitionOptional.isPresent()) {
+                    log.trace("No transition found");
+                    return CompletableFuture.completedFuture(transitionOptional);
+                }
+                return perform(transitionOptional.get(), actionContext, metrics)
+                    .thenCompose(ignored -> persist(actionContext, metrics))
+                    .thenApply(ignored -> transitionOptional);
+            });
+    }
+
+    private TransitionEvaluationActions<T>[] getCandidates(ActionContext<T> actionContext) {
+        if (log.isTraceEnabled()) {
+            log.trace("Handling event {} on entity state {}", actionContext.getStateMachineEvent(), actionContext.getEntity().getState());
+        }
+        CompiledStateMachineDefinition<T> compiled = actionContext.getStateMachineDefinition().getCompiled();
+        return compiled.getCandidates(
+            compiled.getStateId(actionContext.getEntity().getState()),
+            compiled.getEventId(actionContext.getStateMachineEvent()));
+    }
+
+    private CompletionStage<Optional<Transition<T>>> resolve(TransitionEvaluationActions<T>[] candidates, ActionContext<T> actionContext, TransitionMetrics metrics) {
+        if (!metrics.isEnabled()) {
+            return resolve(candidates, 0, actionContext, metrics);
+        }
+        long start = System.nanoTime();
+        return resolve(candidates, 0, actionContext, metrics).whenComplete((transitionOptional, failure) -> {
+            if (failure == null) {
+                metrics.onGetTransition(actionContext.getEntity().getState(), actionContext.getStateMachineEvent(), transitionOptional.isPresent(),
+                    System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Evaluates the candidates from the specified index in order, completing with the transition of the first that passes
+     */
+    private CompletionStage<Optional<Transition<T>>> resolve(TransitionEvaluationActions<T>[] candidates, int index, ActionContext<T> actionContext, TransitionMetrics metrics) {
+        if (candidates == null || index >= candidates.length) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        TransitionEvaluationActions<T> candidate = candidates[index];
+        return evaluate(candidate.getEvaluator().orElse(null), actionContext, metrics)
+            .thenCompose(passed -> passed
+                ? CompletableFuture.completedFuture(Optional.ofNullable(candidate.getTransition()))
+                : resolve(candidates, index + 1, actionContext, metrics));
+    }
+
+    private CompletionStage<Boolean> evaluate(TransitionEvaluator<T> evaluator, ActionContext<T> actionContext, TransitionMetrics metrics) {
+        if (evaluator == null) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (!(evaluator instanceof AsyncTransitionEvaluator)) {
+            return CompletableFuture.supplyAsync(() -> TransitionMetrics.evaluate(metrics, evaluator, actionContext), executor);
+        }
+        if (!metrics.isEnabled()) {
+            return ((AsyncTransitionEvaluator<T>) evaluator).evaluateAsync(actionContext);
+        }
+        long start = System.nanoTime();
+        return ((AsyncTransitionEvaluator<T>) evaluator).evaluateAsync(actionContext).whenComplete((passed, failure) -> {
+            if (failure == null) {
+                metrics.onEvaluate(evaluator, passed, System.nanoTime() - start);
+            } else {
+                metrics.onFailure(TransitionMetrics.Step.EVALUATE, evaluator, unwrap(failure));
+            }
+        });
+    }
+
+    /**
+     * Executes the actions of the transition in order, then updates the state of the entity and notifies the listeners
+     */
+    private CompletionStage<Void> perform(Transition<T> transition, ActionContext<T> actionContext, TransitionMetrics metrics) {
+        CompletionStage<Void> stage = CompletableFuture.completedFuture(null);
+        List<TransitionAction<T>> actions = transition.getTransitionActions().orElse(null);
+        if (actions != null) {
+            for (TransitionAction<T> action : actions) {
+                stage = stage.thenCompose(ignored -> execute(action, actionContext, metrics));
+            }
+        }
+        return stage.thenRunAsync(() -> {
+            State toState = transition.getToState(actionContext);
+            if (log.isTraceEnabled()) {
+                log.trace("Updating entity state to {}", toState);
+            }
+            actionContext.getEntity().setState(toState);
+            transition.notifyListeners(actionContext);
+        }, executor);
+    }
+
+    private CompletionStage<Void> execute(TransitionAction<T> action, ActionContext<T> actionContext, TransitionMetrics metrics) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing transition action {}", action.getName());
+        }
+        if (!(action instanceof AsyncTransitionAction)) {
+            return CompletableFuture.runAsync(() -> TransitionMetrics.execute(metrics, action, actionContext), executor);
+        }
+        if (!metrics.isEnabled()) {
+            return ((AsyncTransitionAction<T>) action).executeAsync(actionContext);
+        }
+        long start = System.nanoTime();
+        return ((AsyncTransitionAction<T>) action).executeAsync(actionContext).whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                metrics.onExecute(action, System.nanoTime() - start);
+            } else {
+                metrics.onFailure(TransitionMetrics.Step.EXECUTE, action, unwrap(failure));
+            }
+        });
+    }
+
+    private CompletionStage<Void> persist(ActionContext<T> actionContext, TransitionMetrics metrics) {
+        if (!metrics.isEnabled()) {
+            return persistEntityAsync(actionContext);
+        }
+        long start = System.nanoTime();
+        return persistEntityAsync(actionContext).whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                metrics.onPersistEntity(System.nanoTime() - start);
+            } else {
+                metrics.onFailure(TransitionMetrics.Step.PERSIST_ENTITY, null, unwrap(failure));
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * Implementations should persist the {@link StatefulEntity} within the action context to preserve changes that
+     * occur during the transition actions, without blocking the calling thread
+     *
+     * @param actionContext
+     * @return A stage completing once the entity has been persisted
+     */
+    protected abstract CompletionStage<Void> persistEntityAsync(ActionContext<T> actionContext);
+}
@@ -1,6 +1,8 @@
 package com.glc.statemachine.impl;
 
 import com.glc.statemachine.State;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -14,11 +16,41 @@ import lombok.experimental.FieldDefaults;
 @EqualsAndHashCode(of = "stateName")
 @ToString(includeFieldNames = false)
 public class DefaultState implements State {
+
+    /**
+     * Upper bound on the number of names held by {@link #of(String)}, as names may come from untrusted input
+     */
+    private static final int MAX_INTERNED = 10_000;
+    private static final ConcurrentMap<String, DefaultState> INTERNED = new ConcurrentHashMap<>();
+
     String stateName;
 
     public DefaultState(State state) {
         this.stateName = state.getStateName();
     }
 
+    /**
+     * Returns a shared instance for the state name, so that states created from the same name by the loader
+     * or by deserialization are the same instance. Once {@link #MAX_INTERNED} names are held, new names
+     * get a new instance.
+     *
+     * @param stateName The name of the state
+     * @return The shared instance for the name
+     */
+    public static DefaultState of(String stateName) {
+        if (stateName == null) {
+            return new DefaultState((String) null);
+        }
+        DefaultState state = INTERNED.get(stateName);
+        if (state == null) {
+            state = new DefaultState(stateName);
+            if (INTERNED.size() < MAX_INTERNED) {
+                DefaultState existing = INTERNED.putIfAbsent(stateName, state);
+                state = existing == null ? state : existing;
+            }
+        }
+        return state;
+    }
+
 
 }
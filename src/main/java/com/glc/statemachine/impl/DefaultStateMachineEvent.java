@@ -1,6 +1,8 @@
 package com.glc.statemachine.impl;
 
 import com.glc.statemachine.StateMachineEvent;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -14,5 +16,35 @@ import lombok.experimental.FieldDefaults;
 @EqualsAndHashCode(of = "eventName")
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public class DefaultStateMachineEvent implements StateMachineEvent {
+
+    /**
+     * Upper bound on the number of names held by {@link #of(String)}, as names may come from untrusted input
+     */
+    private static final int MAX_INTERNED = 10_000;
+    private static final ConcurrentMap<String, DefaultStateMachineEvent> INTERNED = new ConcurrentHashMap<>();
+
     String eventName;
+
+    /**
+     * Returns a shared instance for the event name, so that events created from the same name by the loader
+     * or by deserialization are the same instance. Once {@link #MAX_INTERNED} names are held, new names
+     * get a new instance.
+     *
+     * @param eventName The name of the event
+     * @return The shared instance for the name
+     */
+    public static DefaultStateMachineEvent of(String eventName) {
+        if (eventName == null) {
+            return new DefaultStateMachineEvent(null);
+        }
+        DefaultStateMachineEvent event = INTERNED.get(eventName);
+        if (event == null) {
+            event = new DefaultStateMachineEvent(eventName);
+            if (INTERNED.size() < MAX_INTERNED) {
+                DefaultStateMachineEvent existing = INTERNED.putIfAbsent(eventName, event);
+                event = existing == null ? event : existing;
+            }
+        }
+        return event;
+    }
 }
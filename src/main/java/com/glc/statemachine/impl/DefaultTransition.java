@@ -9,22 +9,33 @@ import java.util.List;
 import java.util.Optional;
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 
 /**
  * Default transition implementation
  */
 @FieldDefaults(makeFinal = true,level = AccessLevel.PRIVATE)
-@RequiredArgsConstructor
 @Getter
 public class DefaultTransition<T extends StatefulEntity> implements Transition<T> {
     State fromState;
     State toState;
     List<TransitionAction<T>> transitionActions;
 
+    /**
+     * Built once so that dispatching through this transition does not allocate
+     */
+    @Getter(AccessLevel.NONE)
+    Optional<List<TransitionAction<T>>> transitionActionsOptional;
+
+    public DefaultTransition(State fromState, State toState, List<TransitionAction<T>> transitionActions) {
+        this.fromState = fromState;
+        this.toState = toState;
+        this.transitionActions = transitionActions;
+        this.transitionActionsOptional = Optional.ofNullable(transitionActions);
+    }
+
     public Optional<List<TransitionAction<T>>> getTransitionActions() {
-        return Optional.ofNullable(transitionActions);
+        return transitionActionsOptional;
     }
 
     @Override
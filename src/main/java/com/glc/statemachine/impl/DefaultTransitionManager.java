@@ -1,11 +1,20 @@
 package com.glc.statemachine.impl;
 
 import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
 import com.glc.statemachine.StatefulEntity;
 import com.glc.statemachine.Transition;
 import com.glc.statemachine.TransitionManager;
+import com.glc.statemachine.TransitionMetrics;
+import com.glc.statemachine.TransitionResolver;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import lombok.AccessLevel;
 import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -15,24 +24,183 @@ import lombok.extern.slf4j.Slf4j;
  * and all state machine transitioning will be handled.
  * <p>
  * Note that if a transition is not found, then no actions are performed and only a trace message will be logged.
+ * <p>
+ * Dispatching an event does not allocate in steady state: the transition lookup is an array scan over the compiled
+ * definition, the returned {@link Optional}s are built once per transition and trace arguments are only evaluated
+ * when trace logging is enabled. Any allocation therefore comes from the supplied evaluators, actions, listeners
+ * and {@link #persistEntity(ActionContext)} implementation.
  */
 @Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public abstract class DefaultTransitionManager<T extends StatefulEntity> implements TransitionManager<T> {
+    TransitionResolver<T> transitionResolver;
+
+    /**
+     * Creates a manager that resolves transitions with {@link StateMachineDefinition#getTransition(ActionContext)}
+     */
+    protected DefaultTransitionManager() {
+        this(actionContext -> actionContext.getStateMachineDefinition().getTransition(actionContext));
+    }
+
+    /**
+     * @param transitionResolver Used to find the transition to perform for each event, e.g. a
+     *                           {@link ParallelTransitionResolver}
+     */
+    protected DefaultTransitionManager(@NonNull TransitionResolver<T> transitionResolver) {
+        this.transitionResolver = transitionResolver;
+    }
+
+    /**
+     * Performs the transition for the event and persists the entity if it transitioned. The event, and persisting
+     * the entity, are measured by the {@link TransitionMetrics} of the definition in the context.
+     */
     @Override
     public Optional<Transition<T>> triggerEvent(@NonNull ActionContext<T> actionContext) {
-        log.trace("Handling event {} on entity state {}", actionContext.getStateMachineEvent(), actionContext.getEntity().getState());
-        Optional<Transition<T>> transitionOptional = actionContext.getStateMachineDefinition().getTransition(actionContext);
+        TransitionMetrics metrics = actionContext.getStateMachineDefinition().getMetrics();
+        if (metrics.isEnabled()) {
+            return triggerEventMeasured(actionContext, metrics);
+        }
+        Optional<Transition<T>> transitionOptional = performTransition(actionContext);
+        if (transitionOptional.isPresent()) {
+            persistEntity(actionContext);
+        }
+        return transitionOptional;
+    }
+
+    private Optional<Transition<T>> triggerEventMeasured(ActionContext<T> actionContext, TransitionMetrics metrics) {
+        long start = System.nanoTime();
+        State from = actionContext.getEntity().getState();
+        Optional<Transition<T>> transitionOptional = performTransition(actionContext);
+        if (transitionOptional.isPresent()) {
+            long persistStart = System.nanoTime();
+            try {
+                persistEntity(actionContext);
+            } catch (RuntimeException | Error e) {
+                metrics.onFailure(TransitionMetrics.Step.PERSIST_ENTITY, null, e);
+                throw e;
+            }
+            metrics.onPersistEntity(System.nanoTime() - persistStart);
+        }
+        onTriggerEvent(metrics, from, actionContext, transitionOptional, System.nanoTime() - start);
+        return transitionOptional;
+    }
+
+    /**
+     * Records the event against the edge of the transition, rather than the states read from the entity, which another
+     * thread or persisting the entity may have changed in the meantime
+     */
+    static <T extends StatefulEntity> void onTriggerEvent(
+        TransitionMetrics metrics, State from, ActionContext<T> actionContext, Optional<Transition<T>> transitionOptional, long nanos) {
+        if (!transitionOptional.isPresent()) {
+            metrics.onTriggerEvent(from, actionContext.getStateMachineEvent(), null, nanos);
+            return;
+        }
+        Transition<T> transition = transitionOptional.get();
+        State fromState = transition.getFromState();
+        metrics.onTriggerEvent(fromState == null ? from : fromState, actionContext.getStateMachineEvent(), transition.getToState(actionContext), nanos);
+    }
+
+    /**
+     * Performs the transitions for each of the action contexts in iteration order and then calls
+     * {@link #persistEntities(List)} once with the contexts that transitioned. If a transition fails, the
+     * contexts that transitioned before it are still persisted before the failure is rethrown. Each event is
+     * measured by the {@link TransitionMetrics} of its definition, excluding persisting the batch, which is measured
+     * once.
+     *
+     * @param actionContexts The contexts to trigger the events of
+     * @return The outcome of each context, in the iteration order of the supplied contexts
+     */
+    @Override
+    public List<Optional<Transition<T>>> triggerEvents(@NonNull Collection<ActionContext<T>> actionContexts) {
+        List<Optional<Transition<T>>> outcomes = new ArrayList<>(actionContexts.size());
+        List<ActionContext<T>> transitioned = new ArrayList<>(actionContexts.size());
+        try {
+            for (ActionContext<T> actionContext : actionContexts) {
+                TransitionMetrics metrics = actionContext.getStateMachineDefinition().getMetrics();
+                Optional<Transition<T>> transitionOptional;
+                if (metrics.isEnabled()) {
+                    long start = System.nanoTime();
+                    State from = actionContext.getEntity().getState();
+                    transitionOptional = performTransition(actionContext);
+                    onTriggerEvent(metrics, from, actionContext, transitionOptional, System.nanoTime() - start);
+                } else {
+                    transitionOptional = performTransition(actionContext);
+                }
+                if (transitionOptional.isPresent()) {
+                    transitioned.add(actionContext);
+                }
+                outcomes.add(transitionOptional);
+            }
+        } catch (RuntimeException e) {
+            if (!transitioned.isEmpty()) {
+                try {
+                    persistBatch(transitioned);
+                } catch (RuntimeException persistFailure) {
+                    e.addSuppressed(persistFailure);
+                }
+            }
+            throw e;
+        }
+
+        if (!transitioned.isEmpty()) {
+            persistBatch(transitioned);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Persists the batch, measured by the {@link TransitionMetrics} of the definition of the first context as one
+     * call to {@link TransitionMetrics#onPersistEntity(long)}
+     */
+    private void persistBatch(List<ActionContext<T>> transitioned) {
+        TransitionMetrics metrics = transitioned.get(0).getStateMachineDefinition().getMetrics();
+        if (!metrics.isEnabled()) {
+            persistEntities(transitioned);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            persistEntities(transitioned);
+        } catch (RuntimeException | Error e) {
+            metrics.onFailure(TransitionMetrics.Step.PERSIST_ENTITY, null, e);
+            throw e;
+        }
+        metrics.onPersistEntity(System.nanoTime() - start);
+    }
+
+    /**
+     * Looks up the transition for the event and state in the context and performs it, without persisting the entity.
+     * Used by both {@link #triggerEvent(ActionContext)} and {@link #triggerEvents(Collection)}, so subclasses can
+     * override it to change how a transition is applied.
+     *
+     * @param actionContext The context to trigger the event of
+     * @return The transition that was performed
+     */
+    protected Optional<Transition<T>> performTransition(ActionContext<T> actionContext) {
+        if (log.isTraceEnabled()) {
+            log.trace("Handling event {} on entity state {}", actionContext.getStateMachineEvent(), actionContext.getEntity().getState());
+        }
+        Optional<Transition<T>> transitionOptional = resolveTransition(actionContext);
         if (transitionOptional.isPresent()) {
             Transition<T> transition = transitionOptional.get();
-            log.trace("Executing transition from {} to {}", transition.getFromState(), transition.getToState(actionContext));
+            if (log.isTraceEnabled()) {
+                log.trace("Executing transition from {} to {}", transition.getFromState(), transition.getToState(actionContext));
+            }
             transition.perform(actionContext);
-            persistEntity(actionContext);
         } else {
             log.trace("No transition found");
         }
         return transitionOptional;
     }
 
+    /**
+     * Finds the transition to perform for the event and state in the context with the configured
+     * {@link TransitionResolver}
+     */
+    protected Optional<Transition<T>> resolveTransition(ActionContext<T> actionContext) {
+        return transitionResolver.resolve(actionContext);
+    }
+
     /**
      * Implementations should persist the {@link StatefulEntity} within
      * the action context to preserve changes that occur during the transition actions
@@ -40,4 +208,18 @@ public abstract class DefaultTransitionManager<T extends StatefulEntity> impleme
      * @param actionContext
      */
     protected abstract void persistEntity(ActionContext<T> actionContext);
+
+    /**
+     * Persists the entities of a batch of action contexts that transitioned during {@link #triggerEvents(Collection)}.
+     * Implementations should override this to persist the batch in one round trip, e.g. with JDBC batching or a bulk
+     * upsert. The contexts are in the order they transitioned, so an entity that transitioned more than once in the
+     * batch appears more than once. The default implementation calls {@link #persistEntity(ActionContext)} for each.
+     *
+     * @param actionContexts The contexts that transitioned
+     */
+    protected void persistEntities(List<ActionContext<T>> actionContexts) {
+        for (ActionContext<T> actionContext : actionContexts) {
+            persistEntity(actionContext);
+        }
+    }
 }
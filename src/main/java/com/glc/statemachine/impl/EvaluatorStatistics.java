@@ -0,0 +1,50 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Snapshot of the runtime statistics of the evaluator of one candidate transition, as collected by the
+ * {@link AdaptiveTransitionResolver}
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class EvaluatorStatistics {
+    State fromState;
+    StateMachineEvent event;
+
+    /**
+     * The description of the evaluator
+     */
+    String evaluator;
+
+    /**
+     * The position the candidate is currently evaluated at within its state and event, starting at 0
+     */
+    int position;
+
+    long evaluations;
+    long passes;
+    long totalNanos;
+
+    /**
+     * @return The fraction of evaluations that passed, or 0 if the evaluator has not been called
+     */
+    public double getPassRate() {
+        return evaluations == 0 ? 0 : (double) passes / evaluations;
+    }
+
+    /**
+     * @return The mean time taken by an evaluation in nanoseconds, or 0 if the evaluator has not been called
+     */
+    public double getMeanNanos() {
+        return evaluations == 0 ? 0 : (double) totalNanos / evaluations;
+    }
+}
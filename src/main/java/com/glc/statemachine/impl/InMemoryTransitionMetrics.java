@@ -0,0 +1,179 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.TransitionMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * {@link TransitionMetrics} that keeps counts and {@link LatencyHistogram}s in memory, to be read with
+ * {@link #snapshot()}. It counts transitions per edge, i.e. from state, event and to state, and events without a
+ * transition per state and event, and keeps latency histograms per evaluator, action and listener and for triggering
+ * events, looking up transitions and persisting entities, along with failures.
+ * <p>
+ * Counters are {@link LongAdder}s held in nested {@link ConcurrentHashMap}s by state and event, so recording is a few
+ * lookups and striped increments and only allocates the first time an edge or component is seen. Evaluators, actions
+ * and listeners are measured by class name and by description, name or nothing respectively, rather than by instance,
+ * so the instances created by reloading or evicting definitions, or per transition, are measured together and are not
+ * kept reachable. One instance can be shared by many definitions.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class InMemoryTransitionMetrics implements TransitionMetrics {
+
+    private static final Function<Object, ConcurrentMap<StateMachineEvent, ConcurrentMap<State, LongAdder>>> NEW_EVENT_MAP = key -> new ConcurrentHashMap<>();
+    private static final Function<Object, ConcurrentMap<StateMachineEvent, LongAdder>> NEW_COUNTER_MAP = key -> new ConcurrentHashMap<>();
+    private static final Function<Object, ConcurrentMap<State, LongAdder>> NEW_TARGET_MAP = key -> new ConcurrentHashMap<>();
+    private static final Function<Object, LongAdder> NEW_COUNTER = key -> new LongAdder();
+    private static final Function<Object, ConcurrentMap<String, ComponentMetrics>> NEW_COMPONENT_MAP = key -> new ConcurrentHashMap<>();
+    private static final Function<Object, ComponentMetrics> NEW_COMPONENT = key -> new ComponentMetrics();
+
+    ConcurrentMap<State, ConcurrentMap<StateMachineEvent, ConcurrentMap<State, LongAdder>>> transitions = new ConcurrentHashMap<>();
+    ConcurrentMap<State, ConcurrentMap<StateMachineEvent, LongAdder>> noTransitions = new ConcurrentHashMap<>();
+
+    LatencyHistogram triggerEvent = new LatencyHistogram();
+    LatencyHistogram getTransition = new LatencyHistogram();
+    LatencyHistogram persistEntity = new LatencyHistogram();
+
+    /**
+     * The metrics of each evaluator, action and listener by class name and then by name
+     */
+    ConcurrentMap<String, ConcurrentMap<String, ComponentMetrics>> evaluators = new ConcurrentHashMap<>();
+    ConcurrentMap<String, ConcurrentMap<String, ComponentMetrics>> actions = new ConcurrentHashMap<>();
+    ConcurrentMap<String, ConcurrentMap<String, ComponentMetrics>> listeners = new ConcurrentHashMap<>();
+    LongAdder persistFailures = new LongAdder();
+
+    @Override
+    public void onTriggerEvent(State from, StateMachineEvent event, State to, long nanos) {
+        triggerEvent.record(nanos);
+        if (to == null) {
+            get(get(noTransitions, from, NEW_COUNTER_MAP), event, NEW_COUNTER).increment();
+        } else {
+            get(get(get(transitions, from, NEW_EVENT_MAP), event, NEW_TARGET_MAP), to, NEW_COUNTER).increment();
+        }
+    }
+
+    @Override
+    public void onGetTransition(State from, StateMachineEvent event, boolean found, long nanos) {
+        getTransition.record(nanos);
+    }
+
+    @Override
+    public void onEvaluate(TransitionEvaluator<?> evaluator, boolean passed, long nanos) {
+        ComponentMetrics metrics = evaluatorMetrics(evaluator);
+        metrics.latency.record(nanos);
+        if (passed) {
+            metrics.passes.increment();
+        }
+    }
+
+    @Override
+    public void onExecute(TransitionAction<?> action, long nanos) {
+        actionMetrics(action).latency.record(nanos);
+    }
+
+    @Override
+    public void onNotifyListener(TransitionListener<?> listener, long nanos) {
+        listenerMetrics(listener).latency.record(nanos);
+    }
+
+    @Override
+    public void onPersistEntity(long nanos) {
+        persistEntity.record(nanos);
+    }
+
+    @Override
+    public void onFailure(Step step, Object component, Throwable failure) {
+        switch (step) {
+            case EVALUATE:
+                evaluatorMetrics((TransitionEvaluator<?>) component).failures.increment();
+                break;
+            case EXECUTE:
+                actionMetrics((TransitionAction<?>) component).failures.increment();
+                break;
+            case NOTIFY_LISTENER:
+                listenerMetrics((TransitionListener<?>) component).failures.increment();
+                break;
+            default:
+                persistFailures.increment();
+        }
+    }
+
+    /**
+     * Reads the counts and histograms while recording continues, so counts recorded while the snapshot is taken may
+     * be in some parts of it and not others
+     */
+    public TransitionMetricsSnapshot snapshot() {
+        List<TransitionMetricsSnapshot.Edge> edges = new ArrayList<>();
+        transitions.forEach((from, events) -> events.forEach((event, targets) -> targets.forEach((to, count) ->
+            edges.add(new TransitionMetricsSnapshot.Edge(from.getStateName(), event.getEventName(), to.getStateName(), count.sum())))));
+        List<TransitionMetricsSnapshot.Edge> missing = new ArrayList<>();
+        noTransitions.forEach((from, events) -> events.forEach((event, count) ->
+            missing.add(new TransitionMetricsSnapshot.Edge(from.getStateName(), event.getEventName(), null, count.sum()))));
+
+        return new TransitionMetricsSnapshot(
+            edges,
+            missing,
+            triggerEvent.snapshot(),
+            getTransition.snapshot(),
+            persistEntity.snapshot(),
+            persistFailures.sum(),
+            components(evaluators),
+            components(actions),
+            components(listeners)
+        );
+    }
+
+    private static List<TransitionMetricsSnapshot.Component> components(ConcurrentMap<String, ConcurrentMap<String, ComponentMetrics>> metrics) {
+        List<TransitionMetricsSnapshot.Component> components = new ArrayList<>(metrics.size());
+        metrics.forEach((type, byName) -> byName.forEach((name, componentMetrics) -> components.add(new TransitionMetricsSnapshot.Component(
+            name,
+            type,
+            componentMetrics.latency.snapshot(),
+            componentMetrics.passes.sum(),
+            componentMetrics.failures.sum()
+        ))));
+        return components;
+    }
+
+    private ComponentMetrics evaluatorMetrics(TransitionEvaluator<?> evaluator) {
+        return componentMetrics(evaluators, evaluator, evaluator.getDescription());
+    }
+
+    private ComponentMetrics actionMetrics(TransitionAction<?> action) {
+        return componentMetrics(actions, action, action.getName());
+    }
+
+    private ComponentMetrics listenerMetrics(TransitionListener<?> listener) {
+        return componentMetrics(listeners, listener, listener.getClass().getSimpleName());
+    }
+
+    private static ComponentMetrics componentMetrics(ConcurrentMap<String, ConcurrentMap<String, ComponentMetrics>> metrics, Object component, String name) {
+        // Concurrent maps do not hold null keys
+        return get(get(metrics, component.getClass().getName(), NEW_COMPONENT_MAP), name == null ? "" : name, NEW_COMPONENT);
+    }
+
+    /**
+     * Looks up without allocating, only calling {@link ConcurrentMap#computeIfAbsent} the first time the key is seen
+     */
+    private static <K, V> V get(ConcurrentMap<K, V> map, K key, Function<Object, ? extends V> factory) {
+        V value = map.get(key);
+        return value != null ? value : map.computeIfAbsent(key, factory);
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class ComponentMetrics {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder passes = new LongAdder();
+        LongAdder failures = new LongAdder();
+    }
+}
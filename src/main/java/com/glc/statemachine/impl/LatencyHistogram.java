@@ -0,0 +1,111 @@
+package com.glc.statemachine.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A lock-free histogram of durations in nanoseconds with power of two buckets: bucket 0 counts durations of 0 and
+ * bucket {@code i} counts durations from {@code 2^(i-1)} to {@code 2^i - 1}. Recording is an atomic increment of the
+ * bucket, two {@link LongAdder} increments and, only for a new maximum, a compare and set, so it does not allocate or
+ * block. Percentiles read from a {@link Snapshot} are therefore accurate to within a factor of two.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class LatencyHistogram {
+
+    static final int BUCKETS = 64;
+
+    AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    LongAdder count = new LongAdder();
+    LongAdder totalNanos = new LongAdder();
+    AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param nanos The duration, negative durations are recorded as 0
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(duration));
+        count.increment();
+        totalNanos.add(duration);
+        long max;
+        while (duration > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, duration)) {
+            // Another thread recorded a new maximum, compare against it
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * @return The counts read while recording continues, so the count and buckets of the snapshot may differ by
+     * the durations recorded while it was read
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(count.sum(), totalNanos.sum(), maxNanos.get(), counts);
+    }
+
+    /**
+     * The state of a {@link LatencyHistogram} at a point in time
+     */
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    public static class Snapshot {
+        long count;
+        long totalNanos;
+        long maxNanos;
+
+        /**
+         * The count of each bucket, see {@link LatencyHistogram}
+         */
+        long[] buckets;
+
+        /**
+         * @return The mean duration, or 0 if nothing was recorded
+         */
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param percentile From 0 to 100
+         * @return The upper bound of the bucket holding the percentile, capped at the maximum, or 0 if nothing was
+         * recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            long recorded = 0;
+            for (long bucket : buckets) {
+                recorded += bucket;
+            }
+            long rank = (long) Math.ceil(recorded * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return i == 0 ? 0 : Math.min(maxNanos, (1L << i) - 1);
+                }
+            }
+            return 0;
+        }
+
+        public long getP50Nanos() {
+            return getPercentileNanos(50);
+        }
+
+        public long getP99Nanos() {
+            return getPercentileNanos(99);
+        }
+    }
+}
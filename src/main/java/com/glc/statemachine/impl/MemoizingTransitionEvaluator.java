@@ -0,0 +1,151 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.CacheableTransitionEvaluator;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.VersionedStatefulEntity;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Decorates a {@link CacheableTransitionEvaluator} and keeps its results across dispatches, keyed by the id and
+ * version of a {@link VersionedStatefulEntity}, so that an expensive evaluator is not called again for an entity that
+ * has not changed. Entities that are not versioned, or have no id, are always evaluated by the delegate.
+ * <p>
+ * Results are held in a least recently used cache of bounded size, keeping the result of the latest version evaluated
+ * per entity. The cache is split into stripes by entity id, each with its own lock and least recently used order, so
+ * that concurrent dispatches for different entities rarely contend and the bound and order are only exact per stripe.
+ * Looking up a kept result does not allocate. The same instance can be shared between cells and definitions to share
+ * its results.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class MemoizingTransitionEvaluator<T extends StatefulEntity> implements CacheableTransitionEvaluator<T> {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private static final int MAX_STRIPES = 16;
+
+    /**
+     * The fewest entries per stripe, so that small caches keep a single least recently used order
+     */
+    private static final int MIN_STRIPE_ENTRIES = 64;
+
+    CacheableTransitionEvaluator<T> delegate;
+    Stripe[] stripes;
+    int mask;
+    LongAdder hits = new LongAdder();
+    LongAdder misses = new LongAdder();
+
+    public MemoizingTransitionEvaluator(@NonNull CacheableTransitionEvaluator<T> delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param delegate   The evaluator whose results are kept
+     * @param maxEntries The number of results kept before the least recently used is evicted
+     */
+    public MemoizingTransitionEvaluator(@NonNull CacheableTransitionEvaluator<T> delegate, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one entry but " + maxEntries + " was requested");
+        }
+        this.delegate = delegate;
+        int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maxEntries / MIN_STRIPE_ENTRIES)));
+        this.stripes = new Stripe[stripeCount];
+        this.mask = stripeCount - 1;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe((maxEntries + stripeCount - 1) / stripeCount);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public boolean evaluate(ActionContext<T> context) {
+        T entity = context.getEntity();
+        if (!(entity instanceof VersionedStatefulEntity) || entity.getId() == null) {
+            return delegate.evaluate(context);
+        }
+
+        String id = entity.getId();
+        long version = ((VersionedStatefulEntity) entity).getVersion();
+        Stripe stripe = stripeOf(id);
+        Result result;
+        synchronized (stripe) {
+            result = stripe.get(id);
+        }
+        if (result != null && result.version == version) {
+            hits.increment();
+            return result.passed;
+        }
+
+        // Evaluated outside the lock so a slow evaluation does not block other entities
+        misses.increment();
+        boolean evaluated = delegate.evaluate(context);
+        synchronized (stripe) {
+            Result kept = stripe.get(id);
+            // A dispatch of an older version finishing late must not replace the result of a newer one
+            if (kept == null || kept.version < version) {
+                stripe.put(id, new Result(version, evaluated));
+            }
+        }
+        return evaluated;
+    }
+
+    private Stripe stripeOf(String id) {
+        int hash = id.hashCode();
+        return stripes[(hash ^ hash >>> 16) & mask];
+    }
+
+    /**
+     * Removes all kept results, e.g. when data the delegate reads outside the entity has changed
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The results of the entities whose ids hash to the stripe, by entity id in least recently used order. Guarded by
+     * itself.
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Stripe extends LinkedHashMap<String, Result> {
+        int maxEntries;
+
+        Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Result {
+        long version;
+        boolean passed;
+    }
+}
@@ -0,0 +1,105 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionManager;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dispatches events to a {@link TransitionManager} from any number of threads while guaranteeing that the events of
+ * a single entity are handled one at a time, in the order they were dispatched.
+ * <p>
+ * Each entity is assigned to one of a fixed number of lanes by hashing {@link StatefulEntity#getId()}, and every lane
+ * is served by a single thread. Events for the same entity therefore never run concurrently, so the read of
+ * {@link StatefulEntity#getState()} and the subsequent {@link StatefulEntity#setState} of a transition cannot
+ * interleave with another transition of that entity, while entities on different lanes are handled in parallel.
+ * Entities without an id all share one lane.
+ * <p>
+ * Ordering is only guaranteed between events dispatched from the same thread, or from threads that otherwise order
+ * their calls to {@link #dispatch(ActionContext)}. Entities are matched by id, so the guarantee also holds when several
+ * instances represent the same entity.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class OrderedTransitionDispatcher<T extends StatefulEntity> implements AutoCloseable {
+    TransitionManager<T> transitionManager;
+    ExecutorService[] lanes;
+
+    /**
+     * Creates a dispatcher with one lane per available processor
+     *
+     * @param transitionManager The manager that performs the transitions
+     */
+    public OrderedTransitionDispatcher(@NonNull TransitionManager<T> transitionManager) {
+        this(transitionManager, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param transitionManager The manager that performs the transitions
+     * @param laneCount         The number of lanes, and therefore threads, to spread entities across
+     */
+    public OrderedTransitionDispatcher(@NonNull TransitionManager<T> transitionManager, int laneCount) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("At least one lane is required but " + laneCount + " were requested");
+        }
+        this.transitionManager = transitionManager;
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "transition-lane-" + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Queues the event of the context on the lane of its entity
+     *
+     * @param actionContext The context to trigger the event of
+     * @return Completed with the outcome of {@link TransitionManager#triggerEvent(ActionContext)} once the event has
+     * been handled, or exceptionally if it failed. A failure does not affect later events of the entity.
+     */
+    public CompletableFuture<Optional<Transition<T>>> dispatch(@NonNull ActionContext<T> actionContext) {
+        return CompletableFuture.supplyAsync(() -> transitionManager.triggerEvent(actionContext), lanes[laneOf(actionContext.getEntity().getId())]);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @return The lane events for the entity id are queued on
+     */
+    int laneOf(String entityId) {
+        int hash = Objects.hashCode(entityId);
+        // Spread the high bits so ids that differ only in their upper hash bits do not share a lane
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * Stops accepting events and waits for the events already queued to be handled
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            while (!lane.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.debug("Waiting for queued events to be handled");
+            }
+        }
+    }
+}
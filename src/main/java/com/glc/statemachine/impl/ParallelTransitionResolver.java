@@ -0,0 +1,109 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionMetrics;
+import com.glc.statemachine.TransitionResolver;
+import com.glc.statemachine.definition.CompiledStateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link TransitionResolver} that runs the evaluators of the guarded alternatives for a state and event concurrently,
+ * so that the latency of resolving a transition with slow, e.g. I/O bound, evaluators is close to that of the slowest
+ * evaluator rather than the sum of them.
+ * <p>
+ * The result is the same as evaluating the alternatives in order: the transition of the lowest index candidate whose
+ * evaluator passes. The first evaluator runs on the calling thread and the rest on the executor. Results are
+ * consumed in candidate order, and once the outcome is decided the evaluations still running are cancelled with an
+ * interrupt. Only the evaluators before the first unguarded candidate are run. An evaluator that throws fails the
+ * resolution only if every candidate before it did not pass, as it would when evaluating in order. Every evaluation
+ * that completes is measured by the {@link TransitionMetrics} of the definition in the context.
+ * <p>
+ * As evaluators may run concurrently, and some may run when an earlier one passes, they should be free of side effects.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class ParallelTransitionResolver<T extends StatefulEntity> implements TransitionResolver<T> {
+    ExecutorService executor;
+
+    /**
+     * @param executor Runs the evaluators of all but the first candidate. It should have enough threads for the
+     *                 largest number of guarded alternatives of a cell times the number of concurrent dispatches.
+     */
+    public ParallelTransitionResolver(@NonNull ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Optional<Transition<T>> resolve(ActionContext<T> context) {
+        CompiledStateMachineDefinition<T> compiled = context.getStateMachineDefinition().getCompiled();
+        TransitionEvaluationActions<T>[] candidates = compiled.getCandidates(
+            compiled.getStateId(context.getEntity().getState()),
+            compiled.getEventId(context.getStateMachineEvent()));
+        if (candidates == null) {
+            return Optional.empty();
+        }
+
+        // Candidates after the first unguarded one can never be chosen
+        int guarded = 0;
+        while (guarded < candidates.length && candidates[guarded].getEvaluator().isPresent()) {
+            guarded++;
+        }
+        if (guarded < 2) {
+            return compiled.resolve(context);
+        }
+
+        TransitionMetrics metrics = context.getStateMachineDefinition().getMetrics();
+        @SuppressWarnings("unchecked")
+        Future<Boolean>[] evaluations = new Future[guarded];
+        try {
+            for (int i = 1; i < guarded; i++) {
+                TransitionEvaluator<T> evaluator = candidates[i].getEvaluator().get();
+                evaluations[i] = executor.submit(() -> TransitionMetrics.evaluate(metrics, evaluator, context));
+            }
+
+            if (TransitionMetrics.evaluate(metrics, candidates[0].getEvaluator().get(), context)) {
+                return Optional.of(candidates[0].getTransition());
+            }
+            for (int i = 1; i < guarded; i++) {
+                if (evaluations[i].get()) {
+                    return Optional.of(candidates[i].getTransition());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating transitions for event " + context.getStateMachineEvent().getEventName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            cancel(evaluations);
+        }
+
+        return guarded < candidates.length ? Optional.of(candidates[guarded].getTransition()) : Optional.empty();
+    }
+
+    private void cancel(Future<Boolean>[] evaluations) {
+        for (Future<Boolean> evaluation : evaluations) {
+            if (evaluation != null && !evaluation.isDone()) {
+                log.trace("Cancelling evaluation that is no longer needed");
+                evaluation.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package com.glc.statemachine.impl;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link TransitionListener} that hands transitions to {@link SnapshotListener}s on consumer threads, so that slow
+ * listeners such as audit writers or notifiers do not add to the latency of a transition. Register it on the
+ * {@link com.glc.statemachine.definition.StateMachineDefinition} in place of the listeners it wraps.
+ * <p>
+ * Transitions are published into a bounded ring buffer of preallocated slots, so publishing does not allocate. Each
+ * slot is a {@link TransitionSnapshot} of the from state, event, to state and entity id taken when the transition is
+ * published, so listeners see the transition as it happened even if the entity has moved on by the time it is
+ * delivered. Any number of threads may publish and the configured number of consumer threads drain the buffer, calling
+ * every wrapped listener for each transition. With a single consumer, transitions are delivered in the order they were
+ * published.
+ * <p>
+ * When the buffer is full the {@link OverflowPolicy} decides whether the publisher waits, the transition is dropped or
+ * it is delivered on the publishing thread. Idle consumers wait according to the {@link WaitStrategy}. A listener that
+ * throws is logged and does not affect delivery to the other listeners. Existing {@link TransitionListener}s are
+ * wrapped with {@link SnapshotListener#of(TransitionListener)}.
+ * <p>
+ * Queue depth, delivery lag, i.e. the time between publishing and delivering a transition, and the number of dropped
+ * transitions are exposed for monitoring.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class RingBufferTransitionListener<T extends StatefulEntity> implements TransitionListener<T>, AutoCloseable {
+
+    /**
+     * How idle consumer threads wait for transitions to be published
+     */
+    public enum WaitStrategy {
+        /**
+         * Waits on a condition that publishers signal. Lowest CPU use, highest wake up latency.
+         */
+        BLOCKING,
+        /**
+         * Spins, then yields, then sleeps briefly between checks
+         */
+        SLEEPING,
+        /**
+         * Spins, then yields between checks
+         */
+        YIELDING,
+        /**
+         * Checks continuously. Lowest latency, but occupies a core per consumer.
+         */
+        BUSY_SPIN
+    }
+
+    /**
+     * What happens to a transition that is published while the buffer is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * The publisher waits until there is space
+         */
+        BLOCK,
+        /**
+         * The transition is not delivered and is counted as dropped
+         */
+        DROP,
+        /**
+         * The transition is delivered on the publishing thread
+         */
+        CALLER_RUNS
+    }
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long BLOCKING_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    List<SnapshotListener<T>> listeners;
+    WaitStrategy waitStrategy;
+    OverflowPolicy overflowPolicy;
+
+    /**
+     * The slots and, for each slot, the sequence that tells publishers and consumers whose turn it is. A slot at
+     * position p can be published to when its sequence is p and consumed when it is p + 1.
+     */
+    TransitionSnapshot<T>[] slots;
+    AtomicLongArray sequences;
+    int mask;
+
+    /**
+     * The next position to publish to and to consume from
+     */
+    AtomicLong tail = new AtomicLong();
+    AtomicLong head = new AtomicLong();
+
+    AtomicBoolean running = new AtomicBoolean(true);
+
+    /**
+     * The number of threads in {@link #onTransition(Transition, ActionContext)}, which {@link #close()} waits for
+     * before the final drain so that a transition published while closing is not left in the buffer
+     */
+    AtomicInteger publishers = new AtomicInteger();
+    List<Thread> consumers = new ArrayList<>();
+    ReentrantLock lock = new ReentrantLock();
+    Condition published = lock.newCondition();
+    AtomicInteger waitingConsumers = new AtomicInteger();
+
+    LongAdder publishedCount = new LongAdder();
+    LongAdder deliveredCount = new LongAdder();
+    LongAdder droppedCount = new LongAdder();
+    LongAdder bufferedDeliveries = new LongAdder();
+    LongAdder totalLagNanos = new LongAdder();
+    AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * Creates a buffer drained by a single consumer that sleeps when idle and blocks publishers when full
+     *
+     * @param listeners The listeners to deliver transitions to
+     * @param capacity  The number of transitions the buffer holds, rounded up to a power of two
+     */
+    public RingBufferTransitionListener(@NonNull List<SnapshotListener<T>> listeners, int capacity) {
+        this(listeners, capacity, 1, WaitStrategy.SLEEPING, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param listeners      The listeners to deliver transitions to
+     * @param capacity       The number of transitions the buffer holds, rounded up to a power of two
+     * @param consumerCount  The number of threads delivering transitions
+     * @param waitStrategy   How idle consumers wait for transitions
+     * @param overflowPolicy What happens to transitions published while the buffer is full
+     */
+    @SuppressWarnings("unchecked")
+    public RingBufferTransitionListener(
+        @NonNull List<SnapshotListener<T>> listeners,
+        int capacity,
+        int consumerCount,
+        @NonNull WaitStrategy waitStrategy,
+        @NonNull OverflowPolicy overflowPolicy) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be between 2 and 2^30 but was " + capacity);
+        }
+        if (consumerCount < 1) {
+            throw new IllegalArgumentException("At least one consumer is required but " + consumerCount + " were requested");
+        }
+        this.listeners = new ArrayList<>(listeners);
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new TransitionSnapshot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new TransitionSnapshot<>();
+            sequences.set(i, i);
+        }
+
+        for (int i = 0; i < consumerCount; i++) {
+            Thread consumer = new Thread(this::consume, "transition-listener-" + i);
+            consumer.setDaemon(true);
+            consumers.add(consumer);
+            consumer.start();
+        }
+    }
+
+    @Override
+    public void onTransition(Transition<T> transition, ActionContext<T> context) {
+        // Counted before running is read, so close either sees this publisher or this publisher sees it closed
+        publishers.incrementAndGet();
+        try {
+            publish(transition, context);
+        } finally {
+            publishers.decrementAndGet();
+        }
+    }
+
+    private void publish(Transition<T> transition, ActionContext<T> context) {
+        if (!running.get()) {
+            deliverNow(transition, context);
+            return;
+        }
+        if (offer(transition, context)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP:
+                droppedCount.increment();
+                if (log.isTraceEnabled()) {
+                    log.trace("Dropped transition from {} as the buffer is full", transition.getFromState());
+                }
+                return;
+            case CALLER_RUNS:
+                deliverNow(transition, context);
+                return;
+            default:
+                for (int attempt = 0; !offer(transition, context); attempt++) {
+                    if (!running.get()) {
+                        deliverNow(transition, context);
+                        return;
+                    }
+                    idle(attempt);
+                }
+        }
+    }
+
+    /**
+     * Publishes the transition into the next free slot
+     *
+     * @return False if the buffer is full
+     */
+    private boolean offer(Transition<T> transition, ActionContext<T> context) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index].capture(transition, context);
+                    sequences.set(index, position + 1);
+                    publishedCount.increment();
+                    if (waitingConsumers.get() > 0) {
+                        signal();
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the transition in the next slot, if it has been published, and delivers it. The slot is released to
+     * publishers once delivered, as the listeners are handed the slot itself.
+     *
+     * @return False if there was no published transition to deliver
+     */
+    private boolean poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    TransitionSnapshot<T> slot = slots[index];
+                    try {
+                        deliver(slot, true);
+                    } finally {
+                        slot.clear();
+                        sequences.set(index, position + mask + 1);
+                    }
+                    return true;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Delivers the transition on the publishing thread
+     */
+    private void deliverNow(Transition<T> transition, ActionContext<T> context) {
+        TransitionSnapshot<T> snapshot = new TransitionSnapshot<>();
+        snapshot.capture(transition, context);
+        deliver(snapshot, false);
+    }
+
+    /**
+     * @param buffered Whether the snapshot was taken from the buffer, so its delivery lag is measured
+     */
+    private void deliver(TransitionSnapshot<T> snapshot, boolean buffered) {
+        if (buffered) {
+            long lag = System.nanoTime() - snapshot.publishedNanos;
+            bufferedDeliveries.increment();
+            totalLagNanos.add(lag);
+            long max = maxLagNanos.get();
+            while (lag > max && !maxLagNanos.compareAndSet(max, lag)) {
+                max = maxLagNanos.get();
+            }
+        }
+        for (int i = 0, size = listeners.size(); i < size; i++) {
+            SnapshotListener<T> listener = listeners.get(i);
+            try {
+                listener.onTransition(snapshot);
+            } catch (Throwable e) {
+                // Any failure, errors included, must not end the consumer thread, which would leave blocked
+                // publishers waiting for space and close waiting for the buffer to drain
+                log.warn("Transition listener {} failed", listener, e);
+            }
+        }
+        deliveredCount.increment();
+    }
+
+    private void consume() {
+        int attempt = 0;
+        while (running.get()) {
+            if (poll()) {
+                attempt = 0;
+            } else {
+                awaitPublished(attempt++);
+            }
+        }
+        while (poll()) {
+            // Drain what was published before closing
+        }
+    }
+
+    private void awaitPublished(int attempt) {
+        if (waitStrategy != WaitStrategy.BLOCKING) {
+            idle(attempt);
+            return;
+        }
+        lock.lock();
+        try {
+            waitingConsumers.incrementAndGet();
+            // Bounded so that a publish racing with the increment is picked up without a signal
+            if (isEmpty() && running.get()) {
+                published.awaitNanos(BLOCKING_WAIT_NANOS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private void idle(int attempt) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return;
+            case YIELDING:
+                if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+                return;
+            default:
+                if (attempt >= YIELD_TRIES) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+        }
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * @return The number of transitions published but not yet taken for delivery
+     */
+    public long getQueueDepth() {
+        return Math.max(0, tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return The number of transitions delivered, including those delivered on the publishing thread
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return The mean time between publishing a transition and delivering it, over the transitions delivered from
+     * the buffer
+     */
+    public double getMeanDeliveryLagNanos() {
+        long delivered = bufferedDeliveries.sum();
+        return delivered == 0 ? 0 : (double) totalLagNanos.sum() / delivered;
+    }
+
+    public long getMaxDeliveryLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    /**
+     * Stops the consumers once the transitions already published have been delivered, including those of publishers
+     * that were still publishing when the listener was closed. Transitions published after this are delivered on the
+     * publishing thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        signal();
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+        // Publishers that saw the listener running may publish after the consumers stopped
+        for (int attempt = 0; publishers.get() > 0 || !isEmpty(); attempt++) {
+            if (!poll()) {
+                idle(attempt);
+            }
+        }
+    }
+
+    /**
+     * Listener for the transitions delivered by a {@link RingBufferTransitionListener}
+     */
+    @FunctionalInterface
+    public interface SnapshotListener<T extends StatefulEntity> {
+        /**
+         * @param snapshot The transition as it was published. Snapshots taken from the buffer are reused once the
+         *                 call returns, so a listener that keeps one must copy the values it needs.
+         */
+        void onTransition(TransitionSnapshot<T> snapshot);
+
+        /**
+         * Wraps a {@link TransitionListener}, which is called with the transition and the context it was published
+         * with. The entity of the context is the live entity, so it may have moved on by the time the transition is
+         * delivered; the listener should take the states from the transition rather than from the entity.
+         */
+        static <T extends StatefulEntity> SnapshotListener<T> of(@NonNull TransitionListener<T> listener) {
+            return new TransitionListenerAdapter<>(listener);
+        }
+    }
+
+    /**
+     * {@link SnapshotListener} delivering to a {@link TransitionListener}
+     */
+    @ToString
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class TransitionListenerAdapter<T extends StatefulEntity> implements SnapshotListener<T> {
+        TransitionListener<T> listener;
+
+        TransitionListenerAdapter(TransitionListener<T> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onTransition(TransitionSnapshot<T> snapshot) {
+            listener.onTransition(snapshot.getTransition(), snapshot.getContext());
+        }
+    }
+
+    /**
+     * A transition as it was when it was published. The slots of the buffer are preallocated snapshots, whose fields
+     * are written before, and read after, the sequence of the slot is updated, which orders them between the
+     * publisher and the consumer.
+     */
+    @Getter
+    @ToString(exclude = {"transition", "context"})
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class TransitionSnapshot<T extends StatefulEntity> {
+        Transition<T> transition;
+        /**
+         * The context the transition was published with, whose entity may have moved on since
+         */
+        ActionContext<T> context;
+        String entityId;
+        State fromState;
+        StateMachineEvent event;
+        State toState;
+        @Getter(AccessLevel.NONE)
+        long publishedNanos;
+
+        TransitionSnapshot() {
+        }
+
+        void capture(Transition<T> transition, ActionContext<T> context) {
+            this.transition = transition;
+            this.context = context;
+            this.entityId = context.getEntity().getId();
+            this.fromState = transition.getFromState();
+            this.event = context.getStateMachineEvent();
+            this.toState = transition.getToState(context);
+            this.publishedNanos = System.nanoTime();
+        }
+
+        /**
+         * Cleared so that a reused slot does not keep the transition and its states reachable
+         */
+        void clear() {
+            transition = null;
+            context = null;
+            entityId = null;
+            fromState = null;
+            event = null;
+            toState = null;
+        }
+    }
+}
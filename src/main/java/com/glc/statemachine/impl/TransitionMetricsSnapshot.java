@@ -0,0 +1,103 @@
+package com.glc.statemachine.impl;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Snapshot of the measurements collected by an {@link InMemoryTransitionMetrics}, with states, events and components
+ * by name so it can be exported, e.g. serialised to JSON
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class TransitionMetricsSnapshot {
+
+    /**
+     * The count of transitions per from state, event and to state
+     */
+    List<Edge> transitions;
+
+    /**
+     * The count of events triggered without a transition per state and event, with no to state
+     */
+    List<Edge> noTransitions;
+
+    LatencyHistogram.Snapshot triggerEvent;
+    LatencyHistogram.Snapshot getTransition;
+    LatencyHistogram.Snapshot persistEntity;
+    long persistFailures;
+
+    List<Component> evaluators;
+    List<Component> actions;
+    List<Component> listeners;
+
+    /**
+     * @return The count of transitions from the state with the event to the state, or 0 if there were none
+     */
+    public long getTransitionCount(String fromState, String event, String toState) {
+        for (Edge edge : transitions) {
+            if (edge.fromState.equals(fromState) && edge.event.equals(event) && edge.toState.equals(toState)) {
+                return edge.count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return The count of events triggered in the state without a transition
+     */
+    public long getNoTransitionCount(String fromState, String event) {
+        for (Edge edge : noTransitions) {
+            if (edge.fromState.equals(fromState) && edge.event.equals(event)) {
+                return edge.count;
+            }
+        }
+        return 0;
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    public static class Edge {
+        String fromState;
+        String event;
+
+        /**
+         * The state transitioned to, or null for events without a transition
+         */
+        String toState;
+
+        long count;
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    public static class Component {
+
+        /**
+         * The description of an evaluator, the name of an action or the simple class name of a listener, empty if null
+         */
+        String name;
+
+        /**
+         * The class name of the evaluator, action or listener
+         */
+        String type;
+        LatencyHistogram.Snapshot latency;
+
+        /**
+         * The count of evaluations that passed, always 0 for actions and listeners
+         */
+        long passes;
+
+        long failures;
+    }
+}
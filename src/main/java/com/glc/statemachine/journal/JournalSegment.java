@@ -0,0 +1,295 @@
+package com.glc.statemachine.journal;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A single memory-mapped segment file of a {@link TransitionJournal}.
+ * <p>
+ * The segment starts with a header holding {@link #MAGIC}, the format version, the fingerprint of the definition the
+ * records were written for and the sequence number of the segment. Records follow back to back, each laid out as
+ * <pre>
+ *   int   length of the rest of the record
+ *   int   CRC-32 of the fields that follow
+ *   short length of the entity id
+ *   byte[] entity id, UTF-8
+ *   int   from state id
+ *   int   event id
+ *   int   to state id
+ *   long  timestamp, epoch millis
+ * </pre>
+ * The unused remainder of the file is zero, which reads as a zero length and ends the segment. The pages of a mapped
+ * file may reach the disk in any order, so after a crash the last records may be partly written. Reading stops at the
+ * first record whose length, checksum or ids are invalid, and appends after reopening continue from there.
+ * <p>
+ * Not thread safe, the journal serialises appends and must not read a segment while it is closed. {@link #force()} and
+ * {@link #close()} may be called concurrently, as a flush may still be under way for a segment being compacted.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class JournalSegment {
+
+    static final int MAGIC = 0x544A524E;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of a record excluding the bytes of the entity id
+     */
+    static final int RECORD_OVERHEAD = 4 + 4 + 2 + 4 + 4 + 4 + 8;
+
+    /**
+     * Unmaps a buffer on Java 9 and later, null on Java 8 where the cleaner of the buffer is used instead
+     */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    @Getter
+    final Path path;
+    @Getter
+    final long sequence;
+    final MappedByteBuffer buffer;
+
+    /**
+     * The number of states and events of the definition, which the ids of a valid record are below
+     */
+    final int stateCount;
+    final int eventCount;
+
+    /**
+     * Reused to checksum appended records
+     */
+    final ByteBuffer appendView;
+    final CRC32 appendChecksum = new CRC32();
+
+    /**
+     * Guarded by this segment
+     */
+    boolean closed;
+
+    /**
+     * The offset the next record is written at
+     */
+    @Getter
+    int writeOffset;
+
+    private JournalSegment(Path path, long sequence, MappedByteBuffer buffer, int writeOffset, int stateCount, int eventCount) {
+        this.path = path;
+        this.sequence = sequence;
+        this.buffer = buffer;
+        this.writeOffset = writeOffset;
+        this.stateCount = stateCount;
+        this.eventCount = eventCount;
+        this.appendView = buffer.duplicate();
+    }
+
+    /**
+     * Creates and maps a new, empty segment file
+     */
+    static JournalSegment create(Path path, long sequence, int size, long fingerprint, int stateCount, int eventCount) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, fingerprint);
+        buffer.putLong(16, sequence);
+        buffer.force();
+        return new JournalSegment(path, sequence, buffer, HEADER_SIZE, stateCount, eventCount);
+    }
+
+    /**
+     * Maps an existing segment file and finds the end of its valid records
+     *
+     * @throws IllegalStateException If the file is not a segment or was written for a different definition
+     */
+    static JournalSegment open(Path path, long fingerprint, int stateCount, int eventCount) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            unmap(buffer);
+            throw new IllegalStateException("File " + path + " is not a transition journal segment");
+        }
+        if (buffer.getLong(8) != fingerprint) {
+            unmap(buffer);
+            throw new IllegalStateException("Journal segment " + path + " was written for a different state machine definition");
+        }
+        JournalSegment segment = new JournalSegment(path, buffer.getLong(16), buffer, HEADER_SIZE, stateCount, eventCount);
+        segment.writeOffset = segment.forEach(segment.buffer.capacity(), (entityId, from, event, to, timestamp) -> {
+        });
+        return segment;
+    }
+
+    /**
+     * @return True if a record for an entity id of the length fits in the remainder of the segment
+     */
+    boolean hasRoom(int entityIdLength) {
+        return writeOffset + RECORD_OVERHEAD + entityIdLength <= buffer.capacity();
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    void append(byte[] entityId, int fromStateId, int eventId, int toStateId, long timestamp) {
+        int offset = writeOffset;
+        int end = offset + RECORD_OVERHEAD + entityId.length;
+        int position = offset + 8;
+        buffer.putShort(position, (short) entityId.length);
+        position += 2;
+        for (byte b : entityId) {
+            buffer.put(position++, b);
+        }
+        buffer.putInt(position, fromStateId);
+        buffer.putInt(position + 4, eventId);
+        buffer.putInt(position + 8, toStateId);
+        buffer.putLong(position + 12, timestamp);
+        buffer.putInt(offset + 4, checksum(appendChecksum, appendView, offset + 8, end));
+        buffer.putInt(offset, RECORD_OVERHEAD - 4 + entityId.length);
+        writeOffset = end;
+    }
+
+    /**
+     * @return The CRC-32 of the bytes of the view between the offsets
+     */
+    private static int checksum(CRC32 crc, ByteBuffer view, int from, int to) {
+        // Cast so that the Java 8 signatures of limit and position are used
+        ((Buffer) view).limit(to);
+        ((Buffer) view).position(from);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Forces the segment to disk, unless it has been closed
+     */
+    synchronized void force() {
+        if (!closed) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Unmaps the segment, after which it must not be read or appended to
+     */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            unmap(buffer);
+        }
+    }
+
+    /**
+     * Releases the mapping now rather than when the buffer is garbage collected, so that the file can be deleted and
+     * its address space reused. Left to the garbage collector if the JVM does not allow it.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return;
+            }
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Could not unmap journal segment, it is released when garbage collected", e);
+        }
+    }
+
+    /**
+     * Reads the valid records before the limit in order, stopping at the first invalid one
+     *
+     * @return The offset after the last valid record read
+     */
+    int forEach(int limit, RecordVisitor visitor) {
+        ByteBuffer view = buffer.duplicate();
+        ByteBuffer checksumView = buffer.duplicate();
+        CRC32 crc = new CRC32();
+        int offset = HEADER_SIZE;
+        while (offset + 4 <= limit) {
+            int length = view.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < RECORD_OVERHEAD - 4 || offset + 4 + length > limit) {
+                return invalid(offset, "length " + length);
+            }
+            if (view.getInt(offset + 4) != checksum(crc, checksumView, offset + 8, offset + 4 + length)) {
+                return invalid(offset, "checksum");
+            }
+            int position = offset + 8;
+            int idLength = Short.toUnsignedInt(view.getShort(position));
+            if (length != RECORD_OVERHEAD - 4 + idLength) {
+                return invalid(offset, "entity id length " + idLength);
+            }
+            position += 2;
+            byte[] id = new byte[idLength];
+            for (int i = 0; i < idLength; i++) {
+                id[i] = view.get(position++);
+            }
+            int fromStateId = view.getInt(position);
+            int eventId = view.getInt(position + 4);
+            int toStateId = view.getInt(position + 8);
+            if (!isId(fromStateId, stateCount) || !isId(eventId, eventCount) || !isId(toStateId, stateCount)) {
+                return invalid(offset, "state or event id");
+            }
+            visitor.visit(new String(id, StandardCharsets.UTF_8), fromStateId, eventId, toStateId, view.getLong(position + 12));
+            offset += 4 + length;
+        }
+        return offset;
+    }
+
+    private static boolean isId(int id, int count) {
+        return id >= 0 && id < count;
+    }
+
+    private int invalid(int offset, String reason) {
+        log.warn("Journal segment {} has an invalid record at offset {} ({}), reading stops there", path, offset, reason);
+        return offset;
+    }
+
+    /**
+     * Receives the raw fields of each record read from a segment
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(String entityId, int fromStateId, int eventId, int toStateId, long timestamp);
+    }
+}
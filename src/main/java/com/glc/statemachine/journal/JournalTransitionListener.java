@@ -0,0 +1,44 @@
+package com.glc.statemachine.journal;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionListener;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * {@link TransitionListener} that appends every transition to a {@link TransitionJournal}. Register it on the
+ * {@link com.glc.statemachine.definition.StateMachineDefinition} the journal was opened with.
+ * <p>
+ * When durable, each transition waits for the group commit that makes its record durable before returning, so the
+ * transition manager only persists the entity once the transition is on disk. Otherwise records become durable with
+ * the next periodic flush of the journal.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class JournalTransitionListener<T extends StatefulEntity> implements TransitionListener<T> {
+    TransitionJournal journal;
+    boolean durable;
+
+    public JournalTransitionListener(@NonNull TransitionJournal journal) {
+        this(journal, false);
+    }
+
+    /**
+     * @param journal The journal to append to
+     * @param durable Whether to wait for each record to be flushed to disk
+     */
+    public JournalTransitionListener(@NonNull TransitionJournal journal, boolean durable) {
+        this.journal = journal;
+        this.durable = durable;
+    }
+
+    @Override
+    public void onTransition(Transition<T> transition, ActionContext<T> context) {
+        long position = journal.append(context.getEntity().getId(), transition.getFromState(), context.getStateMachineEvent(), transition.getToState(context));
+        if (durable) {
+            journal.awaitDurable(position);
+        }
+    }
+}
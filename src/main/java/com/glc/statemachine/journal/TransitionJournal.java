@@ -0,0 +1,561 @@
+package com.glc.statemachine.journal;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.definition.StateEventRegistry;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of the transitions of a {@link StateMachineDefinition}, held in memory-mapped segment files in a
+ * directory. It gives a durable record of every transition without a database write per transition, and can rebuild
+ * the state of every entity by replaying the records.
+ * <p>
+ * Each record holds the entity id, the ids of the from state, event and to state in the
+ * {@link StateEventRegistry} of the definition, a timestamp and a checksum, see {@link JournalSegment}. Records torn by
+ * a crash are detected when the journal is reopened, and appends continue after the last valid record. Every file
+ * carries a fingerprint of the state and event names in id order, and opening a journal written for a definition with
+ * different ids fails rather than misreading it.
+ * <p>
+ * Appends are written to the mapped segment and become durable with a group commit: a flusher thread forces the
+ * segment to disk once per flush interval, or as soon as a caller waits in {@link #awaitDurable(long)}, and one force
+ * covers every record appended before it. When a segment is full the journal moves on to a new one.
+ * <p>
+ * {@link #compact()} writes a snapshot of the state of every entity and deletes the segments it covers, so replay only
+ * reads the latest snapshot and the records appended since. It can be run periodically by setting a compaction
+ * interval.
+ * <p>
+ * Instances are thread safe. A directory must only be opened by one journal at a time.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class TransitionJournal implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    static final int SNAPSHOT_MAGIC = 0x544A534E;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    Path directory;
+    StateEventRegistry registry;
+    long fingerprint;
+    int segmentSize;
+    long flushIntervalNanos;
+
+    ReentrantLock lock = new ReentrantLock();
+    Condition flushRequested = lock.newCondition();
+    Condition flushed = lock.newCondition();
+    ReentrantLock compactionLock = new ReentrantLock();
+
+    /**
+     * Every segment not yet compacted, by sequence number, including the active one. Guarded by {@link #lock}.
+     */
+    TreeMap<Long, JournalSegment> segments = new TreeMap<>();
+
+    Thread flusher;
+    ScheduledExecutorService compactor;
+
+    // Guarded by lock
+    @NonFinal
+    JournalSegment active;
+    @NonFinal
+    long appendedPosition;
+    @NonFinal
+    long durablePosition;
+    @NonFinal
+    int waiters;
+    @NonFinal
+    boolean open = true;
+
+    /**
+     * Opens the journal in the directory with the default segment size and flush interval, without periodic compaction
+     */
+    public TransitionJournal(@NonNull Path directory, @NonNull StateMachineDefinition<?> definition) throws IOException {
+        this(directory, definition, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, 0);
+    }
+
+    /**
+     * Opens the journal in the directory, creating it if needed, and continues appending after the last record
+     *
+     * @param directory                The directory holding the segment and snapshot files
+     * @param definition               The definition whose transitions are journalled
+     * @param segmentSize              The size of each segment file in bytes
+     * @param flushIntervalMillis      The longest time a record stays in memory before being forced to disk
+     * @param compactionIntervalMillis The interval between compactions, or 0 to only compact when {@link #compact()}
+     *                                 is called
+     * @throws IllegalStateException If the journal was written for a definition with different state or event ids
+     */
+    public TransitionJournal(
+        @NonNull Path directory,
+        @NonNull StateMachineDefinition<?> definition,
+        int segmentSize,
+        long flushIntervalMillis,
+        long compactionIntervalMillis) throws IOException {
+        if (segmentSize < JournalSegment.HEADER_SIZE + JournalSegment.RECORD_OVERHEAD) {
+            throw new IllegalArgumentException("The segment size of " + segmentSize + " bytes is too small to hold a record");
+        }
+        if (flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("The flush interval must be positive but was " + flushIntervalMillis);
+        }
+        this.directory = directory;
+        this.registry = definition.getCompiled().getRegistry();
+        this.fingerprint = fingerprint(registry);
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        Files.createDirectories(directory);
+        long coveredBySnapshot = latestSnapshot().map(TransitionJournal::sequenceOf).orElse(-1L);
+        try {
+            for (Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                long sequence = sequenceOf(path);
+                if (sequence <= coveredBySnapshot) {
+                    // Left behind by a compaction that stopped before deleting it
+                    Files.deleteIfExists(path);
+                } else {
+                    JournalSegment segment = JournalSegment.open(path, fingerprint, registry.getStateCount(), registry.getEventCount());
+                    segments.put(segment.getSequence(), segment);
+                }
+            }
+            this.active = segments.isEmpty() ? createSegment(coveredBySnapshot + 1) : segments.lastEntry().getValue();
+        } catch (IOException | RuntimeException e) {
+            segments.values().forEach(JournalSegment::close);
+            throw e;
+        }
+        this.appendedPosition = position(active);
+        this.durablePosition = appendedPosition;
+
+        this.flusher = new Thread(this::flushLoop, "transition-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+
+        if (compactionIntervalMillis > 0) {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "transition-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.compactor.scheduleWithFixedDelay(() -> {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to compact transition journal in {}", directory, e);
+                }
+            }, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.compactor = null;
+        }
+    }
+
+    /**
+     * FNV-1a hash of the state and event names in id order, so that a journal is only read with ids that mean the same
+     */
+    static long fingerprint(StateEventRegistry registry) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < registry.getStateCount(); i++) {
+            hash = hash(hash, "S" + registry.getState(i).getStateName());
+        }
+        for (int i = 0; i < registry.getEventCount(); i++) {
+            hash = hash(hash, "E" + registry.getEvent(i).getEventName());
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // Separates consecutive names so that "ab","c" and "a","bc" differ
+        hash ^= 0xff;
+        return hash * 0x100000001b3L;
+    }
+
+    /**
+     * Appends a transition of an entity
+     *
+     * @return The position of the record, which can be passed to {@link #awaitDurable(long)}
+     * @throws IllegalArgumentException If a state or the event is not part of the definition of the journal
+     */
+    public long append(@NonNull String entityId, @NonNull State fromState, @NonNull StateMachineEvent event, @NonNull State toState) {
+        int fromStateId = idOf(registry.getStateId(fromState), fromState.getStateName());
+        int eventId = idOf(registry.getEventId(event), event.getEventName());
+        int toStateId = idOf(registry.getStateId(toState), toState.getStateName());
+        byte[] id = entityId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > 0xffff || JournalSegment.HEADER_SIZE + JournalSegment.RECORD_OVERHEAD + id.length > segmentSize) {
+            throw new IllegalArgumentException("Entity id of " + id.length + " bytes is too long to journal");
+        }
+        long timestamp = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            if (!open) {
+                throw new IllegalStateException("The transition journal is closed");
+            }
+            if (!active.hasRoom(id.length)) {
+                rotate();
+            }
+            active.append(id, fromStateId, eventId, toStateId, timestamp);
+            appendedPosition = position(active);
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int idOf(int id, String name) {
+        if (id == StateEventRegistry.UNKNOWN) {
+            throw new IllegalArgumentException("'" + name + "' is not part of the state machine definition of the journal");
+        }
+        return id;
+    }
+
+    /**
+     * Encodes the position after the last record of a segment, ordered across segments
+     */
+    private static long position(JournalSegment segment) {
+        return segment.getSequence() << 32 | segment.getWriteOffset();
+    }
+
+    /**
+     * Forces the active segment and starts a new one. Called with the lock held.
+     */
+    private void rotate() {
+        active.force();
+        durablePosition = Math.max(durablePosition, position(active));
+        flushed.signalAll();
+        try {
+            active = createSegment(active.getSequence() + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create transition journal segment in " + directory, e);
+        }
+        appendedPosition = position(active);
+    }
+
+    private JournalSegment createSegment(long sequence) throws IOException {
+        JournalSegment segment = JournalSegment.create(directory.resolve(SEGMENT_PREFIX + format(sequence) + SEGMENT_SUFFIX), sequence, segmentSize, fingerprint,
+            registry.getStateCount(), registry.getEventCount());
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    /**
+     * Waits until the record at the position has been forced to disk. Callers waiting at the same time share one
+     * force of the segment.
+     */
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durablePosition < position && open) {
+                waiters++;
+                flushRequested.signal();
+                try {
+                    flushed.await();
+                } finally {
+                    waiters--;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the transition journal to be flushed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            JournalSegment segment;
+            long target;
+            lock.lock();
+            try {
+                if (waiters == 0 && open) {
+                    flushRequested.awaitNanos(flushIntervalNanos);
+                }
+                if (!open) {
+                    return;
+                }
+                segment = active;
+                target = appendedPosition;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (target > durablePosition()) {
+                // Forced outside the lock so that appends continue while the segment is written to disk
+                segment.force();
+                lock.lock();
+                try {
+                    durablePosition = Math.max(durablePosition, target);
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private long durablePosition() {
+        lock.lock();
+        try {
+            return durablePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the records appended since the last compaction in the order they were appended. Compaction waits until
+     * the records have been read, as it deletes the segments it covers.
+     *
+     * @param handler Receives each record
+     * @throws IllegalStateException If the journal is closed
+     */
+    public void replay(@NonNull Consumer<TransitionRecord> handler) {
+        compactionLock.lock();
+        try {
+            List<JournalSegment> toRead;
+            int activeLimit;
+            lock.lock();
+            try {
+                if (!open) {
+                    throw new IllegalStateException("The transition journal is closed");
+                }
+                toRead = new ArrayList<>(segments.values());
+                activeLimit = active.getWriteOffset();
+            } finally {
+                lock.unlock();
+            }
+            for (JournalSegment segment : toRead) {
+                int limit = segment == toRead.get(toRead.size() - 1) ? activeLimit : segment.getCapacity();
+                segment.forEach(limit, (entityId, from, event, to, timestamp) ->
+                    handler.accept(new TransitionRecord(entityId, registry.getState(from), registry.getEvent(event), registry.getState(to), timestamp)));
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the current state of every journalled entity from the latest snapshot and the records appended since
+     *
+     * @return The state of each entity by id
+     * @throws IllegalStateException If the journal is closed
+     */
+    public Map<String, State> rebuildStates() throws IOException {
+        // Held across both reads, so that a compaction cannot fold segments into a snapshot newer than the one read
+        compactionLock.lock();
+        try {
+            Map<String, State> states = readSnapshot();
+            replay(record -> states.put(record.getEntityId(), record.getToState()));
+            return states;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the state of every entity and deletes the segments it covers. Appends continue in a new
+     * segment while the snapshot is written.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            List<JournalSegment> covered;
+            lock.lock();
+            try {
+                if (!open) {
+                    return;
+                }
+                if (active.getWriteOffset() > JournalSegment.HEADER_SIZE) {
+                    rotate();
+                }
+                covered = new ArrayList<>(segments.headMap(active.getSequence()).values());
+            } finally {
+                lock.unlock();
+            }
+            if (covered.isEmpty()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            Map<String, State> states = readSnapshot();
+            for (JournalSegment segment : covered) {
+                segment.forEach(segment.getCapacity(), (entityId, from, event, to, timestamp) -> states.put(entityId, registry.getState(to)));
+            }
+            long coveredSequence = covered.get(covered.size() - 1).getSequence();
+            Path previous = latestSnapshot().orElse(null);
+            writeSnapshot(coveredSequence, states);
+
+            lock.lock();
+            try {
+                for (JournalSegment segment : covered) {
+                    segments.remove(segment.getSequence());
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (JournalSegment segment : covered) {
+                segment.close();
+                Files.deleteIfExists(segment.getPath());
+            }
+            if (previous != null) {
+                Files.deleteIfExists(previous);
+            }
+            log.debug("Compacted {} journal segments into a snapshot of {} entities in {}ms", covered.size(), states.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private void writeSnapshot(long coveredSequence, Map<String, State> states) throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_PREFIX + format(coveredSequence) + SNAPSHOT_SUFFIX);
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(JournalSegment.VERSION);
+            out.writeLong(fingerprint);
+            out.writeLong(coveredSequence);
+            out.writeInt(states.size());
+            for (Map.Entry<String, State> entry : states.entrySet()) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeInt(registry.getStateId(entry.getValue()));
+            }
+            out.flush();
+            channel.force(true);
+        }
+        // Only replaces the previous snapshot once the new one is complete on disk
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Map<String, State> readSnapshot() throws IOException {
+        Map<String, State> states = new HashMap<>();
+        Path snapshot = latestSnapshot().orElse(null);
+        if (snapshot == null) {
+            return states;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != JournalSegment.VERSION) {
+                throw new IllegalStateException("File " + snapshot + " is not a transition journal snapshot");
+            }
+            if (in.readLong() != fingerprint) {
+                throw new IllegalStateException("Journal snapshot " + snapshot + " was written for a different state machine definition");
+            }
+            in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                byte[] id = new byte[in.readUnsignedShort()];
+                in.readFully(id);
+                int stateId = in.readInt();
+                if (stateId < 0 || stateId >= registry.getStateCount()) {
+                    throw new IllegalStateException("Journal snapshot " + snapshot + " holds unknown state id " + stateId);
+                }
+                states.put(new String(id, StandardCharsets.UTF_8), registry.getState(stateId));
+            }
+        }
+        return states;
+    }
+
+    private Optional<Path> latestSnapshot() throws IOException {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    /**
+     * @return The files with the prefix and suffix, ordered by sequence number
+     */
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(null);
+        return paths;
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+
+    /**
+     * Zero padded so that file names sort in sequence order
+     */
+    private static String format(long sequence) {
+        return String.format("%020d", sequence);
+    }
+
+    /**
+     * Forces every record appended so far to disk, stops the flusher and compactor threads and unmaps the segments
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            if (!open) {
+                return;
+            }
+            active.force();
+            durablePosition = appendedPosition;
+            open = false;
+            flushRequested.signalAll();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+        if (compactor != null) {
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        // Waits for a compaction or replay in progress on another thread to finish reading the segments
+        compactionLock.lock();
+        try {
+            lock.lock();
+            try {
+                segments.values().forEach(JournalSegment::close);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+}
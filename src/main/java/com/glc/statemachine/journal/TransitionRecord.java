@@ -0,0 +1,29 @@
+package com.glc.statemachine.journal;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A transition read back from a {@link TransitionJournal}. States and events are the canonical instances of the
+ * definition the journal was opened with.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class TransitionRecord {
+    String entityId;
+    State fromState;
+    StateMachineEvent event;
+    State toState;
+
+    /**
+     * When the transition was journalled, in epoch milliseconds
+     */
+    long timestamp;
+}
@@ -0,0 +1,311 @@
+package com.glc.statemachine.loader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The parsed form of a manifest and its definition CSV, holding names and manifest keys rather than instances, from
+ * which the {@link StateMachineLoader} builds a definition. It can be written to a compact binary file and read back
+ * with a single memory-mapped read, so a definition can be loaded without parsing the JSON and CSV again.
+ * <p>
+ * The file starts with a magic number, the format version and a CRC-32 of the rest of the file, which is checked
+ * before anything else is read. The content hash of the manifest and CSV the image was compiled from follows. Every
+ * name, key and class name is held once in a string table, and the states, events, evaluators, actions, transitions
+ * and default path refer to it by index:
+ * <pre>
+ * source hash  length, bytes
+ * strings      count, (length, UTF-8 bytes)*
+ * definition   string
+ * states       count, string*
+ * events       count, (name string, role count, role string*)*
+ * evaluators   count, (key string, class name string)*
+ * actions      count, (key string, class name string)*
+ * transitions  count, (from state, event, to state, evaluator or -1, action or -1)*
+ * default path count or -1, state*
+ * </pre>
+ */
+@Slf4j
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+final class DefinitionImage {
+
+    static final int MAGIC = 0x534D4449;
+    static final int VERSION = 2;
+    static final int NONE = -1;
+
+    /**
+     * The offset of the checksum, and of the body it covers after it
+     */
+    static final int CHECKSUM_OFFSET = 8;
+    static final int BODY_OFFSET = CHECKSUM_OFFSET + Integer.BYTES;
+
+    /**
+     * The number of ints per transition in {@link #transitions}
+     */
+    static final int TRANSITION_WIDTH = 5;
+    static final int FROM = 0;
+    static final int EVENT = 1;
+    static final int TO = 2;
+    static final int EVALUATOR = 3;
+    static final int ACTION = 4;
+
+    /**
+     * The content hash of the manifest and CSV, empty if the image was not compiled from known content
+     */
+    byte[] sourceHash;
+
+    /**
+     * The name of the definition CSV in the manifest
+     */
+    String definition;
+
+    String[] states;
+    String[] eventNames;
+
+    /**
+     * The authorisation roles of each event, empty for events without roles
+     */
+    String[][] eventRoles;
+
+    String[] evaluatorKeys;
+    String[] evaluatorClasses;
+    String[] actionKeys;
+    String[] actionClasses;
+
+    /**
+     * {@link #TRANSITION_WIDTH} ints per transition, in the order of the cells of the CSV
+     */
+    int[] transitions;
+
+    /**
+     * Indexes of the states of the default path, or null if the manifest has none
+     */
+    int[] defaultPath;
+
+    int getTransitionCount() {
+        return transitions.length / TRANSITION_WIDTH;
+    }
+
+    int getTransition(int transition, int field) {
+        return transitions[transition * TRANSITION_WIDTH + field];
+    }
+
+    List<String> getDefaultPathStates() {
+        if (defaultPath == null) {
+            return null;
+        }
+        List<String> path = new ArrayList<>(defaultPath.length);
+        for (int state : defaultPath) {
+            path.add(states[state]);
+        }
+        return path;
+    }
+
+    /**
+     * Writes the image to a temporary file in the same directory, forces it to disk and then moves it over the file,
+     * so the file is only replaced once the new content is complete
+     */
+    void write(Path file) throws IOException {
+        StringTable strings = new StringTable();
+        int definitionIndex = strings.indexOf(definition);
+        int[] stateIndexes = strings.indexesOf(states);
+        int[] eventIndexes = strings.indexesOf(eventNames);
+        int[][] roleIndexes = new int[eventRoles.length][];
+        for (int i = 0; i < eventRoles.length; i++) {
+            roleIndexes[i] = strings.indexesOf(eventRoles[i]);
+        }
+        int[] evaluatorKeyIndexes = strings.indexesOf(evaluatorKeys);
+        int[] evaluatorClassIndexes = strings.indexesOf(evaluatorClasses);
+        int[] actionKeyIndexes = strings.indexesOf(actionKeys);
+        int[] actionClassIndexes = strings.indexesOf(actionClasses);
+
+        // Unique, so that concurrent writers of the same image do not write to the same temporary file
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.position(BODY_OFFSET);
+                CRC32 checksum = new CRC32();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(channel), checksum)));
+                out.writeInt(sourceHash.length);
+                out.write(sourceHash);
+
+                out.writeInt(strings.values.size());
+                for (String value : strings.values) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+
+                out.writeInt(definitionIndex);
+                writeInts(out, stateIndexes);
+                out.writeInt(eventIndexes.length);
+                for (int i = 0; i < eventIndexes.length; i++) {
+                    out.writeInt(eventIndexes[i]);
+                    writeInts(out, roleIndexes[i]);
+                }
+                writePairs(out, evaluatorKeyIndexes, evaluatorClassIndexes);
+                writePairs(out, actionKeyIndexes, actionClassIndexes);
+                writeInts(out, transitions);
+                if (defaultPath == null) {
+                    out.writeInt(NONE);
+                } else {
+                    writeInts(out, defaultPath);
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(BODY_OFFSET);
+                header.putInt(MAGIC).putInt(VERSION).putInt((int) checksum.getValue());
+                // Cast so that the Java 8 signature of flip is used
+                ((Buffer) header).flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writePairs(DataOutputStream out, int[] keys, int[] values) throws IOException {
+        out.writeInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            out.writeInt(keys[i]);
+            out.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * Reads an image written by {@link #write(Path)}
+     *
+     * @return The image, or empty if the file does not exist or is not a readable image of this version
+     */
+    static Optional<DefinitionImage> read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.debug("Ignoring definition image {} of another format", file);
+                return Optional.empty();
+            }
+            int expected = buffer.getInt();
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.duplicate());
+            if ((int) checksum.getValue() != expected) {
+                log.warn("Ignoring definition image {} whose checksum does not match its content", file);
+                return Optional.empty();
+            }
+            byte[] sourceHash = new byte[buffer.getInt()];
+            buffer.get(sourceHash);
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            String definition = strings[buffer.getInt()];
+            String[] states = readStrings(buffer, strings);
+            String[] eventNames = new String[buffer.getInt()];
+            String[][] eventRoles = new String[eventNames.length][];
+            for (int i = 0; i < eventNames.length; i++) {
+                eventNames[i] = strings[buffer.getInt()];
+                eventRoles[i] = readStrings(buffer, strings);
+            }
+            String[] evaluatorKeys = new String[buffer.getInt()];
+            String[] evaluatorClasses = new String[evaluatorKeys.length];
+            readPairs(buffer, strings, evaluatorKeys, evaluatorClasses);
+            String[] actionKeys = new String[buffer.getInt()];
+            String[] actionClasses = new String[actionKeys.length];
+            readPairs(buffer, strings, actionKeys, actionClasses);
+            int[] transitions = readInts(buffer, buffer.getInt());
+            int defaultPathLength = buffer.getInt();
+            int[] defaultPath = defaultPathLength == NONE ? null : readInts(buffer, defaultPathLength);
+
+            return Optional.of(new DefinitionImage(sourceHash, definition, states, eventNames, eventRoles, evaluatorKeys, evaluatorClasses,
+                actionKeys, actionClasses, transitions, defaultPath));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            log.warn("Ignoring truncated or corrupt definition image {}", file);
+            return Optional.empty();
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, String[] strings) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = strings[buffer.getInt()];
+        }
+        return values;
+    }
+
+    private static void readPairs(ByteBuffer buffer, String[] strings, String[] keys, String[] values) {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = strings[buffer.getInt()];
+            values[i] = strings[buffer.getInt()];
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Assigns each distinct string an index in the order they are first seen
+     */
+    private static class StringTable {
+        final List<String> values = new ArrayList<>();
+        final Map<String, Integer> indexes = new HashMap<>();
+
+        int indexOf(String value) {
+            return indexes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        int[] indexesOf(String[] values) {
+            return Arrays.stream(values).mapToInt(this::indexOf).toArray();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.glc.statemachine.loader;
+
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineEventTransitionEvaluations;
+import com.glc.statemachine.impl.AuthorisedStateMachineEvent;
+import com.glc.statemachine.impl.DefaultStateMachineEvent;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+/**
+ * Hash-conses the parts of definitions loaded by {@link StateMachineLoader}s that share the pool, so that definitions
+ * loaded from identical or nearly identical CSVs share memory. Rows of the matrix and whole definitions are keyed by
+ * a SHA-256 digest of their content in the {@link DefinitionImage}, by state and event names and by the class names
+ * of evaluators and actions, and evaluators and actions are shared by class, events by name and roles.
+ * <p>
+ * Every load through the pool must use the same instantiation parameter, action overrides and listeners, as they are
+ * not part of the keys. Rows that refer to a {@link PerTransition} class are never shared.
+ * <p>
+ * Rows and definitions are counted by the definitions that hold them, and dropped once the last definition holding
+ * them is {@link #release(StateMachineDefinition) released}. Evaluators, actions and events are kept for the life of
+ * the pool, as there are at most as many as there are classes and columns. The pool keeps an estimate of the heap
+ * held by its rows and definitions, see {@link #getEstimatedBytes()}.
+ * <p>
+ * Instances are thread safe.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+final class DefinitionPool {
+
+    /**
+     * Approximate sizes of the parts of a definition on a 64-bit JVM with compressed references, measured with the
+     * TenantFootprint benchmark, used by the estimate. A definition holds its compiled form and views per state and
+     * per cell of the dense matrix, whether or not the cell has transitions.
+     */
+    static final long ROW_BYTES = 160;
+    static final long CELL_BYTES = 96;
+    static final long TRANSITION_BYTES = 200;
+    static final long DEFINITION_BYTES = 1024;
+    static final long DEFINITION_STATE_BYTES = 1400;
+    static final long DEFINITION_CELL_BYTES = 80;
+
+    Map<Class<?>, Object> instances = new HashMap<>();
+    Map<String, StateMachineEvent> events = new HashMap<>();
+    Map<Key, PooledRow> rows = new HashMap<>();
+    Map<Key, PooledDefinition> definitions = new HashMap<>();
+    Map<StateMachineDefinition<?>, PooledDefinition> definitionsByInstance = new IdentityHashMap<>();
+
+    @NonFinal
+    long estimatedBytes;
+
+    /**
+     * @return The shared instance of the evaluator or action class, created with the factory on first use
+     */
+    synchronized Object instance(Class<?> type, Function<Class<?>, Object> factory) {
+        return instances.computeIfAbsent(type, factory);
+    }
+
+    /**
+     * @return The shared event with the name and authorisation roles
+     */
+    synchronized StateMachineEvent event(String name, String[] roles) {
+        return events.computeIfAbsent(roles.length == 0 ? name : name + Arrays.toString(roles), key -> roles.length == 0
+            ? DefaultStateMachineEvent.of(name)
+            : new AuthorisedStateMachineEvent(name, Arrays.asList(roles)));
+    }
+
+    /**
+     * @return The shared row with the key, or null if none is held
+     */
+    synchronized StateMachineEventTransitionEvaluations<? extends StatefulEntity> row(Key key) {
+        PooledRow row = rows.get(key);
+        return row == null ? null : row.row;
+    }
+
+    /**
+     * Returns the shared definition with the key, counting the caller as a holder, or null if none is held
+     */
+    synchronized StateMachineDefinition<? extends StatefulEntity> acquire(Key key) {
+        PooledDefinition definition = definitions.get(key);
+        if (definition == null) {
+            return null;
+        }
+        definition.holders++;
+        return definition.definition;
+    }
+
+    /**
+     * Adds the definition built for the key along with its shareable rows, counting the caller as a holder. If
+     * another load added a definition with the key first, that definition is returned instead.
+     *
+     * @param key             The key of the definition, or null if it must not be shared as it has rows that
+     *                        are not shared. It is still counted in the estimate until it is released.
+     * @param definitionBytes The estimated size of the definition other than its shared rows
+     * @param rows            The rows of the definition that can be shared
+     * @return The shared definition with the key
+     */
+    synchronized StateMachineDefinition<? extends StatefulEntity> add(
+        Key key,
+        StateMachineDefinition<? extends StatefulEntity> definition,
+        long definitionBytes,
+        List<PooledRow> rows) {
+        StateMachineDefinition<? extends StatefulEntity> existing = key == null ? null : acquire(key);
+        if (existing != null) {
+            return existing;
+        }
+        Key[] rowKeys = new Key[rows.size()];
+        for (int i = 0; i < rowKeys.length; i++) {
+            PooledRow row = rows.get(i);
+            PooledRow pooled = this.rows.get(row.key);
+            if (pooled == null) {
+                pooled = row;
+                this.rows.put(row.key, row);
+                estimatedBytes += row.bytes;
+            }
+            pooled.holders++;
+            rowKeys[i] = pooled.key;
+        }
+        PooledDefinition pooled = new PooledDefinition(definition, key, rowKeys, definitionBytes);
+        pooled.holders++;
+        if (key != null) {
+            definitions.put(key, pooled);
+        }
+        definitionsByInstance.put(definition, pooled);
+        estimatedBytes += definitionBytes;
+        return definition;
+    }
+
+    /**
+     * Stops counting a holder of the definition, dropping the definition and any of its rows no other definition
+     * holds once it has no holders left
+     *
+     * @return True if the definition was dropped from the pool
+     */
+    synchronized boolean release(StateMachineDefinition<? extends StatefulEntity> definition) {
+        PooledDefinition pooled = definitionsByInstance.get(definition);
+        if (pooled == null || --pooled.holders > 0) {
+            return false;
+        }
+        if (pooled.key != null) {
+            definitions.remove(pooled.key);
+        }
+        definitionsByInstance.remove(definition);
+        estimatedBytes -= pooled.bytes;
+        for (Key rowKey : pooled.rowKeys) {
+            PooledRow row = rows.get(rowKey);
+            if (--row.holders == 0) {
+                rows.remove(rowKey);
+                estimatedBytes -= row.bytes;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The approximate heap held by the distinct rows and definitions in the pool, in bytes
+     */
+    synchronized long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    synchronized int getRowCount() {
+        return rows.size();
+    }
+
+    synchronized int getDefinitionCount() {
+        return definitions.size();
+    }
+
+    static long estimateRowBytes(int cells, int transitions) {
+        return ROW_BYTES + cells * CELL_BYTES + transitions * TRANSITION_BYTES;
+    }
+
+    /**
+     * Estimates the heap of a definition other than its rows, i.e. its compiled form, views and matrix
+     */
+    static long estimateDefinitionBytes(int states, int events) {
+        return DEFINITION_BYTES + states * DEFINITION_STATE_BYTES + (long) states * events * DEFINITION_CELL_BYTES;
+    }
+
+    /**
+     * @return A digest of the strings, in which the strings are delimited so that different sequences never collide
+     * by concatenation
+     */
+    static Key key(Iterable<String> content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (String value : content) {
+            if (value == null) {
+                digest.update((byte) 0);
+            } else {
+                digest.update((byte) 1);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+                digest.update(bytes);
+            }
+        }
+        return new Key(digest.digest());
+    }
+
+    /**
+     * The digest of the content of a row or definition
+     */
+    static final class Key {
+        private final byte[] digest;
+        private final int hash;
+
+        Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Key && Arrays.equals(digest, ((Key) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A row of the matrix with its key and estimated size
+     */
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static final class PooledRow {
+        final Key key;
+        final StateMachineEventTransitionEvaluations<? extends StatefulEntity> row;
+        final long bytes;
+        int holders;
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class PooledDefinition {
+        final StateMachineDefinition<? extends StatefulEntity> definition;
+        final Key key;
+        final Key[] rowKeys;
+        final long bytes;
+        int holders;
+    }
+}
@@ -0,0 +1,40 @@
+package com.glc.statemachine.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Resolves the state machine definition CSV named by the "definition" entry of a {@link StateMachineManifest}
+ */
+@FunctionalInterface
+public interface DefinitionResolver {
+
+    /**
+     * Resolves definitions as resources on the classpath of the {@link StateMachineLoader}
+     */
+    DefinitionResolver CLASSPATH = definition -> StateMachineLoader.class.getClassLoader().getResourceAsStream(definition);
+
+    /**
+     * Opens the definition with the specified name
+     *
+     * @param definition The definition name from the manifest
+     * @return A stream of the definition CSV, or null if it can not be found
+     * @throws IOException
+     */
+    InputStream open(String definition) throws IOException;
+
+    /**
+     * Resolves definitions as files relative to the specified directory
+     *
+     * @param directory The directory the definition names are relative to
+     * @return The resolver
+     */
+    static DefinitionResolver directory(Path directory) {
+        return definition -> {
+            Path file = directory.resolve(definition);
+            return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+        };
+    }
+}
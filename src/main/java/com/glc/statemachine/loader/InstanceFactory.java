@@ -0,0 +1,124 @@
+package com.glc.statemachine.loader;
+
+import com.glc.statemachine.InvalidStateMachineException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Creates instances of the evaluator and action classes named in manifests. The constructors of each class are
+ * resolved once into {@link MethodHandle}s and cached in a {@link ClassValue}, so loading many definitions that refer
+ * to the same classes does not repeat the reflective lookups.
+ * <p>
+ * A class is created with its no-arg constructor if it has one, otherwise with a single parameter constructor that
+ * accepts the instantiation parameter of the loader, preferring one declared with the exact class of the parameter.
+ * The choice is made from the declared constructors up front rather than by catching exceptions.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+final class InstanceFactory {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType NO_ARG = MethodType.methodType(Object.class);
+    private static final MethodType SINGLE_ARG = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<InstanceFactory> FACTORIES = new ClassValue<InstanceFactory>() {
+        @Override
+        protected InstanceFactory computeValue(Class<?> type) {
+            return new InstanceFactory(type);
+        }
+    };
+
+    Class<?> type;
+
+    /**
+     * Null if the class has no accessible no-arg constructor
+     */
+    MethodHandle noArgConstructor;
+
+    /**
+     * The accessible single parameter constructors and the handle chosen for each parameter class seen so far
+     */
+    List<Constructor<?>> singleArgConstructors = new ArrayList<>();
+    ConcurrentMap<Class<?>, Optional<MethodHandle>> singleArgByParamType = new ConcurrentHashMap<>();
+
+    private InstanceFactory(Class<?> type) {
+        this.type = type;
+        MethodHandle noArg = null;
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (constructor.getParameterCount() == 0) {
+                noArg = handle(constructor, NO_ARG);
+            } else if (constructor.getParameterCount() == 1 && handle(constructor, SINGLE_ARG) != null) {
+                singleArgConstructors.add(constructor);
+            }
+        }
+        this.noArgConstructor = noArg;
+    }
+
+    /**
+     * @return The factory of the class
+     */
+    static InstanceFactory of(Class<?> type) {
+        return FACTORIES.get(type);
+    }
+
+    /**
+     * @return The constructor as a handle of the type, or null if it is not accessible from the loader
+     */
+    private static MethodHandle handle(Constructor<?> constructor, MethodType methodType) {
+        try {
+            return LOOKUP.unreflectConstructor(constructor).asType(methodType);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates an instance with the no-arg constructor, or the single parameter constructor for the parameter
+     *
+     * @param param The instantiation parameter of the loader, may be null
+     * @throws InvalidStateMachineException If the class has neither constructor
+     */
+    Object newInstance(Object param) {
+        MethodHandle constructor = noArgConstructor;
+        if (constructor == null && param != null) {
+            constructor = singleArgByParamType.computeIfAbsent(param.getClass(), this::findSingleArgConstructor).orElse(null);
+        }
+        if (constructor == null) {
+            throw new InvalidStateMachineException("Failed to construct new instance of " + type + " with either no constructor params, or constructor with a param of "
+                + param + (param == null ? "" : " (" + param.getClass() + ")"));
+        }
+
+        try {
+            if (constructor == noArgConstructor) {
+                return (Object) constructor.invokeExact();
+            }
+            return (Object) constructor.invokeExact(param);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to construct new instance of " + type + ": " + e, e);
+        }
+    }
+
+    private Optional<MethodHandle> findSingleArgConstructor(Class<?> paramType) {
+        Constructor<?> assignable = null;
+        for (Constructor<?> constructor : singleArgConstructors) {
+            Class<?> parameterType = constructor.getParameterTypes()[0];
+            if (parameterType == paramType) {
+                return Optional.ofNullable(handle(constructor, SINGLE_ARG));
+            }
+            if (assignable == null && parameterType.isAssignableFrom(paramType)) {
+                assignable = constructor;
+            }
+        }
+        return assignable == null ? Optional.empty() : Optional.ofNullable(handle(assignable, SINGLE_ARG));
+    }
+}
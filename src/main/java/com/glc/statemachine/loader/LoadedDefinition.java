@@ -0,0 +1,34 @@
+package com.glc.statemachine.loader;
+
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A definition built by the {@link StateMachineLoader} together with what it was built from, so that a later load of
+ * the same manifest can reuse the parts that did not change
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+final class LoadedDefinition {
+    DefinitionImage image;
+    StateMachineDefinition<? extends StatefulEntity> definition;
+
+    /**
+     * The shared evaluators and actions of the definition by manifest key
+     */
+    Map<String, TransitionEvaluator<? extends StatefulEntity>> evaluators;
+    Map<String, TransitionAction<? extends StatefulEntity>> actions;
+
+    List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction;
+    List<TransitionListener<? extends StatefulEntity>> listeners;
+}
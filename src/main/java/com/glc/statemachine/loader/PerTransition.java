@@ -0,0 +1,18 @@
+package com.glc.statemachine.loader;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link com.glc.statemachine.TransitionEvaluator} or {@link com.glc.statemachine.TransitionAction} class that
+ * holds state of its own, so the {@link StateMachineLoader} creates a new instance for every transition that refers
+ * to it rather than sharing one instance per manifest key.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PerTransition {
+}
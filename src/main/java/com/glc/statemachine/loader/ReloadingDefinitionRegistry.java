@@ -0,0 +1,363 @@
+package com.glc.statemachine.loader;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.opencsv.exceptions.CsvValidationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds definitions loaded from manifest files by name, and reloads a definition when its manifest or definition CSV
+ * changes on disk.
+ * <p>
+ * Changes are picked up with a {@link WatchService} and the definition is loaded again on a background thread, once
+ * the files have been quiet for the reload delay. The new definition is then published as the next
+ * {@link VersionedDefinition} with an atomic swap, so {@link #getDefinition(String)} is a single volatile read and
+ * never waits for a reload. An {@link com.glc.statemachine.ActionContext} holds the definition it was created with,
+ * so transitions in flight finish against the version they started with while new ones use the new version. If a
+ * reload fails, e.g. as the files are part way through being written, the previous version stays published.
+ * <p>
+ * A reload only builds the cells of the matrix that changed since the previous version, and the new definition shares
+ * every other cell, and the evaluator and action instances, with the previous version.
+ * <p>
+ * If an image directory is specified, definitions are loaded with {@link StateMachineLoader#load(Path)} and keep a
+ * precompiled image there, named after the definition.
+ * <p>
+ * Instances are thread safe.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class ReloadingDefinitionRegistry implements AutoCloseable {
+
+    public static final long DEFAULT_RELOAD_DELAY_MILLIS = 100;
+    static final String IMAGE_SUFFIX = ".smi";
+
+    Object evaluatorInstantiationParam;
+    Path imageDirectory;
+    long reloadDelayMillis;
+
+    ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<>();
+    Set<Path> watchedDirectories = new HashSet<>();
+    WatchService watchService;
+    ScheduledExecutorService reloader;
+    Thread watcher;
+
+    AtomicLong reloadCount = new AtomicLong();
+    AtomicLong failedReloadCount = new AtomicLong();
+
+    public ReloadingDefinitionRegistry() throws IOException {
+        this(null, null, DEFAULT_RELOAD_DELAY_MILLIS);
+    }
+
+    /**
+     * @param evaluatorInstantiationParam Passed to evaluators and actions without an empty constructor, see
+     *                                    {@link StateMachineLoader}
+     * @param imageDirectory              The directory to keep precompiled images of the definitions in, or null to
+     *                                    always load from the CSV
+     * @param reloadDelayMillis           How long after a change to a file the definition is reloaded, so that a
+     *                                    burst of changes leads to one reload
+     */
+    public ReloadingDefinitionRegistry(Object evaluatorInstantiationParam, Path imageDirectory, long reloadDelayMillis) throws IOException {
+        this.evaluatorInstantiationParam = evaluatorInstantiationParam;
+        this.imageDirectory = imageDirectory;
+        this.reloadDelayMillis = reloadDelayMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "definition-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watcher = new Thread(this::watchFiles, "definition-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * Loads the definition from the manifest, resolving the definition CSV relative to the directory of the manifest,
+     * and watches both files for changes
+     *
+     * @param name     The name to register the definition under
+     * @param manifest The manifest file
+     * @return The first version of the definition
+     * @throws IllegalArgumentException If a definition is already registered under the name
+     */
+    public VersionedDefinition register(@NonNull String name, @NonNull Path manifest) throws IOException, CsvValidationException, InstantiationException {
+        return register(name, manifest, null, null);
+    }
+
+    /**
+     * Loads the definition from the manifest, see {@link #register(String, Path)}. The action overrides and listeners
+     * are applied to every version of the definition.
+     */
+    public VersionedDefinition register(
+        @NonNull String name,
+        @NonNull Path manifest,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
+        List<TransitionListener<? extends StatefulEntity>> listeners) throws IOException, CsvValidationException, InstantiationException {
+        Registration registration = new Registration(name, manifest.toAbsolutePath().normalize(), toStateTransitionAction, listeners);
+        if (registrations.putIfAbsent(name, registration) != null) {
+            throw new IllegalArgumentException("A definition is already registered as '" + name + "'");
+        }
+        try {
+            // Watch before loading, so that a change during the load is not missed
+            watchDirectory(registration.manifest.getParent());
+            VersionedDefinition loaded = load(registration, 1);
+            registration.current.set(loaded);
+            return loaded;
+        } catch (Exception e) {
+            registrations.remove(name, registration);
+            throw e;
+        }
+    }
+
+    /**
+     * Stops reloading the definition, which remains usable by anything holding it
+     *
+     * @return True if a definition was registered under the name
+     */
+    public boolean remove(@NonNull String name) {
+        return registrations.remove(name) != null;
+    }
+
+    /**
+     * @return The current version of the definition, or empty if none is registered under the name
+     */
+    public Optional<VersionedDefinition> get(@NonNull String name) {
+        Registration registration = registrations.get(name);
+        return registration == null ? Optional.empty() : Optional.ofNullable(registration.current.get());
+    }
+
+    /**
+     * @return The current definition
+     * @throws IllegalArgumentException If no definition is registered under the name
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends StatefulEntity> StateMachineDefinition<T> getDefinition(@NonNull String name) {
+        return (StateMachineDefinition<T>) get(name)
+            .orElseThrow(() -> new IllegalArgumentException("No definition is registered as '" + name + "'"))
+            .getDefinition();
+    }
+
+    /**
+     * @return The failure of the latest reload of the definition if it failed, in which case the previous version is
+     * still published
+     */
+    public Optional<Throwable> getLastFailure(@NonNull String name) {
+        Registration registration = registrations.get(name);
+        return registration == null ? Optional.empty() : Optional.ofNullable(registration.lastFailure);
+    }
+
+    /**
+     * @return The number of successful reloads of every definition
+     */
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * @return The number of failed reloads of every definition
+     */
+    public long getFailedReloadCount() {
+        return failedReloadCount.get();
+    }
+
+    /**
+     * Reloads the definition in the background, whether or not its files changed
+     *
+     * @return Completes with the new version once it is published, or exceptionally if the reload failed or the
+     * first version of the definition is still being loaded
+     * @throws IllegalArgumentException If no definition is registered under the name
+     */
+    public CompletableFuture<VersionedDefinition> reload(@NonNull String name) {
+        Registration registration = registrations.get(name);
+        if (registration == null) {
+            throw new IllegalArgumentException("No definition is registered as '" + name + "'");
+        }
+        CompletableFuture<VersionedDefinition> result = new CompletableFuture<>();
+        reloader.execute(() -> {
+            try {
+                result.complete(reloadNow(registration));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Stops watching and reloading. Published definitions remain usable.
+     */
+    @Override
+    public void close() throws IOException {
+        reloader.shutdownNow();
+        watchService.close();
+    }
+
+    /**
+     * Called on the reloader thread only, so reloads of a definition never overlap
+     *
+     * @throws IllegalStateException If the first version of the definition is still being loaded by
+     *                               {@link #register(String, Path)}
+     */
+    private VersionedDefinition reloadNow(Registration registration) throws IOException, CsvValidationException, InstantiationException {
+        VersionedDefinition previous = registration.current.get();
+        if (previous == null) {
+            throw new IllegalStateException("The first version of definition '" + registration.name + "' is still being loaded");
+        }
+        VersionedDefinition reloaded;
+        try {
+            reloaded = load(registration, previous.getVersion() + 1);
+        } catch (Exception e) {
+            failedReloadCount.incrementAndGet();
+            registration.lastFailure = e;
+            log.warn("Failed to reload definition {}, keeping version {}", registration.name, previous.getVersion(), e);
+            throw e;
+        }
+        registration.lastFailure = null;
+        registration.current.set(reloaded);
+        reloadCount.incrementAndGet();
+        log.info("Reloaded definition {} to version {} in {}ms", registration.name, reloaded.getVersion(), TimeUnit.NANOSECONDS.toMillis(reloaded.getLoadNanos()));
+        return reloaded;
+    }
+
+    private VersionedDefinition load(Registration registration, long version) throws IOException, CsvValidationException, InstantiationException {
+        long start = System.nanoTime();
+        Path directory = registration.manifest.getParent();
+        DefinitionResolver files = DefinitionResolver.directory(directory);
+        // Records the CSV the manifest names and watches it before it is read, so that a change during the load is not missed
+        DefinitionResolver resolver = definition -> {
+            registration.definitionFile = directory.resolve(definition).normalize();
+            watchDirectory(registration.definitionFile.getParent());
+            return files.open(definition);
+        };
+
+        VersionedDefinition previous = registration.current.get();
+        LoadedDefinition loaded;
+        try (InputStream manifest = Files.newInputStream(registration.manifest)) {
+            loaded = new StateMachineLoader(manifest, evaluatorInstantiationParam, resolver).load(
+                imageDirectory == null ? null : imageDirectory.resolve(registration.name + IMAGE_SUFFIX),
+                previous == null ? null : previous.getLoaded(),
+                registration.toStateTransitionAction,
+                registration.listeners
+            );
+        }
+        return new VersionedDefinition(registration.name, version, loaded, System.currentTimeMillis(), System.nanoTime() - start);
+    }
+
+    private synchronized void watchDirectory(Path directory) throws IOException {
+        if (watchedDirectories.add(directory)) {
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        }
+    }
+
+    /**
+     * Runs on the watcher thread until the registry is closed
+     */
+    private void watchFiles() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                // Events were lost, so any file in the directory may have changed
+                Path file = event.kind() == OVERFLOW ? null : directory.resolve((Path) event.context());
+                for (Registration registration : registrations.values()) {
+                    if (file == null ? registration.isSourceIn(directory) : registration.isSource(file)) {
+                        scheduleReload(registration);
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private void scheduleReload(Registration registration) {
+        if (!registration.pending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            reloader.schedule(() -> {
+                registration.pending.set(false);
+                if (registrations.get(registration.name) != registration) {
+                    return;
+                }
+                if (registration.current.get() == null) {
+                    // The files are watched before the first version is loaded, which may have read them before the change
+                    scheduleReload(registration);
+                    return;
+                }
+                try {
+                    reloadNow(registration);
+                } catch (Exception e) {
+                    // Logged by reloadNow, the next change to the files will try again
+                }
+            }, reloadDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The registry is closing
+        }
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Registration {
+        String name;
+        Path manifest;
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction;
+        List<TransitionListener<? extends StatefulEntity>> listeners;
+        AtomicReference<VersionedDefinition> current = new AtomicReference<>();
+
+        /**
+         * Whether a reload is scheduled and has not started yet
+         */
+        AtomicBoolean pending = new AtomicBoolean();
+
+        @NonFinal
+        volatile Path definitionFile;
+        @NonFinal
+        volatile Throwable lastFailure;
+
+        boolean isSource(Path file) {
+            return file.equals(manifest) || file.equals(definitionFile);
+        }
+
+        boolean isSourceIn(Path directory) {
+            return directory.equals(manifest.getParent()) || definitionFile != null && directory.equals(definitionFile.getParent());
+        }
+    }
+}
@@ -14,25 +14,34 @@ import com.glc.statemachine.StatefulEntity;
 import com.glc.statemachine.TransitionAction;
 import com.glc.statemachine.TransitionEvaluator;
 import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.definition.StateEventRegistry;
 import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineEventTransitionEvaluations;
 import com.glc.statemachine.impl.AuthorisedStateMachineEvent;
 import com.glc.statemachine.impl.DefaultState;
 import com.glc.statemachine.impl.DefaultStateMachineEvent;
-import com.glc.statemachine.impl.TransitionContainer;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
@@ -41,19 +50,44 @@ import javax.validation.constraints.NotNull;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 /**
  * Utility class that will load in a state machine manifest that defines a statemachine matrix, evaluators and action classes and generate
- * a {@link StateMachineDefinition} instance
+ * a {@link StateMachineDefinition} instance.
+ * <p>
+ * Evaluators and actions are expected to be stateless, so each is created once per manifest key in a load and shared by
+ * every transition that refers to the key. Classes that hold per transition state can opt out with {@link PerTransition}.
+ * <p>
+ * Loading with {@link #load(Path)} keeps a precompiled binary image of the definition in the specified file, and later
+ * loads of the same manifest and CSV read the image instead of parsing them, see {@link DefinitionImage}.
  */
+@Slf4j
 @SuppressWarnings({"rawtypes", "unchecked"}) // As we are loading dynamically at runtime, we can't specify the generic type as types can only be specified at compile time
-@RequiredArgsConstructor
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public class StateMachineLoader {
     InputStream manifestFile;
     Object evaluatorInstantiationParam;
+    DefinitionResolver definitionResolver;
+
+    /**
+     * The pool the definition is shared through with other loads, or null to build an independent definition
+     */
+    DefinitionPool pool;
+
+    /**
+     * States created during a load, so every cell referring to a state name shares one instance
+     */
+    Map<String, State> states = new HashMap<>();
+
+    /**
+     * Evaluators and actions created during a load by manifest key, so every cell referring to a key shares one
+     * instance unless its class is annotated with {@link PerTransition}
+     */
+    Map<String, TransitionEvaluator<? extends StatefulEntity>> evaluators = new HashMap<>();
+    Map<String, TransitionAction<? extends StatefulEntity>> actions = new HashMap<>();
 
     /**
      * Creates a new instance of the loader with the input stream to a manifest json file
@@ -64,6 +98,40 @@ public class StateMachineLoader {
         this(manifestFile, null);
     }
 
+    /**
+     * Creates a new instance of the loader with the input stream to a manifest json file. Evaluators and actions that
+     * do not have an empty constructor are constructed with the evaluatorInstantiationParam.
+     *
+     * @param manifestFile
+     * @param evaluatorInstantiationParam
+     */
+    public StateMachineLoader(InputStream manifestFile, Object evaluatorInstantiationParam) {
+        this(manifestFile, evaluatorInstantiationParam, DefinitionResolver.CLASSPATH);
+    }
+
+    /**
+     * Creates a new instance of the loader with the input stream to a manifest json file and the resolver used to
+     * locate the definition CSV the manifest refers to
+     *
+     * @param manifestFile
+     * @param evaluatorInstantiationParam
+     * @param definitionResolver
+     */
+    public StateMachineLoader(InputStream manifestFile, Object evaluatorInstantiationParam, DefinitionResolver definitionResolver) {
+        this(manifestFile, evaluatorInstantiationParam, definitionResolver, null);
+    }
+
+    /**
+     * Creates a loader that shares the definition, or its rows, evaluators and actions, with the other definitions
+     * loaded through the pool, see {@link DefinitionPool}
+     */
+    StateMachineLoader(InputStream manifestFile, Object evaluatorInstantiationParam, DefinitionResolver definitionResolver, DefinitionPool pool) {
+        this.manifestFile = manifestFile;
+        this.evaluatorInstantiationParam = evaluatorInstantiationParam;
+        this.definitionResolver = definitionResolver;
+        this.pool = pool;
+    }
+
     /**
      * Reads in the manifest file from the defined input stream from the constructor and returns a constructed {@link StateMachineDefinition}
      *
@@ -106,10 +174,104 @@ public class StateMachineLoader {
     public StateMachineDefinition<? extends StatefulEntity> load(
         List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
         List<TransitionListener<? extends StatefulEntity>> listeners) throws IOException, CsvValidationException, InstantiationException {
-        // Read in the manifest JSON and the defined state machine CSV as a CSV reader
+        return load(null, null, toStateTransitionAction, listeners).getDefinition();
+    }
+
+    /**
+     * Loads the definition from the precompiled image file if it was compiled from the same manifest and definition
+     * CSV, which skips parsing the JSON and CSV. Otherwise the definition is loaded from the CSV and the image file is
+     * written for the next load.
+     *
+     * @param image The file holding the precompiled definition, need not exist
+     * @return
+     * @throws IOException
+     * @throws CsvValidationException
+     * @throws InstantiationException
+     */
+    public StateMachineDefinition<? extends StatefulEntity> load(Path image) throws IOException, CsvValidationException, InstantiationException {
+        return load(image, null, null);
+    }
+
+    /**
+     * Loads the definition from the precompiled image file if it was compiled from the same manifest and definition
+     * CSV, see {@link #load(Path)}. The list of transition actions specified will be added to all transitions that
+     * match the "To" state in the {@link ToStateActionOverrideDTO}
+     *
+     * @param image                   The file holding the precompiled definition, need not exist
+     * @param toStateTransitionAction
+     * @param listeners
+     * @return
+     * @throws IOException
+     * @throws CsvValidationException
+     * @throws InstantiationException
+     */
+    public StateMachineDefinition<? extends StatefulEntity> load(
+        Path image,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
+        List<TransitionListener<? extends StatefulEntity>> listeners) throws IOException, CsvValidationException, InstantiationException {
+        return load(image, null, toStateTransitionAction, listeners).getDefinition();
+    }
+
+    /**
+     * Loads the definition, from the precompiled image file if one is specified and up to date. If a previous load of
+     * the same manifest is specified, the cells of the matrix that did not change are shared with its definition and
+     * its evaluators and actions are reused, see {@link #build(DefinitionImage, LoadedDefinition, List, List)}.
+     *
+     * @param image    The file holding the precompiled definition, or null to load from the CSV
+     * @param previous The previous load of the manifest, or null. Ignored when loading through a pool.
+     */
+    LoadedDefinition load(
+        Path image,
+        LoadedDefinition previous,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
+        List<TransitionListener<? extends StatefulEntity>> listeners) throws IOException, CsvValidationException, InstantiationException {
+        return build(image == null ? compileSources() : compileSources(image), previous, toStateTransitionAction, listeners);
+    }
+
+    private DefinitionImage compileSources() throws IOException, CsvValidationException {
+        StateMachineManifest manifest = readManifest(manifestFile);
+        byte[] definitionCsv = readDefinition(manifest.getDefinition());
+        if (definitionCsv == null) {
+            throw new FileNotFoundException("Could not find state machine definition file '" + manifest.getDefinition() + "'");
+        }
+        return compile(manifest, definitionCsv, new byte[0]);
+    }
+
+    /**
+     * @return The image in the file if it was compiled from the current manifest and CSV, otherwise the image compiled
+     * from them, which is written to the file for the next load
+     */
+    private DefinitionImage compileSources(Path image) throws IOException, CsvValidationException {
+        byte[] manifestJson = readFully(manifestFile);
+
+        // The image names the definition CSV, so it can be checked against the sources without parsing the manifest
+        Optional<DefinitionImage> cached = DefinitionImage.read(image);
+        if (cached.isPresent()) {
+            byte[] definitionCsv = readDefinition(cached.get().getDefinition());
+            if (definitionCsv != null && Arrays.equals(cached.get().getSourceHash(), sourceHash(manifestJson, definitionCsv))) {
+                return cached.get();
+            }
+            log.debug("Definition image {} is stale, loading from the definition CSV", image);
+        }
+
+        StateMachineManifest manifest = readManifest(new ByteArrayInputStream(manifestJson));
+        byte[] definitionCsv = readDefinition(manifest.getDefinition());
+        if (definitionCsv == null) {
+            throw new FileNotFoundException("Could not find state machine definition file '" + manifest.getDefinition() + "'");
+        }
+        DefinitionImage compiled = compile(manifest, definitionCsv, sourceHash(manifestJson, definitionCsv));
+        try {
+            compiled.write(image);
+        } catch (IOException e) {
+            log.warn("Failed to write definition image {}, the next load will read the definition CSV again", image, e);
+        }
+        return compiled;
+    }
+
+    private StateMachineManifest readManifest(InputStream manifestJson) throws IOException {
         StateMachineManifest manifest = null;
         try {
-            manifest = new ObjectMapper().readValue(manifestFile, StateMachineManifest.class);
+            manifest = new ObjectMapper().readValue(manifestJson, StateMachineManifest.class);
         } catch (ValueInstantiationException e) {
             if (e.getCause().getClass() == ClassNotFoundException.class) {
                 throw new InvalidStateMachineException("Failed to load class defined in manifest: " + e.getMessage());
@@ -119,15 +281,55 @@ public class StateMachineLoader {
         if (manifest == null) {
             throw new InvalidStateMachineException("Failed to load manifest into json from file: " + manifestFile);
         }
+        return manifest;
+    }
 
-        InputStream stream = StateMachineLoader.class.getClassLoader().getResourceAsStream(manifest.getDefinition());
+    /**
+     * @return The content of the definition CSV, or null if it can not be found
+     */
+    private byte[] readDefinition(String definition) throws IOException {
+        InputStream stream = definitionResolver.open(definition);
         if (stream == null) {
-            throw new FileNotFoundException("Could not find state machine definition file '" + manifest.getDefinition() + "'");
+            return null;
+        }
+        try (InputStream in = stream) {
+            return readFully(in);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the SHA-256 of the manifest and the definition CSV
+     */
+    private static byte[] sourceHash(byte[] manifestJson, byte[] definitionCsv) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(manifestJson.length).array());
+            digest.update(manifestJson);
+            digest.update(definitionCsv);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        Reader definitionCsvFile = new InputStreamReader(stream);
+    }
 
+    /**
+     * Parses and validates the definition CSV against the manifest into a {@link DefinitionImage}, without
+     * instantiating evaluators or actions
+     */
+    private DefinitionImage compile(StateMachineManifest<? extends StatefulEntity> manifest, byte[] definitionCsv, byte[] sourceHash)
+        throws IOException, CsvValidationException {
         // Map the CSV to a 2D array matrix
-        List<List<String>> records = readCsv(definitionCsvFile);
+        List<List<String>> records = readCsv(new InputStreamReader(new ByteArrayInputStream(definitionCsv)));
 
         // Event names are extracted from position 1 (zero index) of the first row of the CSV
         List<String> eventKeys = records.get(0).subList(1, records.get(0).size());
@@ -136,16 +338,15 @@ public class StateMachineLoader {
             throw new InvalidStateMachineException("Duplicate event(s) detected: " + duplicateEvents);
         }
 
-        // Check if the event names have an associated set of authorisation roles appended to it, and construct
-        // either standard event objects or Authorised event objects
-        List<StateMachineEvent> events = eventKeys.stream().map(key -> {
-            List<String> roles = extractEventRoles.apply(key);
-            if (CollectionUtils.isEmpty(roles)) {
-                return new DefaultStateMachineEvent(key);
-            } else {
-                return new AuthorisedStateMachineEvent(extractEventName.apply(key), roles);
-            }
-        }).collect(Collectors.toList());
+        // Check if the event names have an associated set of authorisation roles appended to it, which make them
+        // Authorised events rather than standard events
+        String[] eventNames = new String[eventKeys.size()];
+        String[][] eventRoles = new String[eventKeys.size()][];
+        for (int i = 0; i < eventKeys.size(); i++) {
+            List<String> roles = extractEventRoles.apply(eventKeys.get(i));
+            eventNames[i] = CollectionUtils.isEmpty(roles) ? eventKeys.get(i) : extractEventName.apply(eventKeys.get(i));
+            eventRoles[i] = roles.toArray(new String[0]);
+        }
 
         // The transitions start from row 1 (zero indexed)
         records = records.subList(1, records.size());
@@ -155,36 +356,456 @@ public class StateMachineLoader {
             throw new InvalidStateMachineException("Duplicate state(s) detected: " + duplicateStates);
         }
 
-        // Map to a collection of from and to transitions based on the events / states intersections in the CSV matrix
-        List<StateMachineEventFromAndTo<? extends StatefulEntity>> simpleMatrix = createMatrix(records, events, manifest, toStateTransitionAction);
+        // Map to a table of from and to transitions based on the events / states intersections in the CSV matrix
+        Map<String, Integer> stateIndexes = new HashMap<>();
+        allStates.forEach(state -> stateIndexes.put(state, stateIndexes.size()));
+        Map<String, Integer> evaluatorIndexes = new LinkedHashMap<>();
+        Map<String, Integer> actionIndexes = new LinkedHashMap<>();
+        List<Integer> transitions = new ArrayList<>();
+        for (int rowIndex = 0; rowIndex < records.size(); rowIndex++) {
+            List<String> row = records.get(rowIndex);
+            for (int colIndex = 1; colIndex < row.size(); colIndex++) {
+                // For the given cell in the state / event matrix, check if there is a defined transition(s)
+                for (TransitionTokens tokens : extractTransitionTokens(row.get(colIndex), manifest)) {
+                    Integer toState = stateIndexes.get(tokens.nextState);
+                    if (toState == null) {
+                        throw new InvalidStateMachineException("Target state '" + tokens.nextState + "' is invalid as it is not defined in the state machine definition matrix");
+                    }
+                    transitions.add(rowIndex);
+                    transitions.add(colIndex - 1);
+                    transitions.add(toState);
+                    transitions.add(indexOf(tokens.evaluatorKey, evaluatorIndexes));
+                    transitions.add(indexOf(tokens.actionKey, actionIndexes));
+                }
+            }
+        }
+
+        // Check that the path has valid states
+        int[] defaultPath = null;
+        if (manifest.getDefaultPath() != null) {
+            defaultPath = new int[manifest.getDefaultPath().size()];
+            for (int i = 0; i < defaultPath.length; i++) {
+                String state = manifest.getDefaultPath().get(i);
+                if (!stateIndexes.containsKey(state)) {
+                    throw new InvalidStateMachineException("State '" + state + "' in defaultPath is invalid as it is not defined in the state machine definition matrix");
+                }
+                defaultPath[i] = stateIndexes.get(state);
+            }
+        }
 
-        // Validate the loaded matrix
-        validate(simpleMatrix, allStates, manifest.getDefaultPath());
+        String[] evaluatorKeys = evaluatorIndexes.keySet().toArray(new String[0]);
+        String[] actionKeys = actionIndexes.keySet().toArray(new String[0]);
+        return new DefinitionImage(
+            sourceHash,
+            manifest.getDefinition(),
+            allStates.toArray(new String[0]),
+            eventNames,
+            eventRoles,
+            evaluatorKeys,
+            Arrays.stream(evaluatorKeys).map(key -> manifest.getTransitionEvaluators().get(key).getName()).toArray(String[]::new),
+            actionKeys,
+            Arrays.stream(actionKeys).map(key -> manifest.getTransitionActions().get(key).getName()).toArray(String[]::new),
+            transitions.stream().mapToInt(Integer::intValue).toArray(),
+            defaultPath
+        );
+    }
 
-        // Construct the StateMachineDefinition along with the default transitions path (if defined)
-        return new StateMachineDefinition(simpleMatrix, manifest.getDefaultPath(), listeners);
+    private static int indexOf(String key, Map<String, Integer> indexes) {
+        return key == null ? DefinitionImage.NONE : indexes.computeIfAbsent(key, k -> indexes.size());
     }
 
     /**
-     * Validates the matrix is valid by checking for the following discrepancies:
-     * - Transition to undefined state
-     * - Undefined states in default path
+     * Constructs the {@link StateMachineDefinition} from the image, instantiating its evaluators and actions.
+     * <p>
+     * If a previous load is specified, its states are reused, as are its evaluators and actions whose manifest key
+     * still names the same class. When the events, action overrides and listeners are the same as well, the image is
+     * compared with the previous one row by row and cell by cell and only the cells that changed are built, the
+     * others being shared with the previous definition, see {@link StateMachineDefinition#withCells(Map, List, List)}.
+     *
+     * @param image                   The parsed definition
+     * @param previous                The previous load of the manifest, or null
+     * @param toStateTransitionAction Optional list of action overrides for certain To states
+     * @param listeners               Optional list of listeners of the definition
+     * @return
      */
-    private void validate(List<StateMachineEventFromAndTo<? extends StatefulEntity>> simpleMatrix, List<String> allStates, List<String> defaultPath) {
-        // Check that all target states are valid
-        simpleMatrix.stream().map(StateMachineEventFromAndTo::getToState).forEach(state -> {
-            if (!allStates.contains(state.getStateName())) {
-                throw new InvalidStateMachineException("Target state '" + state.getStateName() + "' is invalid as it is not defined in the state machine definition matrix");
+    private LoadedDefinition build(
+        DefinitionImage image,
+        LoadedDefinition previous,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
+        List<TransitionListener<? extends StatefulEntity>> listeners) {
+        if (pool != null) {
+            return buildPooled(image, toStateTransitionAction, listeners);
+        }
+        if (previous != null) {
+            reuseInstances(previous, image);
+        }
+        // Classes are loaded on first use, so an incremental build only loads those of the changed cells
+        Class[] evaluatorClasses = new Class[image.getEvaluatorKeys().length];
+        Class[] actionClasses = new Class[image.getActionKeys().length];
+
+        StateMachineDefinition definition;
+        if (previous != null && isIncremental(previous, image, toStateTransitionAction, listeners)) {
+            definition = buildChangedCells(image, previous, evaluatorClasses, actionClasses, toStateTransitionAction);
+        } else {
+            StateMachineEvent[] events = events(image, null);
+            List<StateMachineEventFromAndTo<? extends StatefulEntity>> simpleMatrix = new ArrayList<>(image.getTransitionCount());
+            for (int t = 0; t < image.getTransitionCount(); t++) {
+                simpleMatrix.add(transition(image, t, events, evaluatorClasses, actionClasses, toStateTransitionAction));
             }
-        });
 
-        // Check that the path has valid states
+            // Construct the StateMachineDefinition along with the default transitions path (if defined)
+            definition = new StateMachineDefinition(simpleMatrix, image.getDefaultPathStates(), listeners);
+        }
+        return new LoadedDefinition(image, definition, new HashMap<>(evaluators), new HashMap<>(actions), toStateTransitionAction, listeners);
+    }
+
+    /**
+     * Constructs the definition from the image through the pool. If the pool holds a definition with the same
+     * content it is returned, otherwise the definition is built from the rows held by the pool where the content of
+     * the row is the same, and new rows for the others.
+     */
+    private LoadedDefinition buildPooled(
+        DefinitionImage image,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
+        List<TransitionListener<? extends StatefulEntity>> listeners) {
+        Class[] evaluatorClasses = new Class[image.getEvaluatorKeys().length];
+        Class[] actionClasses = new Class[image.getActionKeys().length];
+        StateMachineEvent[] events = new StateMachineEvent[image.getEventNames().length];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = pool.event(image.getEventNames()[i], image.getEventRoles()[i]);
+        }
+        int[] offsets = rowOffsets(image);
+        List<String> definitionContent = new ArrayList<>();
+        DefinitionPool.Key[] rowKeys = new DefinitionPool.Key[image.getStates().length];
+        for (int row = 0; row < rowKeys.length; row++) {
+            List<String> rowContent = rowContent(image, row, offsets[row], offsets[row + 1]);
+            rowKeys[row] = DefinitionPool.key(rowContent);
+            definitionContent.addAll(rowContent);
+        }
+        List<String> defaultPath = image.getDefaultPathStates();
+        definitionContent.add(null);
         if (defaultPath != null) {
-            defaultPath.forEach(state -> {
-                if (!allStates.contains(state)) {
-                    throw new InvalidStateMachineException("State '" + state + "' in defaultPath is invalid as it is not defined in the state machine definition matrix");
+            definitionContent.addAll(defaultPath);
+        }
+        DefinitionPool.Key definitionKey = DefinitionPool.key(definitionContent);
+
+        StateMachineDefinition definition = pool.acquire(definitionKey);
+        if (definition == null) {
+            Map<State, StateMachineEventTransitionEvaluations> matrix = new HashMap<>();
+            List<DefinitionPool.PooledRow> sharedRows = new ArrayList<>();
+            boolean shareable = true;
+            long bytes = DefinitionPool.estimateDefinitionBytes(image.getStates().length, events.length);
+            for (int row = 0; row < rowKeys.length; row++) {
+                if (offsets[row] == offsets[row + 1]) {
+                    continue;
+                }
+                StateMachineEventTransitionEvaluations rowTransitions = pool.row(rowKeys[row]);
+                long rowBytes = DefinitionPool.estimateRowBytes(cellCount(image, offsets[row], offsets[row + 1]), offsets[row + 1] - offsets[row]);
+                if (rowTransitions == null) {
+                    List<StateMachineEventFromAndTo> transitions = new ArrayList<>(offsets[row + 1] - offsets[row]);
+                    for (int t = offsets[row]; t < offsets[row + 1]; t++) {
+                        transitions.add(transition(image, t, events, evaluatorClasses, actionClasses, toStateTransitionAction));
+                    }
+                    rowTransitions = StateMachineDefinition.buildRow((List) transitions);
+                }
+                if (isShareable(image, offsets[row], offsets[row + 1], evaluatorClasses, actionClasses)) {
+                    sharedRows.add(new DefinitionPool.PooledRow(rowKeys[row], rowTransitions, rowBytes));
+                } else {
+                    shareable = false;
+                    bytes += rowBytes;
                 }
-            });
+                matrix.put(state(image.getStates()[row]), rowTransitions);
+            }
+            definition = pool.add(
+                shareable ? definitionKey : null,
+                new StateMachineDefinition(matrix, paths(image, defaultPath), listeners),
+                bytes,
+                sharedRows
+            );
+        }
+        return new LoadedDefinition(image, definition, new HashMap<>(evaluators), new HashMap<>(actions), toStateTransitionAction, listeners);
+    }
+
+    /**
+     * @return The content of the row that the definition depends on, by state and event names and by the classes of
+     * its evaluators and actions, as the keys are local to the manifest
+     */
+    private static List<String> rowContent(DefinitionImage image, int row, int start, int end) {
+        List<String> content = new ArrayList<>(2 + (end - start) * 5);
+        content.add(image.getStates()[row]);
+        content.add(String.valueOf(end - start));
+        for (int t = start; t < end; t++) {
+            int event = image.getTransition(t, DefinitionImage.EVENT);
+            int evaluator = image.getTransition(t, DefinitionImage.EVALUATOR);
+            int action = image.getTransition(t, DefinitionImage.ACTION);
+            content.add(image.getEventNames()[event]);
+            content.add(Arrays.toString(image.getEventRoles()[event]));
+            content.add(image.getStates()[image.getTransition(t, DefinitionImage.TO)]);
+            content.add(evaluator == DefinitionImage.NONE ? null : image.getEvaluatorClasses()[evaluator]);
+            content.add(action == DefinitionImage.NONE ? null : image.getActionClasses()[action]);
+        }
+        return content;
+    }
+
+    private static int cellCount(DefinitionImage image, int start, int end) {
+        int cells = 0;
+        for (int t = start; t < end; t++) {
+            if (t == start || image.getTransition(t, DefinitionImage.EVENT) != image.getTransition(t - 1, DefinitionImage.EVENT)) {
+                cells++;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return False if a transition of the row refers to a class annotated with {@link PerTransition}, whose instances
+     * must not be shared with other definitions
+     */
+    private static boolean isShareable(DefinitionImage image, int start, int end, Class[] evaluatorClasses, Class[] actionClasses) {
+        for (int t = start; t < end; t++) {
+            int evaluator = image.getTransition(t, DefinitionImage.EVALUATOR);
+            int action = image.getTransition(t, DefinitionImage.ACTION);
+            if (evaluator != DefinitionImage.NONE && classOf(evaluatorClasses, image.getEvaluatorClasses(), evaluator).isAnnotationPresent(PerTransition.class)
+                || action != DefinitionImage.NONE && classOf(actionClasses, image.getActionClasses(), action).isAnnotationPresent(PerTransition.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The default path of the definition, or null if the manifest has none
+     * @throws InvalidStateMachineException If a state of the path has no transitions from or to it
+     */
+    private Map<String, List<State>> paths(DefinitionImage image, List<String> defaultPath) {
+        if (defaultPath == null) {
+            return null;
+        }
+        boolean[] used = new boolean[image.getStates().length];
+        for (int t = 0; t < image.getTransitionCount(); t++) {
+            used[image.getTransition(t, DefinitionImage.FROM)] = true;
+            used[image.getTransition(t, DefinitionImage.TO)] = true;
+        }
+        List<State> path = new ArrayList<>(defaultPath.size());
+        for (int i = 0; i < defaultPath.size(); i++) {
+            if (!used[image.getDefaultPath()[i]]) {
+                throw new InvalidStateMachineException("Failed to create path '" + StateMachineDefinition.DEFAULT_PATH + "' for statemachine. The state name in the supplied path '"
+                    + defaultPath.get(i) + "' could not be found in the defined states of the associated state machine definition matrix");
+            }
+            path.add(state(defaultPath.get(i)));
+        }
+        return Collections.singletonMap(StateMachineDefinition.DEFAULT_PATH, path);
+    }
+
+    /**
+     * Builds the transitions of the cells that differ from the previous image, and a definition that shares every
+     * other cell with the previous definition
+     */
+    private StateMachineDefinition buildChangedCells(
+        DefinitionImage image,
+        LoadedDefinition previous,
+        Class[] evaluatorClasses,
+        Class[] actionClasses,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction) {
+        DefinitionImage previousImage = previous.getImage();
+        StateMachineEvent[] events = events(image, previous.getDefinition().getCompiled().getRegistry());
+        int[] offsets = rowOffsets(image);
+        int[] previousOffsets = rowOffsets(previousImage);
+        Map<String, Integer> previousRows = new HashMap<>();
+        for (int row = 0; row < previousImage.getStates().length; row++) {
+            previousRows.put(previousImage.getStates()[row], row);
+        }
+
+        Map<State, Set<StateMachineEvent>> cells = new HashMap<>();
+        List<StateMachineEventFromAndTo> transitions = new ArrayList<>();
+        for (int row = 0; row < image.getStates().length; row++) {
+            Integer previousRow = previousRows.remove(image.getStates()[row]);
+            int t = offsets[row];
+            int p = previousRow == null ? 0 : previousOffsets[previousRow];
+            for (int event = 0; event < events.length; event++) {
+                int cellEnd = cellEnd(image, t, offsets[row + 1], event);
+                int previousCellEnd = previousRow == null ? p : cellEnd(previousImage, p, previousOffsets[previousRow + 1], event);
+                if (!isSameCell(image, t, cellEnd, previousImage, p, previousCellEnd)) {
+                    cells.computeIfAbsent(state(image.getStates()[row]), state -> new HashSet<>()).add(events[event]);
+                    for (int i = t; i < cellEnd; i++) {
+                        transitions.add(transition(image, i, events, evaluatorClasses, actionClasses, toStateTransitionAction));
+                    }
+                }
+                t = cellEnd;
+                p = previousCellEnd;
+            }
+        }
+
+        // The rows left were removed, so all their cells are replaced with nothing
+        for (int previousRow : previousRows.values()) {
+            for (int i = previousOffsets[previousRow]; i < previousOffsets[previousRow + 1]; i++) {
+                cells.computeIfAbsent(state(previousImage.getStates()[previousRow]), state -> new HashSet<>())
+                    .add(events[previousImage.getTransition(i, DefinitionImage.EVENT)]);
+            }
+        }
+        log.debug("Rebuilding {} cells in {} of {} rows", cells.values().stream().mapToInt(Set::size).sum(), cells.size(), image.getStates().length);
+        return ((StateMachineDefinition) previous.getDefinition()).withCells(cells, transitions, image.getDefaultPathStates());
+    }
+
+    /**
+     * @return True if the definition can be built from the previous one by replacing the changed cells
+     */
+    private static boolean isIncremental(
+        LoadedDefinition previous,
+        DefinitionImage image,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
+        List<TransitionListener<? extends StatefulEntity>> listeners) {
+        return previous.getToStateTransitionAction() == toStateTransitionAction
+            && previous.getListeners() == listeners
+            && Arrays.equals(previous.getImage().getEventNames(), image.getEventNames())
+            && Arrays.deepEquals(previous.getImage().getEventRoles(), image.getEventRoles());
+    }
+
+    /**
+     * Starts this load with the states of the previous load, and with its evaluators and actions whose key names the
+     * same class in the image
+     */
+    private void reuseInstances(LoadedDefinition previous, DefinitionImage image) {
+        StateEventRegistry registry = previous.getDefinition().getCompiled().getRegistry();
+        for (int stateId = 0; stateId < registry.getStateCount(); stateId++) {
+            states.putIfAbsent(registry.getState(stateId).getStateName(), registry.getState(stateId));
+        }
+        DefinitionImage previousImage = previous.getImage();
+        reuse(previousImage.getEvaluatorKeys(), previousImage.getEvaluatorClasses(), image.getEvaluatorKeys(), image.getEvaluatorClasses(), previous.getEvaluators(), evaluators);
+        reuse(previousImage.getActionKeys(), previousImage.getActionClasses(), image.getActionKeys(), image.getActionClasses(), previous.getActions(), actions);
+    }
+
+    private static <V> void reuse(String[] previousKeys, String[] previousClasses, String[] keys, String[] classes, Map<String, V> previousInstances, Map<String, V> instances) {
+        Map<String, String> previousClassesByKey = new HashMap<>();
+        for (int i = 0; i < previousKeys.length; i++) {
+            previousClassesByKey.put(previousKeys[i], previousClasses[i]);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            V instance = previousInstances.get(keys[i]);
+            if (instance != null && classes[i].equals(previousClassesByKey.get(keys[i]))) {
+                instances.put(keys[i], instance);
+            }
+        }
+    }
+
+    /**
+     * Creates the events of the image, reusing the instances of the previous definition if specified
+     */
+    private static StateMachineEvent[] events(DefinitionImage image, StateEventRegistry previous) {
+        StateMachineEvent[] events = new StateMachineEvent[image.getEventNames().length];
+        for (int i = 0; i < events.length; i++) {
+            String[] roles = image.getEventRoles()[i];
+            int previousId = previous == null ? StateEventRegistry.UNKNOWN : previous.getEventId(image.getEventNames()[i]);
+            if (previousId != StateEventRegistry.UNKNOWN) {
+                events[i] = previous.getEvent(previousId);
+            } else {
+                events[i] = roles.length == 0
+                    ? DefaultStateMachineEvent.of(image.getEventNames()[i])
+                    : new AuthorisedStateMachineEvent(image.getEventNames()[i], Arrays.asList(roles));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Constructs a from and to wrapper for the transition of the image with its evaluator and actions
+     */
+    private StateMachineEventFromAndTo transition(
+        DefinitionImage image,
+        int t,
+        StateMachineEvent[] events,
+        Class[] evaluatorClasses,
+        Class[] actionClasses,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction) {
+        State nextState = state(image.getStates()[image.getTransition(t, DefinitionImage.TO)]);
+        int evaluator = image.getTransition(t, DefinitionImage.EVALUATOR);
+        int action = image.getTransition(t, DefinitionImage.ACTION);
+
+        // Construct a from and to wrapper with associated evaluators
+        StateMachineEventFromAndTo fromAndTo = new StateMachineEventFromAndTo(
+            events[image.getTransition(t, DefinitionImage.EVENT)],
+            state(image.getStates()[image.getTransition(t, DefinitionImage.FROM)]),
+            nextState,
+            evaluator == DefinitionImage.NONE ? null : evaluator(image.getEvaluatorKeys()[evaluator], classOf(evaluatorClasses, image.getEvaluatorClasses(), evaluator))
+        );
+
+        // Add Actions
+        if (action != DefinitionImage.NONE) {
+            fromAndTo.addAction(action(image.getActionKeys()[action], classOf(actionClasses, image.getActionClasses(), action)));
+        }
+
+        // Add addtional actions
+        getTransitionActionOverride(nextState, toStateTransitionAction).ifPresent(fromAndTo::addAction);
+        return fromAndTo;
+    }
+
+    private static Class classOf(Class[] classes, String[] classNames, int index) {
+        if (classes[index] == null) {
+            classes[index] = loadClass(classNames[index]);
+        }
+        return classes[index];
+    }
+
+    /**
+     * @return The index of the first transition of each row of the image, and the transition count at the end, as the
+     * transitions are in the order of the rows
+     */
+    private static int[] rowOffsets(DefinitionImage image) {
+        int[] offsets = new int[image.getStates().length + 1];
+        for (int t = 0; t < image.getTransitionCount(); t++) {
+            offsets[image.getTransition(t, DefinitionImage.FROM) + 1]++;
+        }
+        for (int row = 0; row < image.getStates().length; row++) {
+            offsets[row + 1] += offsets[row];
+        }
+        return offsets;
+    }
+
+    /**
+     * @return The index after the transitions of the event starting at the index, as the transitions of a row are in
+     * the order of the columns
+     */
+    private static int cellEnd(DefinitionImage image, int start, int rowEnd, int event) {
+        int end = start;
+        while (end < rowEnd && image.getTransition(end, DefinitionImage.EVENT) == event) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return True if the cells have the same transitions by target state name, and by manifest key and class of
+     * their evaluators and actions
+     */
+    private static boolean isSameCell(DefinitionImage image, int start, int end, DefinitionImage previous, int previousStart, int previousEnd) {
+        if (end - start != previousEnd - previousStart) {
+            return false;
+        }
+        for (int t = start, p = previousStart; t < end; t++, p++) {
+            if (!image.getStates()[image.getTransition(t, DefinitionImage.TO)].equals(previous.getStates()[previous.getTransition(p, DefinitionImage.TO)])
+                || !isSameReference(image.getTransition(t, DefinitionImage.EVALUATOR), image.getEvaluatorKeys(), image.getEvaluatorClasses(),
+                previous.getTransition(p, DefinitionImage.EVALUATOR), previous.getEvaluatorKeys(), previous.getEvaluatorClasses())
+                || !isSameReference(image.getTransition(t, DefinitionImage.ACTION), image.getActionKeys(), image.getActionClasses(),
+                previous.getTransition(p, DefinitionImage.ACTION), previous.getActionKeys(), previous.getActionClasses())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameReference(int index, String[] keys, String[] classes, int previousIndex, String[] previousKeys, String[] previousClasses) {
+        if (index == DefinitionImage.NONE || previousIndex == DefinitionImage.NONE) {
+            return index == previousIndex;
+        }
+        return keys[index].equals(previousKeys[previousIndex]) && classes[index].equals(previousClasses[previousIndex]);
+    }
+
+    private static Class<?> loadClass(String className) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            return Class.forName(className, true, classLoader == null ? StateMachineLoader.class.getClassLoader() : classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new InvalidStateMachineException("Failed to load class defined in manifest: " + className);
         }
     }
 
@@ -240,56 +861,6 @@ public class StateMachineLoader {
         return index == -1 || endIndex < index ? emptyList() : Arrays.asList(eventText.substring(index + 1, endIndex).trim().split(","));
     };
 
-    /**
-     * Iterates the rows and columns in the supplied records to generate a list of from and to transitions that define
-     * the state machine matrix
-     *
-     * @param records                 The CSV matrix as a 2D array
-     * @param events                  List of all created event objects from the event header columns
-     * @param manifest                The loaded in manifest that defines the transition evaluator and transition action keys and location
-     * @param toStateTransitionAction Optional list of action overrides for certain To states
-     * @return
-     */
-    private List<StateMachineEventFromAndTo<? extends StatefulEntity>> createMatrix(
-        List<List<String>> records,
-        List<StateMachineEvent> events,
-        StateMachineManifest<? extends StatefulEntity> manifest,
-        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction) {
-        List<StateMachineEventFromAndTo<? extends StatefulEntity>> matrix = new ArrayList<>();
-        for (List<String> row : records) {
-            for (int colIndex = 1; colIndex < row.size(); colIndex++) {
-                // For the given cell in the state / event matrix, check if there is a defined transition(s) and return in a collection of TransitionContainer wrapper
-                List<TransitionContainer> nextStates = extractTransitionContainer(row.get(colIndex), manifest);
-
-                // Iterate the transitions defined for this state / event cell in the matrix
-                for (TransitionContainer nextState : nextStates) {
-                    // Extract any optional transition actions for the "to" state of this transition
-                    Optional<? extends TransitionAction<? extends StatefulEntity>> actionOverride = getTransitionActionOverride(nextState.getNextState(), toStateTransitionAction);
-
-                    // Construct a from and to wrapper with associated evaluators
-                    StateMachineEventFromAndTo fromAndTo = new StateMachineEventFromAndTo(
-                        events.get(colIndex - 1),
-                        new DefaultState(row.get(0)),
-                        nextState.getNextState(),
-                        nextState.getEvaluator().orElse(null)
-                    );
-
-                    // Add Actions
-                    if (nextState.getAction().isPresent()) {
-                        fromAndTo.addAction(nextState.getAction().get());
-                    }
-
-                    // Add addtional actions
-                    actionOverride.ifPresent(fromAndTo::addAction);
-
-                    matrix.add(fromAndTo);
-                }
-            }
-        }
-
-        return matrix;
-    }
-
     /**
      * Given the specified next state, the collection of {@link ToStateActionOverrideDTO} is searched for a matching to state and if found
      * returns the transition action within it
@@ -311,7 +882,7 @@ public class StateMachineLoader {
 
 
     /**
-     * Constructs a collection {@link TransitionContainer} from the passed in text string by splitting it by the tokens.
+     * Constructs a collection of {@link TransitionTokens} from the passed in text string by splitting it by the tokens.
      * Single transitions do not contain [], where as multiple transitions are wrapper in [][]
      * <p>
      * A transition is defined as:
@@ -328,15 +899,15 @@ public class StateMachineLoader {
      * @param manifest
      * @return
      */
-    private List<TransitionContainer> extractTransitionContainer(String transitionConfig, StateMachineManifest manifest) {
+    private List<TransitionTokens> extractTransitionTokens(String transitionConfig, StateMachineManifest manifest) {
         // Single Transition
         if (!isEmpty(transitionConfig) && !transitionConfig.contains("/") && !transitionConfig.contains("[")) {
-            return Collections.singletonList(new TransitionContainer(new DefaultState(transitionConfig)));
+            return Collections.singletonList(new TransitionTokens(null, transitionConfig, null));
         }
         // Single transition with combination of evaluators and / or actions
         else if (!isEmpty(transitionConfig) && transitionConfig.contains("/") && !transitionConfig.contains("[")) {
             List<String> tokens = Arrays.asList(transitionConfig.split("/"));
-            return Collections.singletonList(extractTransitionContainerFromTokens(tokens, manifest));
+            return Collections.singletonList(extractTransitionTokensFromTokens(tokens, manifest));
         }
         // Multiple transitions
         else if (!isEmpty(transitionConfig) && transitionConfig.contains("/") && transitionConfig.contains("[")) {
@@ -346,7 +917,7 @@ public class StateMachineLoader {
             transitionConfig = transitionConfig.replaceAll("\\[", "");
             return Arrays.stream(transitionConfig.split("]")).map(tc -> {
                 try {
-                    return extractTransitionContainerFromTokens(Arrays.asList(tc.split("/")), manifest);
+                    return extractTransitionTokensFromTokens(Arrays.asList(tc.split("/")), manifest);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
@@ -358,7 +929,7 @@ public class StateMachineLoader {
     }
 
     /**
-     * Constructs a {@link TransitionContainer} from the passed in list of tokens. Tokens can be in the following format:
+     * Constructs {@link TransitionTokens} from the passed in list of tokens, checking the keys against the manifest. Tokens can be in the following format:
      * <p>
      * 1. Single - Next state  e.g "COMPLETE"
      * 2. Double - Evaluator / Next State or Next State / Action e.g "COMPLETE/TA1"
@@ -368,20 +939,18 @@ public class StateMachineLoader {
      * @param manifest
      * @return
      */
-    private TransitionContainer extractTransitionContainerFromTokens(List<String> tokens, StateMachineManifest<? extends StatefulEntity> manifest) {
+    private TransitionTokens extractTransitionTokensFromTokens(List<String> tokens, StateMachineManifest<? extends StatefulEntity> manifest) {
         if (tokens.size() == 2) {
             Class<? extends TransitionEvaluator<? extends StatefulEntity>> evaluatorClass = manifest.getTransitionEvaluators().get(tokens.get(0));
             Class<? extends TransitionAction<? extends StatefulEntity>> actionClass = manifest.getTransitionActions() != null ? manifest.getTransitionActions().get(tokens.get(1)) : null;
 
             // Check if it is [Evaluator/State]
             if (evaluatorClass != null) {
-                TransitionEvaluator<? extends StatefulEntity> evaluator = instantiateEvaluator(evaluatorClass);
-                return new TransitionContainer(evaluator, new DefaultState(tokens.get(1)));
+                return new TransitionTokens(tokens.get(0), tokens.get(1), null);
             }
             // or [State/Action]
             else if (actionClass != null) {
-                TransitionAction<? extends StatefulEntity> action = instantiateAction(actionClass);
-                return new TransitionContainer(new DefaultState(tokens.get(0)), action);
+                return new TransitionTokens(null, tokens.get(0), tokens.get(1));
             }
 
             throw new InvalidStateMachineException("Failed to find evaluators, states or actions for tokens " + tokens);
@@ -393,25 +962,45 @@ public class StateMachineLoader {
             if (evaluatorClass == null) {
                 throw new InvalidStateMachineException("Unable to find reference to transition evaluator '" + tokens.get(0) + "' in manifest file");
             }
-            TransitionEvaluator<? extends StatefulEntity> evaluator = instantiateEvaluator(evaluatorClass);
 
             Class<? extends TransitionAction<? extends StatefulEntity>> actionClass = manifest.getTransitionActions().get(tokens.get(2));
             if (actionClass == null) {
                 throw new InvalidStateMachineException("Unable to find reference to transition action '" + tokens.get(2) + "' in manifest file");
             }
-            TransitionAction<? extends StatefulEntity> action = instantiateAction(actionClass);
 
-            return
-                new TransitionContainer(
-                    evaluator,
-                    new DefaultState(tokens.get(1)),
-                    action
-                )
-                ;
+            return new TransitionTokens(tokens.get(0), tokens.get(1), tokens.get(2));
         }
         throw new InvalidStateMachineException("Unable to parse transition config in Transition Container for tokens " + tokens);
     }
 
+    /**
+     * Returns the instance of the evaluator with the manifest key for this load, or a new instance if its class is
+     * annotated with {@link PerTransition}. Loads through a pool share the instance of the class with the pool.
+     */
+    private TransitionEvaluator<? extends StatefulEntity> evaluator(String key, Class<? extends TransitionEvaluator<? extends StatefulEntity>> evaluatorClass) {
+        if (evaluatorClass.isAnnotationPresent(PerTransition.class)) {
+            return instantiateEvaluator(evaluatorClass);
+        }
+        if (pool != null) {
+            return evaluators.computeIfAbsent(key, k -> (TransitionEvaluator) pool.instance(evaluatorClass, type -> instantiateEvaluator(evaluatorClass)));
+        }
+        return evaluators.computeIfAbsent(key, k -> instantiateEvaluator(evaluatorClass));
+    }
+
+    /**
+     * Returns the instance of the action with the manifest key for this load, or a new instance if its class is
+     * annotated with {@link PerTransition}. Loads through a pool share the instance of the class with the pool.
+     */
+    private TransitionAction<? extends StatefulEntity> action(String key, Class<? extends TransitionAction<? extends StatefulEntity>> actionClass) {
+        if (actionClass.isAnnotationPresent(PerTransition.class)) {
+            return instantiateAction(actionClass);
+        }
+        if (pool != null) {
+            return actions.computeIfAbsent(key, k -> (TransitionAction) pool.instance(actionClass, type -> instantiateAction(actionClass)));
+        }
+        return actions.computeIfAbsent(key, k -> instantiateAction(actionClass));
+    }
+
     /**
      * Instantiates an instance of the specified TransitionAction class either with an empty constructor or with
      * the instance of the evaluatorInstantiationParam specified in the laoder
@@ -419,21 +1008,10 @@ public class StateMachineLoader {
      * @param transitionActionClass
      * @return
      */
-
     private TransitionAction<? extends StatefulEntity> instantiateAction(
         Class<? extends TransitionAction<? extends StatefulEntity>> transitionActionClass
     ) {
-        try {
-            return transitionActionClass.getDeclaredConstructor().newInstance();
-        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            try {
-                return transitionActionClass.getDeclaredConstructor(evaluatorInstantiationParam.getClass()).newInstance(evaluatorInstantiationParam);
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                    "Failed to construct new instance of " + transitionActionClass + " with either no constructor params, or constructor with a param of " + evaluatorInstantiationParam + " (" +
-                        evaluatorInstantiationParam.getClass() + "): " + e, e);
-            }
-        }
+        return (TransitionAction<? extends StatefulEntity>) InstanceFactory.of(transitionActionClass).newInstance(evaluatorInstantiationParam);
     }
 
     /**
@@ -444,22 +1022,14 @@ public class StateMachineLoader {
      * @return
      */
     private TransitionEvaluator<? extends StatefulEntity> instantiateEvaluator(@NotNull Class<? extends TransitionEvaluator<? extends StatefulEntity>> transitionEvaluatorClass) {
-        try {
-            return transitionEvaluatorClass.getDeclaredConstructor().newInstance();
-        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            if (evaluatorInstantiationParam != null) {
-                try {
-                    return transitionEvaluatorClass.getDeclaredConstructor(evaluatorInstantiationParam.getClass()).newInstance(evaluatorInstantiationParam);
-                } catch (Exception ex) {
-                    throw new RuntimeException(
-                        "Failed to construct new instance of " + transitionEvaluatorClass + " with either no constructor params, or constructor with a param of " + evaluatorInstantiationParam + " (" +
-                            evaluatorInstantiationParam.getClass() + "): " + e,
-                        e);
-                }
-            } else {
-                throw new RuntimeException(e);
-            }
-        }
+        return (TransitionEvaluator<? extends StatefulEntity>) InstanceFactory.of(transitionEvaluatorClass).newInstance(evaluatorInstantiationParam);
+    }
+
+    /**
+     * Returns the single instance of the state with the specified name for this load
+     */
+    private State state(String stateName) {
+        return states.computeIfAbsent(stateName, DefaultState::of);
     }
 
     /**
@@ -480,4 +1050,16 @@ public class StateMachineLoader {
         }
         return records;
     }
+
+    /**
+     * The evaluator key, next state and action key of a transition in a cell of the CSV, the keys being null when the
+     * transition has no evaluator or action
+     */
+    @RequiredArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class TransitionTokens {
+        String evaluatorKey;
+        String nextState;
+        String actionKey;
+    }
 }
@@ -0,0 +1,234 @@
+package com.glc.statemachine.loader;
+
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.opencsv.exceptions.CsvValidationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds a definition per tenant, loaded from the tenant's manifest on first use. Definitions are loaded through a
+ * shared {@link DefinitionPool}, so tenants whose definition CSVs are identical share one definition, and tenants
+ * whose CSVs differ in a few rows share every other row, along with the evaluator and action instances of each class.
+ * <p>
+ * The pool keeps an estimate of the heap held by the distinct definitions and rows. Once a load takes the estimate
+ * over the memory budget, the least recently used tenants are evicted until it is within the budget again, or only
+ * the tenant just loaded is left. An evicted tenant is loaded again on its next use, and anything still holding its
+ * definition can keep using it.
+ * <p>
+ * The instantiation parameter, action overrides and listeners are the same for every tenant. Instances are thread
+ * safe, and a tenant is loaded once however many threads ask for it at the same time.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class TenantDefinitionRegistry {
+
+    Function<String, Path> manifests;
+    Object evaluatorInstantiationParam;
+    long memoryBudgetBytes;
+    List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction;
+    List<TransitionListener<? extends StatefulEntity>> listeners;
+
+    DefinitionPool pool = new DefinitionPool();
+
+    /**
+     * The loaded definitions by tenant, in order of least recent use. Guarded by this.
+     */
+    Map<String, StateMachineDefinition<? extends StatefulEntity>> tenants = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Held while a tenant is loaded, so concurrent first uses of a tenant load it once. Mapped until the load is
+     * published.
+     */
+    ConcurrentMap<String, Object> loadLocks = new ConcurrentHashMap<>();
+
+    @NonFinal
+    long loadCount;
+    @NonFinal
+    long evictionCount;
+
+    /**
+     * @param manifests                   Returns the manifest file of a tenant, or null for an unknown tenant. The
+     *                                    definition CSV is resolved relative to the directory of the manifest.
+     * @param evaluatorInstantiationParam Passed to evaluators and actions without an empty constructor, see
+     *                                    {@link StateMachineLoader}
+     * @param memoryBudgetBytes           The estimated heap the definitions may hold before tenants are evicted
+     */
+    public TenantDefinitionRegistry(@NonNull Function<String, Path> manifests, Object evaluatorInstantiationParam, long memoryBudgetBytes) {
+        this(manifests, evaluatorInstantiationParam, memoryBudgetBytes, null, null);
+    }
+
+    /**
+     * See {@link #TenantDefinitionRegistry(Function, Object, long)}. The action overrides and listeners are applied
+     * to the definition of every tenant.
+     */
+    public TenantDefinitionRegistry(
+        @NonNull Function<String, Path> manifests,
+        Object evaluatorInstantiationParam,
+        long memoryBudgetBytes,
+        List<ToStateActionOverrideDTO<? extends StatefulEntity>> toStateTransitionAction,
+        List<TransitionListener<? extends StatefulEntity>> listeners) {
+        this.manifests = manifests;
+        this.evaluatorInstantiationParam = evaluatorInstantiationParam;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.toStateTransitionAction = toStateTransitionAction;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Returns the definition of the tenant, loading it if it is not loaded
+     *
+     * @throws IllegalArgumentException If the tenant has no manifest
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends StatefulEntity> StateMachineDefinition<T> getDefinition(@NonNull String tenant) throws IOException, CsvValidationException, InstantiationException {
+        StateMachineDefinition<? extends StatefulEntity> definition = loaded(tenant);
+        if (definition != null) {
+            return (StateMachineDefinition<T>) definition;
+        }
+        while (true) {
+            Object lock = loadLocks.computeIfAbsent(tenant, t -> new Object());
+            synchronized (lock) {
+                // A lock is only removed by its holder once the load it guarded is published, so a lock that is no
+                // longer mapped may only be used to look the tenant up again; loading under it could race with a
+                // load under the lock that replaced it
+                if (loadLocks.get(tenant) == lock) {
+                    try {
+                        definition = loaded(tenant);
+                        return (StateMachineDefinition<T>) (definition != null ? definition : load(tenant));
+                    } finally {
+                        loadLocks.remove(tenant, lock);
+                    }
+                }
+            }
+            definition = loaded(tenant);
+            if (definition != null) {
+                return (StateMachineDefinition<T>) definition;
+            }
+        }
+    }
+
+    /**
+     * @return True if the definition of the tenant is loaded
+     */
+    public synchronized boolean isLoaded(@NonNull String tenant) {
+        return tenants.containsKey(tenant);
+    }
+
+    /**
+     * Drops the definition of the tenant, which is loaded again on its next use
+     *
+     * @return True if the definition of the tenant was loaded
+     */
+    public synchronized boolean evict(@NonNull String tenant) {
+        StateMachineDefinition<? extends StatefulEntity> definition = tenants.remove(tenant);
+        if (definition == null) {
+            return false;
+        }
+        pool.release(definition);
+        return true;
+    }
+
+    /**
+     * @return The number of tenants whose definition is loaded
+     */
+    public synchronized int getLoadedCount() {
+        return tenants.size();
+    }
+
+    /**
+     * @return The number of distinct definitions held for the loaded tenants
+     */
+    public int getDistinctDefinitionCount() {
+        return pool.getDefinitionCount();
+    }
+
+    /**
+     * @return The number of distinct rows shared by the definitions of the loaded tenants
+     */
+    public int getSharedRowCount() {
+        return pool.getRowCount();
+    }
+
+    /**
+     * @return The estimated heap held by the definitions of the loaded tenants, in bytes
+     */
+    public long getEstimatedBytes() {
+        return pool.getEstimatedBytes();
+    }
+
+    /**
+     * @return The number of times a definition was loaded, including loads of evicted tenants
+     */
+    public synchronized long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return The number of tenants evicted to stay within the memory budget
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private synchronized StateMachineDefinition<? extends StatefulEntity> loaded(String tenant) {
+        return tenants.get(tenant);
+    }
+
+    /**
+     * Called with the load lock of the tenant held, so no other thread is loading the tenant. A definition that is
+     * already published is kept and the one just loaded is released to the pool, so that the pool does not keep a
+     * holder for a definition no tenant maps to.
+     */
+    private StateMachineDefinition<? extends StatefulEntity> load(String tenant) throws IOException, CsvValidationException, InstantiationException {
+        Path manifest = manifests.apply(tenant);
+        if (manifest == null) {
+            throw new IllegalArgumentException("No manifest for tenant '" + tenant + "'");
+        }
+        StateMachineDefinition<? extends StatefulEntity> definition;
+        try (InputStream in = Files.newInputStream(manifest)) {
+            definition = new StateMachineLoader(in, evaluatorInstantiationParam, DefinitionResolver.directory(manifest.toAbsolutePath().getParent()), pool)
+                .load(null, null, toStateTransitionAction, listeners)
+                .getDefinition();
+        }
+        synchronized (this) {
+            loadCount++;
+            StateMachineDefinition<? extends StatefulEntity> published = tenants.putIfAbsent(tenant, definition);
+            if (published != null) {
+                pool.release(definition);
+                return published;
+            }
+            evictOverBudget();
+        }
+        return definition;
+    }
+
+    /**
+     * Evicts the least recently used tenants until the estimate is within the budget, keeping the most recent
+     */
+    private synchronized void evictOverBudget() {
+        Iterator<Map.Entry<String, StateMachineDefinition<? extends StatefulEntity>>> leastRecentlyUsed = tenants.entrySet().iterator();
+        while (pool.getEstimatedBytes() > memoryBudgetBytes && tenants.size() > 1) {
+            Map.Entry<String, StateMachineDefinition<? extends StatefulEntity>> eldest = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            pool.release(eldest.getValue());
+            evictionCount++;
+            log.debug("Evicted definition of tenant {}, {} bytes estimated for {} tenants", eldest.getKey(), pool.getEstimatedBytes(), tenants.size());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.glc.statemachine.loader;
+
+import com.glc.statemachine.StatefulEntity;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A version of a definition published by a {@link ReloadingDefinitionRegistry}, with the time it took to load
+ */
+@Getter
+@ToString(exclude = "loaded")
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class VersionedDefinition {
+
+    /**
+     * The name the definition is registered under
+     */
+    String name;
+
+    /**
+     * Starts at 1 for the definition loaded on registration and increases by one with every reload
+     */
+    long version;
+
+    /**
+     * The definition and what it was built from, which the next reload builds on
+     */
+    @Getter(AccessLevel.PACKAGE)
+    LoadedDefinition loaded;
+
+    /**
+     * When the version was published, in milliseconds since the epoch
+     */
+    long publishedAtMillis;
+
+    /**
+     * How long loading the manifest and CSV into the definition took
+     */
+    long loadNanos;
+
+    public StateMachineDefinition<? extends StatefulEntity> getDefinition() {
+        return loaded.getDefinition();
+    }
+}
@@ -0,0 +1,111 @@
+package com.glc.statemachine.replay;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.store.PrimitiveStateStore;
+import com.glc.statemachine.store.StoreEntity;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replays streams of historic (entity id, event name) records through a {@link StateMachineDefinition}, e.g. for
+ * reconciliation and backfills, without building an {@link com.glc.statemachine.ActionContext} or entity object per
+ * record.
+ * <p>
+ * The state of each entity is held in a {@link PrimitiveStateStore}, so memory grows with the number of distinct
+ * entities and not with the number of records, which are consumed one at a time. Entities start in the initial state
+ * the first time they are seen. Each record is matched with the same first match semantics as
+ * {@link StateMachineDefinition#getTransition(com.glc.statemachine.ActionContext)}, evaluating guards against a
+ * {@link StoreEntity} flyweight, but transition actions and listeners are not run, as replaying history must not repeat
+ * its side effects.
+ * <p>
+ * The outcome of each record is passed to a {@link ReplaySink} as it is processed and the counts are returned as
+ * {@link ReplayStatistics}. The final states can be streamed out with {@link #exportFinalStates(ReplaySink)} or read
+ * from the store.
+ * <p>
+ * Instances are not thread safe, see {@link ParallelReplayEngine} to replay across cores.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class BulkReplayEngine {
+    ReplayPlan plan;
+    @Getter
+    PrimitiveStateStore store;
+    int initialStateId;
+
+    /**
+     * @param definition   The definition to replay through
+     * @param initialState The state of entities before their first record
+     */
+    public BulkReplayEngine(@NonNull StateMachineDefinition<StoreEntity> definition, @NonNull State initialState) {
+        this(definition, new PrimitiveStateStore(definition), initialState);
+    }
+
+    /**
+     * @param definition   The definition to replay through
+     * @param store        Holds the states of the entities, e.g. the result of an earlier replay to continue from
+     * @param initialState The state of entities before their first record
+     * @throws IllegalArgumentException If the store was created for a different definition or the initial state is
+     *                                  not part of the definition
+     */
+    public BulkReplayEngine(@NonNull StateMachineDefinition<StoreEntity> definition, @NonNull PrimitiveStateStore store, @NonNull State initialState) {
+        if (store.getRegistry() != definition.getCompiled().getRegistry()) {
+            throw new IllegalArgumentException("The state store was created for a different state machine definition");
+        }
+        this.plan = new ReplayPlan(definition);
+        this.store = store;
+        this.initialStateId = initialStateIdOf(definition, initialState);
+    }
+
+    static int initialStateIdOf(StateMachineDefinition<StoreEntity> definition, State initialState) {
+        int stateId = definition.getCompiled().getStateId(initialState);
+        if (stateId == PrimitiveStateStore.UNKNOWN) {
+            throw new IllegalArgumentException("Initial state " + initialState.getStateName() + " is not part of the state machine definition");
+        }
+        return stateId;
+    }
+
+    public ReplayStatistics replay(@NonNull Stream<ReplayRecord> records) {
+        return replay(records.iterator(), ReplaySink.NONE);
+    }
+
+    public ReplayStatistics replay(@NonNull Stream<ReplayRecord> records, @NonNull ReplaySink sink) {
+        return replay(records.iterator(), sink);
+    }
+
+    public ReplayStatistics replay(@NonNull Iterator<ReplayRecord> records) {
+        return replay(records, ReplaySink.NONE);
+    }
+
+    /**
+     * Replays the records in order
+     *
+     * @param records The records to replay
+     * @param sink    Receives the outcome of each record
+     * @return The counts of this replay
+     */
+    public ReplayStatistics replay(@NonNull Iterator<ReplayRecord> records, @NonNull ReplaySink sink) {
+        ReplayStatistics statistics = new ReplayStatistics(plan);
+        long start = System.nanoTime();
+        while (records.hasNext()) {
+            ReplayRecord record = records.next();
+            plan.apply(store, initialStateId, record.getEntityId(), record.getEventName(), statistics, sink);
+        }
+        statistics.setElapsedNanos(System.nanoTime() - start);
+        log.debug("Replayed {} records with {} transitions and {} rejections in {}ms", statistics.getRecordCount(),
+            statistics.getTransitionCount(), statistics.getRejectedCount(), statistics.getElapsedNanos() / 1_000_000);
+        return statistics;
+    }
+
+    /**
+     * Passes the state of every entity seen so far to {@link ReplaySink#onFinalState(long, State)}
+     */
+    public void exportFinalStates(@NonNull ReplaySink sink) {
+        store.forEach((entityId, stateId) -> sink.onFinalState(entityId, store.getRegistry().getState(stateId)));
+    }
+}
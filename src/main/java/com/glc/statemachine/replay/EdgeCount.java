@@ -0,0 +1,23 @@
+package com.glc.statemachine.replay;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The number of times a replay moved entities from a state to another on an event
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class EdgeCount {
+    State fromState;
+    StateMachineEvent event;
+    State toState;
+    long count;
+}
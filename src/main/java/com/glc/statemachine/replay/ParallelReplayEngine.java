@@ -0,0 +1,250 @@
+package com.glc.statemachine.replay;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.store.PrimitiveStateStore;
+import com.glc.statemachine.store.StoreEntity;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replays (entity id, event name) records across the workers of a {@link ForkJoinPool}, with the same outcome as a
+ * {@link BulkReplayEngine} replaying them in order.
+ * <p>
+ * Records of different entities are independent, so they are split into partitions by a hash of the entity id and
+ * each partition is replayed by one task at a time, which keeps the records of an entity in order. Partitions are of
+ * even size whatever their number and follow the stripes of the {@link PrimitiveStateStore}, so workers only contend
+ * for the locks of the stripes at the boundaries of their partitions. The input is read in batches:
+ * while the workers replay one batch the calling thread reads and partitions the next, so memory is bounded by two
+ * batches whatever the length of the input.
+ * <p>
+ * Each partition counts into its own {@link ReplayStatistics}, and these are merged once the replay completes. The
+ * {@link ReplaySink} is called from the workers concurrently and must be thread safe.
+ * <p>
+ * Instances are not thread safe, only one replay may run at a time.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class ParallelReplayEngine {
+
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    ReplayPlan plan;
+    @Getter
+    PrimitiveStateStore store;
+    int initialStateId;
+    ForkJoinPool pool;
+    @Getter
+    int partitions;
+    int batchSize;
+
+    /**
+     * Creates an engine that replays on the common pool with a partition per worker
+     */
+    public ParallelReplayEngine(@NonNull StateMachineDefinition<StoreEntity> definition, @NonNull State initialState) {
+        this(definition, initialState, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an engine that replays on the pool with a partition per worker
+     */
+    public ParallelReplayEngine(@NonNull StateMachineDefinition<StoreEntity> definition, @NonNull State initialState, @NonNull ForkJoinPool pool) {
+        this(definition, new PrimitiveStateStore(definition, 0, Math.max(PrimitiveStateStore.DEFAULT_STRIPES, pool.getParallelism())),
+            initialState, pool, pool.getParallelism(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param definition   The definition to replay through
+     * @param store        Holds the states of the entities, e.g. the result of an earlier replay to continue from
+     * @param initialState The state of entities before their first record
+     * @param pool         Runs the replay of the partitions
+     * @param partitions   The number of partitions, best a divisor of the number of stripes of the store
+     * @param batchSize    The number of records read from the input per batch
+     * @throws IllegalArgumentException If the store was created for a different definition or the initial state is
+     *                                  not part of the definition
+     */
+    public ParallelReplayEngine(
+        @NonNull StateMachineDefinition<StoreEntity> definition,
+        @NonNull PrimitiveStateStore store,
+        @NonNull State initialState,
+        @NonNull ForkJoinPool pool,
+        int partitions,
+        int batchSize) {
+        if (store.getRegistry() != definition.getCompiled().getRegistry()) {
+            throw new IllegalArgumentException("The state store was created for a different state machine definition");
+        }
+        if (partitions < 1) {
+            throw new IllegalArgumentException("The number of partitions must be positive but was " + partitions);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive but was " + batchSize);
+        }
+        this.plan = new ReplayPlan(definition);
+        this.store = store;
+        this.initialStateId = BulkReplayEngine.initialStateIdOf(definition, initialState);
+        this.pool = pool;
+        this.partitions = partitions;
+        this.batchSize = batchSize;
+    }
+
+    public ReplayStatistics replay(@NonNull Stream<ReplayRecord> records) {
+        return replay(records.iterator(), ReplaySink.NONE);
+    }
+
+    public ReplayStatistics replay(@NonNull Stream<ReplayRecord> records, @NonNull ReplaySink sink) {
+        return replay(records.iterator(), sink);
+    }
+
+    public ReplayStatistics replay(@NonNull Iterator<ReplayRecord> records) {
+        return replay(records, ReplaySink.NONE);
+    }
+
+    /**
+     * Replays the records, keeping the order of the records of each entity
+     *
+     * @param records The records to replay
+     * @param sink    Receives the outcome of each record, from several threads at once
+     * @return The merged counts of every partition
+     */
+    public ReplayStatistics replay(@NonNull Iterator<ReplayRecord> records, @NonNull ReplaySink sink) {
+        long start = System.nanoTime();
+        ReplayStatistics[] statistics = new ReplayStatistics[partitions];
+        for (int p = 0; p < partitions; p++) {
+            statistics[p] = new ReplayStatistics(plan);
+        }
+
+        Batch current = new Batch(partitions);
+        Batch next = new Batch(partitions);
+        fill(current, records);
+        while (current.size > 0) {
+            ForkJoinTask<?>[] tasks = new ForkJoinTask[partitions];
+            for (int p = 0; p < partitions; p++) {
+                if (current.sizes[p] > 0) {
+                    tasks[p] = pool.submit(replayTask(current, p, statistics[p], sink));
+                }
+            }
+            // Read the next batch while the workers replay this one, but never leave them replaying when reading fails
+            Throwable failure = null;
+            try {
+                fill(next, records);
+            } catch (Throwable e) {
+                failure = e;
+                throw e;
+            } finally {
+                join(tasks, failure);
+            }
+
+            Batch replayed = current;
+            current = next;
+            next = replayed;
+        }
+
+        ReplayStatistics merged = new ReplayStatistics(plan);
+        for (ReplayStatistics partition : statistics) {
+            merged.merge(partition);
+        }
+        merged.setElapsedNanos(System.nanoTime() - start);
+        log.debug("Replayed {} records across {} partitions in {}ms", merged.getRecordCount(), partitions, merged.getElapsedNanos() / 1_000_000);
+        return merged;
+    }
+
+    private Runnable replayTask(Batch batch, int partition, ReplayStatistics statistics, ReplaySink sink) {
+        return () -> {
+            long[] entityIds = batch.entityIds[partition];
+            String[] eventNames = batch.eventNames[partition];
+            for (int i = 0, size = batch.sizes[partition]; i < size; i++) {
+                plan.apply(store, initialStateId, entityIds[i], eventNames[i], statistics, sink);
+            }
+        };
+    }
+
+    /**
+     * Waits for every task, so that none is still replaying when a failure is rethrown
+     *
+     * @param failure The failure the caller is already throwing, to which failures of the tasks are added as
+     *                suppressed, or null to throw the first failure of the tasks
+     */
+    private static void join(ForkJoinTask<?>[] tasks, Throwable failure) {
+        Throwable first = failure;
+        for (ForkJoinTask<?> task : tasks) {
+            if (task == null) {
+                continue;
+            }
+            try {
+                task.join();
+            } catch (Throwable e) {
+                if (first == null) {
+                    first = e;
+                } else {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first == null || first == failure) {
+            return;
+        }
+        if (first instanceof RuntimeException) {
+            throw (RuntimeException) first;
+        }
+        if (first instanceof Error) {
+            throw (Error) first;
+        }
+        throw new IllegalStateException(first);
+    }
+
+    private void fill(Batch batch, Iterator<ReplayRecord> records) {
+        batch.clear();
+        while (batch.size < batchSize && records.hasNext()) {
+            ReplayRecord record = records.next();
+            batch.add(store.getPartitionIndex(record.getEntityId(), partitions), record.getEntityId(), record.getEventName());
+        }
+    }
+
+    /**
+     * Passes the state of every entity seen so far to {@link ReplaySink#onFinalState(long, State)}
+     */
+    public void exportFinalStates(@NonNull ReplaySink sink) {
+        store.forEach((entityId, stateId) -> sink.onFinalState(entityId, store.getRegistry().getState(stateId)));
+    }
+
+    /**
+     * The records of a batch split by partition, reused from batch to batch
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Batch {
+        final long[][] entityIds;
+        final String[][] eventNames;
+        final int[] sizes;
+        int size;
+
+        Batch(int partitions) {
+            this.entityIds = new long[partitions][16];
+            this.eventNames = new String[partitions][16];
+            this.sizes = new int[partitions];
+        }
+
+        void add(int partition, long entityId, String eventName) {
+            int index = sizes[partition]++;
+            if (index == entityIds[partition].length) {
+                entityIds[partition] = Arrays.copyOf(entityIds[partition], index * 2);
+                eventNames[partition] = Arrays.copyOf(eventNames[partition], index * 2);
+            }
+            entityIds[partition][index] = entityId;
+            eventNames[partition][index] = eventName;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(sizes, 0);
+            size = 0;
+        }
+    }
+}
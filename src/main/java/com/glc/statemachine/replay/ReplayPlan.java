@@ -0,0 +1,203 @@
+package com.glc.statemachine.replay;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.definition.CompiledStateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import com.glc.statemachine.impl.DefaultTransition;
+import com.glc.statemachine.store.PrimitiveStateStore;
+import com.glc.statemachine.store.StoreEntity;
+import java.util.Arrays;
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The tables a replay of a definition runs on, built once and shared by every partition of a replay.
+ * <p>
+ * Each distinct target state of the candidates of a state / event cell is an edge with a dense id, so counting the
+ * transitions of a replay is an increment of a {@code long[]}. Only a {@link DefaultTransition} has a fixed target
+ * state, so a cell with any other transition has an edge to every state. Cells whose first candidate is an unguarded
+ * {@link DefaultTransition} are resolved from {@link #directTargets} without evaluating anything.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class ReplayPlan {
+    @Getter
+    StateMachineDefinition<StoreEntity> definition;
+    @Getter
+    CompiledStateMachineDefinition<StoreEntity> compiled;
+
+    /**
+     * The target state id of each cell whose first candidate is an unguarded {@link DefaultTransition}, otherwise
+     * {@link PrimitiveStateStore#UNKNOWN}
+     */
+    int[] directTargets;
+
+    /**
+     * The edge of each cell in {@link #directTargets}
+     */
+    int[] directEdges;
+
+    /**
+     * The edges of cell {@code c} are {@code edgeOffsets[c]} up to {@code edgeOffsets[c + 1]}
+     */
+    int[] edgeOffsets;
+    int[] edgeTargets;
+    int[] edgeCells;
+
+    ReplayPlan(StateMachineDefinition<StoreEntity> definition) {
+        this.definition = definition;
+        this.compiled = definition.getCompiled();
+        int cells = compiled.getStateCount() * compiled.getEventCount();
+        this.directTargets = new int[cells];
+        this.directEdges = new int[cells];
+        this.edgeOffsets = new int[cells + 1];
+        Arrays.fill(directTargets, PrimitiveStateStore.UNKNOWN);
+
+        int[] targets = new int[cells];
+        int[] owners = new int[cells];
+        int edges = 0;
+        for (int stateId = 0; stateId < compiled.getStateCount(); stateId++) {
+            for (int eventId = 0; eventId < compiled.getEventCount(); eventId++) {
+                int cell = cellOf(stateId, eventId);
+                edgeOffsets[cell] = edges;
+                TransitionEvaluationActions<StoreEntity>[] candidates = compiled.getCandidates(stateId, eventId);
+                if (candidates == null) {
+                    continue;
+                }
+                int[] cellTargets = targetsOf(candidates);
+                for (int target : cellTargets) {
+                    if (indexOf(targets, edgeOffsets[cell], edges, target) < 0) {
+                        if (edges == targets.length) {
+                            targets = Arrays.copyOf(targets, Math.max(edges * 2, edges + cellTargets.length));
+                            owners = Arrays.copyOf(owners, targets.length);
+                        }
+                        targets[edges] = target;
+                        owners[edges++] = cell;
+                    }
+                }
+                if (!candidates[0].getEvaluator().isPresent() && candidates[0].getTransition() instanceof DefaultTransition) {
+                    directTargets[cell] = compiled.getStateId(candidates[0].getTransition().getToState(null));
+                    directEdges[cell] = indexOf(targets, edgeOffsets[cell], edges, directTargets[cell]);
+                }
+            }
+        }
+        edgeOffsets[cells] = edges;
+        this.edgeTargets = Arrays.copyOf(targets, edges);
+        this.edgeCells = Arrays.copyOf(owners, edges);
+    }
+
+    /**
+     * @return The ids of the target states of the candidates, or of every state if a candidate is not a
+     * {@link DefaultTransition}, as its target depends on the context
+     */
+    private int[] targetsOf(TransitionEvaluationActions<StoreEntity>[] candidates) {
+        int[] targets = new int[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            Transition<StoreEntity> transition = candidates[i].getTransition();
+            if (!(transition instanceof DefaultTransition)) {
+                int[] all = new int[compiled.getStateCount()];
+                Arrays.setAll(all, stateId -> stateId);
+                return all;
+            }
+            targets[i] = compiled.getStateId(transition.getToState(null));
+        }
+        return targets;
+    }
+
+    private static int indexOf(int[] values, int from, int to, int value) {
+        for (int i = from; i < to; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int cellOf(int stateId, int eventId) {
+        return stateId * compiled.getEventCount() + eventId;
+    }
+
+    int getCellCount() {
+        return edgeOffsets.length - 1;
+    }
+
+    int getEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    State fromStateOfCell(int cell) {
+        return compiled.getState(cell / compiled.getEventCount());
+    }
+
+    StateMachineEvent eventOfCell(int cell) {
+        return compiled.getEvent(cell % compiled.getEventCount());
+    }
+
+    int cellOfEdge(int edge) {
+        return edgeCells[edge];
+    }
+
+    State toStateOfEdge(int edge) {
+        return compiled.getState(edgeTargets[edge]);
+    }
+
+    /**
+     * @return The edge of the cell to the target state, or -1 if no candidate of the cell moves to it
+     */
+    int edgeOf(int cell, int targetId) {
+        return indexOf(edgeTargets, edgeOffsets[cell], edgeOffsets[cell + 1], targetId);
+    }
+
+    /**
+     * Replays a single record against the state of the entity in the store, with the first match semantics of
+     * {@link StateMachineDefinition#getTransition(ActionContext)}. Entities not yet in the store start in the initial
+     * state. Only evaluators are run, actions and listeners are not.
+     */
+    void apply(PrimitiveStateStore store, int initialStateId, long entityId, String eventName, ReplayStatistics statistics, ReplaySink sink) {
+        statistics.recordCount++;
+        int stateId = store.getStateId(entityId);
+        if (stateId == PrimitiveStateStore.UNKNOWN) {
+            stateId = initialStateId;
+            store.setStateId(entityId, stateId);
+        }
+        int eventId = compiled.getRegistry().getEventId(eventName);
+        if (eventId == CompiledStateMachineDefinition.UNKNOWN) {
+            statistics.rejectedCount++;
+            statistics.unknownEventCount++;
+            sink.onRejected(entityId, compiled.getState(stateId), eventName);
+            return;
+        }
+
+        int cell = cellOf(stateId, eventId);
+        int target = directTargets[cell];
+        int edge = directEdges[cell];
+        if (target == PrimitiveStateStore.UNKNOWN && edgeOffsets[cell] != edgeOffsets[cell + 1]) {
+            ActionContext<StoreEntity> context = new ActionContext<>(compiled.getEvent(eventId), store.entity(entityId), definition);
+            Optional<Transition<StoreEntity>> transition = compiled.resolve(context);
+            if (transition.isPresent()) {
+                target = compiled.getStateId(transition.get().getToState(context));
+                edge = edgeOf(cell, target);
+                if (edge < 0) {
+                    throw new IllegalStateException("Transition from state " + compiled.getState(stateId).getStateName() + " on event " + eventName
+                        + " moved to a state that is not part of the definition");
+                }
+            }
+        }
+        if (target == PrimitiveStateStore.UNKNOWN) {
+            statistics.rejectedCount++;
+            statistics.rejectedByCell[cell]++;
+            sink.onRejected(entityId, compiled.getState(stateId), eventName);
+            return;
+        }
+
+        store.setStateId(entityId, target);
+        statistics.transitionCount++;
+        statistics.edgeCounts[edge]++;
+        sink.onTransition(entityId, compiled.getState(stateId), compiled.getEvent(eventId), compiled.getState(target));
+    }
+}
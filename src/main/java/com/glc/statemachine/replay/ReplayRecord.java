@@ -0,0 +1,23 @@
+package com.glc.statemachine.replay;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A historic event of an entity to replay through a {@link BulkReplayEngine}
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class ReplayRecord {
+    long entityId;
+
+    /**
+     * The name of the event, looked up in the definition being replayed
+     */
+    String eventName;
+}
@@ -0,0 +1,37 @@
+package com.glc.statemachine.replay;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+
+/**
+ * Receives the outcome of each replayed record as it is processed, and the final states on
+ * {@link BulkReplayEngine#exportFinalStates(ReplaySink)}, so that results can be written out incrementally rather than
+ * held in memory. States and events are the canonical instances of the replayed definition.
+ */
+public interface ReplaySink {
+
+    /**
+     * Ignores every outcome
+     */
+    ReplaySink NONE = new ReplaySink() {
+    };
+
+    /**
+     * Called when a record moved the entity to a new state
+     */
+    default void onTransition(long entityId, State fromState, StateMachineEvent event, State toState) {
+    }
+
+    /**
+     * Called when a record did not match any transition from the state of the entity, or named an event that is not
+     * part of the definition
+     */
+    default void onRejected(long entityId, State state, String eventName) {
+    }
+
+    /**
+     * Called for each entity when the final states are exported
+     */
+    default void onFinalState(long entityId, State state) {
+    }
+}
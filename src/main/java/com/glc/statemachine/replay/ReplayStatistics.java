@@ -0,0 +1,106 @@
+package com.glc.statemachine.replay;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.definition.CompiledStateMachineDefinition;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The counts of a replay: records read, transitions made, events rejected and the number of transitions along each
+ * edge of the definition.
+ */
+public class ReplayStatistics {
+    // Package-private so that ReplayPlan counts without indirection
+    final ReplayPlan plan;
+    final long[] edgeCounts;
+    final long[] rejectedByCell;
+
+    @Getter
+    long recordCount;
+    @Getter
+    long transitionCount;
+
+    /**
+     * Includes the records whose event is not part of the definition
+     */
+    @Getter
+    long rejectedCount;
+    @Getter
+    long unknownEventCount;
+    @Getter
+    long elapsedNanos;
+
+    ReplayStatistics(ReplayPlan plan) {
+        this.plan = plan;
+        this.edgeCounts = new long[plan.getEdgeCount()];
+        this.rejectedByCell = new long[plan.getCellCount()];
+    }
+
+    /**
+     * Adds the counts of a replay of another partition of the same records
+     */
+    void merge(ReplayStatistics other) {
+        recordCount += other.recordCount;
+        transitionCount += other.transitionCount;
+        rejectedCount += other.rejectedCount;
+        unknownEventCount += other.unknownEventCount;
+        for (int i = 0; i < edgeCounts.length; i++) {
+            edgeCounts[i] += other.edgeCounts[i];
+        }
+        for (int i = 0; i < rejectedByCell.length; i++) {
+            rejectedByCell[i] += other.rejectedByCell[i];
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The records replayed per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : recordCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The count of every edge that was taken at least once, in state and event id order
+     */
+    public List<EdgeCount> getEdgeCounts() {
+        List<EdgeCount> counts = new ArrayList<>();
+        for (int edge = 0; edge < edgeCounts.length; edge++) {
+            if (edgeCounts[edge] > 0) {
+                int cell = plan.cellOfEdge(edge);
+                counts.add(new EdgeCount(plan.fromStateOfCell(cell), plan.eventOfCell(cell), plan.toStateOfEdge(edge), edgeCounts[edge]));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return The number of transitions from the state to the other on the event
+     */
+    public long getEdgeCount(@NonNull State fromState, @NonNull StateMachineEvent event, @NonNull State toState) {
+        int cell = cellOf(fromState, event);
+        int edge = cell < 0 ? -1 : plan.edgeOf(cell, plan.getCompiled().getStateId(toState));
+        return edge < 0 ? 0 : edgeCounts[edge];
+    }
+
+    /**
+     * @return The number of records for the event rejected while their entity was in the state
+     */
+    public long getRejectedCount(@NonNull State state, @NonNull StateMachineEvent event) {
+        int cell = cellOf(state, event);
+        return cell < 0 ? 0 : rejectedByCell[cell];
+    }
+
+    private int cellOf(State state, StateMachineEvent event) {
+        CompiledStateMachineDefinition<?> compiled = plan.getCompiled();
+        int stateId = compiled.getStateId(state);
+        int eventId = compiled.getEventId(event);
+        return stateId < 0 || eventId < 0 ? -1 : plan.cellOf(stateId, eventId);
+    }
+}
@@ -0,0 +1,410 @@
+package com.glc.statemachine.store;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.definition.StateEventRegistry;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Holds the state of each entity of a {@link StateMachineDefinition} as a state id keyed by a long entity id, without
+ * an object per entity.
+ * <p>
+ * Entries live in open addressing hash tables of primitive arrays, a {@code long} key and an {@code int} state id per
+ * slot, so an entity costs 12 bytes per slot, around 20 bytes on average with the table load between 3/8 and 3/4.
+ * The key space is split across a power of two number of stripes, each with its own table and {@link StampedLock}, so
+ * that updates of entities in different stripes do not contend and tables grow a stripe at a time. Reads are optimistic
+ * and only take the read lock when they overlap a write to the same stripe.
+ * <p>
+ * State ids are those of the {@link StateEventRegistry} of the definition the store was created for.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class PrimitiveStateStore {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * Returned from {@link #getStateId(long)} when the entity is not in the store
+     */
+    public static final int UNKNOWN = StateEventRegistry.UNKNOWN;
+
+    private static final int MIN_STRIPE_CAPACITY = 16;
+    private static final int MAX_STRIPE_CAPACITY = 1 << 30;
+
+    @Getter
+    StateEventRegistry registry;
+    Stripe[] stripes;
+    int stripeShift;
+
+    public PrimitiveStateStore(@NonNull StateMachineDefinition<?> definition) {
+        this(definition, 0, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param definition       The definition whose states are stored
+     * @param expectedEntities The number of entities to size the tables for up front, avoiding resizes while loading
+     * @param stripes          The number of independently locked stripes, rounded up to a power of two
+     */
+    public PrimitiveStateStore(@NonNull StateMachineDefinition<?> definition, long expectedEntities, int stripes) {
+        if (expectedEntities < 0) {
+            throw new IllegalArgumentException("The expected number of entities must not be negative but was " + expectedEntities);
+        }
+        if (stripes < 1 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("The number of stripes must be between 1 and 65536 but was " + stripes);
+        }
+        this.registry = definition.getCompiled().getRegistry();
+        int stripeCount = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        int capacity = capacityFor(expectedEntities / stripeCount + 1);
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * @return The smallest power of two table size that holds the entries below the maximum load
+     */
+    private static int capacityFor(long entries) {
+        long capacity = MIN_STRIPE_CAPACITY;
+        while (capacity < MAX_STRIPE_CAPACITY && entries * 4 > capacity * 3) {
+            capacity <<= 1;
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * Spreads the entity id over all 64 bits, the high bits choose the stripe and the low bits the slot
+     */
+    private static long hash(long entityId) {
+        long h = entityId * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return h ^ h >>> 29;
+    }
+
+    private Stripe stripeOf(long hash) {
+        // A shift of 64 is a no-op in Java, so a single stripe needs special casing
+        return stripeShift == 64 ? stripes[0] : stripes[(int) (hash >>> stripeShift)];
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Splits the hashes of the entity ids into equal ranges, so that work on many entities can be partitioned evenly
+     * whatever the number of partitions. The stripes are ranges of the same hashes, so each partition covers adjacent
+     * stripes and only shares the stripes at its boundaries with its neighbours, none if the number of partitions
+     * divides the number of stripes.
+     *
+     * @return The index of the range of the entity, between 0 and partitions - 1
+     */
+    public int getPartitionIndex(long entityId, int partitions) {
+        return (int) ((hash(entityId) >>> 32) * partitions >>> 32);
+    }
+
+    /**
+     * @return A flyweight entity for the id, which reads and writes its state in this store
+     */
+    public StoreEntity entity(long entityId) {
+        return new StoreEntity(this, entityId);
+    }
+
+    /**
+     * @return The state id of the entity or {@link #UNKNOWN} if it is not in the store
+     */
+    public int getStateId(long entityId) {
+        long hash = hash(entityId);
+        return stripeOf(hash).get(entityId, hash) - 1;
+    }
+
+    /**
+     * @return The state of the entity, if it is in the store
+     */
+    public Optional<State> getState(long entityId) {
+        int stateId = getStateId(entityId);
+        return stateId == UNKNOWN ? Optional.empty() : Optional.of(registry.getState(stateId));
+    }
+
+    /**
+     * Adds the entity or moves it to the state
+     *
+     * @throws IllegalArgumentException If the state is not part of the definition
+     */
+    public void setState(long entityId, @NonNull State state) {
+        setStateId(entityId, stateIdOf(state));
+    }
+
+    /**
+     * Adds the entity or moves it to the state with the id
+     *
+     * @throws IllegalArgumentException If there is no state with the id
+     */
+    public void setStateId(long entityId, int stateId) {
+        checkStateId(stateId);
+        long hash = hash(entityId);
+        stripeOf(hash).put(entityId, hash, stateId + 1);
+    }
+
+    /**
+     * Atomically moves the entity to the state with id {@code next} if it is in the state with id {@code expected}. An
+     * expected id of {@link #UNKNOWN} adds the entity only if it is not in the store.
+     *
+     * @return True if the state was updated
+     * @throws IllegalArgumentException If there is no state with the id {@code next}
+     */
+    public boolean compareAndSetStateId(long entityId, int expected, int next) {
+        checkStateId(next);
+        long hash = hash(entityId);
+        return stripeOf(hash).compareAndSet(entityId, hash, expected + 1, next + 1);
+    }
+
+    /**
+     * @return True if the entity was in the store
+     */
+    public boolean remove(long entityId) {
+        long hash = hash(entityId);
+        return stripeOf(hash).remove(entityId, hash);
+    }
+
+    /**
+     * @return The number of entities in the store
+     */
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return The bytes held by the tables of the store
+     */
+    public long getFootprintBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += (long) stripe.capacity() * (Long.BYTES + Integer.BYTES);
+        }
+        return bytes;
+    }
+
+    /**
+     * Visits every entity in the store. Each stripe is read under its read lock, so the entities of a stripe are a
+     * consistent view, but updates may interleave between stripes.
+     */
+    public void forEach(@NonNull EntryVisitor visitor) {
+        for (Stripe stripe : stripes) {
+            stripe.forEach(visitor);
+        }
+    }
+
+    int stateIdOf(State state) {
+        int stateId = registry.getStateId(state);
+        if (stateId == UNKNOWN) {
+            throw new IllegalArgumentException("State " + state.getStateName() + " is not part of the state machine definition of the store");
+        }
+        return stateId;
+    }
+
+    private void checkStateId(int stateId) {
+        if (stateId < 0 || stateId >= registry.getStateCount()) {
+            throw new IllegalArgumentException("There is no state with id " + stateId);
+        }
+    }
+
+    /**
+     * Receives each entity of the store and the id of its state
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(long entityId, int stateId);
+    }
+
+    /**
+     * The slots of a stripe, replaced as a whole when the stripe grows so that optimistic readers never see the keys
+     * of one table with the values of another
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Table {
+        long[] keys;
+
+        /**
+         * The state id plus one of each slot, zero for a free slot
+         */
+        int[] values;
+        int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * @return The slot holding the key, or the free slot ending its probe sequence
+         */
+        int slotOf(long key, long hash) {
+            int slot = (int) hash & mask;
+            // Bounded so that a read torn by a concurrent write cannot probe forever
+            for (int probes = 0; probes <= mask && values[slot] != 0 && keys[slot] != key; probes++) {
+                slot = slot + 1 & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * A lock striped slice of the store. Linear probing with backward shift deletion, so no tombstones build up.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Stripe {
+        final StampedLock lock = new StampedLock();
+        Table table;
+        int size;
+
+        Stripe(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        int get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            Table current = table;
+            int value = current.values[current.slotOf(key, hash)];
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    current = table;
+                    value = current.values[current.slotOf(key, hash)];
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return value;
+        }
+
+        void put(long key, long hash, int value) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = table.slotOf(key, hash);
+                if (table.values[slot] == 0) {
+                    slot = insertSlot(key, hash);
+                }
+                table.values[slot] = value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean compareAndSet(long key, long hash, int expected, int value) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = table.slotOf(key, hash);
+                if (table.values[slot] != expected) {
+                    return false;
+                }
+                if (expected == 0) {
+                    slot = insertSlot(key, hash);
+                }
+                table.values[slot] = value;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Claims a free slot for a new key, growing the table first if it is full. Called with the write lock held and
+         * the value written by the caller, after the key, so a torn optimistic read sees the slot as free.
+         */
+        private int insertSlot(long key, long hash) {
+            if ((size + 1) * 4L > table.keys.length * 3L && table.keys.length < MAX_STRIPE_CAPACITY) {
+                grow();
+            }
+            if (size == table.keys.length - 1) {
+                throw new IllegalStateException("State store stripe is full with " + size + " entities");
+            }
+            int slot = table.slotOf(key, hash);
+            table.keys[slot] = key;
+            size++;
+            return slot;
+        }
+
+        private void grow() {
+            Table current = table;
+            Table grown = new Table(current.keys.length << 1);
+            for (int i = 0; i < current.keys.length; i++) {
+                if (current.values[i] != 0) {
+                    int slot = grown.slotOf(current.keys[i], hash(current.keys[i]));
+                    grown.keys[slot] = current.keys[i];
+                    grown.values[slot] = current.values[i];
+                }
+            }
+            table = grown;
+        }
+
+        boolean remove(long key, long hash) {
+            long stamp = lock.writeLock();
+            try {
+                Table current = table;
+                int slot = current.slotOf(key, hash);
+                if (current.values[slot] == 0) {
+                    return false;
+                }
+                // Shift later entries of the probe sequence back so lookups never stop early at the freed slot
+                int free = slot;
+                for (int next = free + 1 & current.mask; current.values[next] != 0; next = next + 1 & current.mask) {
+                    int home = (int) hash(current.keys[next]) & current.mask;
+                    if ((next - home & current.mask) >= (next - free & current.mask)) {
+                        current.keys[free] = current.keys[next];
+                        current.values[free] = current.values[next];
+                        free = next;
+                    }
+                }
+                current.values[free] = 0;
+                current.keys[free] = 0;
+                size--;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        int capacity() {
+            long stamp = lock.readLock();
+            try {
+                return table.keys.length;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void forEach(EntryVisitor visitor) {
+            long stamp = lock.readLock();
+            try {
+                Table current = table;
+                for (int i = 0; i < current.keys.length; i++) {
+                    if (current.values[i] != 0) {
+                        visitor.visit(current.keys[i], current.values[i] - 1);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
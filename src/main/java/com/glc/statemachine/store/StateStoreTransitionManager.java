@@ -0,0 +1,180 @@
+package com.glc.statemachine.store;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.TransitionMetrics;
+import com.glc.statemachine.definition.CompiledStateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import com.glc.statemachine.impl.AtomicTransitionManager;
+import com.glc.statemachine.impl.DefaultTransition;
+import com.glc.statemachine.impl.DefaultTransitionAction;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * {@link AtomicTransitionManager} whose entities live in a {@link PrimitiveStateStore}, so that events can be triggered
+ * by entity id with {@link #triggerEvent(long, StateMachineEvent)} without an entity object per entity.
+ * <p>
+ * The store is the persistence of the entities: a transition is applied by a compare and set of the state id in the
+ * store, and {@link #persistEntity(ActionContext)} does nothing unless overridden, e.g. to write the state through to
+ * a database.
+ * <p>
+ * Cells whose first candidate is unguarded and has no actions other than placeholders, in a definition without
+ * listeners or enabled {@link TransitionMetrics}, are applied directly to the store without building an
+ * {@link ActionContext}, unless a subclass overrides {@link #persistEntity(ActionContext)}. Every other event is handled by
+ * {@link AtomicTransitionManager} with a {@link StoreEntity} flyweight, so evaluators, actions and listeners see the
+ * same context as with any other entity.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class StateStoreTransitionManager extends AtomicTransitionManager<StoreEntity> {
+
+    @Getter
+    PrimitiveStateStore store;
+    @Getter
+    StateMachineDefinition<StoreEntity> definition;
+    CompiledStateMachineDefinition<StoreEntity> compiled;
+
+    /**
+     * For each state / event cell of the compiled definition, the target state id if the cell can be applied directly
+     * to the store, otherwise {@link PrimitiveStateStore#UNKNOWN}
+     */
+    int[] directTargets;
+
+    /**
+     * The transition returned for each cell in {@link #directTargets}, built once so that the direct path does not
+     * allocate
+     */
+    Optional<Transition<StoreEntity>>[] directResults;
+
+    /**
+     * Whether a subclass persists entities, in which case every event takes the general path so that it is persisted
+     */
+    boolean persisting;
+
+    public StateStoreTransitionManager(@NonNull PrimitiveStateStore store, @NonNull StateMachineDefinition<StoreEntity> definition) {
+        this(store, definition, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * @param store      The store holding the state of the entities
+     * @param definition The definition the store was created for
+     * @param maxRetries The number of times the transition is resolved again after a conflicting state change
+     * @throws IllegalArgumentException If the store was created for a different definition
+     */
+    @SuppressWarnings("unchecked")
+    public StateStoreTransitionManager(@NonNull PrimitiveStateStore store, @NonNull StateMachineDefinition<StoreEntity> definition, int maxRetries) {
+        super(maxRetries);
+        if (store.getRegistry() != definition.getCompiled().getRegistry()) {
+            throw new IllegalArgumentException("The state store was created for a different state machine definition");
+        }
+        this.store = store;
+        this.definition = definition;
+        this.compiled = definition.getCompiled();
+        this.directTargets = new int[compiled.getStateCount() * compiled.getEventCount()];
+        this.directResults = new Optional[directTargets.length];
+        this.persisting = overridesPersistEntity(getClass());
+        Arrays.fill(directTargets, PrimitiveStateStore.UNKNOWN);
+        for (int stateId = 0; stateId < compiled.getStateCount(); stateId++) {
+            for (int eventId = 0; eventId < compiled.getEventCount(); eventId++) {
+                TransitionEvaluationActions<StoreEntity>[] candidates = compiled.getCandidates(stateId, eventId);
+                if (candidates != null && isDirect(candidates[0])) {
+                    Transition<StoreEntity> transition = candidates[0].getTransition();
+                    directTargets[indexOf(stateId, eventId)] = compiled.getStateId(transition.getToState(null));
+                    directResults[indexOf(stateId, eventId)] = Optional.of(transition);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True if the candidate always passes, has a fixed target state and nothing to execute
+     */
+    private static boolean isDirect(TransitionEvaluationActions<StoreEntity> candidate) {
+        Transition<StoreEntity> transition = candidate.getTransition();
+        return !candidate.getEvaluator().isPresent()
+            && transition instanceof DefaultTransition
+            && transition.getTransitionActions().map(StateStoreTransitionManager::isNoOp).orElse(true);
+    }
+
+    /**
+     * @return True if none of the actions does anything. A plain {@link DefaultTransitionAction} only logs, and is the
+     * placeholder {@link StateMachineDefinition} gives transitions defined without actions
+     */
+    private static boolean isNoOp(List<TransitionAction<StoreEntity>> actions) {
+        for (TransitionAction<StoreEntity> action : actions) {
+            if (action.getClass() != DefaultTransitionAction.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean overridesPersistEntity(Class<?> type) {
+        for (Class<?> current = type; current != StateStoreTransitionManager.class; current = current.getSuperclass()) {
+            try {
+                current.getDeclaredMethod("persistEntity", ActionContext.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not overridden at this level
+            }
+        }
+        return false;
+    }
+
+    private int indexOf(int stateId, int eventId) {
+        return stateId * compiled.getEventCount() + eventId;
+    }
+
+    /**
+     * Triggers the event on the entity with the id
+     *
+     * @return The transition that was performed
+     * @throws IllegalStateException If the entity is not in the store
+     */
+    public Optional<Transition<StoreEntity>> triggerEvent(long entityId, @NonNull StateMachineEvent event) {
+        return triggerEvent(entityId, event, null);
+    }
+
+    /**
+     * Triggers the event on the entity with the id, passing the parameters to the evaluators and actions
+     *
+     * @return The transition that was performed
+     * @throws IllegalStateException If the entity is not in the store
+     */
+    public Optional<Transition<StoreEntity>> triggerEvent(long entityId, @NonNull StateMachineEvent event, Map<String, Object> params) {
+        int stateId = store.getStateId(entityId);
+        int eventId = compiled.getEventId(event);
+        if (stateId != PrimitiveStateStore.UNKNOWN && eventId != CompiledStateMachineDefinition.UNKNOWN && !persisting && !hasListeners()
+            && !definition.getMetrics().isEnabled()) {
+            int index = indexOf(stateId, eventId);
+            int target = directTargets[index];
+            // On a conflict fall through to the general path, which resolves again against the new state
+            if (target != PrimitiveStateStore.UNKNOWN && store.compareAndSetStateId(entityId, stateId, target)) {
+                return directResults[index];
+            }
+        }
+        return triggerEvent(new ActionContext<>(event, store.entity(entityId), definition, params));
+    }
+
+    private boolean hasListeners() {
+        Optional<List<TransitionListener<StoreEntity>>> listeners = definition.getTransitionListeners();
+        return listeners.isPresent() && !listeners.get().isEmpty();
+    }
+
+    /**
+     * Does nothing, as the transition already updated the state in the store
+     */
+    @Override
+    protected void persistEntity(ActionContext<StoreEntity> actionContext) {
+    }
+}
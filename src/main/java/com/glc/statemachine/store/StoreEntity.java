@@ -0,0 +1,53 @@
+package com.glc.statemachine.store;
+
+import com.glc.statemachine.AtomicStatefulEntity;
+import com.glc.statemachine.State;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Flyweight {@link AtomicStatefulEntity} over an entry of a {@link PrimitiveStateStore}. It holds no state of its own,
+ * every read and write goes to the store, so instances are cheap to create per event and can be discarded after it.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class StoreEntity implements AtomicStatefulEntity {
+    PrimitiveStateStore store;
+
+    @Getter
+    long entityId;
+
+    /**
+     * @throws IllegalStateException If the entity is not in the store
+     */
+    @Override
+    public @NonNull State getState() {
+        int stateId = store.getStateId(entityId);
+        if (stateId == PrimitiveStateStore.UNKNOWN) {
+            throw new IllegalStateException("Entity " + entityId + " is not in the state store");
+        }
+        return store.getRegistry().getState(stateId);
+    }
+
+    @Override
+    public String getId() {
+        return Long.toString(entityId);
+    }
+
+    @Override
+    public void setState(State state) {
+        store.setState(entityId, state);
+    }
+
+    @Override
+    public boolean compareAndSetState(State expected, State next) {
+        int expectedId = store.getRegistry().getStateId(expected);
+        if (expectedId == PrimitiveStateStore.UNKNOWN) {
+            return false;
+        }
+        return store.compareAndSetStateId(entityId, expectedId, store.stateIdOf(next));
+    }
+}
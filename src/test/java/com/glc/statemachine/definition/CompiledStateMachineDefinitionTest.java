@@ -0,0 +1,107 @@
+package com.glc.statemachine.definition;
+
+import static com.glc.statemachine.definition.StateMachineDefinitionUtil.NAME_PARAM;
+import static com.glc.statemachine.definition.StateMachineDefinitionUtil.mockComplexStateMachine;
+import static com.glc.statemachine.definition.StateMachineDefinitionUtil.mockStateMachine;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.CacheableTransitionEvaluator;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.DefaultState;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CompiledStateMachineDefinitionTest {
+
+    @Test
+    public void shouldAssignDenseIdsToAllStatesAndEvents() {
+        // Given
+        CompiledStateMachineDefinition<TestCase> compiled = mockStateMachine().getCompiled();
+
+        // Then
+        assertEquals(TestState.values().length, compiled.getStateCount());
+        assertEquals(TestStateMachineEvent.values().length, compiled.getEventCount());
+        for (TestState state : TestState.values()) {
+            int id = compiled.getStateId(state);
+            assertNotEquals(CompiledStateMachineDefinition.UNKNOWN, id);
+            assertSame(state, compiled.getState(id));
+        }
+        assertEquals(CompiledStateMachineDefinition.UNKNOWN, compiled.getStateId(new DefaultState("Unknown")));
+    }
+
+    @Test
+    public void shouldReturnCandidatesInEvaluationOrder() {
+        // Given
+        StateMachineDefinition<TestCase> definition = mockComplexStateMachine();
+        CompiledStateMachineDefinition<TestCase> compiled = definition.getCompiled();
+
+        // When
+        TransitionEvaluationActions<TestCase>[] candidates = compiled.getCandidates(
+            compiled.getStateId(TestState.START),
+            compiled.getEventId(TestStateMachineEvent.BEGIN));
+
+        // Then
+        assertEquals(2, candidates.length);
+        for (int i = 0; i < candidates.length; i++) {
+            assertSame(definition.getMatrix().get(TestState.START).getTransitionEvaluationActions().get().get(TestStateMachineEvent.BEGIN).get(i), candidates[i]);
+        }
+        assertNull(compiled.getCandidates(compiled.getStateId(TestState.START), compiled.getEventId(TestStateMachineEvent.STOP)));
+        assertNull(compiled.getCandidates(compiled.getStateId(TestState.END), compiled.getEventId(TestStateMachineEvent.STOP)));
+    }
+
+    @Test
+    public void shouldFindFirstMatchingTransition() {
+        // Given
+        StateMachineDefinition<TestCase> definition = mockComplexStateMachine();
+        CompiledStateMachineDefinition<TestCase> compiled = definition.getCompiled();
+        TransitionEvaluationActions<TestCase>[] candidates = compiled.getCandidates(
+            compiled.getStateId(TestState.START),
+            compiled.getEventId(TestStateMachineEvent.BEGIN));
+
+        // When / then
+        assertSame(candidates[0].getTransition(), compiled.findTransition(new ActionContext<>(
+            TestStateMachineEvent.BEGIN, new TestCase(), definition, Collections.singletonMap(NAME_PARAM, "bob"))));
+        assertSame(candidates[1].getTransition(), compiled.findTransition(new ActionContext<>(
+            TestStateMachineEvent.BEGIN, new TestCase(), definition)));
+        assertNull(compiled.findTransition(new ActionContext<>(
+            TestStateMachineEvent.STOP, new TestCase(), definition)));
+    }
+
+    @Test
+    public void shouldEvaluateRepeatedCacheableEvaluatorOncePerDispatch() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        CacheableTransitionEvaluator<TestCase> isBob = new CacheableTransitionEvaluator<TestCase>() {
+            @Override
+            public String getDescription() {
+                return "Is bob";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<TestCase> context) {
+                calls.incrementAndGet();
+                return "bob".equals(context.getEntity().getName());
+            }
+        };
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, isBob, Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, isBob, Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.START)
+            .build();
+
+        // When
+        Transition<TestCase> transition = definition.getCompiled().findTransition(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+
+        // Then
+        assertEquals(TestState.START, transition.getToState(null));
+        assertEquals(1, calls.get());
+    }
+}
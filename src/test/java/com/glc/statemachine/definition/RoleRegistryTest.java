@@ -0,0 +1,70 @@
+package com.glc.statemachine.definition;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.impl.AuthorisedStateMachineEvent;
+import com.glc.statemachine.impl.DefaultStateMachineEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RoleRegistryTest {
+
+    @Test
+    public void shouldAssignPositionsInOrderRolesAreFirstSeen() {
+        // Given
+        RoleRegistry registry = new RoleRegistry(Arrays.asList(
+            new AuthorisedStateMachineEvent("Approve", Arrays.asList("admin", "owner")),
+            new DefaultStateMachineEvent("Open"),
+            new AuthorisedStateMachineEvent("Close", Arrays.asList("owner", "auditor"))
+        ));
+
+        // Then
+        assertEquals(Arrays.asList("admin", "owner", "auditor"), registry.getRoles());
+        assertEquals(1, registry.getPosition("owner"));
+        assertEquals(-1, registry.getPosition("viewer"));
+    }
+
+    @Test
+    public void shouldCompileRolesToMasksThatIntersectOnSharedRoles() {
+        // Given
+        RoleRegistry registry = new RoleRegistry(Collections.singletonList(new AuthorisedStateMachineEvent("Approve", Arrays.asList("admin", "owner"))));
+
+        // When
+        RoleMask owner = registry.compile(Collections.singletonList("owner"));
+        RoleMask event = registry.compile(Arrays.asList("admin", "owner"));
+
+        // Then
+        assertTrue(owner.intersects(event));
+        assertFalse(owner.intersects(registry.compile(Collections.singletonList("admin"))));
+        assertEquals(owner, registry.compile(Arrays.asList("viewer", "owner")));
+        assertSame(RoleMask.EMPTY, registry.compile(Collections.singletonList("viewer")));
+        assertFalse(RoleMask.EMPTY.intersects(event));
+    }
+
+    @Test
+    public void shouldSupportMoreThanSixtyFourRoles() {
+        // Given
+        List<StateMachineEvent> events = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            events.add(new AuthorisedStateMachineEvent("E" + i, Collections.singletonList("R" + i)));
+        }
+        RoleRegistry registry = new RoleRegistry(events);
+
+        // When
+        RoleMask mask = registry.compile(Arrays.asList("R0", "R129"));
+
+        // Then
+        assertTrue(mask.contains(0));
+        assertTrue(mask.contains(129));
+        assertFalse(mask.contains(64));
+        assertTrue(mask.intersects(registry.compile(Collections.singletonList("R129"))));
+        assertFalse(mask.intersects(registry.compile(Collections.singletonList("R128"))));
+    }
+}
@@ -0,0 +1,98 @@
+package com.glc.statemachine.definition;
+
+import static com.glc.statemachine.definition.StateMachineDefinitionUtil.mockStateMachine;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.InvalidStateMachineException;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StateMachineEventFromAndTo;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.DefaultState;
+import com.glc.statemachine.impl.DefaultStateMachineEvent;
+import com.glc.statemachine.loader.StateMachineLoader;
+import java.io.FileInputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StateEventRegistryTest {
+
+    private final StateMachineDefinition<TestCase> stateMachineDefinition = mockStateMachine();
+
+    @Test
+    public void shouldResolveEnumAndNamedInstancesToTheSameCanonicalInstance() {
+        // Given
+        StateEventRegistry registry = stateMachineDefinition.getCompiled().getRegistry();
+
+        // When / then
+        assertEquals(registry.getStateId(TestState.START), registry.getStateId(new DefaultState("Start")));
+        assertSame(TestState.START, registry.intern(new DefaultState("Start")));
+        assertEquals(registry.getEventId(TestStateMachineEvent.BEGIN), registry.getEventId(new DefaultStateMachineEvent("Begin")));
+        assertSame(TestStateMachineEvent.BEGIN, registry.intern(new DefaultStateMachineEvent("Begin")));
+        assertEquals(StateEventRegistry.UNKNOWN, registry.getStateId("Unknown"));
+    }
+
+    @Test
+    public void shouldTransitionEntityInNamedStateOnEnumDefinition() {
+        // Given
+        TestCase testCase = new TestCase(State.forValue("Start"));
+
+        // When / then
+        assertSame(TestState.MIDDLE, stateMachineDefinition.getTransition(
+            new ActionContext<>(StateMachineEvent.forValue("Begin"), testCase, stateMachineDefinition)).get().getToState(null));
+    }
+
+    @Test
+    public void shouldReturnSharedInstancesWhenDeserializing() {
+        assertSame(State.forValue("Start"), State.forValue("Start"));
+        assertSame(StateMachineEvent.forValue("Begin"), StateMachineEvent.forValue("Begin"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldShareStateInstancesAcrossLoadedCells() throws Exception {
+        // Given
+        StateMachineDefinition<TestCase> definition = (StateMachineDefinition<TestCase>) new StateMachineLoader(
+            new FileInputStream("src/test/resources/manifest.json")).load();
+
+        // When / then
+        for (State state : definition.getStates()) {
+            assertSame(state, definition.getCompiled().getRegistry().intern(state));
+            assertSame(State.forValue(state.getStateName()), state);
+        }
+        assertTrue(definition.getTransition(new ActionContext<>(StateMachineEvent.forValue("Event3"), new TestCase(State.forValue("End")), definition)).isPresent());
+    }
+
+    @Test
+    public void shouldQueryViewsOfEnumDefinitionWithNamedInstances() {
+        // Given
+        State start = new DefaultState("Start");
+
+        // When / then
+        assertEquals(Collections.singleton(TestStateMachineEvent.BEGIN), stateMachineDefinition.getEventsForState(start));
+        assertEquals(Collections.singleton(TestState.MIDDLE), stateMachineDefinition.getTargetStatesFromState(start));
+        assertSame(TestState.START, stateMachineDefinition.getStates().stream().filter(state -> state.getStateName().equals("Start")).findFirst().get());
+        assertTrue(stateMachineDefinition.getTransition(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(start), stateMachineDefinition)).isPresent());
+    }
+
+    @Test
+    public void shouldRejectRowsOfInstancesWithTheSameName() {
+        // Given
+        Map<State, StateMachineEventTransitionEvaluations<TestCase>> matrix = new LinkedHashMap<>();
+        matrix.put(TestState.START, StateMachineDefinition.buildRow(Collections.singletonList(
+            new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE))));
+        matrix.put(new DefaultState("Start"), StateMachineDefinition.buildRow(Collections.singletonList(
+            new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, new DefaultState("Start"), TestState.END))));
+
+        // When / then
+        assertThrows(InvalidStateMachineException.class, () -> new StateMachineDefinition<>(matrix));
+    }
+}
@@ -6,14 +6,23 @@ import static org.junit.jupiter.api.Assertions.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.InvalidStateMachineException;
 import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.StateMachineEventFromAndTo;
 import com.glc.statemachine.State;
 import com.glc.statemachine.definition.testcase.TestCase;
 import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
 import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.impl.AuthorisedStateMachineEvent;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
@@ -87,4 +96,201 @@ public class StateMachineDefinitionTest {
         // When / then
         assertIterableEquals(expectedList, stateMachineDefinition.getStates().stream().sorted(sorter).collect(Collectors.toList()));
     }
+
+    @Test
+    public void shouldBuildMatrixWithMultipleEventsFromTheSameState() {
+        // Given
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinition<>(
+            Arrays.asList(
+                new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE),
+                new StateMachineEventFromAndTo<>(TestStateMachineEvent.STOP, TestState.START, TestState.END)
+            )
+        );
+
+        // When / then
+        assertEquals(TestState.MIDDLE, definition.getTransition(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition)).get().getToState(null));
+        assertEquals(TestState.END, definition.getTransition(new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(), definition)).get().getToState(null));
+    }
+
+    @Test
+    public void shouldReturnSharedViews() {
+        // When / then
+        assertSame(stateMachineDefinition.getStates(), stateMachineDefinition.getStates());
+        assertSame(stateMachineDefinition.getEvents(), stateMachineDefinition.getEvents());
+        assertSame(stateMachineDefinition.getEventsForState(TestState.START), stateMachineDefinition.getEventsForState(TestState.START));
+        assertEquals(Collections.singleton(TestStateMachineEvent.BEGIN), stateMachineDefinition.getEventsForState(TestState.START));
+        assertEquals(Collections.singleton(TestState.MIDDLE), stateMachineDefinition.getTargetStatesFromState(TestState.START));
+        assertThrows(UnsupportedOperationException.class, () -> stateMachineDefinition.getStates().clear());
+    }
+
+    @Test
+    public void shouldReturnNoTargetStatesForStateWithoutTransitions() {
+        // When / then
+        assertTrue(stateMachineDefinition.getTargetStatesFromState(TestState.END).isEmpty());
+        assertTrue(stateMachineDefinition.getEventsForState(TestState.END).isEmpty());
+    }
+
+    @Test
+    public void shouldFilterEventsForStateByRoles() {
+        // Given
+        StateMachineEvent open = new AuthorisedStateMachineEvent(TestStateMachineEvent.BEGIN);
+        StateMachineEvent restricted = new AuthorisedStateMachineEvent(TestStateMachineEvent.STOP, Arrays.asList("admin", "owner"));
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinition<>(
+            Arrays.asList(
+                new StateMachineEventFromAndTo<>(open, TestState.START, TestState.MIDDLE),
+                new StateMachineEventFromAndTo<>(restricted, TestState.START, TestState.END)
+            )
+        );
+        List<String> roles = new ArrayList<>(Collections.singletonList("owner"));
+
+        // When
+        Set<StateMachineEvent> permitted = definition.getEventsForState(TestState.START, roles);
+        roles.clear();
+
+        // Then
+        assertEquals(new HashSet<>(Arrays.asList(open, restricted)), permitted);
+        assertSame(permitted, definition.getEventsForState(TestState.START, Collections.singletonList("owner")));
+        assertEquals(Collections.singleton(open), definition.getEventsForState(TestState.START, Collections.singletonList("viewer")));
+        assertEquals(Collections.singleton(open), definition.getEventsForState(TestState.START));
+    }
+
+    @Test
+    public void shouldFilterEventsForStateByRoleMask() {
+        // Given
+        StateMachineEvent open = new AuthorisedStateMachineEvent(TestStateMachineEvent.BEGIN);
+        StateMachineEvent restricted = new AuthorisedStateMachineEvent(TestStateMachineEvent.STOP, Arrays.asList("admin", "owner"));
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinition<>(
+            Arrays.asList(
+                new StateMachineEventFromAndTo<>(open, TestState.START, TestState.MIDDLE),
+                new StateMachineEventFromAndTo<>(restricted, TestState.START, TestState.END)
+            )
+        );
+
+        // When
+        RoleMask owner = definition.compileRoles(Arrays.asList("viewer", "owner"));
+        RoleMask viewer = definition.compileRoles(Collections.singletonList("viewer"));
+
+        // Then
+        assertEquals(new HashSet<>(Arrays.asList(open, restricted)), definition.getEventsForState(TestState.START, owner));
+        assertSame(definition.getEventsForState(TestState.START, owner), definition.getEventsForState(TestState.START, owner));
+        assertEquals(Collections.singleton(open), definition.getEventsForState(TestState.START, viewer));
+        assertEquals(Arrays.asList("admin", "owner"), definition.getRoleRegistry().getRoles());
+    }
+
+    @Test
+    public void shouldCreateDefaultPathFromStateNames() {
+        // Given
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinition<>(
+            Collections.singletonList(new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)),
+            Arrays.asList("Start", "Middle")
+        );
+
+        // When / then
+        assertEquals(Arrays.asList(TestState.START, TestState.MIDDLE), definition.getStatesForPath(StateMachineDefinition.DEFAULT_PATH));
+        assertThrows(InvalidStateMachineException.class, () -> new StateMachineDefinition<>(
+            Collections.singletonList(new StateMachineEventFromAndTo<TestCase>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)),
+            Arrays.asList("Start", "End")
+        ));
+    }
+
+    @Test
+    public void shouldReplaceCellsAndShareTheOthersWithThePreviousDefinition() {
+        // Given
+        StateMachineDefinition<TestCase> definition = fourCellDefinition();
+
+        // When
+        StateMachineDefinition<TestCase> changed = definition.withCells(
+            Collections.singletonMap(TestState.START, Collections.singleton(TestStateMachineEvent.STOP)),
+            Collections.singletonList(new StateMachineEventFromAndTo<>(TestStateMachineEvent.STOP, TestState.START, TestState.MIDDLE)),
+            Arrays.asList("Start", "Middle")
+        );
+
+        // Then
+        assertEquals(TestState.MIDDLE, resolve(changed, TestState.START, TestStateMachineEvent.STOP));
+        assertEquals(TestState.END, resolve(definition, TestState.START, TestStateMachineEvent.STOP));
+        assertEquals(TestState.MIDDLE, resolve(changed, TestState.START, TestStateMachineEvent.BEGIN));
+        assertEquals(Arrays.asList(TestState.START, TestState.MIDDLE), changed.getStatesForPath(StateMachineDefinition.DEFAULT_PATH));
+
+        // The unchanged row and cell, and the ids and compiled candidates of the unchanged row, are shared
+        assertSame(definition.getMatrix().get(TestState.MIDDLE), changed.getMatrix().get(TestState.MIDDLE));
+        assertSame(cell(definition, TestState.START, TestStateMachineEvent.BEGIN), cell(changed, TestState.START, TestStateMachineEvent.BEGIN));
+        assertSame(definition.getCompiled().getRegistry(), changed.getCompiled().getRegistry());
+        assertSame(candidates(definition, TestState.MIDDLE, TestStateMachineEvent.BEGIN), candidates(changed, TestState.MIDDLE, TestStateMachineEvent.BEGIN));
+    }
+
+    @Test
+    public void shouldRecompileWhenReplacedCellsChangeTheStates() {
+        // Given
+        StateMachineDefinition<TestCase> definition = fourCellDefinition();
+        Map<State, Set<StateMachineEvent>> cells = new HashMap<>();
+        cells.put(TestState.START, Collections.singleton(TestStateMachineEvent.STOP));
+        cells.put(TestState.MIDDLE, new HashSet<>(Arrays.asList(TestStateMachineEvent.BEGIN, TestStateMachineEvent.STOP)));
+
+        // When
+        StateMachineDefinition<TestCase> changed = definition.withCells(
+            cells,
+            Collections.singletonList(new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.MIDDLE, TestState.START)),
+            null
+        );
+
+        // Then
+        assertEquals(new HashSet<>(Arrays.asList(TestState.START, TestState.MIDDLE)), changed.getStates());
+        assertNotSame(definition.getCompiled().getRegistry(), changed.getCompiled().getRegistry());
+        assertEquals(TestState.START, resolve(changed, TestState.MIDDLE, TestStateMachineEvent.BEGIN));
+        assertNull(resolve(changed, TestState.MIDDLE, TestStateMachineEvent.STOP));
+        assertNull(resolve(changed, TestState.START, TestStateMachineEvent.STOP));
+        assertThrows(IllegalArgumentException.class, () -> definition.withCells(
+            cells,
+            Collections.singletonList(new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.END)),
+            null
+        ));
+    }
+
+    @Test
+    public void shouldNotChangeDefinitionWhenItsBuilderIsReused() {
+        // Given
+        StateMachineDefinitionBuilder<TestCase> builder = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, Collections.emptyList());
+        StateMachineDefinition<TestCase> definition = builder.build();
+
+        // When
+        builder.withTransition(TestStateMachineEvent.STOP, TestState.START, TestState.END, Collections.emptyList());
+        builder.withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, Collections.emptyList());
+        builder.withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END, Collections.emptyList());
+
+        // Then
+        assertEquals(Collections.singleton(TestState.START), definition.getMatrix().keySet());
+        assertEquals(1, cell(definition, TestState.START, TestStateMachineEvent.BEGIN).size());
+        assertNull(cell(definition, TestState.START, TestStateMachineEvent.STOP));
+        assertNull(resolve(definition, TestState.START, TestStateMachineEvent.STOP));
+        assertEquals(TestState.MIDDLE, resolve(definition, TestState.START, TestStateMachineEvent.BEGIN));
+        assertEquals(2, cell(builder.build(), TestState.START, TestStateMachineEvent.BEGIN).size());
+        assertThrows(UnsupportedOperationException.class, () -> definition.getMatrix().remove(TestState.START));
+    }
+
+    private static StateMachineDefinition<TestCase> fourCellDefinition() {
+        return new StateMachineDefinition<>(
+            Arrays.asList(
+                new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE),
+                new StateMachineEventFromAndTo<>(TestStateMachineEvent.STOP, TestState.START, TestState.END),
+                new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.MIDDLE, TestState.END),
+                new StateMachineEventFromAndTo<>(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.START)
+            )
+        );
+    }
+
+    private static State resolve(StateMachineDefinition<TestCase> definition, State state, StateMachineEvent event) {
+        TestCase testCase = new TestCase();
+        testCase.setState(state);
+        return definition.getTransition(new ActionContext<>(event, testCase, definition)).map(transition -> transition.getToState(null)).orElse(null);
+    }
+
+    private static List<TransitionEvaluationActions<TestCase>> cell(StateMachineDefinition<TestCase> definition, State state, StateMachineEvent event) {
+        return definition.getMatrix().get(state).getTransitionEvaluationActions().get().get(event);
+    }
+
+    private static TransitionEvaluationActions<TestCase>[] candidates(StateMachineDefinition<TestCase> definition, State state, StateMachineEvent event) {
+        CompiledStateMachineDefinition<TestCase> compiled = definition.getCompiled();
+        return compiled.getCandidates(compiled.getStateId(state), compiled.getEventId(event));
+    }
 }
@@ -0,0 +1,160 @@
+package com.glc.statemachine.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveTransitionResolverTest {
+
+    private final TransitionEvaluator<TestCase> isAlice = nameIs("alice");
+    private final TransitionEvaluator<TestCase> isBob = nameIs("bob");
+
+    private final StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, isAlice, Collections.emptyList())
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, isBob, Collections.emptyList())
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.START)
+        .withTransition(TestStateMachineEvent.STOP, TestState.START, TestState.MIDDLE, isAlice, Collections.emptyList())
+        .withTransition(TestStateMachineEvent.STOP, TestState.START, TestState.END, isBob, Collections.emptyList())
+        .build();
+
+    @Test
+    public void shouldMoveMostSelectiveGuardFirstInExclusiveCells() {
+        // Given
+        AdaptiveTransitionResolver<TestCase> resolver = new AdaptiveTransitionResolver<>(definition, 100)
+            .declareExclusive(TestState.START, TestStateMachineEvent.BEGIN);
+
+        // When
+        for (int i = 0; i < 200; i++) {
+            assertEquals(TestState.END, resolver.resolve(context(TestStateMachineEvent.BEGIN, "bob")).get().getToState(null));
+            assertEquals(TestState.END, resolver.resolve(context(TestStateMachineEvent.STOP, "bob")).get().getToState(null));
+        }
+
+        // Then
+        List<EvaluatorStatistics> statistics = resolver.getStatistics();
+        assertEquals(3, statistics.size());
+        assertEquals("Name is bob", statistics.get(0).getEvaluator());
+        assertEquals(1.0, statistics.get(0).getPassRate());
+        assertEquals("Name is alice", statistics.get(1).getEvaluator());
+        assertEquals(0.0, statistics.get(1).getPassRate());
+        assertEquals(100, statistics.get(1).getEvaluations());
+        assertNull(statistics.get(2).getEvaluator());
+    }
+
+    @Test
+    public void shouldResolveSameTransitionsAfterReordering() {
+        // Given
+        AdaptiveTransitionResolver<TestCase> resolver = new AdaptiveTransitionResolver<>(definition)
+            .declareExclusive(TestState.START, TestStateMachineEvent.BEGIN);
+        for (int i = 0; i < 10; i++) {
+            resolver.resolve(context(TestStateMachineEvent.BEGIN, "bob"));
+        }
+
+        // When
+        resolver.reorder();
+
+        // Then
+        assertEquals(TestState.END, resolver.resolve(context(TestStateMachineEvent.BEGIN, "bob")).get().getToState(null));
+        assertEquals(TestState.MIDDLE, resolver.resolve(context(TestStateMachineEvent.BEGIN, "alice")).get().getToState(null));
+        assertEquals(TestState.START, resolver.resolve(context(TestStateMachineEvent.BEGIN, "carol")).get().getToState(null));
+        assertEquals(TestState.MIDDLE, resolver.resolve(context(TestStateMachineEvent.STOP, "alice")).get().getToState(null));
+    }
+
+    @Test
+    public void shouldMeasureEvaluationsWhenMetricsAreEnabled() {
+        // Given
+        InMemoryTransitionMetrics metrics = new InMemoryTransitionMetrics();
+        StateMachineDefinition<TestCase> measured = definition.withMetrics(metrics);
+        AdaptiveTransitionResolver<TestCase> resolver = new AdaptiveTransitionResolver<>(measured)
+            .declareExclusive(TestState.START, TestStateMachineEvent.BEGIN);
+        TestCase testCase = new TestCase();
+        testCase.setName("bob");
+
+        // When
+        resolver.resolve(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, measured));
+
+        // Then
+        TransitionMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getEvaluators().size());
+        assertEquals(1, snapshot.getEvaluators().stream().mapToLong(TransitionMetricsSnapshot.Component::getPasses).sum());
+    }
+
+    @Test
+    public void shouldRejectCellsWithoutTransitions() {
+        // Given
+        AdaptiveTransitionResolver<TestCase> resolver = new AdaptiveTransitionResolver<>(definition);
+
+        // When / then
+        assertThrows(IllegalArgumentException.class, () -> resolver.declareExclusive(TestState.MIDDLE, TestStateMachineEvent.BEGIN));
+    }
+
+    @Test
+    public void shouldReorderManyGuardsWhileOtherThreadsResolve() throws Exception {
+        // Given
+        StateMachineDefinitionBuilder<TestCase> builder = new StateMachineDefinitionBuilder<>();
+        for (int i = 0; i < 40; i++) {
+            builder.withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, nameIs("n" + i), Collections.emptyList());
+        }
+        AdaptiveTransitionResolver<TestCase> resolver = new AdaptiveTransitionResolver<>(builder.build(), 1)
+            .declareExclusive(TestState.START, TestStateMachineEvent.BEGIN);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        // When
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 5_000; i++) {
+                        // Every resolution reorders, so the ranks change while other threads sort them
+                        if (!resolver.resolve(context(TestStateMachineEvent.BEGIN, "n" + (i * (seed + 1)) % 40)).isPresent()) {
+                            throw new AssertionError("No transition resolved");
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(40, resolver.getStatistics().size());
+    }
+
+    private ActionContext<TestCase> context(TestStateMachineEvent event, String name) {
+        TestCase testCase = new TestCase();
+        testCase.setName(name);
+        return new ActionContext<>(event, testCase, definition);
+    }
+
+    private static TransitionEvaluator<TestCase> nameIs(String name) {
+        return new TransitionEvaluator<TestCase>() {
+            @Override
+            public String getDescription() {
+                return "Name is " + name;
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<TestCase> context) {
+                return name.equals(context.getEntity().getName());
+            }
+        };
+    }
+}
@@ -0,0 +1,246 @@
+package com.glc.statemachine.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionConflictException;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class AtomicTransitionManagerTest {
+
+    private final AtomicInteger persisted = new AtomicInteger();
+
+    private AtomicTransitionManager<AtomicTestCase> transitionManager(int maxRetries) {
+        return new AtomicTransitionManager<AtomicTestCase>(maxRetries) {
+            @Override
+            protected void persistEntity(ActionContext<AtomicTestCase> actionContext) {
+                persisted.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void shouldTransitionSharedEntityOnceWhenEventsRace() throws Exception {
+        // Given
+        AtomicInteger actions = new AtomicInteger();
+        StateMachineDefinition<AtomicTestCase> definition = new StateMachineDefinitionBuilder<AtomicTestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, Collections.singletonList(new DefaultTransitionAction<AtomicTestCase>("count") {
+                @Override
+                public void execute(ActionContext<AtomicTestCase> actionContext) {
+                    actions.incrementAndGet();
+                }
+            }))
+            .build();
+        AtomicTransitionManager<AtomicTestCase> transitionManager = transitionManager(AtomicTransitionManager.DEFAULT_MAX_RETRIES);
+        AtomicTestCase testCase = new AtomicTestCase();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger transitioned = new AtomicInteger();
+
+        // When
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition)).isPresent()) {
+                    transitioned.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertEquals(TestState.MIDDLE, testCase.getState());
+        assertEquals(1, transitioned.get());
+        assertEquals(1, actions.get());
+        assertEquals(1, persisted.get());
+    }
+
+    @Test
+    public void shouldResolveAgainWhenStateChangesConcurrently() {
+        // Given
+        AtomicTestCase testCase = new AtomicTestCase();
+        AtomicTransitionManager<AtomicTestCase> transitionManager = transitionManager(AtomicTransitionManager.DEFAULT_MAX_RETRIES);
+        StateMachineDefinition<AtomicTestCase> definition = new StateMachineDefinitionBuilder<AtomicTestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, new ConcurrentlyMovingEvaluator(TestState.MIDDLE, 1), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.MIDDLE, TestState.END)
+            .build();
+
+        // When
+        Optional<Transition<AtomicTestCase>> transition = transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition));
+
+        // Then
+        assertTrue(transition.isPresent());
+        assertEquals(TestState.MIDDLE, transition.get().getFromState());
+        assertEquals(TestState.END, testCase.getState());
+        assertEquals(1, transitionManager.getConflictCount());
+        assertEquals(0, transitionManager.getExhaustedCount());
+        assertEquals(1, persisted.get());
+    }
+
+    @Test
+    public void shouldThrowWhenRetriesAreExhausted() {
+        // Given
+        AtomicTestCase testCase = new AtomicTestCase();
+        AtomicTransitionManager<AtomicTestCase> transitionManager = transitionManager(2);
+        StateMachineDefinition<AtomicTestCase> definition = new StateMachineDefinitionBuilder<AtomicTestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, new ConcurrentlyMovingEvaluator(TestState.START, Integer.MAX_VALUE), Collections.emptyList())
+            .build();
+
+        // When
+        assertThrows(TransitionConflictException.class, () -> transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition)));
+
+        // Then
+        assertEquals(3, transitionManager.getConflictCount());
+        assertEquals(1, transitionManager.getExhaustedCount());
+        assertEquals(0, persisted.get());
+        assertEquals(TestState.START.getStateName(), testCase.getState().getStateName());
+    }
+
+    @Test
+    public void shouldResolveAgainstTheStateReadWhenStateChangesBeforeResolving() {
+        // Given
+        AtomicTransitionManager<AtomicTestCase> transitionManager = transitionManager(AtomicTransitionManager.DEFAULT_MAX_RETRIES);
+        StateMachineDefinition<AtomicTestCase> definition = new StateMachineDefinitionBuilder<AtomicTestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.MIDDLE, TestState.END)
+            .build();
+        AtomicTestCase testCase = new AtomicTestCase() {
+            private int reads;
+
+            @Override
+            public State getState() {
+                if (++reads == 2) {
+                    // Another thread moves the entity on and back between the manager reading the state and resolving
+                    setState(TestState.MIDDLE);
+                    State moved = super.getState();
+                    setState(TestState.START);
+                    return moved;
+                }
+                return super.getState();
+            }
+        };
+
+        // When
+        Optional<Transition<AtomicTestCase>> transition = transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition));
+
+        // Then
+        assertTrue(transition.isPresent());
+        assertEquals(TestState.START, transition.get().getFromState());
+        assertEquals(TestState.MIDDLE, testCase.getState());
+    }
+
+    @Test
+    public void shouldRestoreTheStateReadWhenAnActionThrows() {
+        // Given
+        AtomicTestCase testCase = new AtomicTestCase();
+        AtomicTransitionManager<AtomicTestCase> transitionManager = transitionManager(AtomicTransitionManager.DEFAULT_MAX_RETRIES);
+        StateMachineDefinition<AtomicTestCase> definition = new StateMachineDefinitionBuilder<AtomicTestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, Collections.singletonList(new DefaultTransitionAction<AtomicTestCase>("fails") {
+                @Override
+                public void execute(ActionContext<AtomicTestCase> actionContext) {
+                    throw new IllegalStateException("Failed");
+                }
+            }))
+            .build();
+
+        // When
+        assertThrows(IllegalStateException.class, () -> transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition)));
+
+        // Then
+        assertEquals(TestState.START, testCase.getState());
+        assertEquals(0, persisted.get());
+    }
+
+    @Test
+    public void shouldFindNoTransitionWhenResolverFindsNoneForAnEqualStateInstance() {
+        // Given
+        AtomicTransitionManager<AtomicTestCase> transitionManager = new AtomicTransitionManager<AtomicTestCase>(context -> Optional.empty(), 2) {
+            @Override
+            protected void persistEntity(ActionContext<AtomicTestCase> actionContext) {
+                persisted.incrementAndGet();
+            }
+        };
+        StateMachineDefinition<AtomicTestCase> definition = new StateMachineDefinitionBuilder<AtomicTestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .build();
+        AtomicTestCase testCase = new AtomicTestCase() {
+            @Override
+            public State getState() {
+                // A new instance on each read, as an entity holding its state by name would return
+                return new DefaultState(super.getState().getStateName());
+            }
+        };
+
+        // When
+        Optional<Transition<AtomicTestCase>> transition = transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.STOP, testCase, definition));
+
+        // Then
+        assertFalse(transition.isPresent());
+        assertEquals(0, transitionManager.getConflictCount());
+    }
+
+    /**
+     * Passes, but replaces the entity state behind the manager's back the first few times it is called, as another
+     * thread transitioning the entity would
+     */
+    private static class ConcurrentlyMovingEvaluator implements TransitionEvaluator<AtomicTestCase> {
+        private final State movedTo;
+        private int remainingMoves;
+
+        ConcurrentlyMovingEvaluator(State movedTo, int moves) {
+            this.movedTo = movedTo;
+            this.remainingMoves = moves;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Moves the entity concurrently";
+        }
+
+        @Override
+        public boolean evaluate(ActionContext<AtomicTestCase> context) {
+            if (remainingMoves-- > 0) {
+                // A new instance with the same name, so the compare and set on the read instance fails
+                context.getEntity().setState(new DefaultState(movedTo.getStateName()));
+            }
+            return true;
+        }
+    }
+
+    private static class AtomicTestCase extends AbstractAtomicStatefulEntity {
+        AtomicTestCase() {
+            super(TestState.START);
+        }
+
+        @Override
+        public String getId() {
+            return "A";
+        }
+    }
+}
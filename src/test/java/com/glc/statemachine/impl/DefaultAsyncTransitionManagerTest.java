@@ -0,0 +1,183 @@
+package com.glc.statemachine.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.AsyncTransitionAction;
+import com.glc.statemachine.AsyncTransitionEvaluator;
+import com.glc.statemachine.AsyncTransitionManager;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DefaultAsyncTransitionManagerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final List<String> persisted = Collections.synchronizedList(new ArrayList<>());
+
+    private final AsyncTransitionManager<TestCase> transitionManager = new DefaultAsyncTransitionManager<TestCase>(executor) {
+        @Override
+        protected CompletionStage<Void> persistEntityAsync(ActionContext<TestCase> actionContext) {
+            return CompletableFuture.runAsync(() -> persisted.add(actionContext.getEntity().getName()), executor);
+        }
+    };
+
+    /**
+     * Evaluator whose result is only available once the returned stage is completed by another thread
+     */
+    private final AsyncTransitionEvaluator<TestCase> nameIsB = new AsyncTransitionEvaluator<TestCase>() {
+        @Override
+        public String getDescription() {
+            return "Name is B";
+        }
+
+        @Override
+        public CompletionStage<Boolean> evaluateAsync(ActionContext<TestCase> context) {
+            return CompletableFuture.supplyAsync(() -> "B".equals(context.getEntity().getName()), executor);
+        }
+    };
+
+    private final AsyncTransitionAction<TestCase> renameToC = new AsyncTransitionAction<TestCase>() {
+        @Override
+        public String getName() {
+            return "renameToC";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Renames the entity to C";
+        }
+
+        @Override
+        public CompletionStage<Void> executeAsync(ActionContext<TestCase> actionContext) {
+            return CompletableFuture.runAsync(() -> actionContext.getEntity().setName("C"), executor);
+        }
+    };
+
+    private final StateMachineDefinition<TestCase> stateMachineDefinition = new StateMachineDefinitionBuilder<TestCase>()
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, nameIsB, Collections.singletonList(renameToC))
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, Collections.singletonList(new DefaultTransitionAction<>("middle")))
+        .build();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldComposeAsyncEvaluatorsActionsAndPersistence() {
+        // Given
+        TestCase testCase = new TestCase();
+        testCase.setName("B");
+
+        // When
+        Optional<Transition<TestCase>> transition = transitionManager.triggerEventAsync(
+            new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, stateMachineDefinition)).toCompletableFuture().join();
+
+        // Then
+        assertTrue(transition.isPresent());
+        assertEquals(TestState.END, testCase.getState());
+        assertEquals(Collections.singletonList("C"), persisted);
+    }
+
+    @Test
+    public void shouldFallThroughToNextCandidateWhenAsyncEvaluatorFails() {
+        // Given
+        TestCase testCase = new TestCase();
+
+        // When
+        Optional<Transition<TestCase>> transition = transitionManager.triggerEventAsync(
+            new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, stateMachineDefinition)).toCompletableFuture().join();
+
+        // Then
+        assertTrue(transition.isPresent());
+        assertEquals(TestState.MIDDLE, testCase.getState());
+        assertEquals(Collections.singletonList("A"), persisted);
+    }
+
+    @Test
+    public void shouldNotPersistWhenNoTransitionIsFound() {
+        // Given
+        TestCase testCase = new TestCase();
+
+        // When
+        Optional<Transition<TestCase>> transition = transitionManager.triggerEventAsync(
+            new ActionContext<>(TestStateMachineEvent.STOP, testCase, stateMachineDefinition)).toCompletableFuture().join();
+
+        // Then
+        assertFalse(transition.isPresent());
+        assertEquals(TestState.START, testCase.getState());
+        assertTrue(persisted.isEmpty());
+    }
+
+    @Test
+    public void shouldMeasureTheEdgeOfTheTransitionPerformed() {
+        // Given
+        InMemoryTransitionMetrics metrics = new InMemoryTransitionMetrics();
+        StateMachineDefinition<TestCase> measured = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END)
+            .build()
+            .withMetrics(metrics);
+        Queue<Runnable> queued = new ArrayDeque<>();
+        AsyncTransitionManager<TestCase> queuing = new DefaultAsyncTransitionManager<TestCase>(queued::add) {
+            @Override
+            protected CompletionStage<Void> persistEntityAsync(ActionContext<TestCase> actionContext) {
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        TestCase testCase = new TestCase();
+
+        // When
+        CompletableFuture<Optional<Transition<TestCase>>> transition = queuing.triggerEventAsync(
+            new ActionContext<>(TestStateMachineEvent.STOP, testCase, measured)).toCompletableFuture();
+        testCase.setState(TestState.MIDDLE);
+        while (!queued.isEmpty()) {
+            queued.poll().run();
+        }
+
+        // Then
+        assertTrue(transition.join().isPresent());
+        assertEquals(1, metrics.snapshot().getTransitionCount("Middle", "Stop", "End"));
+        assertEquals(0, metrics.snapshot().getTransitionCount("Start", "Stop", "End"));
+    }
+
+    @Test
+    public void shouldMeasureAsyncAndSynchronousStepsWhenMetricsAreEnabled() {
+        // Given
+        InMemoryTransitionMetrics metrics = new InMemoryTransitionMetrics();
+        StateMachineDefinition<TestCase> measured = stateMachineDefinition.withMetrics(metrics);
+        TestCase testCase = new TestCase();
+
+        // When
+        transitionManager.triggerEventAsync(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, measured)).toCompletableFuture().join();
+
+        // Then
+        TransitionMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getTransitionCount("Start", "Begin", "Middle"));
+        assertEquals(1, snapshot.getGetTransition().getCount());
+        assertEquals(1, snapshot.getPersistEntity().getCount());
+        assertEquals(1, snapshot.getEvaluators().size());
+        assertEquals("Name is B", snapshot.getEvaluators().get(0).getName());
+        assertEquals(0, snapshot.getEvaluators().get(0).getPasses());
+        assertEquals(1, snapshot.getEvaluators().get(0).getLatency().getCount());
+        assertEquals(1, snapshot.getActions().size());
+        assertEquals("middle", snapshot.getActions().get(0).getName());
+    }
+}
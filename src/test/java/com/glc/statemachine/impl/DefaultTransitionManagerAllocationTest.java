@@ -0,0 +1,94 @@
+package com.glc.statemachine.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionManager;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies that dispatching events through the {@link DefaultTransitionManager} does not allocate once warmed up
+ */
+class DefaultTransitionManagerAllocationTest {
+
+    private static final int WARM_UP_ROUNDS = 100_000;
+    private static final int MEASURED_ROUNDS = 50_000;
+
+    /**
+     * Each round dispatches a transitioning BEGIN, a non transitioning STOP and a transitioning STOP
+     */
+    private static final int EVENTS_PER_ROUND = 3;
+
+    private final TransitionManager<TestCase> transitionManager = new DefaultTransitionManager<TestCase>() {
+        @Override
+        protected void persistEntity(ActionContext<TestCase> actionContext) {
+
+        }
+    };
+
+    @Test
+    public void shouldNotAllocateWhenDispatchingEvents() {
+        // Given
+        com.sun.management.ThreadMXBean threadMXBean = allocationCounter();
+        long threadId = Thread.currentThread().getId();
+
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE,
+                new TransitionEvaluator<TestCase>() {
+                    @Override
+                    public String getDescription() {
+                        return "Has a name";
+                    }
+
+                    @Override
+                    public boolean evaluate(ActionContext<TestCase> context) {
+                        return context.getEntity().getName() != null;
+                    }
+                },
+                Collections.singletonList(new DefaultTransitionAction<>("begin")))
+            .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.START)
+            .build();
+        TestCase testCase = new TestCase();
+        ActionContext<TestCase> begin = new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition);
+        ActionContext<TestCase> stop = new ActionContext<>(TestStateMachineEvent.STOP, testCase, definition);
+        ActionContext<TestCase> noTransition = new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(), definition);
+
+        dispatch(begin, stop, noTransition, WARM_UP_ROUNDS);
+
+        // When
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        dispatch(begin, stop, noTransition, MEASURED_ROUNDS);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        // Then
+        assertEquals(TestState.START, testCase.getState());
+        int events = MEASURED_ROUNDS * EVENTS_PER_ROUND;
+        assertTrue(allocated < events, "Expected no allocation per event but " + allocated + " bytes were allocated for " + events + " events");
+    }
+
+    private void dispatch(ActionContext<TestCase> begin, ActionContext<TestCase> stop, ActionContext<TestCase> noTransition, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            transitionManager.triggerEvent(begin);
+            transitionManager.triggerEvent(noTransition);
+            transitionManager.triggerEvent(stop);
+        }
+    }
+
+    private com.sun.management.ThreadMXBean allocationCounter() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "Allocation counters are not available on this JVM");
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported(), "Allocation counters are not supported on this JVM");
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        return threadMXBean;
+    }
+}
@@ -4,11 +4,18 @@ import static com.glc.statemachine.definition.StateMachineDefinitionUtil.mockSta
 import static org.junit.jupiter.api.Assertions.*;
 
 import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
 import com.glc.statemachine.TransitionManager;
 import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
 import com.glc.statemachine.definition.testcase.TestCase;
 import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
 import com.glc.statemachine.definition.testcase.TestState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
 
 class DefaultTransitionManagerTest {
@@ -75,4 +82,64 @@ class DefaultTransitionManagerTest {
         assertEquals(TestState.START,testCase.getState());
     }
 
+    @Test
+    public void shouldTriggerEventsAndPersistTransitionedEntitiesInOneBatch() {
+        // Given
+        List<List<ActionContext<TestCase>>> batches = new ArrayList<>();
+        TransitionManager<TestCase> batchingTransitionManager = new DefaultTransitionManager<TestCase>() {
+            @Override
+            protected void persistEntity(ActionContext<TestCase> actionContext) {
+                throw new IllegalStateException("Entities should be persisted as a batch");
+            }
+
+            @Override
+            protected void persistEntities(List<ActionContext<TestCase>> actionContexts) {
+                batches.add(new ArrayList<>(actionContexts));
+            }
+        };
+        ActionContext<TestCase> begin = new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), stateMachineDefinition);
+        ActionContext<TestCase> ignored = new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(), stateMachineDefinition);
+        ActionContext<TestCase> stop = new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(TestState.MIDDLE), stateMachineDefinition);
+
+        // When
+        List<Optional<Transition<TestCase>>> outcomes = batchingTransitionManager.triggerEvents(Arrays.asList(begin, ignored, stop));
+
+        // Then
+        assertEquals(3, outcomes.size());
+        assertTrue(outcomes.get(0).isPresent());
+        assertFalse(outcomes.get(1).isPresent());
+        assertTrue(outcomes.get(2).isPresent());
+        assertEquals(TestState.MIDDLE, begin.getEntity().getState());
+        assertEquals(TestState.END, stop.getEntity().getState());
+        assertEquals(Collections.singletonList(Arrays.asList(begin, stop)), batches);
+    }
+
+    @Test
+    public void shouldPersistTransitionedEntitiesWhenBatchFails() {
+        // Given
+        List<ActionContext<TestCase>> persisted = new ArrayList<>();
+        TransitionManager<TestCase> recordingTransitionManager = new DefaultTransitionManager<TestCase>() {
+            @Override
+            protected void persistEntity(ActionContext<TestCase> actionContext) {
+                persisted.add(actionContext);
+            }
+        };
+        StateMachineDefinition<TestCase> failingDefinition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .withTransition(TestStateMachineEvent.STOP, TestState.START, TestState.END, Collections.singletonList(new DefaultTransitionAction<TestCase>("fail") {
+                @Override
+                public void execute(ActionContext<TestCase> actionContext) {
+                    throw new IllegalStateException("Failed");
+                }
+            }))
+            .build();
+        ActionContext<TestCase> begin = new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), failingDefinition);
+        ActionContext<TestCase> stop = new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(), failingDefinition);
+
+        // When
+        assertThrows(IllegalStateException.class, () -> recordingTransitionManager.triggerEvents(Arrays.asList(begin, stop)));
+
+        // Then
+        assertEquals(Collections.singletonList(begin), persisted);
+    }
 }
@@ -0,0 +1,227 @@
+package com.glc.statemachine.impl;
+
+import static com.glc.statemachine.definition.StateMachineDefinitionUtil.NAME_PARAM;
+import static com.glc.statemachine.definition.StateMachineDefinitionUtil.mockComplexStateMachine;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.TransitionManager;
+import com.glc.statemachine.TransitionMetrics;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class InMemoryTransitionMetricsTest {
+
+    private final InMemoryTransitionMetrics metrics = new InMemoryTransitionMetrics();
+    private final TransitionManager<TestCase> transitionManager = new DefaultTransitionManager<TestCase>() {
+        @Override
+        protected void persistEntity(ActionContext<TestCase> actionContext) {
+
+        }
+    };
+
+    @Test
+    public void shouldCountTransitionsPerEdgeAndEventsWithoutTransition() {
+        // Given
+        StateMachineDefinition<TestCase> definition = mockComplexStateMachine().withMetrics(metrics);
+        TestCase named = new TestCase();
+        TestCase unnamed = new TestCase();
+
+        // When
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, named, definition, params("Name")));
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, unnamed, definition));
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.STOP, named, definition));
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.STOP, named, definition));
+
+        // Then
+        TransitionMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getTransitionCount("Start", "Begin", "Middle"));
+        assertEquals(1, snapshot.getTransitionCount("Middle", "Stop", "End"));
+        assertEquals(1, snapshot.getNoTransitionCount("End", "Stop"));
+        assertEquals(0, snapshot.getNoTransitionCount("Start", "Begin"));
+        assertEquals(4, snapshot.getTriggerEvent().getCount());
+        assertEquals(4, snapshot.getGetTransition().getCount());
+        assertEquals(3, snapshot.getPersistEntity().getCount());
+    }
+
+    @Test
+    public void shouldMeasureEvaluatorsActionsAndListeners() {
+        // Given
+        List<String> notified = new ArrayList<>();
+        TransitionListener<TestCase> listener = (transition, context) -> notified.add(transition.getToState(context).getStateName());
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinition<>(mockComplexStateMachine().getMatrix(), null,
+            Collections.singletonList(listener)).withMetrics(metrics);
+        TestCase testCase = new TestCase();
+
+        // When
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition));
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.STOP, testCase, definition));
+
+        // Then
+        TransitionMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(Arrays.asList("Middle", "End"), notified);
+        assertEquals(2, snapshot.getEvaluators().size());
+        assertEquals(1, snapshot.getEvaluators().stream().mapToLong(TransitionMetricsSnapshot.Component::getPasses).sum());
+        assertEquals(2, snapshot.getEvaluators().stream().mapToLong(evaluator -> evaluator.getLatency().getCount()).sum());
+        assertEquals(3, snapshot.getActions().size());
+        assertEquals(1, snapshot.getListeners().size());
+        assertEquals(2, snapshot.getListeners().get(0).getLatency().getCount());
+    }
+
+    @Test
+    public void shouldCountFailuresAndRethrow() {
+        // Given
+        RuntimeException failure = new IllegalStateException("Listener failed");
+        TransitionListener<TestCase> listener = (transition, context) -> {
+            throw failure;
+        };
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinition<>(mockComplexStateMachine().getMatrix(), null,
+            Collections.singletonList(listener)).withMetrics(metrics);
+
+        // When
+        RuntimeException thrown = assertThrows(IllegalStateException.class,
+            () -> transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition)));
+
+        // Then
+        assertSame(failure, thrown);
+        TransitionMetricsSnapshot.Component component = metrics.snapshot().getListeners().get(0);
+        assertEquals(1, component.getFailures());
+        assertEquals(0, component.getLatency().getCount());
+    }
+
+    @Test
+    public void shouldShareTheMatrixAndLeaveTheOriginalDefinitionUnmeasured() {
+        // Given
+        StateMachineDefinition<TestCase> definition = mockComplexStateMachine();
+
+        // When
+        StateMachineDefinition<TestCase> measured = definition.withMetrics(metrics);
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+
+        // Then
+        assertNotSame(definition, measured);
+        assertSame(definition.getMatrix(), measured.getMatrix());
+        assertSame(TransitionMetrics.NONE, definition.getMetrics());
+        assertSame(metrics, measured.getMetrics());
+        assertEquals(0, metrics.snapshot().getTriggerEvent().getCount());
+    }
+
+    @Test
+    public void shouldCountEachEventOfABatchAndPersistItOnce() {
+        // Given
+        StateMachineDefinition<TestCase> definition = mockComplexStateMachine().withMetrics(metrics);
+
+        // When
+        transitionManager.triggerEvents(Arrays.asList(
+            new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition),
+            new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(TestState.END), definition),
+            new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(TestState.MIDDLE), definition)
+        ));
+
+        // Then
+        TransitionMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getTransitionCount("Start", "Begin", "Middle"));
+        assertEquals(1, snapshot.getTransitionCount("Middle", "Stop", "End"));
+        assertEquals(1, snapshot.getNoTransitionCount("End", "Begin"));
+        assertEquals(1, snapshot.getPersistEntity().getCount());
+    }
+
+    @Test
+    public void shouldExportSnapshotAsJson() throws Exception {
+        // Given
+        StateMachineDefinition<TestCase> definition = mockComplexStateMachine().withMetrics(metrics);
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+
+        // When
+        String json = new ObjectMapper().writeValueAsString(metrics.snapshot());
+
+        // Then
+        assertTrue(json.contains("\"fromState\":\"Start\""));
+        assertTrue(json.contains("\"toState\":\"Middle\""));
+        assertTrue(json.contains("\"p99Nanos\""));
+    }
+
+    @Test
+    public void shouldCountTheEdgeOfTheTransitionWhenPersistingChangesTheState() {
+        // Given
+        StateMachineDefinition<TestCase> definition = mockComplexStateMachine().withMetrics(metrics);
+        TransitionManager<TestCase> movingManager = new DefaultTransitionManager<TestCase>() {
+            @Override
+            protected void persistEntity(ActionContext<TestCase> actionContext) {
+                // E.g. another manager moving the entity on before the event is recorded
+                actionContext.getEntity().setState(TestState.END);
+            }
+        };
+
+        // When
+        movingManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+
+        // Then
+        TransitionMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getTransitionCount("Start", "Begin", "Middle"));
+        assertEquals(0, snapshot.getTransitionCount("Start", "Begin", "End"));
+    }
+
+    @Test
+    public void shouldMeasureInstancesOfTheSameClassAndNameTogether() {
+        // Given
+        StateMachineDefinition<TestCase> first = mockComplexStateMachine().withMetrics(metrics);
+        StateMachineDefinition<TestCase> second = mockComplexStateMachine().withMetrics(metrics);
+
+        // When
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(TestState.MIDDLE), first));
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(TestState.MIDDLE), second));
+
+        // Then
+        List<TransitionMetricsSnapshot.Component> actions = metrics.snapshot().getActions();
+        assertEquals(2, actions.size());
+        for (TransitionMetricsSnapshot.Component action : actions) {
+            assertEquals(DefaultTransitionAction.class.getName(), action.getType());
+            assertEquals(2, action.getLatency().getCount());
+        }
+    }
+
+    @Test
+    public void shouldReadPercentilesFromPowerOfTwoBuckets() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When
+        for (int i = 0; i < 98; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5_000);
+        histogram.record(-1);
+
+        // Then
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(127, snapshot.getP50Nanos());
+        assertEquals(127, snapshot.getP99Nanos());
+        assertEquals(5_000, snapshot.getPercentileNanos(100));
+        assertEquals(5_000, snapshot.getMaxNanos());
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(63, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    private static Map<String, Object> params(String name) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(NAME_PARAM, name);
+        return params;
+    }
+}
@@ -0,0 +1,136 @@
+package com.glc.statemachine.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.CacheableTransitionEvaluator;
+import com.glc.statemachine.State;
+import com.glc.statemachine.VersionedStatefulEntity;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.Test;
+
+class MemoizingTransitionEvaluatorTest {
+
+    private final CountingEvaluator delegate = new CountingEvaluator();
+
+    private final StateMachineDefinition<VersionedTestCase> definition = new StateMachineDefinitionBuilder<VersionedTestCase>()
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+        .build();
+
+    @Test
+    public void shouldReuseResultForSameEntityVersion() {
+        // Given
+        MemoizingTransitionEvaluator<VersionedTestCase> evaluator = new MemoizingTransitionEvaluator<>(delegate);
+        VersionedTestCase entity = new VersionedTestCase("A", 1);
+
+        // When
+        boolean first = evaluator.evaluate(context(entity));
+        boolean second = evaluator.evaluate(context(entity));
+        entity.setVersion(2);
+        boolean third = evaluator.evaluate(context(entity));
+
+        // Then
+        assertTrue(first);
+        assertTrue(second);
+        assertTrue(third);
+        assertEquals(2, delegate.calls);
+        assertEquals(1, evaluator.getHitCount());
+        assertEquals(2, evaluator.getMissCount());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedResult() {
+        // Given
+        MemoizingTransitionEvaluator<VersionedTestCase> evaluator = new MemoizingTransitionEvaluator<>(delegate, 2);
+        VersionedTestCase a = new VersionedTestCase("A", 1);
+        VersionedTestCase b = new VersionedTestCase("B", 1);
+        VersionedTestCase c = new VersionedTestCase("C", 1);
+
+        // When
+        evaluator.evaluate(context(a));
+        evaluator.evaluate(context(b));
+        evaluator.evaluate(context(a));
+        evaluator.evaluate(context(c));
+        evaluator.evaluate(context(a));
+        evaluator.evaluate(context(b));
+
+        // Then
+        assertEquals(4, delegate.calls);
+    }
+
+    @Test
+    public void shouldKeepResultsOfEntitiesAcrossStripes() {
+        // Given
+        MemoizingTransitionEvaluator<VersionedTestCase> evaluator = new MemoizingTransitionEvaluator<>(delegate);
+        List<VersionedTestCase> entities = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            entities.add(new VersionedTestCase(String.valueOf(i), 1));
+        }
+
+        // When
+        entities.forEach(entity -> evaluator.evaluate(context(entity)));
+        entities.forEach(entity -> evaluator.evaluate(context(entity)));
+        evaluator.clear();
+        entities.forEach(entity -> evaluator.evaluate(context(entity)));
+
+        // Then
+        assertEquals(2_000, delegate.calls);
+        assertEquals(1_000, evaluator.getHitCount());
+        assertEquals(2_000, evaluator.getMissCount());
+    }
+
+    @Test
+    public void shouldNotCacheEntityWithoutId() {
+        // Given
+        MemoizingTransitionEvaluator<VersionedTestCase> evaluator = new MemoizingTransitionEvaluator<>(delegate);
+        VersionedTestCase entity = new VersionedTestCase(null, 1);
+
+        // When
+        evaluator.evaluate(context(entity));
+        evaluator.evaluate(context(entity));
+
+        // Then
+        assertEquals(2, delegate.calls);
+        assertEquals(0, evaluator.getHitCount());
+    }
+
+    private ActionContext<VersionedTestCase> context(VersionedTestCase entity) {
+        return new ActionContext<>(TestStateMachineEvent.BEGIN, entity, definition);
+    }
+
+    private static class CountingEvaluator implements CacheableTransitionEvaluator<VersionedTestCase> {
+        int calls;
+
+        @Override
+        public String getDescription() {
+            return "Counts its calls";
+        }
+
+        @Override
+        public boolean evaluate(ActionContext<VersionedTestCase> context) {
+            calls++;
+            return true;
+        }
+    }
+
+    @Getter
+    @Setter
+    private static class VersionedTestCase implements VersionedStatefulEntity {
+        State state = TestState.START;
+        String id;
+        long version;
+
+        VersionedTestCase(String id, long version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.glc.statemachine.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionManager;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class OrderedTransitionDispatcherTest {
+
+    private static final int ENTITIES = 16;
+    private static final int ROUNDS = 1_000;
+
+    private final TransitionManager<TestCase> transitionManager = new DefaultTransitionManager<TestCase>() {
+        @Override
+        protected void persistEntity(ActionContext<TestCase> actionContext) {
+
+        }
+    };
+
+    @Test
+    public void shouldHandleEventsForAnEntityInDispatchOrder() throws Exception {
+        // Given
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.START)
+            .build();
+        List<TestCase> entities = new ArrayList<>();
+        for (int i = 0; i < ENTITIES; i++) {
+            TestCase testCase = new TestCase();
+            testCase.setId("entity-" + i);
+            entities.add(testCase);
+        }
+        List<CompletableFuture<Optional<Transition<TestCase>>>> outcomes = Collections.synchronizedList(new ArrayList<>());
+
+        // When
+        try (OrderedTransitionDispatcher<TestCase> dispatcher = new OrderedTransitionDispatcher<>(transitionManager, 4)) {
+            // Each entity is fed from its own thread, so entities sharing a lane are dispatched concurrently
+            List<Thread> producers = new ArrayList<>();
+            for (TestCase testCase : entities) {
+                Thread producer = new Thread(() -> {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        outcomes.add(dispatcher.dispatch(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition)));
+                        outcomes.add(dispatcher.dispatch(new ActionContext<>(TestStateMachineEvent.STOP, testCase, definition)));
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        }
+
+        // Then
+        assertEquals(ENTITIES * ROUNDS * 2, outcomes.size());
+        for (CompletableFuture<Optional<Transition<TestCase>>> outcome : outcomes) {
+            assertTrue(outcome.get().isPresent(), "Every event should find a transition when handled in order");
+        }
+        for (TestCase testCase : entities) {
+            assertEquals(TestState.START, testCase.getState());
+        }
+    }
+
+    @Test
+    public void shouldHandleEntitiesOnDifferentLanesInParallel() throws Exception {
+        // Given
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, Collections.singletonList(new DefaultTransitionAction<TestCase>("rendezvous") {
+                @Override
+                public void execute(ActionContext<TestCase> actionContext) {
+                    bothRunning.countDown();
+                    try {
+                        // Only completes if the other entity's action is running at the same time
+                        assertTrue(bothRunning.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }))
+            .build();
+
+        try (OrderedTransitionDispatcher<TestCase> dispatcher = new OrderedTransitionDispatcher<>(transitionManager, 2)) {
+            TestCase first = new TestCase();
+            first.setId("first");
+            TestCase second = new TestCase();
+            second.setId(idOnOtherLane(dispatcher, first.getId()));
+
+            // When
+            CompletableFuture<Optional<Transition<TestCase>>> firstOutcome = dispatcher.dispatch(new ActionContext<>(TestStateMachineEvent.BEGIN, first, definition));
+            CompletableFuture<Optional<Transition<TestCase>>> secondOutcome = dispatcher.dispatch(new ActionContext<>(TestStateMachineEvent.BEGIN, second, definition));
+
+            // Then
+            assertTrue(firstOutcome.get(10, TimeUnit.SECONDS).isPresent());
+            assertTrue(secondOutcome.get(10, TimeUnit.SECONDS).isPresent());
+            assertEquals(TestState.MIDDLE, first.getState());
+            assertEquals(TestState.MIDDLE, second.getState());
+        }
+    }
+
+    @Test
+    public void shouldAssignAnEntityToTheSameLane() throws Exception {
+        // Given
+        try (OrderedTransitionDispatcher<TestCase> dispatcher = new OrderedTransitionDispatcher<>(transitionManager, 8)) {
+
+            // Then
+            assertEquals(8, dispatcher.getLaneCount());
+            assertEquals(dispatcher.laneOf("entity"), dispatcher.laneOf(new String("entity")));
+            assertEquals(dispatcher.laneOf(null), dispatcher.laneOf(null));
+        }
+    }
+
+    private String idOnOtherLane(OrderedTransitionDispatcher<TestCase> dispatcher, String id) {
+        for (int i = 0; ; i++) {
+            String candidate = "other-" + i;
+            if (dispatcher.laneOf(candidate) != dispatcher.laneOf(id)) {
+                return candidate;
+            }
+        }
+    }
+}
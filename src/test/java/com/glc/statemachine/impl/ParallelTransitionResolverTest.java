@@ -0,0 +1,215 @@
+package com.glc.statemachine.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.TransitionManager;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.TransitionMetricsSnapshot.Component;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ParallelTransitionResolverTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ParallelTransitionResolver<TestCase> resolver = new ParallelTransitionResolver<>(executor);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldPickLowestIndexThatPassesRegardlessOfCompletionOrder() {
+        // Given
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.START, evaluator(false, 50), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, evaluator(true, 100), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, evaluator(true, 0), Collections.emptyList())
+            .build();
+
+        // When
+        Optional<Transition<TestCase>> transition = resolver.resolve(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+
+        // Then
+        assertEquals(TestState.MIDDLE, transition.get().getToState(null));
+    }
+
+    @Test
+    public void shouldEvaluateGuardsConcurrently() {
+        // Given
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.START, evaluator(false, 300), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, evaluator(false, 300), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, evaluator(false, 300), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .build();
+
+        // When
+        long start = System.nanoTime();
+        Optional<Transition<TestCase>> transition = resolver.resolve(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertEquals(TestState.MIDDLE, transition.get().getToState(null));
+        assertTrue(elapsedMillis < 800, "Guards took " + elapsedMillis + "ms, expected them to run concurrently");
+    }
+
+    @Test
+    public void shouldCancelRemainingEvaluationsOnceDecided() throws Exception {
+        // Given
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        TransitionEvaluator<TestCase> blocking = new TransitionEvaluator<TestCase>() {
+            @Override
+            public String getDescription() {
+                return "Blocks until interrupted";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<TestCase> context) {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return false;
+            }
+        };
+        TransitionEvaluator<TestCase> passesOnceBlockingStarted = new TransitionEvaluator<TestCase>() {
+            @Override
+            public String getDescription() {
+                return "Passes";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<TestCase> context) {
+                try {
+                    return started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, passesOnceBlockingStarted, Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, blocking, Collections.emptyList())
+            .build();
+
+        // When
+        Optional<Transition<TestCase>> transition = resolver.resolve(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+
+        // Then
+        assertEquals(TestState.MIDDLE, transition.get().getToState(null));
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldPropagateFailureOnlyWhenEarlierCandidatesFail() {
+        // Given
+        TransitionEvaluator<TestCase> failing = new TransitionEvaluator<TestCase>() {
+            @Override
+            public String getDescription() {
+                return "Fails";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<TestCase> context) {
+                throw new IllegalArgumentException("Failed");
+            }
+        };
+        StateMachineDefinition<TestCase> passingFirst = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, evaluator(true, 0), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, failing, Collections.emptyList())
+            .build();
+        StateMachineDefinition<TestCase> failingFirst = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, evaluator(false, 0), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, failing, Collections.emptyList())
+            .build();
+
+        // When / then
+        assertEquals(TestState.MIDDLE, resolver.resolve(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), passingFirst)).get().getToState(null));
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), failingFirst)));
+        assertFalse(resolver.resolve(new ActionContext<>(TestStateMachineEvent.STOP, new TestCase(), failingFirst)).isPresent());
+    }
+
+    @Test
+    public void shouldMeasureEvaluationsWhenMetricsAreEnabled() {
+        // Given
+        InMemoryTransitionMetrics metrics = new InMemoryTransitionMetrics();
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.START, evaluator(false, 0), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, evaluator(false, 1), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, evaluator(true, 2), Collections.emptyList())
+            .build()
+            .withMetrics(metrics);
+
+        // When
+        Optional<Transition<TestCase>> transition = resolver.resolve(new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition));
+
+        // Then
+        assertEquals(TestState.END, transition.get().getToState(null));
+        List<Component> evaluators = metrics.snapshot().getEvaluators();
+        assertEquals(3, evaluators.size());
+        assertEquals(3, evaluators.stream().mapToLong(evaluator -> evaluator.getLatency().getCount()).sum());
+        assertEquals(1, evaluators.stream().mapToLong(Component::getPasses).sum());
+    }
+
+    @Test
+    public void shouldResolveTransitionsOfTransitionManager() {
+        // Given
+        TransitionManager<TestCase> transitionManager = new DefaultTransitionManager<TestCase>(resolver) {
+            @Override
+            protected void persistEntity(ActionContext<TestCase> actionContext) {
+
+            }
+        };
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, evaluator(false, 10), Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, evaluator(true, 10), Collections.emptyList())
+            .build();
+        TestCase testCase = new TestCase();
+
+        // When
+        transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition));
+
+        // Then
+        assertEquals(TestState.MIDDLE, testCase.getState());
+    }
+
+    private TransitionEvaluator<TestCase> evaluator(boolean result, long delayMillis) {
+        return new TransitionEvaluator<TestCase>() {
+            @Override
+            public String getDescription() {
+                return "Returns " + result + " after " + delayMillis + "ms";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<TestCase> context) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }
+        };
+    }
+}
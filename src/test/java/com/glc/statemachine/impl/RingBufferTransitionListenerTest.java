@@ -0,0 +1,258 @@
+package com.glc.statemachine.impl;
+
+import static com.glc.statemachine.definition.StateMachineDefinitionUtil.mockStateMachine;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.RingBufferTransitionListener.OverflowPolicy;
+import com.glc.statemachine.impl.RingBufferTransitionListener.SnapshotListener;
+import com.glc.statemachine.impl.RingBufferTransitionListener.WaitStrategy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class RingBufferTransitionListenerTest {
+
+    private final StateMachineDefinition<TestCase> definition = mockStateMachine();
+    private final ActionContext<TestCase> context = new ActionContext<>(TestStateMachineEvent.BEGIN, new TestCase(), definition);
+    private final Transition<TestCase> transition = definition.getTransition(context).get();
+
+    @Test
+    public void shouldDeliverTransitionsInPublishOrderWithEachWaitStrategy() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            // Given
+            List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+            List<String> published = new ArrayList<>();
+            RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+                Collections.singletonList(s -> delivered.add(s.getEntityId())), 8, 1, waitStrategy, OverflowPolicy.BLOCK);
+
+            // When
+            for (int i = 0; i < 1_000; i++) {
+                TestCase entity = new TestCase();
+                entity.setId(String.valueOf(i));
+                published.add(entity.getId());
+                listener.onTransition(transition, new ActionContext<>(TestStateMachineEvent.BEGIN, entity, definition));
+            }
+            listener.close();
+
+            // Then
+            assertEquals(published, delivered, "Delivery order with " + waitStrategy);
+            assertEquals(1_000, listener.getPublishedCount());
+            assertEquals(1_000, listener.getDeliveredCount());
+            assertEquals(0, listener.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void shouldNotBlockPublisherOnSlowListener() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(5);
+        RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+            Collections.singletonList(blockingUntil(release, delivered)), 8);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            listener.onTransition(transition, context);
+        }
+
+        // Then
+        assertTrue(listener.getQueueDepth() >= 4);
+        release.countDown();
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        listener.close();
+        assertTrue(listener.getMaxDeliveryLagNanos() > 0);
+        assertTrue(listener.getMeanDeliveryLagNanos() > 0);
+    }
+
+    @Test
+    public void shouldDropTransitionsWhenFull() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+            Collections.singletonList(blockingUntil(release, new CountDownLatch(0))), 4, 1, WaitStrategy.BLOCKING, OverflowPolicy.DROP);
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            listener.onTransition(transition, context);
+        }
+        release.countDown();
+        listener.close();
+
+        // Then
+        assertTrue(listener.getDroppedCount() >= 20 - 4 - 1);
+        assertEquals(20, listener.getDeliveredCount() + listener.getDroppedCount());
+    }
+
+    @Test
+    public void shouldDeliverOnCallerWhenFull() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        String caller = Thread.currentThread().getName();
+        List<String> callerDeliveries = Collections.synchronizedList(new ArrayList<>());
+        SnapshotListener<TestCase> recording = s -> {
+            if (Thread.currentThread().getName().equals(caller)) {
+                callerDeliveries.add(caller);
+            }
+        };
+        RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+            Arrays.asList(recording, blockingUntil(release, new CountDownLatch(0))), 4, 1, WaitStrategy.YIELDING, OverflowPolicy.CALLER_RUNS);
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            listener.onTransition(transition, context);
+        }
+        int onCaller = callerDeliveries.size();
+        release.countDown();
+        listener.close();
+
+        // Then
+        assertTrue(onCaller >= 20 - 4 - 1, "Expected overflow to be delivered on the caller but was " + onCaller);
+        assertEquals(20, listener.getDeliveredCount());
+        assertEquals(0, listener.getDroppedCount());
+    }
+
+    @Test
+    public void shouldKeepDeliveringWhenListenerFails() throws Exception {
+        // Given
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        SnapshotListener<TestCase> failing = s -> {
+            throw new IllegalStateException("Failed");
+        };
+        RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+            Arrays.asList(failing, s -> delivered.add(s.getEntityId())), 4, 2, WaitStrategy.SLEEPING, OverflowPolicy.BLOCK);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            listener.onTransition(transition, context);
+        }
+        listener.close();
+
+        // Then
+        assertEquals(10, delivered.size());
+    }
+
+    @Test
+    public void shouldKeepConsumingWhenListenerThrowsAnError() {
+        // Given
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        SnapshotListener<TestCase> failing = s -> {
+            throw new AssertionError("Failed");
+        };
+        RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+            Arrays.asList(failing, s -> delivered.add(s.getEntityId())), 2, 1, WaitStrategy.SLEEPING, OverflowPolicy.BLOCK);
+
+        // When
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 10; i++) {
+                listener.onTransition(transition, context);
+            }
+            listener.close();
+        });
+
+        // Then
+        assertEquals(10, delivered.size());
+        assertEquals(10, listener.getDeliveredCount());
+    }
+
+    @Test
+    public void shouldDeliverToWrappedTransitionListeners() throws Exception {
+        // Given
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        TransitionListener<TestCase> wrapped = (t, c) -> delivered.add(c.getEntity().getId() + ":" + t.getFromState() + ":" + c.getStateMachineEvent());
+        RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+            Collections.singletonList(SnapshotListener.of(wrapped)), 4);
+
+        // When
+        listener.onTransition(transition, context);
+        listener.close();
+
+        // Then
+        assertEquals(Collections.singletonList("A:" + TestState.START + ":" + TestStateMachineEvent.BEGIN), delivered);
+    }
+
+    @Test
+    public void shouldDeliverTheTransitionAsItWasWhenPublished() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> delivered = new AtomicReference<>();
+        SnapshotListener<TestCase> recording = s ->
+            delivered.set(s.getEntityId() + ":" + s.getFromState() + ":" + s.getEvent() + ":" + s.getToState() + ":" + s.getTransition());
+        RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+            Arrays.asList(blockingUntil(release, new CountDownLatch(0)), recording), 4);
+        TestCase entity = new TestCase();
+        entity.setState(TestState.MIDDLE);
+
+        // When
+        listener.onTransition(transition, new ActionContext<>(TestStateMachineEvent.BEGIN, entity, definition));
+        entity.setId("B");
+        entity.setState(TestState.END);
+        release.countDown();
+        listener.close();
+
+        // Then
+        assertEquals("A:" + TestState.START + ":" + TestStateMachineEvent.BEGIN + ":" + TestState.MIDDLE + ":" + transition, delivered.get());
+    }
+
+    @Test
+    public void shouldDeliverEveryTransitionPublishedWhileClosing() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            // Given
+            RingBufferTransitionListener<TestCase> listener = new RingBufferTransitionListener<>(
+                Collections.singletonList(s -> { }), 64, 1, WaitStrategy.YIELDING, OverflowPolicy.BLOCK);
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> publishers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread publisher = new Thread(() -> {
+                    started.countDown();
+                    for (int j = 0; j < 5_000; j++) {
+                        listener.onTransition(transition, context);
+                    }
+                });
+                publishers.add(publisher);
+                publisher.start();
+            }
+
+            // When
+            started.await();
+            listener.close();
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+
+            // Then
+            assertEquals(20_000, listener.getDeliveredCount(), "Delivered in round " + round);
+            assertEquals(0, listener.getQueueDepth());
+        }
+    }
+
+    /**
+     * Blocks the consumer threads of the buffer, but not a publisher delivering overflow itself
+     */
+    private SnapshotListener<TestCase> blockingUntil(CountDownLatch release, CountDownLatch delivered) {
+        return s -> {
+            try {
+                if (Thread.currentThread().getName().startsWith("transition-listener-")) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.countDown();
+        };
+    }
+}
@@ -0,0 +1,312 @@
+package com.glc.statemachine.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEventFromAndTo;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.DefaultTransitionManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransitionJournalTest {
+
+    private static final StateMachineDefinition<TestCase> DEFINITION = new StateMachineDefinitionBuilder<TestCase>()
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+        .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END)
+        .build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReplayAppendedTransitionsInOrder() throws Exception {
+        // Given
+        List<TransitionRecord> records = new ArrayList<>();
+
+        // When
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION)) {
+            journal.append("1", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            journal.append("2", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            journal.append("1", TestState.MIDDLE, TestStateMachineEvent.STOP, TestState.END);
+            journal.replay(records::add);
+        }
+
+        // Then
+        assertEquals(3, records.size());
+        assertEquals("1", records.get(0).getEntityId());
+        assertEquals(TestState.START, records.get(0).getFromState());
+        assertEquals(TestStateMachineEvent.BEGIN, records.get(0).getEvent());
+        assertEquals(TestState.MIDDLE, records.get(0).getToState());
+        assertEquals("2", records.get(1).getEntityId());
+        assertEquals(TestStateMachineEvent.STOP, records.get(2).getEvent());
+        assertEquals(TestState.END, records.get(2).getToState());
+    }
+
+    @Test
+    public void shouldContinueAppendingAfterReopening() throws Exception {
+        // Given
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION)) {
+            journal.append("1", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+        }
+
+        // When
+        Map<String, State> states;
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION)) {
+            journal.append("1", TestState.MIDDLE, TestStateMachineEvent.STOP, TestState.END);
+            journal.append("2", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            states = journal.rebuildStates();
+        }
+
+        // Then
+        assertEquals(2, states.size());
+        assertEquals(TestState.END, states.get("1"));
+        assertEquals(TestState.MIDDLE, states.get("2"));
+    }
+
+    @Test
+    public void shouldRollOverToNewSegmentsWhenFull() throws Exception {
+        // Given
+        List<TransitionRecord> records = new ArrayList<>();
+
+        // When
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            for (int i = 0; i < 1000; i++) {
+                journal.append("entity-" + i, TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            }
+            journal.replay(records::add);
+        }
+
+        // Then
+        assertTrue(count("journal-") > 1);
+        assertEquals(1000, records.size());
+        assertEquals("entity-999", records.get(999).getEntityId());
+    }
+
+    @Test
+    public void shouldCompactSegmentsIntoSnapshot() throws Exception {
+        // Given
+        Map<String, State> before;
+        Map<String, State> after;
+        Map<String, State> reopened;
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            for (int i = 0; i < 500; i++) {
+                journal.append("entity-" + i, TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            }
+            for (int i = 0; i < 500; i += 2) {
+                journal.append("entity-" + i, TestState.MIDDLE, TestStateMachineEvent.STOP, TestState.END);
+            }
+            before = journal.rebuildStates();
+
+            // When
+            journal.compact();
+            journal.append("entity-1", TestState.MIDDLE, TestStateMachineEvent.STOP, TestState.END);
+            after = journal.rebuildStates();
+        }
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            reopened = journal.rebuildStates();
+        }
+
+        // Then
+        assertEquals(1, count("snapshot-"));
+        assertEquals(1, count("journal-"));
+        assertEquals(500, before.size());
+        assertEquals(TestState.MIDDLE, before.get("entity-1"));
+        before.put("entity-1", TestState.END);
+        assertEquals(before, after);
+        assertEquals(before, reopened);
+    }
+
+    @Test
+    public void shouldRejectJournalOfDifferentDefinition() throws Exception {
+        // Given
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION)) {
+            journal.append("1", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+        }
+        StateMachineDefinition<TestCase> other = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.STOP, TestState.START, TestState.END)
+            .build();
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> new TransitionJournal(directory, other));
+    }
+
+    @Test
+    public void shouldRejectStatesOutsideDefinition() throws Exception {
+        // Given
+        StateMachineDefinition<TestCase> partial = new StateMachineDefinitionBuilder<TestCase>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .build();
+
+        // When / Then
+        try (TransitionJournal journal = new TransitionJournal(directory, partial)) {
+            assertThrows(IllegalArgumentException.class, () -> journal.append("1", TestState.MIDDLE, TestStateMachineEvent.STOP, TestState.END));
+        }
+    }
+
+    @Test
+    public void shouldJournalTransitionsDurablyFromListener() throws Exception {
+        // Given
+        List<TransitionListener<TestCase>> listeners = new ArrayList<>();
+        StateMachineDefinition<TestCase> definition = new StateMachineDefinition<>(Arrays.asList(
+            new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE),
+            new StateMachineEventFromAndTo<>(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END)
+        ), null, listeners);
+        DefaultTransitionManager<TestCase> transitionManager = new DefaultTransitionManager<TestCase>() {
+            @Override
+            protected void persistEntity(ActionContext<TestCase> actionContext) {
+            }
+        };
+        TestCase testCase = new TestCase();
+        Map<String, State> states;
+
+        // When
+        try (TransitionJournal journal = new TransitionJournal(directory, definition, 4096, 60_000, 0)) {
+            // The long flush interval means each transition only returns once it asked for its own flush
+            listeners.add(new JournalTransitionListener<>(journal, true));
+            transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.BEGIN, testCase, definition));
+            transitionManager.triggerEvent(new ActionContext<>(TestStateMachineEvent.STOP, testCase, definition));
+            states = journal.rebuildStates();
+        }
+
+        // Then
+        assertEquals(TestState.END, testCase.getState());
+        assertEquals(1, states.size());
+        assertEquals(TestState.END, states.get(testCase.getId()));
+    }
+
+    @Test
+    public void shouldStopReadingAtTornRecordAndAppendAfterTheLastValidOne() throws Exception {
+        // Given
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            journal.append("1", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            journal.append("2", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            journal.append("3", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+        }
+        Path segment = onlyFile("journal-");
+        byte[] bytes = Files.readAllBytes(segment);
+        // The event id of the second record
+        bytes[JournalSegment.HEADER_SIZE + JournalSegment.RECORD_OVERHEAD + 1 + 15] ^= 1;
+        Files.write(segment, bytes);
+        List<TransitionRecord> records = new ArrayList<>();
+
+        // When
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            journal.append("4", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+            journal.replay(records::add);
+        }
+
+        // Then
+        assertEquals(2, records.size());
+        assertEquals("1", records.get(0).getEntityId());
+        assertEquals("4", records.get(1).getEntityId());
+    }
+
+    @Test
+    public void shouldStopReadingAtRecordWithUnknownIds() throws Exception {
+        // Given
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            journal.append("1", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+        }
+        int stateCount = DEFINITION.getCompiled().getRegistry().getStateCount();
+        int eventCount = DEFINITION.getCompiled().getRegistry().getEventCount();
+        JournalSegment segment = JournalSegment.open(onlyFile("journal-"), TransitionJournal.fingerprint(DEFINITION.getCompiled().getRegistry()), stateCount, eventCount);
+        segment.append("2".getBytes(StandardCharsets.UTF_8), 0, eventCount, stateCount, 0);
+        segment.force();
+        segment.close();
+        Map<String, State> states;
+
+        // When
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            states = journal.rebuildStates();
+        }
+
+        // Then
+        assertEquals(1, states.size());
+        assertEquals(TestState.MIDDLE, states.get("1"));
+    }
+
+    @Test
+    public void shouldRebuildEveryRecordWhileCompacting() throws Exception {
+        try (TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0)) {
+            // Given
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            Thread compacting = new Thread(() -> {
+                try {
+                    for (int i = 0; !stop.get(); i++) {
+                        journal.append("entity-" + i, TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+                        if (i % 10 == 0) {
+                            journal.compact();
+                        }
+                    }
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+            compacting.start();
+
+            // When / Then
+            try {
+                for (int round = 0; round < 200; round++) {
+                    Map<String, State> states = journal.rebuildStates();
+                    for (int i = 0; i < states.size(); i++) {
+                        assertTrue(states.containsKey("entity-" + i), "Missing entity-" + i + " of " + states.size() + " in round " + round);
+                    }
+                }
+            } finally {
+                stop.set(true);
+                compacting.join();
+            }
+            assertNull(failure.get());
+        }
+    }
+
+    @Test
+    public void shouldRejectReplayAfterClosing() throws Exception {
+        // Given
+        TransitionJournal journal = new TransitionJournal(directory, DEFINITION, 4096, 10, 0);
+        journal.append("1", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE);
+
+        // When
+        journal.close();
+
+        // Then
+        assertThrows(IllegalStateException.class, journal::rebuildStates);
+        assertThrows(IllegalStateException.class, () -> journal.append("2", TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE));
+    }
+
+    private Path onlyFile(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).reduce((a, b) -> {
+                throw new IllegalStateException("More than one file starts with " + prefix);
+            }).get();
+        }
+    }
+
+    private long count(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+}
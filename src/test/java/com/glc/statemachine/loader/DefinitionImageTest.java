@@ -0,0 +1,120 @@
+package com.glc.statemachine.loader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DefinitionImageTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReadWrittenImage() throws IOException {
+        // Given
+        DefinitionImage image = new DefinitionImage(
+            new byte[] {1, 2, 3},
+            "definitions/definition.csv",
+            new String[] {"Start", "Middle", "End"},
+            new String[] {"Event1", "Event2"},
+            new String[][] {{"assistant", "manager"}, {}},
+            new String[] {"TE1"},
+            new String[] {"com.myorg.statemachine.evaluators.TestTransitionEvaluator"},
+            new String[] {"TA1"},
+            new String[] {"com.myorg.statemachine.actions.TestTransitionAction"},
+            new int[] {0, 0, 1, 0, DefinitionImage.NONE, 1, 1, 2, DefinitionImage.NONE, 0},
+            new int[] {0, 1, 2}
+        );
+        Path file = directory.resolve("definition.smi");
+
+        // When
+        image.write(file);
+        DefinitionImage read = DefinitionImage.read(file).get();
+
+        // Then
+        assertArrayEquals(image.getSourceHash(), read.getSourceHash());
+        assertEquals(image.getDefinition(), read.getDefinition());
+        assertArrayEquals(image.getStates(), read.getStates());
+        assertArrayEquals(image.getEventNames(), read.getEventNames());
+        assertArrayEquals(image.getEventRoles(), read.getEventRoles());
+        assertArrayEquals(image.getEvaluatorKeys(), read.getEvaluatorKeys());
+        assertArrayEquals(image.getEvaluatorClasses(), read.getEvaluatorClasses());
+        assertArrayEquals(image.getActionKeys(), read.getActionKeys());
+        assertArrayEquals(image.getActionClasses(), read.getActionClasses());
+        assertArrayEquals(image.getTransitions(), read.getTransitions());
+        assertEquals(Arrays.asList("Start", "Middle", "End"), read.getDefaultPathStates());
+        assertEquals(2, read.getTransitionCount());
+        assertEquals(2, read.getTransition(1, DefinitionImage.TO));
+    }
+
+    @Test
+    public void shouldReadImageWithoutDefaultPath() throws IOException {
+        // Given
+        Path file = directory.resolve("definition.smi");
+        new DefinitionImage(new byte[0], "definition.csv", new String[] {"Start"}, new String[0], new String[0][], new String[0], new String[0],
+            new String[0], new String[0], new int[0], null).write(file);
+
+        // When / Then
+        assertNull(DefinitionImage.read(file).get().getDefaultPathStates());
+    }
+
+    @Test
+    public void shouldIgnoreMissingTruncatedOrForeignFiles() throws IOException {
+        // Given
+        Path file = directory.resolve("definition.smi");
+        new DefinitionImage(new byte[0], "definition.csv", new String[] {"Start"}, new String[0], new String[0][], new String[0], new String[0],
+            new String[0], new String[0], new int[0], null).write(file);
+        byte[] content = Files.readAllBytes(file);
+        Path truncated = Files.write(directory.resolve("truncated.smi"), Arrays.copyOf(content, content.length - 2));
+        Path foreign = Files.write(directory.resolve("foreign.smi"), "Start,Event1".getBytes());
+
+        // When / Then
+        assertFalse(DefinitionImage.read(directory.resolve("missing.smi")).isPresent());
+        assertFalse(DefinitionImage.read(truncated).isPresent());
+        assertFalse(DefinitionImage.read(foreign).isPresent());
+    }
+
+    @Test
+    public void shouldIgnoreImageWhoseContentDoesNotMatchItsChecksum() throws IOException {
+        // Given
+        Path file = directory.resolve("definition.smi");
+        new DefinitionImage(new byte[0], "definition.csv", new String[] {"Start"}, new String[0], new String[0][], new String[0], new String[0],
+            new String[0], new String[0], new int[0], null).write(file);
+        byte[] content = Files.readAllBytes(file);
+        // A byte of a name, which would otherwise read as a different but valid image
+        content[new String(content, "ISO-8859-1").indexOf("Start") + 2] = 'o';
+        Files.write(file, content);
+
+        // When / Then
+        assertFalse(DefinitionImage.read(file).isPresent());
+    }
+
+    @Test
+    public void shouldReplaceImageWithoutLeavingTemporaryFiles() throws IOException {
+        // Given
+        Path file = directory.resolve("definition.smi");
+        new DefinitionImage(new byte[0], "definition.csv", new String[] {"Start"}, new String[0], new String[0][], new String[0], new String[0],
+            new String[0], new String[0], new int[0], null).write(file);
+
+        // When
+        new DefinitionImage(new byte[0], "definition.csv", new String[] {"End"}, new String[0], new String[0][], new String[0], new String[0],
+            new String[0], new String[0], new int[0], null).write(file);
+
+        // Then
+        assertArrayEquals(new String[] {"End"}, DefinitionImage.read(file).get().getStates());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(Collections.singletonList(file), files.collect(Collectors.toList()));
+        }
+    }
+}
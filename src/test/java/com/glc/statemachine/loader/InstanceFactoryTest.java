@@ -0,0 +1,93 @@
+package com.glc.statemachine.loader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.glc.statemachine.InvalidStateMachineException;
+import org.junit.jupiter.api.Test;
+
+class InstanceFactoryTest {
+
+    @Test
+    public void shouldPreferNoArgConstructor() {
+        // When
+        Object instance = InstanceFactory.of(Both.class).newInstance("param");
+
+        // Then
+        assertInstanceOf(Both.class, instance);
+        assertNull(((Both) instance).param);
+    }
+
+    @Test
+    public void shouldUseSingleParamConstructorForParam() {
+        // When
+        Object exact = InstanceFactory.of(ParamOnly.class).newInstance("param");
+        Object assignable = InstanceFactory.of(ParamOnly.class).newInstance(42);
+
+        // Then
+        assertEquals("param", ((ParamOnly) exact).param);
+        assertEquals(42, ((ParamOnly) assignable).param);
+        assertEquals("exact", ((ParamOnly) exact).constructor);
+        assertEquals("assignable", ((ParamOnly) assignable).constructor);
+    }
+
+    @Test
+    public void shouldFailWithoutMatchingConstructor() {
+        // When / Then
+        assertThrows(InvalidStateMachineException.class, () -> InstanceFactory.of(ParamOnly.class).newInstance(null));
+        assertThrows(InvalidStateMachineException.class, () -> InstanceFactory.of(Unconstructable.class).newInstance("param"));
+    }
+
+    @Test
+    public void shouldPropagateConstructorFailures() {
+        // When / Then
+        assertEquals("Failed in constructor", assertThrows(IllegalStateException.class, () -> InstanceFactory.of(Failing.class).newInstance(null)).getMessage());
+    }
+
+    @Test
+    public void shouldCacheFactoryPerClass() {
+        // When / Then
+        assertSame(InstanceFactory.of(Both.class), InstanceFactory.of(Both.class));
+    }
+
+    static class Both {
+        final Object param;
+
+        Both() {
+            this.param = null;
+        }
+
+        Both(String param) {
+            this.param = param;
+        }
+    }
+
+    static class ParamOnly {
+        final Object param;
+        final String constructor;
+
+        ParamOnly(Object param) {
+            this.param = param;
+            this.constructor = "assignable";
+        }
+
+        ParamOnly(String param) {
+            this.param = param;
+            this.constructor = "exact";
+        }
+    }
+
+    static class Unconstructable {
+        Unconstructable(Integer param) {
+        }
+    }
+
+    static class Failing {
+        Failing() {
+            throw new IllegalStateException("Failed in constructor");
+        }
+    }
+}
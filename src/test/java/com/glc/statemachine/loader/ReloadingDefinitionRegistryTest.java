@@ -0,0 +1,235 @@
+package com.glc.statemachine.loader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.InvalidStateMachineException;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.impl.DefaultState;
+import com.glc.statemachine.impl.DefaultStateMachineEvent;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReloadingDefinitionRegistryTest {
+
+    private static final State START = DefaultState.of("Start");
+    private static final State MIDDLE = DefaultState.of("Middle");
+    private static final State END = DefaultState.of("End");
+    private static final StateMachineEvent EVENT1 = DefaultStateMachineEvent.of("Event1");
+    private static final StateMachineEvent EVENT2 = DefaultStateMachineEvent.of("Event2");
+
+    @TempDir
+    Path directory;
+
+    Path manifest;
+    Path definition;
+    ReloadingDefinitionRegistry registry;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        manifest = Files.write(directory.resolve("manifest.json"), Arrays.asList("{\"definition\": \"definitions/definition.csv\"}"));
+        definition = Files.createDirectories(directory.resolve("definitions")).resolve("definition.csv");
+        Files.write(definition, Arrays.asList(",Event1", "Start,Middle", "Middle,"));
+        // Long enough that changes made by the tests are not reloaded by the watcher before the test ends
+        registry = new ReloadingDefinitionRegistry(null, null, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        registry.close();
+    }
+
+    @Test
+    public void shouldLoadFirstVersionOnRegistration() throws Exception {
+        // When
+        VersionedDefinition registered = registry.register("definition", manifest);
+
+        // Then
+        assertEquals(1, registered.getVersion());
+        assertTrue(registered.getLoadNanos() > 0);
+        assertSame(registered, registry.get("definition").get());
+        assertSame(registered.getDefinition(), registry.getDefinition("definition"));
+        assertEquals(2, registry.getDefinition("definition").getStates().size());
+        assertFalse(registry.get("other").isPresent());
+        assertThrows(IllegalArgumentException.class, () -> registry.register("definition", manifest));
+    }
+
+    @Test
+    public void shouldPublishNewVersionOnReloadWithoutChangingThePrevious() throws Exception {
+        // Given
+        registry.register("definition", manifest);
+        StateMachineDefinition<TestCase> inFlight = registry.getDefinition("definition");
+
+        // When
+        Files.write(definition, Arrays.asList(",Event1", "Start,Middle", "Middle,End", "End,"));
+        VersionedDefinition reloaded = registry.reload("definition").get(10, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(2, reloaded.getVersion());
+        assertSame(reloaded, registry.get("definition").get());
+        assertNotSame(inFlight, registry.getDefinition("definition"));
+        assertEquals(3, registry.<TestCase>getDefinition("definition").getStates().size());
+        assertEquals(2, inFlight.getStates().size());
+        assertEquals(1, registry.getReloadCount());
+    }
+
+    @Test
+    public void shouldKeepPreviousVersionWhenReloadFails() throws Exception {
+        // Given
+        VersionedDefinition registered = registry.register("definition", manifest);
+
+        // When
+        Files.write(definition, Arrays.asList(",Event1", "Start,Missing", "Middle,"));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> registry.reload("definition").get(10, TimeUnit.SECONDS));
+
+        // Then
+        assertInstanceOf(InvalidStateMachineException.class, failure.getCause());
+        assertSame(registered, registry.get("definition").get());
+        assertSame(failure.getCause(), registry.getLastFailure("definition").get());
+        assertEquals(1, registry.getFailedReloadCount());
+    }
+
+    @Test
+    public void shouldReloadWhenDefinitionFileChanges() throws Exception {
+        try (ReloadingDefinitionRegistry watchingRegistry = new ReloadingDefinitionRegistry(null, null, 10)) {
+            // Given
+            watchingRegistry.register("definition", manifest);
+
+            // When
+            Files.write(definition, Arrays.asList(",Event1", "Start,Middle", "Middle,End", "End,"));
+
+            // Then
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (watchingRegistry.get("definition").get().getVersion() == 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(watchingRegistry.get("definition").get().getVersion() > 1);
+            assertTrue(watchingRegistry.<TestCase>getDefinition("definition").getStates().contains(new DefaultState("End")));
+        }
+    }
+
+    @Test
+    public void shouldReloadChangeMadeWhileFirstVersionLoads() throws Exception {
+        // Given
+        Files.write(manifest, Arrays.asList("{\"definition\": \"definitions/definition.csv\", "
+            + "\"transitionEvaluators\": {\"TE1\": \"com.myorg.statemachine.evaluators.CallbackEvaluator\"}}"));
+        Files.write(definition, Arrays.asList(",Event1", "Start,TE1/Middle", "Middle,"));
+        Runnable changeDuringLoad = () -> {
+            try {
+                Files.write(definition, Arrays.asList(",Event1", "Start,TE1/Middle", "Middle,End", "End,"));
+                // Long enough for the watcher to see the change and its reload to run before the load finishes
+                Thread.sleep(500);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        try (ReloadingDefinitionRegistry watchingRegistry = new ReloadingDefinitionRegistry(changeDuringLoad, null, 10)) {
+
+            // When
+            watchingRegistry.register("definition", manifest);
+
+            // Then
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (watchingRegistry.get("definition").get().getVersion() == 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(watchingRegistry.get("definition").get().getVersion() > 1);
+            assertEquals(0, watchingRegistry.getFailedReloadCount());
+            assertTrue(watchingRegistry.<TestCase>getDefinition("definition").getStates().contains(new DefaultState("End")));
+        }
+    }
+
+    @Test
+    public void shouldKeepImagesOfDefinitionsInImageDirectory() throws Exception {
+        // Given
+        Path images = Files.createDirectories(directory.resolve("images"));
+        try (ReloadingDefinitionRegistry imageRegistry = new ReloadingDefinitionRegistry(null, images, TimeUnit.HOURS.toMillis(1))) {
+
+            // When
+            imageRegistry.register("definition", manifest);
+
+            // Then
+            assertTrue(Files.exists(images.resolve("definition" + ReloadingDefinitionRegistry.IMAGE_SUFFIX)));
+        }
+    }
+
+    @Test
+    public void shouldRebuildOnlyChangedCellsOnReload() throws Exception {
+        // Given
+        Files.write(manifest, Arrays.asList("{\"definition\": \"definitions/definition.csv\", "
+            + "\"transitionEvaluators\": {\"TE1\": \"com.myorg.statemachine.evaluators.TestTransitionEvaluator\"}}"));
+        Files.write(definition, Arrays.asList(",Event1,Event2", "Start,TE1/Middle,End", "Middle,End,Start", "End,,"));
+        registry.register("definition", manifest);
+        StateMachineDefinition<TestCase> previous = registry.getDefinition("definition");
+
+        // When
+        Files.write(definition, Arrays.asList(",Event1,Event2", "Start,TE1/Middle,End", "Middle,End,End", "End,,"));
+        registry.reload("definition").get(10, TimeUnit.SECONDS);
+        StateMachineDefinition<TestCase> reloaded = registry.getDefinition("definition");
+
+        // Then
+        assertSame(previous.getMatrix().get(START), reloaded.getMatrix().get(START));
+        assertNotSame(previous.getMatrix().get(MIDDLE), reloaded.getMatrix().get(MIDDLE));
+        assertSame(previous.getCompiled().getRegistry(), reloaded.getCompiled().getRegistry());
+        assertSame(evaluatorOf(previous, START, EVENT1), evaluatorOf(reloaded, START, EVENT1));
+        assertEquals(END, toStateOf(reloaded, MIDDLE, EVENT2));
+        assertEquals(START, toStateOf(previous, MIDDLE, EVENT2));
+        assertEquals(END, toStateOf(reloaded, MIDDLE, EVENT1));
+    }
+
+    @Test
+    public void shouldRemoveRowsOfRemovedStatesOnReload() throws Exception {
+        // Given
+        Files.write(definition, Arrays.asList(",Event1,Event2", "Start,Middle,End", "Middle,End,Start", "End,Start,"));
+        registry.register("definition", manifest);
+        StateMachineDefinition<TestCase> previous = registry.getDefinition("definition");
+
+        // When
+        Files.write(definition, Arrays.asList(",Event1,Event2", "Start,Middle,", "Middle,,Start"));
+        registry.reload("definition").get(10, TimeUnit.SECONDS);
+        StateMachineDefinition<TestCase> reloaded = registry.getDefinition("definition");
+
+        // Then
+        assertEquals(new HashSet<>(Arrays.asList(START, MIDDLE)), reloaded.getStates());
+        assertFalse(reloaded.getMatrix().containsKey(END));
+        assertEquals(MIDDLE, toStateOf(reloaded, START, EVENT1));
+        assertNull(toStateOf(reloaded, START, EVENT2));
+        assertNull(toStateOf(reloaded, MIDDLE, EVENT1));
+        assertEquals(START, toStateOf(reloaded, MIDDLE, EVENT2));
+        assertEquals(3, previous.getStates().size());
+    }
+
+    private static TransitionEvaluationActions<TestCase> cellOf(StateMachineDefinition<TestCase> definition, State state, StateMachineEvent event) {
+        List<TransitionEvaluationActions<TestCase>> cell = definition.getMatrix().get(state).getTransitionEvaluationActions().get().get(event);
+        return cell == null || cell.isEmpty() ? null : cell.get(0);
+    }
+
+    private static TransitionEvaluator<TestCase> evaluatorOf(StateMachineDefinition<TestCase> definition, State state, StateMachineEvent event) {
+        return cellOf(definition, state, event).getEvaluator().get();
+    }
+
+    private static State toStateOf(StateMachineDefinition<TestCase> definition, State state, StateMachineEvent event) {
+        TransitionEvaluationActions<TestCase> transition = cellOf(definition, state, event);
+        return transition == null ? null : transition.getTransition().getToState(null);
+    }
+}
@@ -3,13 +3,19 @@ package com.glc.statemachine.loader;
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.glc.statemachine.ActionContext;
 import com.glc.statemachine.InvalidStateMachineException;
 import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.Transition;
 import com.glc.statemachine.TransitionAction;
 import com.glc.statemachine.TransitionManager;
+import com.glc.statemachine.definition.CompiledStateMachineDefinition;
 import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
 import com.glc.statemachine.definition.testcase.TestCase;
 import com.glc.statemachine.impl.DefaultState;
 import com.glc.statemachine.impl.DefaultTransitionManager;
@@ -17,15 +23,21 @@ import com.opencsv.exceptions.CsvValidationException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 @SuppressWarnings({"unchecked", "rawtypes"}) // As we are loading dynamically at runtime, we can't specify the generic type as types can only be specified at compile time
 class StateMachineLoaderTest {
 
+    @TempDir
+    Path directory;
+
     TransitionManager<TestCase> transitionManager = new DefaultTransitionManager<TestCase>() {
         @Override
         protected void persistEntity(ActionContext<TestCase> actionContext) {
@@ -213,6 +225,115 @@ class StateMachineLoaderTest {
     }
 
 
+    @Test
+    public void shouldShareEvaluatorAndActionInstancesPerManifestKey() throws IOException, CsvValidationException, InstantiationException, IllegalAccessException {
+        StateMachineDefinition<TestCase> stateMachineDefinition = (StateMachineDefinition<TestCase>) new StateMachineLoader(
+            new FileInputStream("src/test/resources/manifest_shared_instances.json")
+        ).load();
+
+        Transition<TestCase> startOnEvent1 = candidate(stateMachineDefinition, "Start", "Event1").getTransition();
+        Transition<TestCase> startOnEvent2 = candidate(stateMachineDefinition, "Start", "Event2").getTransition();
+        Transition<TestCase> middleOnEvent1 = candidate(stateMachineDefinition, "Middle", "Event1").getTransition();
+        Transition<TestCase> middleOnEvent2 = candidate(stateMachineDefinition, "Middle", "Event2").getTransition();
+
+        // TE1 and TA1 are created once for the load
+        assertSame(candidate(stateMachineDefinition, "Start", "Event1").getEvaluator().get(), candidate(stateMachineDefinition, "Middle", "Event1").getEvaluator().get());
+        assertSame(candidate(stateMachineDefinition, "Start", "Event1").getEvaluator().get(), candidate(stateMachineDefinition, "Start", "Event2").getEvaluator().get());
+        assertSame(startOnEvent1.getTransitionActions().get().get(0), middleOnEvent1.getTransitionActions().get().get(0));
+
+        // TA2 is annotated as per transition
+        assertNotSame(startOnEvent2.getTransitionActions().get().get(0), middleOnEvent2.getTransitionActions().get().get(0));
+    }
+
+    @Test
+    public void shouldWriteDefinitionImageAndLoadTheSameDefinitionFromIt() throws IOException, CsvValidationException, InstantiationException {
+        // Given
+        Path image = directory.resolve("manifest.smi");
+        StateMachineDefinition<TestCase> fromCsv = (StateMachineDefinition<TestCase>) new StateMachineLoader(
+            new FileInputStream("src/test/resources/manifest.json")
+        ).load(image);
+
+        // When
+        StateMachineDefinition<TestCase> fromImage = (StateMachineDefinition<TestCase>) new StateMachineLoader(
+            new FileInputStream("src/test/resources/manifest.json")
+        ).load(image);
+
+        // Then
+        assertTrue(Files.exists(image));
+        assertEquals(fromCsv.getStates(), fromImage.getStates());
+        assertEquals(fromCsv.getEvents(), fromImage.getEvents());
+        assertEquals(Arrays.asList("assistant"), event(fromImage, "Event1").getRoles().get());
+        assertEquals(fromCsv.getStatesForPath(StateMachineDefinition.DEFAULT_PATH), fromImage.getStatesForPath(StateMachineDefinition.DEFAULT_PATH));
+
+        TestCase testCase = new TestCase();
+        testCase.setState(new DefaultState("Start"));
+        assertTransitionOnEvent(testCase, fromImage, "Event1", "Middle", Collections.singletonList("assistant"));
+        testCase.setName("B");
+        assertTransitionOnEvent(testCase, fromImage, "Event2", "End");
+    }
+
+    @Test
+    public void shouldLoadFromFreshDefinitionImageWithoutParsingTheCsv() throws IOException, CsvValidationException, InstantiationException {
+        // Given an image whose default path differs from the manifest, but which was compiled from the same sources
+        Path image = directory.resolve("manifest.smi");
+        new StateMachineLoader(new FileInputStream("src/test/resources/manifest.json")).load(image);
+        DefinitionImage compiled = DefinitionImage.read(image).get();
+        new DefinitionImage(compiled.getSourceHash(), compiled.getDefinition(), compiled.getStates(), compiled.getEventNames(), compiled.getEventRoles(),
+            compiled.getEvaluatorKeys(), compiled.getEvaluatorClasses(), compiled.getActionKeys(), compiled.getActionClasses(), compiled.getTransitions(),
+            new int[] {0, 2}).write(image);
+
+        // When
+        StateMachineDefinition<TestCase> stateMachineDefinition = (StateMachineDefinition<TestCase>) new StateMachineLoader(
+            new FileInputStream("src/test/resources/manifest.json")
+        ).load(image);
+
+        // Then
+        assertEquals(Arrays.asList(new DefaultState("Start"), new DefaultState("End")), stateMachineDefinition.getStatesForPath(StateMachineDefinition.DEFAULT_PATH));
+    }
+
+    @Test
+    public void shouldReloadFromCsvWhenDefinitionImageIsStale() throws IOException, CsvValidationException, InstantiationException {
+        // Given
+        Path image = directory.resolve("manifest.smi");
+        Path definitions = Files.createDirectories(directory.resolve("definitions"));
+        Files.write(definitions.resolve("state-machine-definition.csv"), Arrays.asList(",Event1,Event2", "Start,Middle,End", "Middle,,", "End,,"));
+        new StateMachineLoader(new FileInputStream("src/test/resources/manifest.json"), null, DefinitionResolver.directory(directory)).load(image);
+
+        // When
+        Files.write(definitions.resolve("state-machine-definition.csv"), Arrays.asList(",Event1,Event2", "Start,Middle,End", "Middle,End,", "End,,"));
+        StateMachineDefinition<TestCase> stateMachineDefinition = (StateMachineDefinition<TestCase>) new StateMachineLoader(
+            new FileInputStream("src/test/resources/manifest.json"), null, DefinitionResolver.directory(directory)
+        ).load(image);
+
+        // Then
+        assertNotNull(candidate(stateMachineDefinition, "Middle", "Event1"));
+        assertEquals(3, DefinitionImage.read(image).get().getTransitionCount());
+    }
+
+    @Test
+    public void shouldReloadFromCsvWhenDefinitionImageIsCorrupt() throws IOException, CsvValidationException, InstantiationException {
+        // Given
+        Path image = Files.write(directory.resolve("manifest.smi"), new byte[] {1, 2, 3});
+
+        // When
+        StateMachineDefinition<TestCase> stateMachineDefinition = (StateMachineDefinition<TestCase>) new StateMachineLoader(
+            new FileInputStream("src/test/resources/manifest.json")
+        ).load(image);
+
+        // Then
+        assertEquals(3, stateMachineDefinition.getStates().size());
+        assertTrue(DefinitionImage.read(image).isPresent());
+    }
+
+    private StateMachineEvent event(StateMachineDefinition<TestCase> stateMachineDefinition, String eventName) {
+        return stateMachineDefinition.getEvents().stream().filter(e -> e.getEventName().equals(eventName)).findFirst().get();
+    }
+
+    private TransitionEvaluationActions<TestCase> candidate(StateMachineDefinition<TestCase> stateMachineDefinition, String state, String event) {
+        CompiledStateMachineDefinition<TestCase> compiled = stateMachineDefinition.getCompiled();
+        return compiled.getCandidates(compiled.getRegistry().getStateId(state), compiled.getRegistry().getEventId(event))[0];
+    }
+
     private void assertTransitionOnEvent(TestCase testCase, StateMachineDefinition<TestCase> stateMachineDefinition, String event, String state) {
         assertTransitionOnEvent(testCase, stateMachineDefinition, event, state, emptyList());
     }
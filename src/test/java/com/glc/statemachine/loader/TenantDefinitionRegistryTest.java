@@ -0,0 +1,220 @@
+package com.glc.statemachine.loader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import com.glc.statemachine.definition.testcase.TestCase;
+import com.glc.statemachine.impl.DefaultState;
+import com.glc.statemachine.impl.DefaultStateMachineEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TenantDefinitionRegistryTest {
+
+    private static final State START = DefaultState.of("Start");
+    private static final State MIDDLE = DefaultState.of("Middle");
+    private static final State END = DefaultState.of("End");
+    private static final StateMachineEvent EVENT1 = DefaultStateMachineEvent.of("Event1");
+    private static final StateMachineEvent EVENT2 = DefaultStateMachineEvent.of("Event2");
+
+    private static final String MANIFEST = "{\"definition\": \"definition.csv\", "
+        + "\"transitionEvaluators\": {\"TE1\": \"com.myorg.statemachine.evaluators.TestTransitionEvaluator\"}, "
+        + "\"transitionActions\": {\"TA1\": \"com.myorg.statemachine.actions.PerTransitionAction\"}}";
+    private static final List<String> BASE = Arrays.asList(",Event1,Event2", "Start,TE1/Middle,End", "Middle,End,Start", "End,,");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldLoadDefinitionOnFirstUse() throws Exception {
+        // Given
+        tenant("a", BASE);
+        TenantDefinitionRegistry registry = new TenantDefinitionRegistry(this::manifest, null, Long.MAX_VALUE);
+
+        // When
+        assertFalse(registry.isLoaded("a"));
+        StateMachineDefinition<TestCase> definition = registry.getDefinition("a");
+
+        // Then
+        assertTrue(registry.isLoaded("a"));
+        assertSame(definition, registry.getDefinition("a"));
+        assertEquals(1, registry.getLoadCount());
+        assertEquals(3, definition.getStates().size());
+        assertThrows(IllegalArgumentException.class, () -> registry.getDefinition("unknown"));
+    }
+
+    @Test
+    public void shouldShareDefinitionOfTenantsWithIdenticalCsvs() throws Exception {
+        // Given
+        tenant("a", BASE);
+        tenant("b", BASE);
+        TenantDefinitionRegistry registry = new TenantDefinitionRegistry(this::manifest, null, Long.MAX_VALUE);
+
+        // When
+        StateMachineDefinition<TestCase> a = registry.getDefinition("a");
+        StateMachineDefinition<TestCase> b = registry.getDefinition("b");
+
+        // Then
+        assertSame(a, b);
+        assertEquals(1, registry.getDistinctDefinitionCount());
+        assertEquals(2, registry.getLoadedCount());
+    }
+
+    @Test
+    public void shouldShareUnchangedRowsOfTenantsWithDifferentCsvs() throws Exception {
+        // Given
+        tenant("a", BASE);
+        tenant("b", Arrays.asList(",Event1,Event2", "Start,TE1/Middle,End", "Middle,End,End", "End,,"));
+        TenantDefinitionRegistry registry = new TenantDefinitionRegistry(this::manifest, null, Long.MAX_VALUE);
+
+        // When
+        StateMachineDefinition<TestCase> a = registry.getDefinition("a");
+        StateMachineDefinition<TestCase> b = registry.getDefinition("b");
+
+        // Then
+        assertNotSame(a, b);
+        assertSame(a.getMatrix().get(START), b.getMatrix().get(START));
+        assertNotSame(a.getMatrix().get(MIDDLE), b.getMatrix().get(MIDDLE));
+        assertEquals(START, cellOf(a, MIDDLE, EVENT2).getTransition().getToState(null));
+        assertEquals(END, cellOf(b, MIDDLE, EVENT2).getTransition().getToState(null));
+        assertEquals(3, registry.getSharedRowCount());
+    }
+
+    @Test
+    public void shouldShareEvaluatorsButNotPerTransitionActionsBetweenTenants() throws Exception {
+        // Given
+        tenant("a", Arrays.asList(",Event1,Event2", "Start,TE1/Middle,End/TA1", "Middle,TE1/End,Start", "End,,"));
+        tenant("b", Arrays.asList(",Event1,Event2", "Start,TE1/Middle,End/TA1", "Middle,TE1/End,Start", "End,,"));
+        TenantDefinitionRegistry registry = new TenantDefinitionRegistry(this::manifest, null, Long.MAX_VALUE);
+
+        // When
+        StateMachineDefinition<TestCase> a = registry.getDefinition("a");
+        StateMachineDefinition<TestCase> b = registry.getDefinition("b");
+
+        // Then
+        assertNotSame(a, b);
+        assertNotSame(a.getMatrix().get(START), b.getMatrix().get(START));
+        assertSame(a.getMatrix().get(MIDDLE), b.getMatrix().get(MIDDLE));
+        assertSame(cellOf(a, START, EVENT1).getEvaluator().get(), cellOf(b, START, EVENT1).getEvaluator().get());
+        assertSame(cellOf(a, START, EVENT1).getEvaluator().get(), cellOf(b, MIDDLE, EVENT1).getEvaluator().get());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedTenantsOverBudget() throws Exception {
+        // Given
+        tenant("a", Arrays.asList(",Event1", "Start,Middle", "Middle,"));
+        tenant("b", Arrays.asList(",Event1", "Start,End", "End,"));
+        tenant("c", Arrays.asList(",Event1", "Middle,End", "End,"));
+        TenantDefinitionRegistry sizing = new TenantDefinitionRegistry(this::manifest, null, Long.MAX_VALUE);
+        sizing.getDefinition("a");
+        sizing.getDefinition("b");
+        TenantDefinitionRegistry registry = new TenantDefinitionRegistry(this::manifest, null, sizing.getEstimatedBytes());
+
+        // When
+        registry.getDefinition("a");
+        registry.getDefinition("b");
+        registry.getDefinition("a");
+        registry.getDefinition("c");
+
+        // Then
+        assertTrue(registry.isLoaded("a"));
+        assertFalse(registry.isLoaded("b"));
+        assertTrue(registry.isLoaded("c"));
+        assertEquals(1, registry.getEvictionCount());
+        assertTrue(registry.getEstimatedBytes() <= sizing.getEstimatedBytes());
+
+        registry.getDefinition("b");
+        assertEquals(4, registry.getLoadCount());
+    }
+
+    @Test
+    public void shouldDropSharedRowsOnceNoTenantHoldsThem() throws Exception {
+        // Given
+        tenant("a", BASE);
+        tenant("b", BASE);
+        TenantDefinitionRegistry registry = new TenantDefinitionRegistry(this::manifest, null, Long.MAX_VALUE);
+        registry.getDefinition("a");
+        registry.getDefinition("b");
+        long estimate = registry.getEstimatedBytes();
+
+        // When
+        registry.evict("a");
+
+        // Then
+        assertEquals(estimate, registry.getEstimatedBytes());
+        assertTrue(registry.evict("b"));
+        assertEquals(0, registry.getEstimatedBytes());
+        assertEquals(0, registry.getSharedRowCount());
+        assertEquals(0, registry.getDistinctDefinitionCount());
+        assertFalse(registry.evict("b"));
+    }
+
+    @Test
+    public void shouldReleaseEveryLoadWhenTenantsAreEvictedWhileLoading() throws Exception {
+        // Given
+        tenant("a", BASE);
+        TenantDefinitionRegistry registry = new TenantDefinitionRegistry(this::manifest, null, Long.MAX_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < 200; j++) {
+                        registry.getDefinition("a");
+                        registry.evict("a");
+                    }
+                } catch (Exception e) {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // When
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        registry.evict("a");
+
+        // Then
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(0, registry.getDistinctDefinitionCount());
+        assertEquals(0, registry.getSharedRowCount());
+        assertEquals(0, registry.getEstimatedBytes());
+    }
+
+    private void tenant(String tenant, List<String> csv) throws IOException {
+        Path tenantDirectory = Files.createDirectories(directory.resolve(tenant));
+        Files.write(tenantDirectory.resolve("manifest.json"), Arrays.asList(MANIFEST));
+        Files.write(tenantDirectory.resolve("definition.csv"), csv);
+    }
+
+    private Path manifest(String tenant) {
+        Path manifest = directory.resolve(tenant).resolve("manifest.json");
+        return Files.exists(manifest) ? manifest : null;
+    }
+
+    private static TransitionEvaluationActions<TestCase> cellOf(StateMachineDefinition<TestCase> definition, State state, StateMachineEvent event) {
+        return definition.getMatrix().get(state).getTransitionEvaluationActions().get().get(event).get(0);
+    }
+}
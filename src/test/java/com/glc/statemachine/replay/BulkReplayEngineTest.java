@@ -0,0 +1,175 @@
+package com.glc.statemachine.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.StateMachineEventTransitionEvaluations;
+import com.glc.statemachine.definition.TransitionEvaluationActions;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.DefaultState;
+import com.glc.statemachine.impl.DefaultTransition;
+import com.glc.statemachine.impl.DefaultTransitionAction;
+import com.glc.statemachine.store.StoreEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class BulkReplayEngineTest {
+
+    private final List<String> actions = new ArrayList<>();
+
+    /**
+     * Odd entities go from start to middle on begin and even ones straight to the end
+     */
+    private final StateMachineDefinition<StoreEntity> definition = new StateMachineDefinitionBuilder<StoreEntity>()
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE, new TransitionEvaluator<StoreEntity>() {
+            @Override
+            public String getDescription() {
+                return "Is the entity id odd";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<StoreEntity> context) {
+                return context.getEntity().getEntityId() % 2 == 1;
+            }
+        }, Collections.emptyList())
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END)
+        .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END, Collections.singletonList(new DefaultTransitionAction<StoreEntity>("record") {
+            @Override
+            public void execute(ActionContext<StoreEntity> actionContext) {
+                actions.add(actionContext.getEntity().getId());
+            }
+        }))
+        .build();
+
+    @Test
+    public void shouldReplayRecordsToFinalStates() {
+        // Given
+        BulkReplayEngine engine = new BulkReplayEngine(definition, TestState.START);
+        List<ReplayRecord> records = Arrays.asList(
+            new ReplayRecord(1, "Begin"),
+            new ReplayRecord(2, "Begin"),
+            new ReplayRecord(1, "Stop"),
+            new ReplayRecord(2, "Stop"),
+            new ReplayRecord(3, "Unknown"),
+            new ReplayRecord(4, "Stop"));
+        List<String> outcomes = new ArrayList<>();
+        Map<Long, State> finalStates = new HashMap<>();
+
+        // When
+        ReplayStatistics statistics = engine.replay(records.iterator(), new ReplaySink() {
+            @Override
+            public void onTransition(long entityId, State fromState, StateMachineEvent event, State toState) {
+                outcomes.add(entityId + ":" + fromState.getStateName() + "->" + toState.getStateName());
+            }
+
+            @Override
+            public void onRejected(long entityId, State state, String eventName) {
+                outcomes.add(entityId + ":" + state.getStateName() + " rejected " + eventName);
+            }
+        });
+        engine.exportFinalStates(new ReplaySink() {
+            @Override
+            public void onFinalState(long entityId, State state) {
+                finalStates.put(entityId, state);
+            }
+        });
+
+        // Then
+        assertEquals(Arrays.asList(
+            "1:Start->Middle",
+            "2:Start->End",
+            "1:Middle->End",
+            "2:End rejected Stop",
+            "3:Start rejected Unknown",
+            "4:Start rejected Stop"), outcomes);
+        assertEquals(4, finalStates.size());
+        assertEquals(TestState.END, finalStates.get(1L));
+        assertEquals(TestState.END, finalStates.get(2L));
+        assertEquals(TestState.START, finalStates.get(3L));
+        assertEquals(6, statistics.getRecordCount());
+        assertEquals(3, statistics.getTransitionCount());
+        assertEquals(3, statistics.getRejectedCount());
+        assertEquals(1, statistics.getUnknownEventCount());
+        assertEquals(1, statistics.getRejectedCount(TestState.START, TestStateMachineEvent.STOP));
+        assertEquals(1, statistics.getRejectedCount(TestState.END, TestStateMachineEvent.STOP));
+        assertEquals(3, statistics.getEdgeCounts().size());
+        assertEquals(0, actions.size());
+    }
+
+    @Test
+    public void shouldCountEdgesAcrossStream() {
+        // Given
+        BulkReplayEngine engine = new BulkReplayEngine(definition, TestState.START);
+
+        // When
+        ReplayStatistics statistics = engine.replay(LongStream.range(0, 10_000)
+            .mapToObj(i -> new ReplayRecord(i % 1_000, i < 1_000 ? "Begin" : "Stop")));
+
+        // Then
+        assertEquals(10_000, statistics.getRecordCount());
+        assertEquals(500, statistics.getEdgeCount(TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE));
+        assertEquals(500, statistics.getEdgeCount(TestState.START, TestStateMachineEvent.BEGIN, TestState.END));
+        assertEquals(500, statistics.getEdgeCount(new DefaultState("Middle"), TestStateMachineEvent.STOP, TestState.END));
+        assertEquals(0, statistics.getEdgeCount(TestState.MIDDLE, TestStateMachineEvent.BEGIN, TestState.END));
+        assertEquals(8_500, statistics.getRejectedCount(TestState.END, TestStateMachineEvent.STOP));
+        assertEquals(1_000, engine.getStore().size());
+    }
+
+    @Test
+    public void shouldResolveTargetOfCustomTransitionFromEachRecord() {
+        // Given
+        Transition<StoreEntity> byParity = new Transition<StoreEntity>() {
+            @Override
+            public State getToState(ActionContext<StoreEntity> context) {
+                return context == null || context.getEntity().getEntityId() % 2 == 1 ? TestState.MIDDLE : TestState.END;
+            }
+
+            @Override
+            public State getFromState() {
+                return TestState.START;
+            }
+
+            @Override
+            public Optional<List<TransitionAction<StoreEntity>>> getTransitionActions() {
+                return Optional.empty();
+            }
+        };
+        Map<State, StateMachineEventTransitionEvaluations<StoreEntity>> matrix = new HashMap<>();
+        matrix.put(TestState.START, new StateMachineEventTransitionEvaluations<>(Collections.singletonMap(
+            TestStateMachineEvent.BEGIN, Collections.singletonList(new TransitionEvaluationActions<>(byParity)))));
+        matrix.put(TestState.MIDDLE, new StateMachineEventTransitionEvaluations<>(Collections.singletonMap(
+            TestStateMachineEvent.STOP, Collections.singletonList(new TransitionEvaluationActions<>(
+                new DefaultTransition<>(TestState.MIDDLE, TestState.END, null))))));
+        BulkReplayEngine engine = new BulkReplayEngine(new StateMachineDefinition<>(matrix), TestState.START);
+
+        // When
+        ReplayStatistics statistics = engine.replay(LongStream.range(0, 10).mapToObj(i -> new ReplayRecord(i, "Begin")));
+
+        // Then
+        assertEquals(5, statistics.getEdgeCount(TestState.START, TestStateMachineEvent.BEGIN, TestState.MIDDLE));
+        assertEquals(5, statistics.getEdgeCount(TestState.START, TestStateMachineEvent.BEGIN, TestState.END));
+        assertEquals(2, statistics.getEdgeCounts().size());
+    }
+
+    @Test
+    public void shouldRejectInitialStateOutsideDefinition() {
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> new BulkReplayEngine(definition, new DefaultState("Unknown")));
+    }
+}
@@ -0,0 +1,215 @@
+package com.glc.statemachine.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.State;
+import com.glc.statemachine.StateMachineEvent;
+import com.glc.statemachine.TransitionEvaluator;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.store.PrimitiveStateStore;
+import com.glc.statemachine.store.StoreEntity;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+
+class ParallelReplayEngineTest {
+
+    /**
+     * Entities cycle start, middle, end and back to start, skipping middle when their id is a multiple of three
+     */
+    private static StateMachineDefinition<StoreEntity> definition(TransitionEvaluator<StoreEntity> evaluator) {
+        return new StateMachineDefinitionBuilder<StoreEntity>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.END, evaluator, Collections.emptyList())
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END)
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.END, TestState.START)
+            .build();
+    }
+
+    private static TransitionEvaluator<StoreEntity> evaluator(boolean failing) {
+        return new TransitionEvaluator<StoreEntity>() {
+            @Override
+            public String getDescription() {
+                return "Is the entity id a multiple of three";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<StoreEntity> context) {
+                if (failing && context.getEntity().getEntityId() == 999) {
+                    throw new IllegalArgumentException("Failing evaluation");
+                }
+                return context.getEntity().getEntityId() % 3 == 0;
+            }
+        };
+    }
+
+    private static List<ReplayRecord> records(int count, int entities) {
+        Random random = new Random(42);
+        List<ReplayRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new ReplayRecord(random.nextInt(entities), random.nextInt(10) == 0 ? "Stop" : "Begin"));
+        }
+        return records;
+    }
+
+    @Test
+    public void shouldMatchSequentialReplay() {
+        // Given
+        StateMachineDefinition<StoreEntity> definition = definition(evaluator(false));
+        List<ReplayRecord> records = records(200_000, 5_000);
+        BulkReplayEngine sequential = new BulkReplayEngine(definition, TestState.START);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelReplayEngine parallel = new ParallelReplayEngine(definition, new PrimitiveStateStore(definition), TestState.START, pool, 4, 1_000);
+        AtomicLong transitions = new AtomicLong();
+        AtomicLong rejections = new AtomicLong();
+
+        // When
+        ReplayStatistics expected = sequential.replay(records.iterator());
+        ReplayStatistics actual = parallel.replay(records.stream(), new ReplaySink() {
+            @Override
+            public void onTransition(long entityId, State fromState, StateMachineEvent event, State toState) {
+                transitions.incrementAndGet();
+            }
+
+            @Override
+            public void onRejected(long entityId, State state, String eventName) {
+                rejections.incrementAndGet();
+            }
+        });
+        pool.shutdown();
+
+        // Then
+        assertEquals(expected.getRecordCount(), actual.getRecordCount());
+        assertEquals(expected.getTransitionCount(), actual.getTransitionCount());
+        assertEquals(expected.getRejectedCount(), actual.getRejectedCount());
+        assertEquals(expected.getTransitionCount(), transitions.get());
+        assertEquals(expected.getRejectedCount(), rejections.get());
+        assertEquals(expected.getEdgeCounts().toString(), actual.getEdgeCounts().toString());
+        assertEquals(expected.getRejectedCount(TestState.START, TestStateMachineEvent.STOP), actual.getRejectedCount(TestState.START, TestStateMachineEvent.STOP));
+        Map<Long, State> finalStates = new ConcurrentHashMap<>();
+        parallel.exportFinalStates(new ReplaySink() {
+            @Override
+            public void onFinalState(long entityId, State state) {
+                finalStates.put(entityId, state);
+            }
+        });
+        assertEquals(sequential.getStore().size(), finalStates.size());
+        finalStates.forEach((entityId, state) -> assertEquals(sequential.getStore().getState(entityId).get(), state));
+    }
+
+    @Test
+    public void shouldFinishReplayingBatchWhenReadingFails() {
+        // Given
+        AtomicLong evaluated = new AtomicLong();
+        StateMachineDefinition<StoreEntity> definition = definition(new TransitionEvaluator<StoreEntity>() {
+            @Override
+            public String getDescription() {
+                return "Slow";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<StoreEntity> context) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                evaluated.incrementAndGet();
+                return false;
+            }
+        });
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ParallelReplayEngine engine = new ParallelReplayEngine(definition, new PrimitiveStateStore(definition), TestState.START, pool, 2, 100);
+        Iterator<ReplayRecord> records = new Iterator<ReplayRecord>() {
+            long next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public ReplayRecord next() {
+                if (next == 100) {
+                    throw new UncheckedIOException(new IOException("Failed to read"));
+                }
+                return new ReplayRecord(next++, "Begin");
+            }
+        };
+
+        // When
+        assertThrows(UncheckedIOException.class, () -> engine.replay(records));
+
+        // Then
+        assertEquals(100, evaluated.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldWaitForEveryPartitionBeforeRethrowingAnError() {
+        // Given
+        AtomicLong evaluated = new AtomicLong();
+        AtomicLong failing = new AtomicLong();
+        StateMachineDefinition<StoreEntity> definition = definition(new TransitionEvaluator<StoreEntity>() {
+            @Override
+            public String getDescription() {
+                return "Slow unless failing";
+            }
+
+            @Override
+            public boolean evaluate(ActionContext<StoreEntity> context) {
+                if (context.getEntity().getEntityId() == failing.get()) {
+                    throw new AssertionError("Failing evaluation");
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                evaluated.incrementAndGet();
+                return false;
+            }
+        });
+        ForkJoinPool pool = new ForkJoinPool(2);
+        PrimitiveStateStore store = new PrimitiveStateStore(definition);
+        ParallelReplayEngine engine = new ParallelReplayEngine(definition, store, TestState.START, pool, 2, 1_000);
+        // The partition of the failing entity is joined first, so the other must be waited for after its failure
+        while (store.getPartitionIndex(failing.get(), 2) != 0) {
+            failing.incrementAndGet();
+        }
+        List<ReplayRecord> records = new ArrayList<>();
+        records.add(new ReplayRecord(failing.get(), "Begin"));
+        for (long entityId = 0; records.size() < 101; entityId++) {
+            if (store.getPartitionIndex(entityId, 2) == 1) {
+                records.add(new ReplayRecord(entityId, "Begin"));
+            }
+        }
+
+        // When
+        assertThrows(AssertionError.class, () -> engine.replay(records.iterator()));
+
+        // Then
+        assertEquals(100, evaluated.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldRethrowFailureOfPartition() {
+        // Given
+        StateMachineDefinition<StoreEntity> definition = definition(evaluator(true));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ParallelReplayEngine engine = new ParallelReplayEngine(definition, TestState.START, pool);
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> engine.replay(Collections.singletonList(new ReplayRecord(999, "Begin")).iterator()));
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,156 @@
+package com.glc.statemachine.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.DefaultState;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class PrimitiveStateStoreTest {
+
+    private static final StateMachineDefinition<StoreEntity> DEFINITION = new StateMachineDefinitionBuilder<StoreEntity>()
+        .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+        .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END)
+        .build();
+
+    @Test
+    public void shouldStoreStatesOfEntities() {
+        // Given
+        PrimitiveStateStore store = new PrimitiveStateStore(DEFINITION);
+
+        // When
+        store.setState(1, TestState.START);
+        store.setState(-7, new DefaultState(TestState.MIDDLE.getStateName()));
+        store.setState(1, TestState.END);
+
+        // Then
+        assertEquals(2, store.size());
+        assertEquals(Optional.of(TestState.END), store.getState(1));
+        assertEquals(Optional.of(TestState.MIDDLE), store.getState(-7));
+        assertEquals(Optional.empty(), store.getState(2));
+        assertEquals(PrimitiveStateStore.UNKNOWN, store.getStateId(2));
+    }
+
+    @Test
+    public void shouldRejectStatesOutsideDefinition() {
+        // Given
+        PrimitiveStateStore store = new PrimitiveStateStore(DEFINITION);
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> store.setState(1, new DefaultState("Unknown")));
+        assertThrows(IllegalArgumentException.class, () -> store.setStateId(1, DEFINITION.getCompiled().getStateCount()));
+    }
+
+    @Test
+    public void shouldOnlyUpdateStateWhenExpected() {
+        // Given
+        PrimitiveStateStore store = new PrimitiveStateStore(DEFINITION);
+        int start = store.getRegistry().getStateId(TestState.START);
+        int middle = store.getRegistry().getStateId(TestState.MIDDLE);
+
+        // When / Then
+        assertFalse(store.compareAndSetStateId(1, start, middle));
+        assertTrue(store.compareAndSetStateId(1, PrimitiveStateStore.UNKNOWN, start));
+        assertFalse(store.compareAndSetStateId(1, PrimitiveStateStore.UNKNOWN, middle));
+        assertFalse(store.compareAndSetStateId(1, middle, start));
+        assertTrue(store.compareAndSetStateId(1, start, middle));
+        assertEquals(middle, store.getStateId(1));
+    }
+
+    @Test
+    public void shouldGrowAndRemoveAcrossStripes() {
+        // Given
+        PrimitiveStateStore store = new PrimitiveStateStore(DEFINITION, 0, 4);
+        int states = store.getRegistry().getStateCount();
+        int entities = 100_000;
+
+        // When
+        for (long id = 0; id < entities; id++) {
+            store.setStateId(id * 31, (int) (id % states));
+        }
+        for (long id = 0; id < entities; id += 2) {
+            assertTrue(store.remove(id * 31));
+        }
+
+        // Then
+        assertEquals(entities / 2, store.size());
+        assertFalse(store.remove(0));
+        for (long id = 0; id < entities; id++) {
+            assertEquals(id % 2 == 0 ? PrimitiveStateStore.UNKNOWN : (int) (id % states), store.getStateId(id * 31));
+        }
+        Map<Long, Integer> visited = new HashMap<>();
+        store.forEach(visited::put);
+        assertEquals(entities / 2, visited.size());
+        assertEquals((int) (1 % states), visited.get(31L));
+        assertTrue(store.getFootprintBytes() < 32L * entities);
+    }
+
+    @Test
+    public void shouldApplyConcurrentUpdatesAtomically() throws Exception {
+        // Given
+        PrimitiveStateStore store = new PrimitiveStateStore(DEFINITION, 0, 2);
+        int start = store.getRegistry().getStateId(TestState.START);
+        int middle = store.getRegistry().getStateId(TestState.MIDDLE);
+        int entities = 10_000;
+        for (long id = 0; id < entities; id++) {
+            store.setStateId(id, start);
+        }
+        int[] moved = new int[4];
+
+        // When
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < moved.length; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (long id = 0; id < entities; id++) {
+                    if (store.compareAndSetStateId(id, start, middle)) {
+                        moved[thread]++;
+                    }
+                    // Adds new entities so that tables grow while other threads read them
+                    store.setStateId(entities * (thread + 1L) + id, start);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        int total = 0;
+        for (int count : moved) {
+            total += count;
+        }
+        assertEquals(entities, total);
+        assertEquals(entities * 5L, store.size());
+    }
+
+    @Test
+    public void shouldSpreadEntitiesEvenlyOverPartitionsThatDoNotDivideTheStripes() {
+        // Given
+        PrimitiveStateStore store = new PrimitiveStateStore(DEFINITION, 0, 64);
+        int partitions = 48;
+        long[] counts = new long[partitions];
+
+        // When
+        for (long entityId = 0; entityId < partitions * 10_000L; entityId++) {
+            counts[store.getPartitionIndex(entityId, partitions)]++;
+        }
+
+        // Then
+        for (int p = 0; p < partitions; p++) {
+            assertTrue(Math.abs(counts[p] - 10_000) < 1_000, "Partition " + p + " holds " + counts[p] + " entities");
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.glc.statemachine.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.StateMachineEventFromAndTo;
+import com.glc.statemachine.Transition;
+import com.glc.statemachine.TransitionListener;
+import com.glc.statemachine.definition.StateMachineDefinition;
+import com.glc.statemachine.definition.StateMachineDefinitionBuilder;
+import com.glc.statemachine.definition.testcase.TestState;
+import com.glc.statemachine.definition.testcase.TestStateMachineEvent;
+import com.glc.statemachine.impl.DefaultTransitionAction;
+import com.glc.statemachine.impl.InMemoryTransitionMetrics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class StateStoreTransitionManagerTest {
+
+    @Test
+    public void shouldTransitionEntitiesById() {
+        // Given
+        StateMachineDefinition<StoreEntity> definition = new StateMachineDefinitionBuilder<StoreEntity>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .withTransition(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END)
+            .build();
+        PrimitiveStateStore store = new PrimitiveStateStore(definition);
+        StateStoreTransitionManager transitionManager = new StateStoreTransitionManager(store, definition);
+        store.setState(1, TestState.START);
+        store.setState(2, TestState.START);
+
+        // When
+        Optional<Transition<StoreEntity>> begin = transitionManager.triggerEvent(1, TestStateMachineEvent.BEGIN);
+        Optional<Transition<StoreEntity>> stop = transitionManager.triggerEvent(2, TestStateMachineEvent.STOP);
+
+        // Then
+        assertTrue(begin.isPresent());
+        assertEquals(TestState.MIDDLE, begin.get().getToState(null));
+        assertFalse(stop.isPresent());
+        assertEquals(Optional.of(TestState.MIDDLE), store.getState(1));
+        assertEquals(Optional.of(TestState.START), store.getState(2));
+    }
+
+    @Test
+    public void shouldRunEvaluatorsActionsAndListenersAgainstFlyweight() {
+        // Given
+        List<String> actions = new ArrayList<>();
+        List<String> heard = new ArrayList<>();
+        List<TransitionListener<StoreEntity>> listeners = Collections.singletonList((transition, context) -> heard.add(context.getEntity().getId()));
+        StateMachineEventFromAndTo<StoreEntity> begin = new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE);
+        begin.addAction(new DefaultTransitionAction<StoreEntity>("record") {
+            @Override
+            public void execute(ActionContext<StoreEntity> actionContext) {
+                actions.add(actionContext.getEntity().getId() + ":" + actionContext.getEntity().getState().getStateName());
+            }
+        });
+        StateMachineDefinition<StoreEntity> definition = new StateMachineDefinition<>(Collections.singletonList(begin), null, listeners);
+        PrimitiveStateStore store = new PrimitiveStateStore(definition);
+        StateStoreTransitionManager transitionManager = new StateStoreTransitionManager(store, definition);
+        store.setState(42, TestState.START);
+
+        // When
+        Optional<Transition<StoreEntity>> transition = transitionManager.triggerEvent(42, TestStateMachineEvent.BEGIN);
+
+        // Then
+        assertTrue(transition.isPresent());
+        assertEquals(Optional.of(TestState.MIDDLE), store.getState(42));
+        assertEquals(Collections.singletonList("42:Middle"), actions);
+        assertEquals(Collections.singletonList("42"), heard);
+    }
+
+    @Test
+    public void shouldPersistThroughSubclass() {
+        // Given
+        StateMachineDefinition<StoreEntity> definition = new StateMachineDefinitionBuilder<StoreEntity>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .build();
+        PrimitiveStateStore store = new PrimitiveStateStore(definition);
+        List<Long> persisted = new ArrayList<>();
+        StateStoreTransitionManager transitionManager = new StateStoreTransitionManager(store, definition) {
+            @Override
+            protected void persistEntity(ActionContext<StoreEntity> actionContext) {
+                persisted.add(actionContext.getEntity().getEntityId());
+            }
+        };
+        store.setState(7, TestState.START);
+
+        // When
+        transitionManager.triggerEvent(7, TestStateMachineEvent.BEGIN);
+
+        // Then
+        assertEquals(Collections.singletonList(7L), persisted);
+        assertEquals(Optional.of(TestState.MIDDLE), store.getState(7));
+    }
+
+    @Test
+    public void shouldRejectUnknownEntitiesAndStores() {
+        // Given
+        StateMachineDefinition<StoreEntity> definition = new StateMachineDefinitionBuilder<StoreEntity>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .build();
+        StateMachineDefinition<StoreEntity> other = new StateMachineDefinitionBuilder<StoreEntity>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .build();
+        PrimitiveStateStore store = new PrimitiveStateStore(definition);
+        StateStoreTransitionManager transitionManager = new StateStoreTransitionManager(store, definition);
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> transitionManager.triggerEvent(1, TestStateMachineEvent.BEGIN));
+        assertThrows(IllegalArgumentException.class, () -> new StateStoreTransitionManager(store, other));
+    }
+
+    @Test
+    public void shouldMeasureDirectCellsWhenMetricsAreEnabled() {
+        // Given
+        InMemoryTransitionMetrics metrics = new InMemoryTransitionMetrics();
+        StateMachineDefinition<StoreEntity> definition = new StateMachineDefinitionBuilder<StoreEntity>()
+            .withTransition(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE)
+            .build()
+            .withMetrics(metrics);
+        PrimitiveStateStore store = new PrimitiveStateStore(definition);
+        StateStoreTransitionManager transitionManager = new StateStoreTransitionManager(store, definition);
+        store.setState(1, TestState.START);
+
+        // When
+        transitionManager.triggerEvent(1, TestStateMachineEvent.BEGIN);
+        transitionManager.triggerEvent(1, TestStateMachineEvent.BEGIN);
+
+        // Then
+        assertEquals(Optional.of(TestState.MIDDLE), store.getState(1));
+        assertEquals(1, metrics.snapshot().getTransitionCount("Start", "Begin", "Middle"));
+        assertEquals(1, metrics.snapshot().getNoTransitionCount("Middle", "Begin"));
+    }
+
+    @Test
+    public void shouldApplyCellsOfListBuiltDefinitionsDirectly() {
+        // Given
+        StateMachineDefinition<StoreEntity> definition = new StateMachineDefinition<>(Arrays.asList(
+            new StateMachineEventFromAndTo<>(TestStateMachineEvent.BEGIN, TestState.START, TestState.MIDDLE),
+            new StateMachineEventFromAndTo<>(TestStateMachineEvent.STOP, TestState.MIDDLE, TestState.END)), null, null);
+        AtomicInteger flyweights = new AtomicInteger();
+        PrimitiveStateStore store = new PrimitiveStateStore(definition) {
+            @Override
+            public StoreEntity entity(long entityId) {
+                flyweights.incrementAndGet();
+                return super.entity(entityId);
+            }
+        };
+        StateStoreTransitionManager transitionManager = new StateStoreTransitionManager(store, definition);
+        store.setState(1, TestState.START);
+
+        // When
+        Optional<Transition<StoreEntity>> begin = transitionManager.triggerEvent(1, TestStateMachineEvent.BEGIN);
+        Optional<Transition<StoreEntity>> stop = transitionManager.triggerEvent(1, TestStateMachineEvent.STOP);
+
+        // Then
+        assertTrue(begin.isPresent());
+        assertTrue(stop.isPresent());
+        assertEquals(Optional.of(TestState.END), store.getState(1));
+        assertEquals(0, flyweights.get());
+    }
+}
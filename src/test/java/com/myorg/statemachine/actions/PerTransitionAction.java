@@ -0,0 +1,23 @@
+package com.myorg.statemachine.actions;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.TransitionAction;
+import com.glc.statemachine.loader.PerTransition;
+
+@PerTransition
+public class PerTransitionAction implements TransitionAction {
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getDescription() {
+        return null;
+    }
+
+    @Override
+    public void execute(ActionContext actionContext) {
+
+    }
+}
@@ -0,0 +1,24 @@
+package com.myorg.statemachine.evaluators;
+
+import com.glc.statemachine.ActionContext;
+import com.glc.statemachine.TransitionEvaluator;
+
+/**
+ * Runs the instantiation parameter of the loader when it is created, so that tests can act while a definition loads
+ */
+public class CallbackEvaluator implements TransitionEvaluator {
+
+    public CallbackEvaluator(Runnable onCreate) {
+        onCreate.run();
+    }
+
+    @Override
+    public String getDescription() {
+        return null;
+    }
+
+    @Override
+    public boolean evaluate(ActionContext context) {
+        return true;
+    }
+}